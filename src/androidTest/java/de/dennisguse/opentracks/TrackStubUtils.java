@@ -19,6 +19,7 @@ package de.dennisguse.opentracks;
 import android.location.Location;
 
 import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.util.LocationUtils;
 
 /**
  * Commons utilities for creating stubs of track, location.
@@ -60,6 +61,6 @@ public class TrackStubUtils {
         location.setTime(INITIAL_TIME);
         location.setBearing(INITIAL_BEARING);
 
-        return new TrackPoint(location);
+        return LocationUtils.createTrackPoint(location);
     }
 }
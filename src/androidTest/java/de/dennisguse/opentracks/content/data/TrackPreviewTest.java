@@ -0,0 +1,68 @@
+package de.dennisguse.opentracks.content.data;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TrackPreviewTest {
+
+    @Test
+    public void blob_roundtrip() {
+        // given
+        TrackPreview trackPreview = new TrackPreview(new int[]{48000000, 48000100, -1000, 90000000}, new int[]{11000000, 10999000, -180000000, 180000000}, -1000, 90000000, -180000000, 180000000);
+
+        // when
+        TrackPreview decoded = TrackPreview.fromBlob(trackPreview.toBlob(), -1000, 90000000, -180000000, 180000000);
+
+        // then
+        assertEquals(trackPreview, decoded);
+    }
+
+    @Test
+    public void blob_invalid() {
+        assertNull(TrackPreview.fromBlob(null, 0, 0, 0, 0));
+        assertNull(TrackPreview.fromBlob(new byte[]{1, 5, 2}, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void builder_bounded() {
+        // given
+        TrackPreview.Builder builder = new TrackPreview.Builder();
+
+        // when
+        int numberOfTrackPoints = 10 * TrackPreview.Builder.BUFFER_SIZE;
+        for (int i = 0; i < numberOfTrackPoints; i++) {
+            builder.add(new TrackPoint(48 + Math.sin(i / 100.0), 11 + i / 10000.0, null, i));
+            if (i % 1000 == 0) {
+                builder.add(TrackPoint.createPause());
+            }
+        }
+        TrackPreview trackPreview = builder.build();
+
+        // then
+        assertTrue(trackPreview.size() <= TrackPreview.MAX_VERTICES);
+        assertEquals(47000000, trackPreview.getMinLatitudeE6(), 100);
+        assertEquals(49000000, trackPreview.getMaxLatitudeE6(), 100);
+        assertEquals(11000000, trackPreview.getMinLongitudeE6());
+        assertEquals(11000000 + (numberOfTrackPoints - 1) * 100, trackPreview.getMaxLongitudeE6(), 1);
+
+        // first and last vertex are kept
+        assertEquals(48000000, trackPreview.getLatitudeE6(0));
+        assertEquals(11000000, trackPreview.getLongitudeE6(0));
+        assertEquals(trackPreview.getMaxLongitudeE6(), trackPreview.getLongitudeE6(trackPreview.size() - 1));
+    }
+
+    @Test
+    public void builder_empty() {
+        TrackPreview.Builder builder = new TrackPreview.Builder();
+        builder.add(TrackPoint.createPause());
+
+        assertNull(builder.build());
+    }
+}
@@ -0,0 +1,84 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CumulativeStatisticsBackfillTest {
+
+    private static final String DATABASE_NAME = "test.db";
+
+    private static final int NUM_POINTS = 2500;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Before
+    @After
+    public void setUp() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void run() {
+        try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getWritableDatabase()) {
+            // given
+            long trackId = insertTrack(db);
+            for (int i = 0; i < NUM_POINTS; i++) {
+                // Moving north with 10m per second; cumulative statistics are not set (like before database version 34).
+                ContentValues values = new ContentValues();
+                values.put(TrackPointsColumns.TRACKID, trackId);
+                values.put(TrackPointsColumns.LATITUDE, 48_000_000 + i * 90);
+                values.put(TrackPointsColumns.LONGITUDE, 9_000_000);
+                values.put(TrackPointsColumns.TIME, 1_000_000L + i * 1000L);
+                values.put(TrackPointsColumns.SPEED, 10f);
+                db.insert(TrackPointsColumns.TABLE_NAME, null, values);
+            }
+
+            // when
+            assertEquals(1, new CumulativeStatisticsBackfill(db, 0, SmoothingFilter.Type.MOVING_AVERAGE, SmoothingFilter.Type.MOVING_AVERAGE).run());
+
+            // then
+            try (Cursor cursor = db.query(TrackPointsColumns.TABLE_NAME, new String[]{TrackPointsColumns.CUMULATIVE_DISTANCE, TrackPointsColumns.CUMULATIVE_MOVING_TIME}, null, null, null, null, TrackPointsColumns._ID)) {
+                assertEquals(NUM_POINTS, cursor.getCount());
+                double lastDistance = -1;
+                long lastMovingTime = -1;
+                while (cursor.moveToNext()) {
+                    assertFalse(cursor.isNull(0));
+                    assertTrue(cursor.getDouble(0) >= lastDistance);
+                    assertTrue(cursor.getLong(1) >= lastMovingTime);
+                    lastDistance = cursor.getDouble(0);
+                    lastMovingTime = cursor.getLong(1);
+                }
+                assertEquals((NUM_POINTS - 1) * 10.0, lastDistance, (NUM_POINTS - 1) * 0.1);
+                assertEquals((NUM_POINTS - 1) * 1000L, lastMovingTime);
+            }
+
+            // when / then: nothing left to do
+            assertEquals(0, new CumulativeStatisticsBackfill(db, 0, SmoothingFilter.Type.MOVING_AVERAGE, SmoothingFilter.Type.MOVING_AVERAGE).run());
+        }
+    }
+
+    private static long insertTrack(SQLiteDatabase db) {
+        ContentValues values = new ContentValues();
+        values.put(TracksColumns.NAME, "test");
+        return db.insert(TracksColumns.TABLE_NAME, null, values);
+    }
+}
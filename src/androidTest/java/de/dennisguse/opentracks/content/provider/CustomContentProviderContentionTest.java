@@ -0,0 +1,173 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark: a recording-rate writer against a concurrent export of a long track.
+ * With write-ahead logging, the export must not block the writer: the max insert latency while the export's cursor is open is compared to a run without export.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CustomContentProviderContentionTest {
+
+    private static final String TAG = CustomContentProviderContentionTest.class.getSimpleName();
+
+    private static final int EXPORT_TRACK_POINTS = 20000;
+
+    // Much faster than recording (1Hz) to make contention visible.
+    private static final long WRITER_INTERVAL_MS = 10;
+
+    private static final long BASELINE_DURATION_MS = 2000;
+
+    // Bound of the max insert latency during the export relative to the max without export; small latencies are dominated by noise (e.g., GC).
+    private static final long MAX_LATENCY_FACTOR = 10;
+    private static final long MIN_LATENCY_BOUND_MS = 100;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private ContentProviderUtils contentProviderUtils;
+
+    @Before
+    public void setUp() {
+        contentProviderUtils = new ContentProviderUtils(context);
+        contentProviderUtils.deleteAllTracks(context);
+    }
+
+    @After
+    public void tearDown() {
+        contentProviderUtils.deleteAllTracks(context);
+    }
+
+    @Test
+    public void testRecordingDuringExport() throws InterruptedException {
+        // given
+        Track exportTrack = TestDataUtil.createTrackAndInsert(contentProviderUtils, new Track.Id(System.currentTimeMillis()), EXPORT_TRACK_POINTS);
+        Track.Id recordingTrackId = new Track.Id(System.currentTimeMillis() + 1);
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, recordingTrackId, 0);
+
+        // Baseline: the same writer without a concurrent export.
+        List<Long> baselineLatencies_ns = record(recordingTrackId, 0, () -> {
+            try {
+                Thread.sleep(BASELINE_DURATION_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+
+        // when
+        TrackExporter trackExporter = TrackFileFormat.KML_WITH_TRACKDETAIL.newTrackExporter(context);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        long exportStart = System.nanoTime();
+        List<Long> exportLatencies_ns = record(recordingTrackId, baselineLatencies_ns.size(), () -> trackExporter.writeTrack(exportTrack, outputStream));
+        long exportDuration_ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - exportStart);
+
+        // then
+        assertTrue(outputStream.size() > 0);
+        assertTrue("Writer was blocked by the export.", exportLatencies_ns.size() > 0);
+        try (Cursor cursor = contentProviderUtils.getTrackPointCursor(recordingTrackId, -1L, -1, false)) {
+            assertEquals(baselineLatencies_ns.size() + exportLatencies_ns.size(), cursor.getCount());
+        }
+
+        long baselineMax_ns = baselineLatencies_ns.get(baselineLatencies_ns.size() - 1);
+        long exportMax_ns = exportLatencies_ns.get(exportLatencies_ns.size() - 1);
+        Log.i(TAG, "Export of " + EXPORT_TRACK_POINTS + " trackPoints took " + exportDuration_ms + "ms; inserts without export: " + format(baselineLatencies_ns) + "; inserts during export: " + format(exportLatencies_ns));
+
+        // Without write-ahead logging, an insert waits until the export's read transaction ended (i.e., the whole export).
+        long bound_ns = Math.max(MAX_LATENCY_FACTOR * baselineMax_ns, TimeUnit.MILLISECONDS.toNanos(MIN_LATENCY_BOUND_MS));
+        assertTrue("Max insert latency during export " + TimeUnit.NANOSECONDS.toMicros(exportMax_ns) + "us exceeds " + TimeUnit.NANOSECONDS.toMicros(bound_ns) + "us", exportMax_ns <= bound_ns);
+    }
+
+    /**
+     * Inserts trackPoints at {@link #WRITER_INTERVAL_MS} while the task runs.
+     *
+     * @return the sorted insert latencies
+     */
+    private List<Long> record(Track.Id recordingTrackId, int firstTrackPoint, Callable<Boolean> task) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Long> insertLatencies_ns = Collections.synchronizedList(new ArrayList<>());
+
+        Thread writer = new Thread(() -> {
+            int i = firstTrackPoint;
+            while (running.get()) {
+                long start = System.nanoTime();
+                contentProviderUtils.insertTrackPoint(TestDataUtil.createTrackPoint(i++), recordingTrackId);
+                insertLatencies_ns.add(System.nanoTime() - start);
+                try {
+                    Thread.sleep(WRITER_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        writer.start();
+        try {
+            assertTrue(task.call());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        List<Long> latencies = new ArrayList<>(insertLatencies_ns);
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    private static String format(List<Long> sortedLatencies_ns) {
+        return sortedLatencies_ns.size() + " inserts: median " + TimeUnit.NANOSECONDS.toMicros(sortedLatencies_ns.get(sortedLatencies_ns.size() / 2)) + "us"
+                + ", p99 " + TimeUnit.NANOSECONDS.toMicros(sortedLatencies_ns.get(sortedLatencies_ns.size() * 99 / 100)) + "us"
+                + ", max " + TimeUnit.NANOSECONDS.toMicros(sortedLatencies_ns.get(sortedLatencies_ns.size() - 1)) + "us";
+    }
+
+    @Test
+    public void testSnapshotIterator_ignoresNewTrackPoints() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        // Multiple batches: the new trackPoint would be part of the last one.
+        contentProviderUtils.setDefaultCursorBatchSize(3);
+
+        // when
+        int count = 0;
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointSnapshotIterator(trackId)) {
+            while (trackPointIterator.hasNext()) {
+                trackPointIterator.next();
+                if (count == 0) {
+                    // Recording continues while iterating.
+                    contentProviderUtils.insertTrackPoint(TestDataUtil.createTrackPoint(10), trackId);
+                }
+                count++;
+            }
+        }
+
+        // then
+        assertEquals(10, count);
+    }
+}
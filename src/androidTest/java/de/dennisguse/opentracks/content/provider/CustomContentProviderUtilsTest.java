@@ -38,15 +38,20 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+import de.dennisguse.opentracks.content.data.BestEffort;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.Segment;
 import de.dennisguse.opentracks.content.data.TestDataUtil;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.ZoneHistogram;
 import de.dennisguse.opentracks.util.FileUtils;
+import de.dennisguse.opentracks.util.LocationUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 import de.dennisguse.opentracks.util.UUIDUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -151,7 +156,7 @@ public class CustomContentProviderUtilsTest {
             loc.setLongitude(57.0 - (double) i / 10000.0);
             loc.setAccuracy((float) i / 100.0f);
             loc.setAltitude(i * 2.5);
-            trackPoints[i] = new TrackPoint(loc);
+            trackPoints[i] = LocationUtils.createTrackPoint(loc);
         }
         contentProviderUtils.bulkInsertTrackPoint(trackPoints, id);
 
@@ -243,7 +248,7 @@ public class CustomContentProviderUtilsTest {
         Track track = TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
 
         TrackPoint trackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         contentProviderUtils.insertMarker(waypoint);
 
         ContentResolver contentResolver = context.getContentResolver();
@@ -308,6 +313,33 @@ public class CustomContentProviderUtilsTest {
         assertEquals(0, waypointCursor.getCount());
     }
 
+    /**
+     * Tests that the trackPoints of a deleted track are purged in the background.
+     */
+    @Test
+    public void testDeleteTrack_purge() throws InterruptedException {
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        Track track = contentProviderUtils.getTrack(trackId);
+
+        // when
+        contentProviderUtils.deleteTrack(context, trackId);
+
+        // then
+        assertNull(contentProviderUtils.getTrack(trackId));
+        assertNull(contentProviderUtils.getTrack(track.getUuid()));
+
+        ContentProviderUtils.PurgeStatus purgeStatus = contentProviderUtils.getPurgeStatus();
+        for (int i = 0; i < 100 && (purgeStatus.getDeletedTracks() > 0 || purgeStatus.getPendingTrackPoints() > 0); i++) {
+            Thread.sleep(100);
+            purgeStatus = contentProviderUtils.getPurgeStatus();
+        }
+        assertEquals(0, purgeStatus.getDeletedTracks());
+        assertEquals(0, purgeStatus.getPendingTrackPoints());
+        assertTrue(purgeStatus.getPageSize() > 0);
+        assertTrue(purgeStatus.getPageCount() >= purgeStatus.getFreePageCount());
+    }
+
     /**
      * Tests the method {@link ContentProviderUtils#deleteTrack(Context, Track.Id)}.
      */
@@ -325,12 +357,12 @@ public class CustomContentProviderUtilsTest {
 
         // Insert a waypoint in tracks trackId and trackId + 1.
         TrackPoint trackPoint1 = contentProviderUtils.getLastValidTrackPoint(trackId1);
-        Marker waypoint1 = TestDataUtil.createWaypointWithPhoto(context, trackId1, trackPoint1.getLocation());
+        Marker waypoint1 = TestDataUtil.createWaypointWithPhoto(context, trackId1, LocationUtils.createLocation(trackPoint1));
         contentProviderUtils.insertMarker(waypoint1);
         File dir1 = FileUtils.getPhotoDir(context, trackId1);
 
         TrackPoint trackPoint2 = contentProviderUtils.getLastValidTrackPoint(trackId2);
-        Marker waypoint2 = TestDataUtil.createWaypointWithPhoto(context, trackId2, trackPoint2.getLocation());
+        Marker waypoint2 = TestDataUtil.createWaypointWithPhoto(context, trackId2, LocationUtils.createLocation(trackPoint2));
         contentProviderUtils.insertMarker(waypoint2);
         File dir2 = FileUtils.getPhotoDir(context, trackId2);
 
@@ -437,6 +469,65 @@ public class CustomContentProviderUtilsTest {
         assertEquals(nameNew, contentProviderUtils.getTrack(trackId).getName());
     }
 
+    @Test
+    public void testUpdateTrack_sensorStatistics() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        Track track = TestDataUtil.createTrack(trackId);
+        TrackStatistics trackStatistics = track.getTrackStatistics();
+        trackStatistics.getHeartRate().add(140, 60_000);
+        trackStatistics.getHeartRate().add(170, 20_000);
+        trackStatistics.getPower().add(250, 80_000);
+        trackStatistics.setNormalizedPower(260, 50_000);
+        trackStatistics.setHeartRateZones(new ZoneHistogram(new double[]{150}));
+        trackStatistics.getHeartRateZones().add(140, 60_000);
+
+        // when
+        contentProviderUtils.insertTrack(track);
+
+        // then
+        TrackStatistics stored = contentProviderUtils.getTrack(trackId).getTrackStatistics();
+        assertEquals(147.5, stored.getHeartRate().getAverage(), 0.01);
+        assertEquals(170, stored.getHeartRate().getMax(), 0.01);
+        assertEquals(80_000, stored.getHeartRate().getDuration_ms());
+        assertNull(stored.getCadence().getAverage());
+        assertEquals(250, stored.getPower().getAverage(), 0.01);
+        assertEquals(260, stored.getNormalizedPower(), 0.01);
+        assertEquals(50_000, stored.getNormalizedPowerDuration_ms());
+        assertEquals(60_000, stored.getHeartRateZones().getTime_ms(0));
+        assertNull(stored.getPowerZones());
+    }
+
+    /**
+     * Tests that {@link Track#getModificationCount()} is incremented if the track, its trackPoints, or its markers are modified.
+     */
+    @Test
+    public void testUpdateTrack_modificationCount() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        Track track = TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        long modificationCount = contentProviderUtils.getTrack(trackId).getModificationCount();
+
+        // when / then: unchanged
+        contentProviderUtils.updateTrack(contentProviderUtils.getTrack(trackId));
+        assertEquals(modificationCount, contentProviderUtils.getTrack(trackId).getModificationCount());
+
+        // when / then: track
+        track.setName("name");
+        contentProviderUtils.updateTrack(track);
+        assertTrue(modificationCount < contentProviderUtils.getTrack(trackId).getModificationCount());
+        modificationCount = contentProviderUtils.getTrack(trackId).getModificationCount();
+
+        // when / then: trackPoint
+        contentProviderUtils.insertTrackPoint(TestDataUtil.createTrackPoint(10), trackId);
+        assertTrue(modificationCount < contentProviderUtils.getTrack(trackId).getModificationCount());
+        modificationCount = contentProviderUtils.getTrack(trackId).getModificationCount();
+
+        // when / then: marker
+        contentProviderUtils.insertMarker(new Marker(trackId, contentProviderUtils.getLastValidTrackPoint(trackId)));
+        assertTrue(modificationCount < contentProviderUtils.getTrack(trackId).getModificationCount());
+    }
+
     /**
      * Tests the method {@link ContentProviderUtils#createContentValues(Marker)}.
      */
@@ -549,7 +640,7 @@ public class CustomContentProviderUtilsTest {
 
         // Insert at first.
         TrackPoint trackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        Marker waypoint1 = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker waypoint1 = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         contentProviderUtils.insertMarker(waypoint1);
 
         // Check insert was done.
@@ -683,7 +774,7 @@ public class CustomContentProviderUtilsTest {
 
         // Insert at first.
         TrackPoint trackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         waypoint.setDescription(TEST_DESC);
         Marker.Id waypointId = new Marker.Id(ContentUris.parseId(contentProviderUtils.insertMarker(waypoint)));
 
@@ -718,7 +809,7 @@ public class CustomContentProviderUtilsTest {
 
         // Insert at first.
         TrackPoint trackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         waypoint.setDescription(TEST_DESC);
         Marker.Id waypointId = new Marker.Id(ContentUris.parseId(contentProviderUtils.insertMarker(waypoint)));
 
@@ -752,9 +843,9 @@ public class CustomContentProviderUtilsTest {
 
         // Insert two waypoints with photos.
         TrackPoint trackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker waypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         waypoint.setDescription(TEST_DESC);
-        Marker otherWaypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, trackPoint.getLocation());
+        Marker otherWaypoint = TestDataUtil.createWaypointWithPhoto(context, trackId, LocationUtils.createLocation(trackPoint));
         otherWaypoint.setDescription(TEST_DESC);
         Marker.Id waypointId = new Marker.Id(ContentUris.parseId(contentProviderUtils.insertMarker(waypoint)));
         contentProviderUtils.insertMarker(otherWaypoint);
@@ -882,7 +973,65 @@ public class CustomContentProviderUtilsTest {
         Track track = TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
 
         TrackPoint lastTrackPoint = contentProviderUtils.getLastValidTrackPoint(trackId);
-        checkLocation(9, lastTrackPoint.getLocation());
+        checkLocation(9, lastTrackPoint);
+    }
+
+    @Test
+    public void testGetSegments() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId));
+        TrackPoint[] trackPoints = {
+                TestDataUtil.createTrackPoint(0),
+                TestDataUtil.createTrackPoint(1),
+                TestDataUtil.createTrackPoint(2),
+                TrackPoint.createPauseWithTime(4),
+                TrackPoint.createResumeWithTime(5),
+                TestDataUtil.createTrackPoint(5),
+                TrackPoint.createPauseWithTime(7),
+                TrackPoint.createResumeWithTime(8),
+                TestDataUtil.createTrackPoint(8),
+                TestDataUtil.createTrackPoint(9)
+        };
+
+        // when
+        contentProviderUtils.bulkInsertTrackPoint(trackPoints, trackId);
+
+        // then
+        List<Long> trackPointIds = getTrackPointIds(trackId, -1L, false);
+        List<Segment> segments = contentProviderUtils.getSegments(trackId);
+        assertEquals(3, segments.size());
+        assertSegmentEquals(0, trackPointIds.get(0), trackPointIds.get(2), 1, 4, segments.get(0));
+        assertSegmentEquals(1, trackPointIds.get(5), trackPointIds.get(5), 6, 7, segments.get(1));
+        assertTrue(segments.get(1).isSingleTrackPoint());
+        assertSegmentEquals(2, trackPointIds.get(8), trackPointIds.get(9), 9, 10, segments.get(2));
+        checkLocation(9, contentProviderUtils.getLastValidTrackPoint(trackId));
+
+        // when
+        contentProviderUtils.archiveTrack(trackId);
+        contentProviderUtils.restoreTrack(trackId);
+
+        // then
+        assertEquals(segments.toString(), contentProviderUtils.getSegments(trackId).toString());
+
+        // when
+        contentProviderUtils.insertTrackPoint(TrackPoint.createPauseWithTime(11), trackId);
+        contentProviderUtils.insertTrackPoint(TestDataUtil.createTrackPoint(11), trackId);
+
+        // then
+        segments = contentProviderUtils.getSegments(trackId);
+        assertEquals(4, segments.size());
+        assertEquals(3, segments.get(3).getIndex());
+        assertEquals(11, segments.get(2).getStopTime_ms());
+        checkLocation(11, contentProviderUtils.getLastValidTrackPoint(trackId));
+    }
+
+    private static void assertSegmentEquals(int index, long firstTrackPointId, long lastTrackPointId, long startTime_ms, long stopTime_ms, Segment segment) {
+        assertEquals(index, segment.getIndex());
+        assertEquals(firstTrackPointId, segment.getFirstTrackPointId());
+        assertEquals(lastTrackPointId, segment.getLastTrackPointId());
+        assertEquals(startTime_ms, segment.getStartTime_ms());
+        assertEquals(stopTime_ms, segment.getStopTime_ms());
     }
 
     /**
@@ -953,7 +1102,7 @@ public class CustomContentProviderUtilsTest {
             assertTrue(trackPointIterator.hasNext());
             TrackPoint trackPoint = trackPointIterator.next();
             assertEquals(startTrackPointId - i, trackPointIterator.getTrackPointId());
-            checkLocation((trackpointIds.length - 1) - i, trackPoint.getLocation());
+            checkLocation((trackpointIds.length - 1) - i, trackPoint);
         }
         assertFalse(trackPointIterator.hasNext());
     }
@@ -984,7 +1133,7 @@ public class CustomContentProviderUtilsTest {
             TrackPoint trackPoint = trackPointIterator.next();
             assertEquals(startTrackPointId + i, trackPointIterator.getTrackPointId());
 
-            checkLocation(i, trackPoint.getLocation());
+            checkLocation(i, trackPoint);
         }
         assertFalse(trackPointIterator.hasNext());
     }
@@ -995,7 +1144,7 @@ public class CustomContentProviderUtilsTest {
      * @param i        the index of this location which created in the method {@link TestDataUtil#createTrack(Track.Id, int)}
      * @param location the location to be checked
      */
-    private void checkLocation(int i, Location location) {
+    private void checkLocation(int i, TrackPoint location) {
         assertEquals(TestDataUtil.INITIAL_LATITUDE + (double) i / 10000.0, location.getLatitude(), 0.01);
         assertEquals(TestDataUtil.INITIAL_LONGITUDE - (double) i / 10000.0, location.getLongitude(), 0.01);
         assertEquals((float) i / 100.0f, location.getAccuracy(), 0.01);
@@ -1008,4 +1157,256 @@ public class CustomContentProviderUtilsTest {
         assertEquals("12", ContentProviderUtils.formatIdListForUri(new Track.Id(12)));
         assertEquals("42,43,44", ContentProviderUtils.formatIdListForUri(new Track.Id(42), new Track.Id(43), new Track.Id(44)));
     }
+
+    @Test
+    public void testGetNearestMarkers() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+
+        double[] latitudes = {48.0, 48.01, 47.9, 10.0, -45.0};
+        for (double latitude : latitudes) {
+            Location location = new Location("");
+            location.setLatitude(latitude);
+            location.setLongitude(11.0);
+            Marker marker = new Marker(trackId, location);
+            marker.setName(Double.toString(latitude));
+            contentProviderUtils.insertMarker(marker);
+        }
+
+        Location location = new Location("");
+        location.setLatitude(48.0);
+        location.setLongitude(11.0);
+
+        // when
+        List<Marker> markers = contentProviderUtils.getNearestMarkers(location, 3);
+        List<Marker> allMarkers = contentProviderUtils.getNearestMarkers(location, 10);
+
+        // then
+        assertEquals(3, markers.size());
+        assertEquals("48.0", markers.get(0).getName());
+        assertEquals("48.01", markers.get(1).getName());
+        assertEquals("47.9", markers.get(2).getName());
+
+        assertEquals(latitudes.length, allMarkers.size());
+        assertEquals("-45.0", allMarkers.get(latitudes.length - 1).getName());
+    }
+
+    @Test
+    public void testGetTracks_boundingBox() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        contentProviderUtils.getTrackPreview(trackId);
+
+        TrackPoint trackPoint = TestDataUtil.createTrackPoint(0);
+        int latitudeE6 = (int) (trackPoint.getLatitude() * 1E6);
+        int longitudeE6 = (int) (trackPoint.getLongitude() * 1E6);
+
+        // when / then
+        assertEquals(1, contentProviderUtils.getTracks(latitudeE6 - 10, latitudeE6 + 10, longitudeE6 - 10, longitudeE6 + 10).size());
+        assertEquals(0, contentProviderUtils.getTracks(latitudeE6 - 1000000, latitudeE6 - 900000, longitudeE6 - 10, longitudeE6 + 10).size());
+
+        Location location = new Location("");
+        location.setLatitude(trackPoint.getLatitude() - 1);
+        location.setLongitude(trackPoint.getLongitude());
+        List<Track> tracks = contentProviderUtils.getNearestTracks(location, 1);
+        assertEquals(1, tracks.size());
+        assertEquals(trackId, tracks.get(0).getId());
+    }
+
+    @Test
+    public void testGetTrackPointIdAtDistanceAndMovingTime() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId));
+        for (int i = 0; i < 10; i++) {
+            TrackPoint trackPoint = TestDataUtil.createTrackPoint(i);
+            trackPoint.setCumulativeStatistics(i * 100, i * 1000L);
+            contentProviderUtils.insertTrackPoint(trackPoint, trackId);
+        }
+        List<Long> trackPointIds = getTrackPointIds(trackId, -1L, false);
+
+        // when / then
+        assertEquals(trackPointIds.get(0).longValue(), contentProviderUtils.getTrackPointIdAtDistance(trackId, 0));
+        assertEquals(trackPointIds.get(3).longValue(), contentProviderUtils.getTrackPointIdAtDistance(trackId, 250));
+        assertEquals(trackPointIds.get(3).longValue(), contentProviderUtils.getTrackPointIdAtDistance(trackId, 300));
+        assertEquals(-1L, contentProviderUtils.getTrackPointIdAtDistance(trackId, 901));
+
+        assertEquals(trackPointIds.get(5).longValue(), contentProviderUtils.getTrackPointIdAtMovingTime(trackId, 4500));
+        assertEquals(-1L, contentProviderUtils.getTrackPointIdAtMovingTime(trackId, 9001));
+    }
+
+    @Test
+    public void testPersonalRecords() {
+        // given: two tracks of the same activity type; the second one is faster
+        Track.Id slowTrackId = insertTrackWithSpeed(new Track.Id(System.currentTimeMillis()), 4);
+        Track.Id fastTrackId = insertTrackWithSpeed(new Track.Id(System.currentTimeMillis() + 1), 5);
+
+        // when
+        contentProviderUtils.updateBestEfforts(slowTrackId);
+        contentProviderUtils.updateBestEfforts(fastTrackId);
+
+        // then
+        BestEffort record = getPersonalRecord(BestEffort.Type.TIME_FOR_DISTANCE, 1000);
+        assertEquals(fastTrackId, record.getTrackId());
+        assertEquals(200_000, record.getValue(), 1);
+        assertEquals(fastTrackId, getPersonalRecord(BestEffort.Type.DISTANCE_FOR_DURATION, 60_000).getTrackId());
+
+        // when
+        contentProviderUtils.deleteTrack(context, fastTrackId);
+
+        // then: falls back to the remaining track
+        record = getPersonalRecord(BestEffort.Type.TIME_FOR_DISTANCE, 1000);
+        assertEquals(slowTrackId, record.getTrackId());
+        assertEquals(250_000, record.getValue(), 1);
+        assertTrue(contentProviderUtils.getBestEfforts(fastTrackId).isEmpty());
+
+        contentProviderUtils.deleteTrack(context, slowTrackId);
+    }
+
+    @Test
+    public void testUpdateMissingBestEfforts_checksTracksOnce() {
+        // given: a track too short for any best effort and one with best efforts
+        PreferencesUtils.setBestEffortsCheckedTrackId(context, -1L);
+        Track.Id shortTrackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, shortTrackId, 2);
+        Track.Id trackId = insertTrackWithSpeed(new Track.Id(System.currentTimeMillis() + 1), 4);
+
+        // when / then
+        assertEquals(2, contentProviderUtils.updateMissingBestEfforts(context, null));
+        assertTrue(contentProviderUtils.getBestEfforts(shortTrackId).isEmpty());
+        assertFalse(contentProviderUtils.getBestEfforts(trackId).isEmpty());
+        assertEquals(trackId.getId(), PreferencesUtils.getBestEffortsCheckedTrackId(context));
+
+        // when / then: the short track is not checked again
+        assertEquals(0, contentProviderUtils.updateMissingBestEfforts(context, null));
+
+        contentProviderUtils.deleteTrack(context, shortTrackId);
+        contentProviderUtils.deleteTrack(context, trackId);
+    }
+
+    @Test
+    public void testUpdateMissingBestEfforts_excludedTrackCheckedNextTime() {
+        // given
+        PreferencesUtils.setBestEffortsCheckedTrackId(context, -1L);
+        Track.Id recordingTrackId = insertTrackWithSpeed(new Track.Id(System.currentTimeMillis()), 4);
+
+        // when / then
+        assertEquals(0, contentProviderUtils.updateMissingBestEfforts(context, recordingTrackId));
+        assertEquals(1, contentProviderUtils.updateMissingBestEfforts(context, null));
+
+        contentProviderUtils.deleteTrack(context, recordingTrackId);
+    }
+
+    private Track.Id insertTrackWithSpeed(Track.Id trackId, double speed_mps) {
+        Track track = TestDataUtil.createTrack(trackId);
+        track.setCategory(NAME_PREFIX);
+        contentProviderUtils.insertTrack(track);
+        for (int i = 0; i < 600; i++) {
+            TrackPoint trackPoint = TestDataUtil.createTrackPoint(i);
+            trackPoint.setTime(i * 1000L);
+            trackPoint.setCumulativeStatistics(i * speed_mps, i * 1000L);
+            contentProviderUtils.insertTrackPoint(trackPoint, trackId);
+        }
+        return trackId;
+    }
+
+    private BestEffort getPersonalRecord(BestEffort.Type type, double target) {
+        for (BestEffort bestEffort : contentProviderUtils.getPersonalRecords(NAME_PREFIX)) {
+            if (bestEffort.getType() == type && bestEffort.getTarget() == target) {
+                return bestEffort;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testArchiveTrack() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        int numPoints = TrackPointsArchive.CHUNK_SIZE + 10;
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, numPoints);
+        contentProviderUtils.setDefaultCursorBatchSize(100);
+
+        List<TrackPoint> trackPoints = getTrackPoints(trackId, -1L, false);
+        List<Long> trackPointIds = getTrackPointIds(trackId, -1L, false);
+        long startTrackPointId = trackPointIds.get(TrackPointsArchive.CHUNK_SIZE - 5);
+
+        // when
+        assertEquals(numPoints, contentProviderUtils.archiveTrack(trackId));
+
+        // then
+        assertEquals(0, contentProviderUtils.getTrackPoints(trackId).size());
+        assertTrackPointsEquals(trackPoints, getTrackPoints(trackId, -1L, false));
+        assertEquals(trackPointIds, getTrackPointIds(trackId, -1L, false));
+        assertEquals(trackPointIds.get(numPoints - 1).longValue(), contentProviderUtils.getLastTrackPointId(trackId));
+        assertEquals(trackPoints.get(numPoints - 1).getTime(), contentProviderUtils.getLastValidTrackPoint(trackId).getTime());
+
+        List<Long> descending = getTrackPointIds(trackId, startTrackPointId, true);
+        assertEquals(TrackPointsArchive.CHUNK_SIZE - 4, descending.size());
+        assertEquals(startTrackPointId, descending.get(0).longValue());
+
+        List<Long> ascending = getTrackPointIds(trackId, startTrackPointId, false);
+        assertEquals(15, ascending.size());
+        assertEquals(startTrackPointId, ascending.get(0).longValue());
+
+        // when
+        assertEquals(numPoints, contentProviderUtils.restoreTrack(trackId));
+
+        // then
+        assertTrackPointsEquals(trackPoints, contentProviderUtils.getTrackPoints(trackId));
+        assertEquals(trackPointIds, getTrackPointIds(trackId, -1L, false));
+    }
+
+    @Test
+    public void testArchiveTrack_resumed() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        contentProviderUtils.archiveTrack(trackId);
+
+        // when
+        contentProviderUtils.insertTrackPoint(TestDataUtil.createTrackPoint(10), trackId);
+
+        // then
+        List<TrackPoint> trackPoints = getTrackPoints(trackId, -1L, false);
+        assertEquals(11, trackPoints.size());
+        assertEquals(TestDataUtil.createTrackPoint(10).getTime(), trackPoints.get(10).getTime());
+        assertEquals(TestDataUtil.createTrackPoint(10).getTime(), getTrackPoints(trackId, -1L, true).get(0).getTime());
+    }
+
+    private List<TrackPoint> getTrackPoints(Track.Id trackId, long startTrackPointId, boolean descending) {
+        List<TrackPoint> trackPoints = new ArrayList<>();
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(trackId, startTrackPointId, descending)) {
+            while (trackPointIterator.hasNext()) {
+                trackPoints.add(trackPointIterator.next());
+            }
+        }
+        return trackPoints;
+    }
+
+    private List<Long> getTrackPointIds(Track.Id trackId, long startTrackPointId, boolean descending) {
+        List<Long> trackPointIds = new ArrayList<>();
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(trackId, startTrackPointId, descending)) {
+            while (trackPointIterator.hasNext()) {
+                trackPointIterator.next();
+                trackPointIds.add(trackPointIterator.getTrackPointId());
+            }
+        }
+        return trackPointIds;
+    }
+
+    private static void assertTrackPointsEquals(List<TrackPoint> expected, List<TrackPoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLatitude(), actual.get(i).getLatitude(), 0.0);
+            assertEquals(expected.get(i).getLongitude(), actual.get(i).getLongitude(), 0.0);
+            assertEquals(expected.get(i).getTime(), actual.get(i).getTime());
+            assertEquals(expected.get(i).getAltitude(), actual.get(i).getAltitude(), 0.0);
+            assertEquals(expected.get(i).getSpeed(), actual.get(i).getSpeed(), 0.0);
+            assertEquals(expected.get(i).getHeartRate_bpm(), actual.get(i).getHeartRate_bpm(), 0.0);
+            assertEquals(expected.get(i).getPower(), actual.get(i).getPower(), 0.0);
+        }
+    }
 }
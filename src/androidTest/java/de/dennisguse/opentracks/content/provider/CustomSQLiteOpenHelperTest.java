@@ -17,7 +17,12 @@ import org.junit.runner.RunWith;
 import java.util.HashMap;
 import java.util.Map;
 
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.ClimbsColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.PersonalRecordsColumns;
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 
@@ -83,12 +88,36 @@ public class CustomSQLiteOpenHelperTest {
     public void onCreate() {
         try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getWritableDatabase()) {
             assertTrue(hasSqlCreate(db, TracksColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, TracksColumns.CREATE_TABLE_INDEX_BOUNDINGBOX));
 
             assertTrue(hasSqlCreate(db, TrackPointsColumns.CREATE_TABLE));
             assertTrue(hasSqlCreate(db, TrackPointsColumns.CREATE_TABLE_INDEX));
+            assertTrue(hasSqlCreate(db, TrackPointsColumns.CREATE_TABLE_INDEX_CUMULATIVE_DISTANCE));
+            assertTrue(hasSqlCreate(db, TrackPointsColumns.CREATE_TABLE_INDEX_CUMULATIVE_MOVING_TIME));
 
             assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE));
             assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE_INDEX));
+            assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE_INDEX_LOCATION));
+
+            assertTrue(hasSqlCreate(db, TrackPointsArchiveColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, TrackPointsArchiveColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, BestEffortsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, BestEffortsColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, PersonalRecordsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, PersonalRecordsColumns.CREATE_TABLE_INDEX));
+            assertTrue(hasSqlCreate(db, PersonalRecordsColumns.CREATE_TABLE_INDEX_BESTEFFORT));
+
+            assertTrue(hasSqlCreate(db, SegmentsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, SegmentsColumns.CREATE_TABLE_INDEX));
+            assertTrue(hasSqlCreate(db, ClimbsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, ClimbsColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, TracksColumns.CREATE_TRIGGER_MODIFICATION));
+            assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TRIGGER_MODIFICATION_INSERT));
+            assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TRIGGER_MODIFICATION_UPDATE));
+            assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TRIGGER_MODIFICATION_DELETE));
         } catch (Exception e) {
             fail("Database could not be created: " + e);
         }
@@ -101,35 +130,49 @@ public class CustomSQLiteOpenHelperTest {
         // Open database with SQL upgrade
         Map<String, String> tableByUpgrade;
         Map<String, String> indicesByUpgrade;
+        Map<String, String> triggersByUpgrade;
         try (SQLiteDatabase dbUpgraded = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getReadableDatabase()) {
             tableByUpgrade = getSQL(dbUpgraded, "table");
             indicesByUpgrade = getSQL(dbUpgraded, "index");
+            triggersByUpgrade = getSQL(dbUpgraded, "trigger");
         }
         context.deleteDatabase(DATABASE_NAME);
 
         // Open database via creation script
         Map<String, String> tablesByCreate;
         Map<String, String> indicesByCreate;
+        Map<String, String> triggersByCreate;
         try (SQLiteDatabase dbCreated = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getReadableDatabase()) {
             tablesByCreate = getSQL(dbCreated, "table");
             indicesByCreate = getSQL(dbCreated, "index");
+            triggersByCreate = getSQL(dbCreated, "trigger");
         }
 
 
         // then - verify table structure
-        int tableCount = 3 + 2; //Three with data tables + two SQLite
+        int tableCount = 8 + 2; //Eight with data tables + two SQLite
         assertEquals(tableCount, tableByUpgrade.size());
         assertEquals(tableByUpgrade.size(), tablesByCreate.size());
 
         assertEquals(tablesByCreate.get(TracksColumns.TABLE_NAME), tableByUpgrade.get(TracksColumns.TABLE_NAME));
         assertEquals(tablesByCreate.get(TrackPointsColumns.TABLE_NAME), tableByUpgrade.get(TrackPointsColumns.TABLE_NAME));
         assertEquals(tablesByCreate.get(MarkerColumns.TABLE_NAME), tableByUpgrade.get(MarkerColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(TrackPointsArchiveColumns.TABLE_NAME), tableByUpgrade.get(TrackPointsArchiveColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(BestEffortsColumns.TABLE_NAME), tableByUpgrade.get(BestEffortsColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(PersonalRecordsColumns.TABLE_NAME), tableByUpgrade.get(PersonalRecordsColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(SegmentsColumns.TABLE_NAME), tableByUpgrade.get(SegmentsColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(ClimbsColumns.TABLE_NAME), tableByUpgrade.get(ClimbsColumns.TABLE_NAME));
 
         // then - verify custom indices
-        assertEquals(3, indicesByCreate.size());
+        assertEquals(13, indicesByCreate.size());
         assertEquals(indicesByUpgrade.get(TracksColumns.TABLE_NAME), indicesByCreate.get(TracksColumns.TABLE_NAME));
         assertEquals(indicesByUpgrade.get(TrackPointsColumns.TABLE_NAME), indicesByCreate.get(TrackPointsColumns.TABLE_NAME));
         assertEquals(indicesByUpgrade.get(MarkerColumns.TABLE_NAME), indicesByCreate.get(MarkerColumns.TABLE_NAME));
+        assertEquals(indicesByCreate, indicesByUpgrade);
+
+        // then - verify triggers
+        assertEquals(4, triggersByCreate.size());
+        assertEquals(triggersByCreate, triggersByUpgrade);
     }
 
     @Test
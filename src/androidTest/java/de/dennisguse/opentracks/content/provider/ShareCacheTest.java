@@ -0,0 +1,210 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ShareCacheTest {
+
+    private static final int FILE_SIZE = 1000;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(context.getCacheDir(), "share_test");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testGet_rendersOnce() throws IOException {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 10 * FILE_SIZE);
+        CountingTrackExporter trackExporter = new CountingTrackExporter(true);
+        Track[] tracks = {createTrack(1, 0)};
+
+        // when
+        File file1 = shareCache.get(tracks, TrackFileFormat.GPX, trackExporter);
+        File file2 = shareCache.get(tracks, TrackFileFormat.GPX, trackExporter);
+
+        // then
+        assertEquals(file1, file2);
+        assertEquals(FILE_SIZE, file1.length());
+        assertEquals(1, trackExporter.count);
+
+        // Other format: rendered again.
+        assertNotEquals(file1, shareCache.get(tracks, TrackFileFormat.KML_ONLY_TRACK, trackExporter));
+        assertEquals(2, trackExporter.count);
+    }
+
+    @Test
+    public void testGet_modifiedTrack() throws IOException {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 10 * FILE_SIZE);
+        CountingTrackExporter trackExporter = new CountingTrackExporter(true);
+        File outdated = shareCache.get(new Track[]{createTrack(1, 0)}, TrackFileFormat.GPX, trackExporter);
+
+        // when
+        File file = shareCache.get(new Track[]{createTrack(1, 1)}, TrackFileFormat.GPX, trackExporter);
+
+        // then
+        assertNotEquals(outdated, file);
+        assertEquals(2, trackExporter.count);
+        assertFalse(outdated.exists());
+    }
+
+    @Test
+    public void testGet_evictsLeastRecentlyUsed() throws IOException {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 2 * FILE_SIZE);
+        CountingTrackExporter trackExporter = new CountingTrackExporter(true);
+        File file1 = shareCache.get(new Track[]{createTrack(1, 0)}, TrackFileFormat.GPX, trackExporter);
+        File file2 = shareCache.get(new Track[]{createTrack(2, 0)}, TrackFileFormat.GPX, trackExporter);
+        file1.setLastModified(System.currentTimeMillis() - 20000);
+        file2.setLastModified(System.currentTimeMillis() - 10000);
+
+        // when
+        File file3 = shareCache.get(new Track[]{createTrack(3, 0)}, TrackFileFormat.GPX, trackExporter);
+
+        // then
+        assertFalse(file1.exists());
+        assertTrue(file2.exists());
+        assertTrue(file3.exists());
+    }
+
+    @Test
+    public void testGet_concurrent_rendersOnce() throws Exception {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 10 * FILE_SIZE);
+        CountingTrackExporter trackExporter = new CountingTrackExporter(true, 200);
+        Track[] tracks = {createTrack(1, 0)};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        List<Future<File>> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            files.add(executor.submit(() -> shareCache.get(tracks, TrackFileFormat.GPX, trackExporter)));
+        }
+
+        // then
+        for (Future<File> file : files) {
+            assertEquals(FILE_SIZE, file.get().length());
+        }
+        assertEquals(1, trackExporter.count);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 10 * FILE_SIZE);
+        CountingTrackExporter trackExporter = new CountingTrackExporter(true, 200);
+        Track[] tracks = {createTrack(1, 0)};
+        assertNull(shareCache.getIfCached(tracks, TrackFileFormat.GPX));
+
+        // when
+        shareCache.prefetch(tracks, TrackFileFormat.GPX, trackExporter);
+        File file = shareCache.get(tracks, TrackFileFormat.GPX, trackExporter);
+
+        // then
+        assertEquals(file, shareCache.getIfCached(tracks, TrackFileFormat.GPX));
+        assertEquals(1, trackExporter.count);
+    }
+
+    @Test
+    public void testGet_exportFailed() {
+        // given
+        ShareCache shareCache = new ShareCache(directory, 10 * FILE_SIZE);
+
+        // when
+        try {
+            shareCache.get(new Track[]{createTrack(1, 0)}, TrackFileFormat.GPX, new CountingTrackExporter(false));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        // then
+        File[] files = directory.listFiles();
+        assertEquals(0, files == null ? 0 : files.length);
+    }
+
+    private static Track createTrack(long id, long modificationCount) {
+        Track track = new Track();
+        track.setId(new Track.Id(id));
+        track.setModificationCount(modificationCount);
+        return track;
+    }
+
+    private static class CountingTrackExporter implements TrackExporter {
+        private final boolean success;
+        private final long delay_ms;
+        private volatile int count = 0;
+
+        private CountingTrackExporter(boolean success) {
+            this(success, 0);
+        }
+
+        private CountingTrackExporter(boolean success, long delay_ms) {
+            this.success = success;
+            this.delay_ms = delay_ms;
+        }
+
+        @Override
+        public synchronized boolean writeTrack(Track[] tracks, @NonNull OutputStream outputStream) {
+            count++;
+            try {
+                Thread.sleep(delay_ms);
+                outputStream.write(new byte[FILE_SIZE]);
+            } catch (IOException | InterruptedException e) {
+                return false;
+            }
+            return success;
+        }
+
+        @Override
+        public boolean writeTrack(Track track, @NonNull OutputStream outputStream) {
+            return writeTrack(new Track[]{track}, outputStream);
+        }
+    }
+}
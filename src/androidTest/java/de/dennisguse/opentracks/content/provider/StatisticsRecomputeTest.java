@@ -0,0 +1,92 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StatisticsRecomputeTest {
+
+    private static final int NUM_TRACKS = 120;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private ContentProviderUtils contentProviderUtils;
+
+    @Before
+    public void setUp() {
+        contentProviderUtils = new ContentProviderUtils(context);
+        contentProviderUtils.deleteAllTracks(context);
+    }
+
+    @Test
+    public void run() throws InterruptedException {
+        // given: tracks with outdated statistics (e.g., without sensor statistics)
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            Track.Id trackId = new Track.Id(i + 1);
+            Track track = TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+            TrackStatistics outdated = new TrackStatistics();
+            outdated.setStartTime_ms(track.getTrackStatistics().getStartTime_ms());
+            outdated.setStopTime_ms(track.getTrackStatistics().getStopTime_ms());
+            track.setTrackStatistics(outdated);
+            contentProviderUtils.updateTrack(track);
+        }
+        StatisticsRecompute.request(context);
+        assertTrue(StatisticsRecompute.isPending(context));
+
+        try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context).getWritableDatabase()) {
+            // when
+            StatisticsRecompute statisticsRecompute = new StatisticsRecompute(context, db);
+            assertEquals(NUM_TRACKS, statisticsRecompute.run());
+
+            // then
+            assertEquals(NUM_TRACKS, statisticsRecompute.getDoneTracks());
+            for (int i = 0; i < NUM_TRACKS; i++) {
+                TrackStatistics trackStatistics = contentProviderUtils.getTrack(new Track.Id(i + 1)).getTrackStatistics();
+                assertTrue(trackStatistics.getTotalDistance() > 0);
+                assertTrue(trackStatistics.getHeartRate().hasData());
+            }
+            assertFalse(StatisticsRecompute.isPending(context));
+            assertEquals(TrackStatisticsUpdater.STATISTICS_VERSION, PreferencesUtils.getStatisticsVersion(context));
+            assertEquals(-1L, PreferencesUtils.getStatisticsRecomputeTrackId(context));
+
+            // when / then: nothing left to do
+            assertEquals(0, new StatisticsRecompute(context, db).run());
+        }
+    }
+
+    @Test
+    public void run_cancelled() throws InterruptedException {
+        // given
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, new Track.Id(1), 10);
+        StatisticsRecompute.request(context);
+
+        try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context).getWritableDatabase()) {
+            StatisticsRecompute statisticsRecompute = new StatisticsRecompute(context, db);
+
+            // when
+            statisticsRecompute.cancel();
+
+            // then: not marked as complete; so the next run recomputes all tracks
+            assertEquals(0, statisticsRecompute.run());
+            assertTrue(StatisticsRecompute.isPending(context));
+            assertEquals(-1L, PreferencesUtils.getStatisticsRecomputeTrackId(context));
+            assertEquals(1, new StatisticsRecompute(context, db).run());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Track;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ExportManifestTest {
+
+    @Test
+    public void testIsUpToDate() {
+        // given
+        Track track = new Track();
+        track.setModificationCount(5);
+        ExportManifest manifest = new ExportManifest();
+        manifest.put(track, "1.gpx");
+
+        // then
+        assertTrue(manifest.isUpToDate(track, "1.gpx", Collections.singletonList("1.gpx")));
+        assertFalse(manifest.isUpToDate(track, "1.gpx", Collections.emptyList()));
+        assertFalse(manifest.isUpToDate(track, "1.kml", Collections.singletonList("1.kml")));
+        assertFalse(manifest.isUpToDate(new Track(), "1.gpx", Collections.singletonList("1.gpx")));
+
+        track.setModificationCount(6);
+        assertFalse(manifest.isUpToDate(track, "1.gpx", Collections.singletonList("1.gpx")));
+        assertTrue(manifest.contains(track, "1.gpx"));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        // given
+        Track track1 = new Track();
+        track1.setModificationCount(1);
+        Track track2 = new Track();
+        track2.setModificationCount(2);
+        ExportManifest manifest = new ExportManifest();
+        manifest.put(track1, "1.gpx");
+        manifest.put(track2, "2.gpx");
+
+        // when
+        StringWriter writer = new StringWriter();
+        manifest.write(writer);
+        ExportManifest manifestRead = new ExportManifest();
+        manifestRead.read(new StringReader(writer.toString() + "invalid line\n"));
+
+        // then
+        List<String> files = Arrays.asList("1.gpx", "2.gpx");
+        assertTrue(manifestRead.isUpToDate(track1, "1.gpx", files));
+        assertTrue(manifestRead.isUpToDate(track2, "2.gpx", files));
+    }
+
+    @Test
+    public void testRemoveDeletedTracks() {
+        // given
+        Track track1 = new Track();
+        Track track2 = new Track();
+        ExportManifest manifest = new ExportManifest();
+        manifest.put(track1, "1.gpx");
+        manifest.put(track2, "2.gpx");
+
+        // when
+        List<String> removed = manifest.removeDeletedTracks(new HashSet<>(Collections.singletonList(track1.getUuid())));
+
+        // then
+        assertEquals(Collections.singletonList("2.gpx"), removed);
+        assertFalse(manifest.contains(track2, "2.gpx"));
+        assertTrue(manifest.contains(track1, "1.gpx"));
+    }
+}
@@ -0,0 +1,236 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.location.Location;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the output of the {@link TrackWriter}s with golden files (created with the previous {@link java.io.PrintWriter}-based implementation).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrackWriterTest {
+
+    private static final String TAG = TrackWriterTest.class.getSimpleName();
+
+    private static final int BENCHMARK_TRACK_POINTS = 1_000_000;
+
+    private static final double[] LATITUDES = {48.1, 48.1234567, 48.12, 48.9999999, -33.8688197, 0.0000001, 51.5, 89.9999996, -0.5, 10.25};
+    private static final double[] LONGITUDES = {9.9, -122.4194155, 179.999999, 0.1, 2.35, 151.2092957, -0.1275, 0.0, 13.4050001, -9.0};
+    private static final Double[] ALTITUDES = {null, 123.46, 0.0, -12.34, 3000.0, 1.04, null, 99.96, 250.5, 7.0};
+    private static final long[] TIMES = {1600000000000L, 1600000001001L, 1600000002010L, 1600000003999L, 1600000004000L, 1600000005500L, 1600000006000L, 1600000007123L, 1600000008000L, 1600000009001L};
+    private static final Float[] SPEEDS = {5f, 5.125f, null, 0.33f, 12.499f, 1.005f, 0f, null, 3.3f, 7.77f};
+    private static final Float[] HEART_RATES = {null, 120f, 120.5f, 121.5f, 99.4f, null, 180f, 60.6f, null, 75f};
+    private static final Float[] CADENCES = {80f, null, 90.6f, 0f, null, 85.5f, 86.5f, null, 100f, 110.2f};
+    private static final Float[] POWERS = {200f, 250.5f, null, 0f, 300f, null, 123.4f, 150f, null, 99.9f};
+    private static final Float[] ELEVATION_GAINS = {null, 0.5f, 1f, null, 2.25f, 0f, null, 3f, 0.1f, null};
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Test
+    public void testGpx_golden() throws IOException {
+        // given
+        GpxTrackWriter trackWriter = new GpxTrackWriter("OpenTracks");
+
+        // when
+        String gpx = write(trackWriter);
+
+        // then
+        assertEquals(readAsset("golden/track.gpx"), gpx);
+    }
+
+    @Test
+    public void testGpx_golden_smallBuffer() throws IOException {
+        // given
+        GpxTrackWriter trackWriter = new GpxTrackWriter("OpenTracks");
+        trackWriter.setBufferSize(16);
+
+        // when
+        String gpx = write(trackWriter);
+
+        // then
+        assertEquals(readAsset("golden/track.gpx"), gpx);
+    }
+
+    @Test
+    public void testKml_golden() throws IOException {
+        // given
+        Configuration configuration = new Configuration(context.getResources().getConfiguration());
+        configuration.setLocale(Locale.US);
+        KmlTrackWriter trackWriter = new KmlTrackWriter(context.createConfigurationContext(configuration), false, true, false);
+
+        // when
+        String kml = write(trackWriter);
+
+        // then
+        assertEquals(readAsset("golden/track.kml"), kml);
+    }
+
+    @Test
+    public void testGpx_benchmark() {
+        benchmark(new GpxTrackWriter("OpenTracks"), "GPX");
+    }
+
+    @Test
+    public void testKml_benchmark() {
+        benchmark(new KmlTrackWriter(context, true, true, false), "KML");
+    }
+
+    private void benchmark(TrackWriter trackWriter, String name) {
+        // given
+        Track track = createTrack();
+        // The trackPoint is re-used; the writers must not keep references to it.
+        TrackPoint trackPoint = new TrackPoint();
+        trackPoint.setHeartRate_bpm(0f);
+        trackPoint.setCyclingCadence_rpm(0f);
+        trackPoint.setPower(0f);
+        CountingOutputStream outputStream = new CountingOutputStream();
+
+        // when
+        long start = System.nanoTime();
+        trackWriter.prepare(outputStream);
+        trackWriter.writeHeader(new Track[]{track});
+        trackWriter.writeBeginTrack(track, createTrackPoint(0));
+        trackWriter.writeOpenSegment();
+        for (int i = 0; i < BENCHMARK_TRACK_POINTS; i++) {
+            trackPoint.setLatitude(48.0 + i * 0.0000013);
+            trackPoint.setLongitude(9.0 + i * 0.0000017);
+            trackPoint.setAltitude(400.0 + (i % 1000) * 0.1);
+            trackPoint.setTime(1600000000000L + i * 1000L + i % 1000);
+            trackPoint.setSpeed((i % 100) * 0.11f);
+            trackPoint.setHeartRate_bpm(100f + i % 80);
+            trackPoint.setCyclingCadence_rpm(60f + i % 40);
+            trackPoint.setPower(150f + i % 200);
+            trackWriter.writeTrackPoint(trackPoint);
+        }
+        trackWriter.writeCloseSegment();
+        trackWriter.writeEndTrack(track, null);
+        trackWriter.writeFooter();
+        trackWriter.close();
+        long duration_ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        assertTrue(outputStream.count > 0);
+        Log.i(TAG, name + ": " + BENCHMARK_TRACK_POINTS + " trackPoints (" + outputStream.count / 1024 + "KiB) in " + duration_ms + "ms; "
+                + BENCHMARK_TRACK_POINTS * 1000L / Math.max(1, duration_ms) + " trackPoints/s");
+    }
+
+    private static String write(TrackWriter trackWriter) {
+        Track track = createTrack();
+        TrackPoint[] trackPoints = new TrackPoint[LATITUDES.length];
+        for (int i = 0; i < trackPoints.length; i++) {
+            trackPoints[i] = createTrackPoint(i);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        trackWriter.prepare(outputStream);
+        trackWriter.writeHeader(new Track[]{track});
+        trackWriter.writeBeginMarkers(track);
+        trackWriter.writeMarker(createMarker());
+        trackWriter.writeEndMarkers();
+        trackWriter.writeBeginTrack(track, trackPoints[0]);
+        trackWriter.writeOpenSegment();
+        for (int i = 0; i < 4; i++) {
+            trackWriter.writeTrackPoint(trackPoints[i]);
+        }
+        trackWriter.writeCloseSegment();
+        trackWriter.writeOpenSegment();
+        for (int i = 4; i < trackPoints.length; i++) {
+            trackWriter.writeTrackPoint(trackPoints[i]);
+        }
+        trackWriter.writeCloseSegment();
+        trackWriter.writeEndTrack(track, null);
+        trackWriter.writeFooter();
+        trackWriter.close();
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Track createTrack() {
+        Track track = new Track();
+        track.setUuid(UUID.fromString("c8a5f5d6-1e2f-4b4e-9c1f-3a9b8e7d6c5b"));
+        track.setName("Test ]]> track");
+        track.setDescription("Description with <xml> & ]]>]]>");
+        track.setCategory("running");
+        return track;
+    }
+
+    private static TrackPoint createTrackPoint(int i) {
+        TrackPoint trackPoint = new TrackPoint();
+        trackPoint.setLatitude(LATITUDES[i]);
+        trackPoint.setLongitude(LONGITUDES[i]);
+        if (ALTITUDES[i] != null) {
+            trackPoint.setAltitude(ALTITUDES[i]);
+        }
+        trackPoint.setTime(TIMES[i]);
+        if (SPEEDS[i] != null) {
+            trackPoint.setSpeed(SPEEDS[i]);
+        }
+        trackPoint.setHeartRate_bpm(HEART_RATES[i]);
+        trackPoint.setCyclingCadence_rpm(CADENCES[i]);
+        trackPoint.setPower(POWERS[i]);
+        trackPoint.setElevationGain(ELEVATION_GAINS[i]);
+        return trackPoint;
+    }
+
+    private static Marker createMarker() {
+        Location location = new Location("");
+        location.setLatitude(48.11);
+        location.setLongitude(9.91);
+        location.setAltitude(500.55);
+        location.setTime(1600000000500L);
+        Marker marker = new Marker(new Track.Id(1), location);
+        marker.setName("Marker ]]> 1");
+        marker.setDescription("");
+        marker.setCategory("category");
+        return marker;
+    }
+
+    private static String readAsset(String fileName) throws IOException {
+        try (InputStream inputStream = InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(fileName)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class ZipWriterTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    private File zipFile;
+    private File photoFile;
+
+    @Before
+    public void setUp() throws IOException {
+        zipFile = File.createTempFile("test", ".kmz", context.getCacheDir());
+        photoFile = File.createTempFile("test", ".jpg", context.getCacheDir());
+    }
+
+    @After
+    public void tearDown() {
+        zipFile.delete();
+        photoFile.delete();
+    }
+
+    @Test
+    public void testWrite_multipleBlocks() throws IOException {
+        // given
+        Random random = new Random(1);
+        StringBuilder kml = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            kml.append("<gx:coord>9.").append(random.nextInt(100000)).append(" 48.").append(random.nextInt(100000)).append("</gx:coord>\n");
+        }
+        byte[] kmlBytes = kml.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] photoBytes = new byte[100_000];
+        random.nextBytes(photoBytes);
+        try (OutputStream outputStream = new FileOutputStream(photoFile)) {
+            outputStream.write(photoBytes);
+        }
+
+        // when
+        try (ZipWriter zipWriter = new ZipWriter(new FileOutputStream(zipFile), 1024)) {
+            // Many blocks; writes span several blocks.
+            zipWriter.setBlockSize(32 * 1024 + 1);
+            try (OutputStream outputStream = zipWriter.putDeflatedEntry("doc.kml")) {
+                for (int i = 0; i < kmlBytes.length; i += 100_000) {
+                    outputStream.write(kmlBytes, i, Math.min(100_000, kmlBytes.length - i));
+                }
+            }
+            zipWriter.putStoredEntry("images/1.jpg", photoFile);
+            try (OutputStream ignored = zipWriter.putDeflatedEntry("empty.kml")) {
+                // empty
+            }
+        }
+
+        // then
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(3, zip.size());
+            assertArrayEquals(kmlBytes, read(zip.getInputStream(zip.getEntry("doc.kml"))));
+
+            ZipEntry photoEntry = zip.getEntry("images/1.jpg");
+            assertEquals(ZipEntry.STORED, photoEntry.getMethod());
+            assertArrayEquals(photoBytes, read(zip.getInputStream(photoEntry)));
+
+            assertEquals(0, read(zip.getInputStream(zip.getEntry("empty.kml"))).length);
+        }
+
+        // Sequential readers (no central directory) need the data descriptors.
+        try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(zipFile))) {
+            assertEquals("doc.kml", zipInputStream.getNextEntry().getName());
+            assertArrayEquals(kmlBytes, read(zipInputStream));
+            assertEquals("images/1.jpg", zipInputStream.getNextEntry().getName());
+            assertArrayEquals(photoBytes, read(zipInputStream));
+            assertEquals("empty.kml", zipInputStream.getNextEntry().getName());
+            assertEquals(0, read(zipInputStream).length);
+            assertNull(zipInputStream.getNextEntry());
+        }
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -72,7 +72,7 @@ public class ExportImportTest {
         trackPoints.addAll(Arrays.asList(track.second));
 
         for (int i = 0; i < 3; i++) {
-            Marker marker = new Marker(trackId, track.second[i].getLocation());
+            Marker marker = new Marker(trackId, track.second[i]);
             marker.setName("the marker " + i);
             marker.setDescription("the marker description " + i);
             marker.setCategory("the marker category" + i);
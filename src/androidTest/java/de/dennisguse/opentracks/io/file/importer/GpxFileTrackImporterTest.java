@@ -0,0 +1,112 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import de.dennisguse.opentracks.R;
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class GpxFileTrackImporterTest {
+
+    private static final UUID TRACK_UUID = UUID.fromString("0d6d1c2a-7b7e-4b0e-9a57-3d2c1b0a9f8e");
+
+    private static final String GPX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\">\n"
+            // Markers are not sorted by time.
+            + "<wpt lat=\"48.002\" lon=\"9.002\"><time>2020-01-01T00:00:20Z</time><name>second</name></wpt>\n"
+            + "<wpt lat=\"48.001\" lon=\"9.001\"><time>2020-01-01T00:00:10Z</time><name>first</name></wpt>\n"
+            // No trackPoint at this time.
+            + "<wpt lat=\"48.001\" lon=\"9.001\"><time>2020-01-01T00:00:15Z</time><name>no match</name></wpt>\n"
+            // Location does not match the trackPoint.
+            + "<wpt lat=\"48.5\" lon=\"9.5\"><time>2020-01-01T00:00:00Z</time><name>other location</name></wpt>\n"
+            + "<trk><name>track</name>\n"
+            + "<extensions><opentracks:trackid>" + TRACK_UUID + "</opentracks:trackid></extensions>\n"
+            + "<trkseg>\n"
+            + "<trkpt lat=\"48.0\" lon=\"9.0\"><time>2020-01-01T00:00:00Z</time></trkpt>\n"
+            + "<trkpt lat=\"48.001\" lon=\"9.001\"><time>2020-01-01T00:00:10Z</time></trkpt>\n"
+            + "<trkpt lat=\"48.002\" lon=\"9.002\"><time>2020-01-01T00:00:20Z</time></trkpt>\n"
+            + "</trkseg></trk>\n"
+            + "</gpx>\n";
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Test
+    public void testImportFile_markers() {
+        // given
+        ContentProviderUtils contentProviderUtils = Mockito.mock(ContentProviderUtils.class);
+        when(contentProviderUtils.insertTrack(any())).thenReturn(Uri.withAppendedPath(TracksColumns.CONTENT_URI, "1"));
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+
+        // when
+        trackImporter.importFile(new ByteArrayInputStream(GPX.getBytes(StandardCharsets.UTF_8)));
+
+        // then
+        ArgumentCaptor<Marker> markerCaptor = ArgumentCaptor.forClass(Marker.class);
+        verify(contentProviderUtils, times(2)).insertMarker(markerCaptor.capture());
+        List<Marker> markers = markerCaptor.getAllValues();
+
+        assertEquals("first", markers.get(0).getName());
+        assertEquals(10000, markers.get(0).getDuration());
+        assertTrue(markers.get(0).getLength() > 0);
+
+        assertEquals("second", markers.get(1).getName());
+        assertEquals(20000, markers.get(1).getDuration());
+        assertTrue(markers.get(1).getLength() > markers.get(0).getLength());
+
+        // Markers are matched while importing; no second pass over the trackPoints.
+        verify(contentProviderUtils, never()).getTrackPointLocationIterator(any(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void testImportFile_alreadyExists() {
+        // given
+        PreferencesUtils.setBoolean(context, R.string.import_prevent_reimport_key, true);
+        ContentProviderUtils contentProviderUtils = Mockito.mock(ContentProviderUtils.class);
+        when(contentProviderUtils.getTrack(TRACK_UUID)).thenReturn(new Track());
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+
+        // when
+        try {
+            trackImporter.importFile(new ByteArrayInputStream(GPX.getBytes(StandardCharsets.UTF_8)));
+            fail();
+        } catch (ImportAlreadyExistsException e) {
+            // expected
+        }
+
+        // then
+        // Rejected before anything was inserted.
+        verify(contentProviderUtils, never()).insertTrack(any());
+        verify(contentProviderUtils, never()).bulkInsertTrackPoint(any(TrackPoint[].class), any(Track.Id.class));
+        verify(contentProviderUtils, never()).insertMarker(any());
+    }
+}
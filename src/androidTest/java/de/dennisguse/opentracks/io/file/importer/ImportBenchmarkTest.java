@@ -0,0 +1,115 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.exporter.GpxTrackWriter;
+import de.dennisguse.opentracks.io.file.exporter.KmlTrackWriter;
+import de.dennisguse.opentracks.io.file.exporter.TrackWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the parse rate of the {@link AbstractFileTrackImporter}s.
+ * The database is mocked; so only parsing and creating the {@link TrackPoint}s is measured.
+ * The input are large files created by the {@link TrackWriter}s.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportBenchmarkTest {
+
+    private static final String TAG = ImportBenchmarkTest.class.getSimpleName();
+
+    private static final int TRACK_POINTS = 200_000;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    private ContentProviderUtils contentProviderUtils;
+
+    @Before
+    public void setUp() {
+        contentProviderUtils = Mockito.mock(ContentProviderUtils.class);
+        when(contentProviderUtils.insertTrack(any())).thenReturn(Uri.withAppendedPath(TracksColumns.CONTENT_URI, "1"));
+    }
+
+    @LargeTest
+    @Test
+    public void testGpx_benchmark() {
+        benchmark(new GpxTrackWriter("OpenTracks"), new GpxFileTrackImporter(context, contentProviderUtils), "GPX");
+    }
+
+    @LargeTest
+    @Test
+    public void testKml_benchmark() {
+        benchmark(new KmlTrackWriter(context, true, true, false), new KmlFileTrackImporter(context, contentProviderUtils), "KML");
+    }
+
+    private void benchmark(TrackWriter trackWriter, AbstractFileTrackImporter trackImporter, String name) {
+        // given
+        byte[] file = write(trackWriter);
+
+        // when
+        long start = System.nanoTime();
+        Track.Id trackId = trackImporter.importFile(new ByteArrayInputStream(file));
+        long duration_ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        assertEquals(1, trackId.getId());
+        verify(contentProviderUtils, atLeastOnce()).bulkInsertTrackPoint(any(TrackPoint[].class), any(Track.Id.class));
+        Log.i(TAG, name + ": " + TRACK_POINTS + " trackPoints (" + file.length / 1024 + "KiB) in " + duration_ms + "ms; "
+                + TRACK_POINTS * 1000L / Math.max(1, duration_ms) + " trackPoints/s");
+    }
+
+    private static byte[] write(TrackWriter trackWriter) {
+        Track track = new Track();
+        track.setUuid(UUID.randomUUID());
+        track.setName("Benchmark");
+        track.setDescription("");
+        track.setCategory("");
+
+        TrackPoint trackPoint = new TrackPoint();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        trackWriter.prepare(outputStream);
+        trackWriter.writeHeader(new Track[]{track});
+        trackWriter.writeBeginTrack(track, null);
+        trackWriter.writeOpenSegment();
+        for (int i = 0; i < TRACK_POINTS; i++) {
+            trackPoint.setLatitude(48.0 + i * 0.0000013);
+            trackPoint.setLongitude(9.0 + i * 0.0000017);
+            trackPoint.setAltitude(400.0 + (i % 1000) * 0.1);
+            trackPoint.setTime(1600000000000L + i * 1000L + i % 1000);
+            trackPoint.setSpeed((i % 100) * 0.11f);
+            trackPoint.setHeartRate_bpm(100f + i % 80);
+            trackPoint.setCyclingCadence_rpm(60f + i % 40);
+            trackPoint.setPower(150f + i % 200);
+            trackWriter.writeTrackPoint(trackPoint);
+        }
+        trackWriter.writeCloseSegment();
+        trackWriter.writeEndTrack(track, null);
+        trackWriter.writeFooter();
+        trackWriter.close();
+        return outputStream.toByteArray();
+    }
+}
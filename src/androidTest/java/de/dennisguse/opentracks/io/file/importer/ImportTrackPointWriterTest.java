@@ -0,0 +1,120 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.database.sqlite.SQLiteException;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class ImportTrackPointWriterTest {
+
+    private static final int BATCHES = 100;
+    private static final int BATCH_SIZE = 10;
+
+    @Test
+    public void testInsert_concurrentSessions() throws Exception {
+        // given
+        ContentProviderUtils contentProviderUtils = Mockito.mock(ContentProviderUtils.class);
+        List<Track.Id> insertedTrackIds = Collections.synchronizedList(new ArrayList<>());
+        when(contentProviderUtils.bulkInsertTrackPoint(anyList(), anyList())).thenAnswer(invocation -> {
+            List<TrackPoint[]> trackPoints = invocation.getArgument(0);
+            List<Track.Id> trackIds = invocation.getArgument(1);
+            for (int i = 0; i < trackIds.size(); i++) {
+                insertedTrackIds.addAll(Collections.nCopies(trackPoints.get(i).length, trackIds.get(i)));
+            }
+            return insertedTrackIds.size();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        // when
+        try (ImportTrackPointWriter trackPointWriter = new ImportTrackPointWriter(contentProviderUtils)) {
+            for (int i = 0; i < 4; i++) {
+                Track.Id trackId = new Track.Id(i + 1);
+                ImportTrackPointWriter.Session session = trackPointWriter.newSession();
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < BATCHES; j++) {
+                        session.insert(createTrackPoints(), trackId);
+                    }
+                    session.await();
+                    return session.getTrackPointCount();
+                }));
+            }
+
+            // then
+            for (Future<Integer> result : results) {
+                assertEquals(BATCHES * BATCH_SIZE, (int) result.get());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(4 * BATCHES * BATCH_SIZE, insertedTrackIds.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(BATCHES * BATCH_SIZE, Collections.frequency(insertedTrackIds, new Track.Id(i + 1)));
+        }
+    }
+
+    @Test
+    public void testInsert_errorOnlyAffectsItsSession() throws InterruptedException {
+        // given
+        Track.Id failingTrackId = new Track.Id(2);
+        ContentProviderUtils contentProviderUtils = Mockito.mock(ContentProviderUtils.class);
+        when(contentProviderUtils.bulkInsertTrackPoint(anyList(), anyList())).thenAnswer(invocation -> {
+            List<Track.Id> trackIds = invocation.getArgument(1);
+            if (trackIds.contains(failingTrackId)) {
+                throw new SQLiteException("test");
+            }
+            return 0;
+        });
+
+        try (ImportTrackPointWriter trackPointWriter = new ImportTrackPointWriter(contentProviderUtils)) {
+            ImportTrackPointWriter.Session session = trackPointWriter.newSession();
+            ImportTrackPointWriter.Session failingSession = trackPointWriter.newSession();
+
+            // when
+            for (int i = 0; i < BATCHES; i++) {
+                session.insert(createTrackPoints(), new Track.Id(1));
+                failingSession.insert(createTrackPoints(), failingTrackId);
+            }
+
+            // then
+            session.await();
+            assertEquals(BATCHES * BATCH_SIZE, session.getTrackPointCount());
+
+            try {
+                failingSession.await();
+                fail();
+            } catch (SQLiteException e) {
+                assertEquals(0, failingSession.getTrackPointCount());
+            }
+        }
+    }
+
+    private static TrackPoint[] createTrackPoints() {
+        TrackPoint[] trackPoints = new TrackPoint[BATCH_SIZE];
+        for (int i = 0; i < trackPoints.length; i++) {
+            trackPoints[i] = new TrackPoint();
+        }
+        return trackPoints;
+    }
+}
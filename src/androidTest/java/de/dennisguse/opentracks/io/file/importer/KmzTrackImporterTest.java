@@ -0,0 +1,167 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
+import de.dennisguse.opentracks.io.file.exporter.KmlTrackWriter;
+import de.dennisguse.opentracks.io.file.exporter.KmzTrackExporter;
+import de.dennisguse.opentracks.util.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Imports a large KMZ file and logs the import time and the peak heap usage.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KmzTrackImporterTest {
+
+    private static final String TAG = KmzTrackImporterTest.class.getSimpleName();
+
+    private static final int TRACK_POINTS = 100_000;
+
+    private static final int IMAGE_SIZE = 4 * 1024 * 1024;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private File kmzFile;
+    private Track.Id importTrackId;
+
+    @After
+    public void tearDown() {
+        if (kmzFile != null) {
+            kmzFile.delete();
+        }
+        if (importTrackId != null) {
+            contentProviderUtils.deleteTrack(context, importTrackId);
+        }
+    }
+
+    @LargeTest
+    @Test
+    public void testImportFile_benchmark() throws Exception {
+        // given
+        kmzFile = writeKmz();
+        KmzTrackImporter trackImporter = new KmzTrackImporter(context, Uri.fromFile(kmzFile));
+        HeapSampler heapSampler = new HeapSampler();
+
+        // when
+        long start = System.nanoTime();
+        heapSampler.start();
+        try (InputStream inputStream = context.getContentResolver().openInputStream(Uri.fromFile(kmzFile))) {
+            importTrackId = trackImporter.importFile(inputStream);
+        } finally {
+            heapSampler.interrupt();
+            heapSampler.join();
+        }
+        long duration_ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        assertNotNull(importTrackId);
+        int count = 0;
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(importTrackId, -1L, false)) {
+            while (trackPointIterator.hasNext()) {
+                trackPointIterator.next();
+                count++;
+            }
+        }
+        assertEquals(TRACK_POINTS, count);
+
+        // The image is not referenced by a marker; so it is not extracted.
+        File[] photos = FileUtils.getPhotoDir(context, importTrackId).listFiles();
+        assertFalse(photos != null && photos.length > 0);
+
+        Log.i(TAG, "KMZ: " + TRACK_POINTS + " trackPoints (" + kmzFile.length() / 1024 + "KiB) in " + duration_ms + "ms; peak heap used: " + heapSampler.peak / 1024 / 1024 + "MiB");
+    }
+
+    private File writeKmz() throws IOException {
+        File file = File.createTempFile("test", ".kmz", context.getCacheDir());
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file))) {
+            zipOutputStream.putNextEntry(new ZipEntry(KmzTrackExporter.KMZ_KML_FILE));
+            writeKml(zipOutputStream);
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.putNextEntry(new ZipEntry("images/unreferenced.jpg"));
+            byte[] image = new byte[IMAGE_SIZE];
+            new Random(1).nextBytes(image);
+            zipOutputStream.write(image);
+            zipOutputStream.closeEntry();
+        }
+        return file;
+    }
+
+    private void writeKml(ZipOutputStream zipOutputStream) {
+        Track track = new Track();
+        track.setUuid(UUID.randomUUID());
+        track.setName("Benchmark");
+        track.setDescription("");
+        track.setCategory("");
+        track.setIcon("");
+
+        KmlTrackWriter trackWriter = new KmlTrackWriter(context, true, true, false);
+        TrackPoint trackPoint = new TrackPoint();
+        trackWriter.prepare(zipOutputStream);
+        trackWriter.writeHeader(new Track[]{track});
+        trackWriter.writeBeginTrack(track, null);
+        trackWriter.writeOpenSegment();
+        for (int i = 0; i < TRACK_POINTS; i++) {
+            trackPoint.setLatitude(48.0 + i * 0.0000013);
+            trackPoint.setLongitude(9.0 + i * 0.0000017);
+            trackPoint.setAltitude(400.0 + (i % 1000) * 0.1);
+            trackPoint.setTime(1600000000000L + i * 1000L);
+            trackPoint.setSpeed((i % 100) * 0.11f);
+            trackPoint.setHeartRate_bpm(100f + i % 80);
+            trackPoint.setCyclingCadence_rpm(60f + i % 40);
+            trackPoint.setPower(150f + i % 200);
+            trackWriter.writeTrackPoint(trackPoint);
+        }
+        trackWriter.writeCloseSegment();
+        trackWriter.writeEndTrack(track, null);
+        trackWriter.writeFooter();
+        // Only flushes; does not close the zipOutputStream.
+        trackWriter.close();
+    }
+
+    private static class HeapSampler extends Thread {
+        private long peak = 0;
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (!isInterrupted()) {
+                peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
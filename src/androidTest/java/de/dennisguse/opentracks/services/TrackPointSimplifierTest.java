@@ -0,0 +1,161 @@
+package de.dennisguse.opentracks.services;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class TrackPointSimplifierTest {
+
+    // About 1 m
+    private static final double DEGREE_PER_METER = 1 / 111_195.0;
+
+    private final List<TrackPoint> stored = new ArrayList<>();
+    private long time_ms = 0;
+
+    @Test
+    public void straightLine_noisy() {
+        // given
+        TrackPointSimplifier trackPointSimplifier = new TrackPointSimplifier(2);
+        Random random = new Random(1);
+        List<TrackPoint> trackPoints = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            trackPoints.add(createTrackPoint(i * 5, random.nextDouble() - 0.5));
+        }
+
+        // when
+        simplify(trackPointSimplifier, trackPoints);
+
+        // then
+        assertSame(trackPoints.get(0), stored.get(0));
+        assertSame(trackPoints.get(trackPoints.size() - 1), stored.get(stored.size() - 1));
+        assertTrue(stored.size() <= 300 / TrackPointSimplifier.MAX_PENDING + 2);
+        assertTrue(getDistance(stored) >= (1 - TrackPointSimplifier.MAX_DISTANCE_LOSS) * getDistance(trackPoints));
+    }
+
+    @Test
+    public void corner_kept() {
+        // given
+        TrackPointSimplifier trackPointSimplifier = new TrackPointSimplifier(2);
+        List<TrackPoint> trackPoints = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            trackPoints.add(createTrackPoint(i * 10, 0));
+        }
+        TrackPoint corner = createTrackPoint(100, 0);
+        trackPoints.add(corner);
+        for (int i = 1; i <= 10; i++) {
+            trackPoints.add(createTrackPoint(100, i * 10));
+        }
+
+        // when
+        simplify(trackPointSimplifier, trackPoints);
+
+        // then
+        assertEquals(3, stored.size());
+        assertSame(corner, stored.get(1));
+    }
+
+    @Test
+    public void outAndBack_turnaroundKept() {
+        // given
+        TrackPointSimplifier trackPointSimplifier = new TrackPointSimplifier(5);
+        List<TrackPoint> trackPoints = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            trackPoints.add(createTrackPoint(i * 10, 0));
+        }
+        TrackPoint turnaround = trackPoints.get(trackPoints.size() - 1);
+        for (int i = 9; i >= 0; i--) {
+            trackPoints.add(createTrackPoint(i * 10, 1));
+        }
+
+        // when
+        simplify(trackPointSimplifier, trackPoints);
+
+        // then
+        assertTrue(stored.contains(turnaround));
+        assertEquals(getDistance(trackPoints), getDistance(stored), getDistance(trackPoints) * TrackPointSimplifier.MAX_DISTANCE_LOSS);
+    }
+
+    @Test
+    public void keep_storesPendingIfNeeded() {
+        // given
+        TrackPointSimplifier trackPointSimplifier = new TrackPointSimplifier(2);
+        TrackPoint first = createTrackPoint(0, 0);
+        TrackPoint second = createTrackPoint(10, 0);
+        TrackPoint third = createTrackPoint(20, 10);
+        assertSame(first, trackPointSimplifier.add(first));
+        assertNull(trackPointSimplifier.add(second));
+        assertSame(second, trackPointSimplifier.getLastPending());
+
+        // when / then: off the line from first to third
+        assertSame(second, trackPointSimplifier.keep(third));
+        assertNull(trackPointSimplifier.getLastPending());
+
+        // when / then: on the line
+        assertNull(trackPointSimplifier.add(createTrackPoint(30, 10)));
+        assertNull(trackPointSimplifier.keep(createTrackPoint(40, 10)));
+    }
+
+    @Test
+    public void pause_storesPending() {
+        // given
+        TrackPointSimplifier trackPointSimplifier = new TrackPointSimplifier(2);
+        trackPointSimplifier.add(createTrackPoint(0, 0));
+        TrackPoint pending = createTrackPoint(10, 0);
+        trackPointSimplifier.add(pending);
+
+        // when / then
+        assertSame(pending, trackPointSimplifier.keep(TrackPoint.createPause()));
+        assertNull(trackPointSimplifier.getLastPending());
+        assertNull(trackPointSimplifier.flush());
+
+        // when / then: new segment
+        TrackPoint resumed = createTrackPoint(100, 0);
+        assertSame(resumed, trackPointSimplifier.add(resumed));
+    }
+
+    /**
+     * Like {@link TrackRecordingService}: the first and the last trackPoint are stored.
+     */
+    private void simplify(TrackPointSimplifier trackPointSimplifier, List<TrackPoint> trackPoints) {
+        for (int i = 0; i < trackPoints.size() - 1; i++) {
+            TrackPoint needed = i == 0 ? trackPointSimplifier.keep(trackPoints.get(i)) : trackPointSimplifier.add(trackPoints.get(i));
+            if (needed != null) {
+                stored.add(needed);
+            }
+            if (i == 0) {
+                stored.add(trackPoints.get(i));
+            }
+        }
+        TrackPoint last = trackPoints.get(trackPoints.size() - 1);
+        TrackPoint needed = trackPointSimplifier.keep(last);
+        if (needed != null) {
+            stored.add(needed);
+        }
+        stored.add(last);
+    }
+
+    private TrackPoint createTrackPoint(double north_m, double east_m) {
+        time_ms += 1000;
+        return new TrackPoint(45 + north_m * DEGREE_PER_METER, 9 + east_m * DEGREE_PER_METER / Math.cos(Math.toRadians(45)), null, time_ms);
+    }
+
+    private static double getDistance(List<TrackPoint> trackPoints) {
+        double distance = 0;
+        for (int i = 1; i < trackPoints.size(); i++) {
+            distance += trackPoints.get(i - 1).distanceTo(trackPoints.get(i));
+        }
+        return distance;
+    }
+}
@@ -51,6 +51,7 @@ import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.CustomContentProvider;
 import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -365,7 +366,7 @@ public class TrackRecordingServiceTest {
         location.setSpeed(speed);
         location.setTime(time);
         location.setBearing(3.0f);
-        TrackPoint trackPoint = new TrackPoint(location);
+        TrackPoint trackPoint = LocationUtils.createTrackPoint(location);
         int prefAccuracy = PreferencesUtils.getRecordingGPSAccuracy(ApplicationProvider.getApplicationContext());
         trackRecordingService.newTrackPoint(trackPoint, prefAccuracy);
 
@@ -29,6 +29,7 @@ import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.CustomContentProvider;
 import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -221,7 +222,7 @@ public class TrackRecordingServiceTestLooper {
             location.setSpeed(10);
             location.setTime(startTime + i * 10000);
             location.setBearing(3.0f);
-            TrackPoint trackPoint = new TrackPoint(location);
+            TrackPoint trackPoint = LocationUtils.createTrackPoint(location);
             int prefAccuracy = PreferencesUtils.getRecordingGPSAccuracy(context);
             service.newTrackPoint(trackPoint, prefAccuracy);
 
@@ -0,0 +1,176 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+
+import de.dennisguse.opentracks.content.data.BestEffort;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class BestEffortsCalculatorTest {
+
+    private static final Track.Id TRACK_ID = new Track.Id(1);
+
+    private double distance_m = 0;
+    private long time_ms = 0;
+
+    @Test
+    public void constantSpeed() {
+        // given
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator(new double[]{1000, 5000, 20000}, new long[]{60_000, 3 * 3600_000});
+        add(bestEffortsCalculator, 2000, 5, 0);
+
+        // when
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(TRACK_ID);
+
+        // then
+        assertEquals(200_000, find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 1000).getValue(), 1);
+        assertEquals(1_000_000, find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 5000).getValue(), 1);
+        assertEquals(300, find(bestEfforts, BestEffort.Type.DISTANCE_FOR_DURATION, 60_000).getValue(), 0.01);
+        assertEquals(TRACK_ID, find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 1000).getTrackId());
+
+        // not reached
+        assertNull(find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 20000));
+        assertNull(find(bestEfforts, BestEffort.Type.DISTANCE_FOR_DURATION, 3 * 3600_000));
+        // no power
+        assertNull(find(bestEfforts, BestEffort.Type.POWER_FOR_DURATION, 60_000));
+    }
+
+    @Test
+    public void fastestSection() {
+        // given
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator(new double[]{1000}, new long[]{60_000});
+        add(bestEffortsCalculator, 250, 4, 0);
+        long fastStart_ms = time_ms;
+        add(bestEffortsCalculator, 125, 8, 0);
+        add(bestEffortsCalculator, 250, 4, 0);
+
+        // when
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(TRACK_ID);
+
+        // then
+        BestEffort fastest = find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 1000);
+        assertEquals(125_000, fastest.getValue(), 1);
+        assertEquals(fastStart_ms, fastest.getStartTime_ms(), 1);
+        assertEquals(480, find(bestEfforts, BestEffort.Type.DISTANCE_FOR_DURATION, 60_000).getValue(), 0.01);
+    }
+
+    @Test
+    public void pause_notCounted() {
+        // given
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator(new double[]{1000}, new long[]{60_000});
+        add(bestEffortsCalculator, 120, 5, 0);
+        bestEffortsCalculator.add(TrackPoint.createPauseWithTime(time_ms));
+        // Moved 2 km while paused (e.g., by train).
+        time_ms += 3600_000;
+        distance_m += 2000;
+        bestEffortsCalculator.add(TrackPoint.createResumeWithTime(time_ms));
+        add(bestEffortsCalculator, 120, 5, 0);
+
+        // when
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(TRACK_ID);
+
+        // then
+        assertEquals(200_000, find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 1000).getValue(), 1);
+        assertEquals(300, find(bestEfforts, BestEffort.Type.DISTANCE_FOR_DURATION, 60_000).getValue(), 0.01);
+    }
+
+    @Test
+    public void power() {
+        // given
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator(new double[0], new long[]{60_000, 5 * 60_000});
+        add(bestEffortsCalculator, 600, 5, 200);
+        add(bestEffortsCalculator, 120, 5, 300);
+
+        // when
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(TRACK_ID);
+
+        // then
+        assertEquals(300, find(bestEfforts, BestEffort.Type.POWER_FOR_DURATION, 60_000).getValue(), 0.01);
+        assertEquals(240, find(bestEfforts, BestEffort.Type.POWER_FOR_DURATION, 5 * 60_000).getValue(), 0.01);
+    }
+
+    /**
+     * Compares the sliding window with trying all windows (O(n²)).
+     */
+    @Test
+    public void randomSpeed_equivalentToBruteForce() {
+        // given
+        Random random = new Random(1);
+        int count = 2000;
+        double[] distances_m = new double[count];
+        long[] times_ms = new long[count];
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator(new double[]{1000}, new long[]{60_000});
+        for (int i = 0; i < count; i++) {
+            distances_m[i] = distance_m;
+            times_ms[i] = time_ms;
+            bestEffortsCalculator.add(createTrackPoint(0));
+            time_ms += 1000 + random.nextInt(2000);
+            distance_m += random.nextDouble() * 10;
+        }
+
+        // when
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(TRACK_ID);
+
+        // then
+        double bestTime_ms = Double.POSITIVE_INFINITY;
+        double bestDistance_m = 0;
+        for (int end = 1; end < count; end++) {
+            for (int start = end - 1; start >= 0; start--) {
+                if (distances_m[end] - distances_m[start] >= 1000) {
+                    double fraction = (distances_m[end] - 1000 - distances_m[start]) / (distances_m[start + 1] - distances_m[start]);
+                    bestTime_ms = Math.min(bestTime_ms, times_ms[end] - (times_ms[start] + fraction * (times_ms[start + 1] - times_ms[start])));
+                    break;
+                }
+            }
+            for (int start = end - 1; start >= 0; start--) {
+                if (times_ms[end] - times_ms[start] >= 60_000) {
+                    double fraction = (double) (times_ms[end] - 60_000 - times_ms[start]) / (times_ms[start + 1] - times_ms[start]);
+                    bestDistance_m = Math.max(bestDistance_m, distances_m[end] - (distances_m[start] + fraction * (distances_m[start + 1] - distances_m[start])));
+                    break;
+                }
+            }
+        }
+        assertEquals(bestTime_ms, find(bestEfforts, BestEffort.Type.TIME_FOR_DISTANCE, 1000).getValue(), 1e-6);
+        assertEquals(bestDistance_m, find(bestEfforts, BestEffort.Type.DISTANCE_FOR_DURATION, 60_000).getValue(), 1e-6);
+    }
+
+    /**
+     * Adds trackPoints every second.
+     */
+    private void add(BestEffortsCalculator bestEffortsCalculator, int seconds, double speed_mps, float power) {
+        for (int i = 0; i < seconds; i++) {
+            time_ms += 1000;
+            distance_m += speed_mps;
+            bestEffortsCalculator.add(createTrackPoint(power));
+        }
+    }
+
+    private TrackPoint createTrackPoint(float power) {
+        // The distance is taken from the cumulative statistics; the location only needs to be valid.
+        TrackPoint trackPoint = new TrackPoint(48, 9, null, time_ms);
+        trackPoint.setCumulativeStatistics(distance_m, time_ms);
+        if (power > 0) {
+            trackPoint.setPower(power);
+        }
+        return trackPoint;
+    }
+
+    private static BestEffort find(List<BestEffort> bestEfforts, BestEffort.Type type, double target) {
+        for (BestEffort bestEffort : bestEfforts) {
+            if (bestEffort.getType() == type && bestEffort.getTarget() == target) {
+                return bestEffort;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Climb;
+import de.dennisguse.opentracks.content.data.Track;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ClimbDetectorTest {
+
+    private static final Track.Id TRACK_ID = new Track.Id(1);
+
+    // One sample every 10m at 1m/s
+    private static final double STEP_M = 10;
+
+    private long trackPointId = 0;
+    private double distance_m = 0;
+    private double elevation_m = 100;
+
+    @Test
+    public void climbAndDescent() {
+        // given
+        ClimbDetector climbDetector = new ClimbDetector(TRACK_ID);
+        add(climbDetector, 0, 0);
+
+        // when
+        List<Climb> climbs = add(climbDetector, 1000, 0.05);
+        long topId = trackPointId - 1;
+        climbs.addAll(add(climbDetector, 500, -0.08));
+        long bottomId = trackPointId - 1;
+        climbs.addAll(add(climbDetector, 1000, 0));
+
+        // then
+        assertEquals(2, climbs.size());
+
+        Climb climb = climbs.get(0);
+        assertEquals(TRACK_ID, climb.getTrackId());
+        assertEquals(Climb.Type.CLIMB, climb.getType());
+        assertEquals(0, climb.getStartTrackPointId());
+        assertEquals(topId, climb.getEndTrackPointId());
+        assertEquals(1000, climb.getLength_m(), 0.01);
+        assertEquals(50, climb.getElevationGain_m(), 0.01);
+        assertEquals(0.05, climb.getAverageGrade(), 0.0001);
+        assertEquals(0.05, climb.getMaxGrade(), 0.0001);
+        // 50m in 1000s
+        assertEquals(180, climb.getVAM_mph(), 0.01);
+
+        Climb descent = climbs.get(1);
+        assertEquals(Climb.Type.DESCENT, descent.getType());
+        assertEquals(topId, descent.getStartTrackPointId());
+        assertEquals(bottomId, descent.getEndTrackPointId());
+        assertEquals(-40, descent.getElevationGain_m(), 0.01);
+        assertEquals(-0.08, descent.getAverageGrade(), 0.0001);
+        assertEquals(-0.08, descent.getMaxGrade(), 0.0001);
+
+        assertNull(climbDetector.finish());
+    }
+
+    @Test
+    public void maxGrade() {
+        // given
+        ClimbDetector climbDetector = new ClimbDetector(TRACK_ID);
+        add(climbDetector, 0, 0);
+        add(climbDetector, 500, 0.04);
+        add(climbDetector, 200, 0.12);
+        add(climbDetector, 500, 0.04);
+
+        // when
+        Climb climb = climbDetector.finish();
+
+        // then
+        assertEquals(0.12, climb.getMaxGrade(), 0.0001);
+        assertEquals(64.0 / 1200, climb.getAverageGrade(), 0.0001);
+    }
+
+    @Test
+    public void noiseBelowHysteresis() {
+        // given
+        ClimbDetector climbDetector = new ClimbDetector(TRACK_ID);
+
+        // when
+        List<Climb> climbs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            elevation_m = 100 + (i % 2 == 0 ? 4 : -4);
+            climbs.addAll(add(climbDetector, 0, 0));
+            distance_m += STEP_M;
+        }
+
+        // then
+        assertTrue(climbs.isEmpty());
+        assertNull(climbDetector.finish());
+    }
+
+    @Test
+    public void plateauEndsClimb() {
+        // given
+        ClimbDetector climbDetector = new ClimbDetector(TRACK_ID);
+        add(climbDetector, 0, 0);
+        add(climbDetector, 600, 0.05);
+        long topId = trackPointId - 1;
+
+        // when
+        List<Climb> climbs = add(climbDetector, 600, 0);
+
+        // then
+        assertEquals(1, climbs.size());
+        assertEquals(topId, climbs.get(0).getEndTrackPointId());
+        assertEquals(30, climbs.get(0).getElevationGain_m(), 0.01);
+        assertNull(climbDetector.finish());
+    }
+
+    @Test
+    public void smallHillIgnored() {
+        // given
+        ClimbDetector climbDetector = new ClimbDetector(TRACK_ID);
+        add(climbDetector, 0, 0);
+
+        // when
+        List<Climb> climbs = add(climbDetector, 300, 0.05);
+        climbs.addAll(add(climbDetector, 300, -0.05));
+        climbs.addAll(add(climbDetector, 1000, 0));
+
+        // then
+        assertTrue(ClimbDetector.MIN_ELEVATION_GAIN_M > 15);
+        assertTrue(climbs.isEmpty());
+        assertNull(climbDetector.finish());
+    }
+
+    /**
+     * Adds a section with a constant grade (or a single sample if length_m is 0).
+     *
+     * @return the climbs completed by the section
+     */
+    private List<Climb> add(ClimbDetector climbDetector, double length_m, double grade) {
+        List<Climb> climbs = new ArrayList<>();
+        int samples = Math.max(1, (int) Math.round(length_m / STEP_M));
+        for (int i = 0; i < samples; i++) {
+            if (length_m > 0) {
+                distance_m += STEP_M;
+                elevation_m += grade * STEP_M;
+            }
+            long time_ms = Math.round(distance_m * 1000);
+            Climb climb = climbDetector.add(new ClimbDetector.Sample(trackPointId++, distance_m, time_ms, time_ms, elevation_m));
+            if (climb != null) {
+                climbs.add(climb);
+            }
+        }
+        return climbs;
+    }
+}
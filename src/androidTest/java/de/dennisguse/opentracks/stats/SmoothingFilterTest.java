@@ -0,0 +1,172 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SmoothingFilterTest {
+
+    private static final int SIZE = 25;
+
+    private static final int LENGTH = 100_000;
+
+    /**
+     * The running sum must yield the same averages as summing up the whole buffer (the previous implementation).
+     */
+    @Test
+    public void movingAverage_equivalentToFullSum() {
+        // given
+        double[] values = createSeries();
+        DoubleRingBuffer filter = new DoubleRingBuffer(SIZE);
+
+        for (int i = 0; i < LENGTH; i++) {
+            // when
+            filter.setNext(values[i]);
+
+            // then
+            int from = Math.max(0, i - SIZE + 1);
+            double sum = 0;
+            for (int j = from; j <= i; j++) {
+                sum += values[j];
+            }
+            assertEquals(sum / (i - from + 1), filter.getAverage(), 1e-9);
+            assertEquals(i >= SIZE - 1, filter.isFull());
+        }
+    }
+
+    @Test
+    public void movingAverage_reset() {
+        // given
+        DoubleRingBuffer filter = new DoubleRingBuffer(SIZE);
+        for (int i = 0; i < 2 * SIZE; i++) {
+            filter.setNext(100);
+        }
+
+        // when
+        filter.reset();
+        filter.setNext(1);
+
+        // then
+        assertEquals(1, filter.getValue(), 0);
+        assertFalse(filter.isFull());
+    }
+
+    @Test
+    public void median_equivalentToSorting() {
+        // given
+        double[] values = createSeries();
+        MedianFilter filter = new MedianFilter(SIZE);
+
+        for (int i = 0; i < LENGTH; i++) {
+            // when
+            filter.setNext(values[i]);
+
+            // then
+            double[] window = Arrays.copyOfRange(values, Math.max(0, i - SIZE + 1), i + 1);
+            Arrays.sort(window);
+            double expected = window.length % 2 == 1 ? window[window.length / 2] : (window[window.length / 2 - 1] + window[window.length / 2]) / 2;
+            assertEquals(expected, filter.getValue(), 0);
+        }
+    }
+
+    @Test
+    public void median_ignoresOutlier() {
+        // given
+        MedianFilter filter = new MedianFilter(5);
+
+        // when
+        filter.setNext(100);
+        filter.setNext(101);
+        filter.setNext(5000);
+        filter.setNext(102);
+        filter.setNext(101);
+
+        // then
+        assertEquals(101, filter.getValue(), 0);
+    }
+
+    @Test
+    public void exponentialMovingAverage() {
+        // given
+        ExponentialMovingAverage filter = new ExponentialMovingAverage(3);
+
+        // when / then
+        assertEquals(0, filter.getValue(), 0);
+        filter.setNext(10);
+        assertEquals(10, filter.getValue(), 0);
+        filter.setNext(20);
+        assertEquals(15, filter.getValue(), 1e-9);
+        assertFalse(filter.isFull());
+        filter.setNext(20);
+        assertEquals(17.5, filter.getValue(), 1e-9);
+        assertTrue(filter.isFull());
+    }
+
+    @Test
+    public void kalman_convergesLikeExponentialMovingAverage() {
+        // given
+        double[] values = createSeries();
+        KalmanFilter kalman = new KalmanFilter(SIZE);
+        ExponentialMovingAverage exponential = new ExponentialMovingAverage(SIZE);
+
+        // when
+        for (int i = 0; i < LENGTH; i++) {
+            kalman.setNext(values[i]);
+            exponential.setNext(values[i]);
+        }
+
+        // then: same steady state gain
+        assertEquals(exponential.getValue(), kalman.getValue(), 1e-6);
+    }
+
+    @Test
+    public void kalman_sizeOne() {
+        // given
+        KalmanFilter filter = new KalmanFilter(1);
+
+        // when / then
+        filter.setNext(10);
+        filter.setNext(20);
+        assertEquals(20, filter.getValue(), 1e-9);
+        filter.setNext(30);
+        assertEquals(30, filter.getValue(), 1e-9);
+    }
+
+    @Test
+    public void type_create() {
+        for (SmoothingFilter.Type type : SmoothingFilter.Type.values()) {
+            // given
+            SmoothingFilter filter = type.create(SIZE);
+
+            // when
+            for (int i = 0; i < SIZE; i++) {
+                filter.setNext(42);
+            }
+
+            // then
+            assertEquals(type.name(), 42, filter.getValue(), 1e-9);
+            assertTrue(type.name(), filter.isFull());
+        }
+    }
+
+    /**
+     * Elevation-like readings: slowly changing with noise and spikes.
+     */
+    private static double[] createSeries() {
+        Random random = new Random(1);
+        double[] values = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            values[i] = 500 + 100 * Math.sin(i / 1000.0) + random.nextGaussian() * 5 + (random.nextInt(100) == 0 ? 200 : 0);
+        }
+        return values;
+    }
+}
@@ -20,7 +20,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 /**
  * Tests for {@link TrackStatistics}.
@@ -86,4 +90,94 @@ public class TrackStatisticsTest {
         statistics.setMovingTime(20000);  // in milliseconds
         assertEquals(50.0, statistics.getAverageMovingSpeed(), 0.001);
     }
+
+    @Test
+    public void testMerge_sensors() {
+        TrackStatistics statistics2 = new TrackStatistics();
+        statistics.getHeartRate().add(100, 1000);
+        statistics2.getHeartRate().add(160, 3000);
+        statistics.setNormalizedPower(200, 60_000);
+        statistics2.setNormalizedPower(300, 60_000);
+        statistics.setHeartRateZones(new ZoneHistogram(new double[]{100, 150}));
+        statistics.getHeartRateZones().add(120, 1000);
+        statistics2.setHeartRateZones(new ZoneHistogram(new double[]{130}));
+        statistics2.getHeartRateZones().add(140, 2000);
+
+        statistics.merge(statistics2);
+
+        assertEquals(145, statistics.getHeartRate().getAverage(), 0.001);
+        assertEquals(160, statistics.getHeartRate().getMax(), 0.001);
+        assertEquals(4000, statistics.getHeartRate().getDuration_ms());
+        assertNull(statistics.getCadence().getAverage());
+        assertEquals(Math.pow((Math.pow(200, 4) + Math.pow(300, 4)) / 2, 0.25), statistics.getNormalizedPower(), 0.001);
+        assertEquals(120_000, statistics.getNormalizedPowerDuration_ms());
+        // Different boundaries: zone [130, ∞) is attributed to [100, 150).
+        assertEquals(3000, statistics.getHeartRateZones().getTime_ms(1));
+    }
+
+    @Test
+    public void testZoneHistogram_encode() {
+        ZoneHistogram zoneHistogram = new ZoneHistogram(new double[]{120, 140.5});
+        zoneHistogram.add(100, 1000);
+        zoneHistogram.add(140.5, 2000);
+
+        ZoneHistogram decoded = ZoneHistogram.decode(zoneHistogram.encode());
+
+        assertEquals(zoneHistogram.encode(), decoded.encode());
+        assertEquals(1000, decoded.getTime_ms(0));
+        assertEquals(0, decoded.getTime_ms(1));
+        assertEquals(2000, decoded.getTime_ms(2));
+        assertNull(ZoneHistogram.decode("invalid"));
+        assertNull(ZoneHistogram.parseBoundaries("140, 120"));
+    }
+
+    @Test
+    public void testUpdater_sensors() {
+        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(0);
+        trackStatisticsUpdater.setZones(new double[]{120, 140, 160, 175}, new double[]{150, 250});
+
+        // 60s at 100bpm, then 60s at 150bpm; constant 200W.
+        for (int i = 0; i <= 120; i++) {
+            trackStatisticsUpdater.addTrackPoint(createTrackPoint(i, i <= 60 ? 100 : 150, 200), 0);
+        }
+
+        TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
+        assertEquals(125, trackStatistics.getHeartRate().getAverage(), 0.001);
+        assertEquals(150, trackStatistics.getHeartRate().getMax(), 0.001);
+        assertEquals(120_000, trackStatistics.getHeartRate().getDuration_ms());
+        assertEquals(60_000, trackStatistics.getHeartRateZones().getTime_ms(0));
+        assertEquals(60_000, trackStatistics.getHeartRateZones().getTime_ms(2));
+        assertEquals(120_000, trackStatistics.getPowerZones().getTime_ms(1));
+        assertEquals(200, trackStatistics.getNormalizedPower(), 0.001);
+        // Rolling 30s average available after 30s.
+        assertEquals(91_000, trackStatistics.getNormalizedPowerDuration_ms());
+    }
+
+    @Test
+    public void testUpdater_sensors_pause() {
+        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(0);
+        for (int i = 0; i <= 10; i++) {
+            trackStatisticsUpdater.addTrackPoint(createTrackPoint(i, 100, 0), 0);
+        }
+        trackStatisticsUpdater.addTrackPoint(TrackPoint.createPauseWithTime(10_500), 0);
+        trackStatisticsUpdater.addTrackPoint(TrackPoint.createResumeWithTime(1_000_000), 0);
+        for (int i = 1000; i <= 1010; i++) {
+            trackStatisticsUpdater.addTrackPoint(createTrackPoint(i, 100, 0), 0);
+        }
+
+        TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
+        assertEquals(20_000, trackStatistics.getHeartRate().getDuration_ms());
+        assertFalse(trackStatistics.hasNormalizedPower());
+        assertNull(trackStatistics.getHeartRateZones());
+    }
+
+    private static TrackPoint createTrackPoint(int second, float heartRate_bpm, float power_W) {
+        TrackPoint trackPoint = new TrackPoint(48 + second * 0.0001, 9, null, second * 1000L);
+        trackPoint.setSpeed(10);
+        trackPoint.setHeartRate_bpm(heartRate_bpm);
+        if (power_W > 0) {
+            trackPoint.setPower(power_W);
+        }
+        return trackPoint;
+    }
 }
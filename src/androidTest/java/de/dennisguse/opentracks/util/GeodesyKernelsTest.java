@@ -0,0 +1,154 @@
+package de.dennisguse.opentracks.util;
+
+import android.location.Location;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class GeodesyKernelsTest {
+
+    private static final String TAG = GeodesyKernelsTest.class.getSimpleName();
+
+    private static final int LENGTH = 100_000;
+
+    @Test
+    public void testDistances() {
+        // given
+        double[] latitudes = new double[LENGTH];
+        double[] longitudes = new double[LENGTH];
+        createTrack(latitudes, longitudes);
+        // A long segment and the antimeridian.
+        latitudes[100] = 10;
+        longitudes[100] = 20;
+        latitudes[200] = 10;
+        longitudes[200] = 179.9995;
+        latitudes[201] = 10;
+        longitudes[201] = -179.9995;
+
+        double[] distances = new double[LENGTH];
+
+        // when
+        GeodesyKernels.distances(latitudes, longitudes, LENGTH, distances);
+
+        // then
+        assertEquals(0, distances[0], 0);
+        for (int i = 1; i < LENGTH; i++) {
+            double expected = GeodesyUtils.distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            assertEquals(expected, distances[i], expected * 1e-12);
+        }
+        assertTrue(distances[201] < 200);
+    }
+
+    @Test
+    public void testSpeedsGradesCumulativeDistances() {
+        // given
+        double[] distances = {0, 10, 20, 0};
+        long[] times_ms = {1000, 2000, 2000, 4000};
+        double[] altitudes = {100, 101, 99, 99};
+        double[] out = new double[4];
+
+        // when / then
+        GeodesyKernels.speeds(distances, times_ms, 4, out);
+        assertEquals(0, out[0], 0);
+        assertEquals(10, out[1], 1e-9);
+        assertEquals(0, out[2], 0);
+        assertEquals(0, out[3], 0);
+
+        GeodesyKernels.grades(altitudes, distances, 4, out);
+        assertEquals(0.1, out[1], 1e-9);
+        assertEquals(-0.1, out[2], 1e-9);
+        assertEquals(0, out[3], 0);
+
+        GeodesyKernels.cumulativeDistances(distances, 4, distances);
+        assertEquals(0, distances[0], 0);
+        assertEquals(10, distances[1], 0);
+        assertEquals(30, distances[2], 0);
+        assertEquals(30, distances[3], 0);
+    }
+
+    @Test
+    public void testBearings() {
+        // given
+        double[] latitudes = {0, 1, 1};
+        double[] longitudes = {0, 0, 1};
+        double[] bearings = new double[3];
+
+        // when
+        GeodesyKernels.bearings(latitudes, longitudes, 3, bearings);
+
+        // then
+        assertEquals(0, bearings[1], 1e-9);
+        assertEquals(90, bearings[2], 0.01);
+    }
+
+    /**
+     * Not a strict benchmark (no JMH on Android): the average of several runs after warm-up is logged.
+     */
+    @Test
+    public void benchmarkDistances() {
+        // given
+        double[] latitudes = new double[LENGTH];
+        double[] longitudes = new double[LENGTH];
+        createTrack(latitudes, longitudes);
+        double[] distances = new double[LENGTH];
+
+        Location[] locations = new Location[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            locations[i] = new Location("test");
+            locations[i].setLatitude(latitudes[i]);
+            locations[i].setLongitude(longitudes[i]);
+        }
+
+        // when
+        double locationSum = 0;
+        double kernelSum = 0;
+        long locationDuration_ns = 0;
+        long kernelDuration_ns = 0;
+        for (int run = 0; run < 10; run++) {
+            long start = System.nanoTime();
+            locationSum = 0;
+            for (int i = 1; i < LENGTH; i++) {
+                locationSum += locations[i - 1].distanceTo(locations[i]);
+            }
+            long locationDuration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            GeodesyKernels.distances(latitudes, longitudes, LENGTH, distances);
+            GeodesyKernels.cumulativeDistances(distances, LENGTH, distances);
+            kernelSum = distances[LENGTH - 1];
+            long kernelDuration = System.nanoTime() - start;
+
+            // First runs are warm-up.
+            if (run >= 5) {
+                locationDuration_ns += locationDuration;
+                kernelDuration_ns += kernelDuration;
+            }
+        }
+
+        // then
+        Log.i(TAG, "Distances of " + LENGTH + " trackPoints: Location " + locationDuration_ns / 5 / LENGTH + "ns/trackPoint; GeodesyKernels " + kernelDuration_ns / 5 / LENGTH + "ns/trackPoint");
+        assertEquals(locationSum, kernelSum, locationSum * 1e-5);
+    }
+
+    /**
+     * A random walk with hops of up to 20m (near Stuttgart).
+     */
+    private static void createTrack(double[] latitudes, double[] longitudes) {
+        Random random = new Random(1);
+        latitudes[0] = 48.78;
+        longitudes[0] = 9.18;
+        for (int i = 1; i < latitudes.length; i++) {
+            latitudes[i] = latitudes[i - 1] + (random.nextDouble() - 0.5) * 0.0002;
+            longitudes[i] = longitudes[i - 1] + (random.nextDouble() - 0.5) * 0.0003;
+        }
+    }
+}
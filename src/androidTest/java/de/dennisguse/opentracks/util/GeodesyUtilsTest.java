@@ -0,0 +1,98 @@
+package de.dennisguse.opentracks.util;
+
+import android.location.Location;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link GeodesyUtils} to {@link Location} (Vincenty on WGS84).
+ * Error bounds:
+ * - hops up to 0.05 degrees (about 5km): relative error below 1e-6 (i.e., below 1mm per km; Location computes in float),
+ * - longer distances: relative error below 0.6% (haversine on a sphere),
+ * - bearings: below 0.25 degrees.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeodesyUtilsTest {
+
+    private static final int SAMPLES = 10000;
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void testDistance_shortHops() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double[] coordinates = randomCoordinates(0.05);
+            float[] expected = new float[2];
+            Location.distanceBetween(coordinates[0], coordinates[1], coordinates[2], coordinates[3], expected);
+
+            double distance = GeodesyUtils.distance(coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+
+            assertEquals(expected[0], distance, Math.max(0.001, expected[0] * 1e-6));
+        }
+    }
+
+    @Test
+    public void testDistance_long() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double[] coordinates = randomCoordinates(60);
+            float[] expected = new float[2];
+            Location.distanceBetween(coordinates[0], coordinates[1], coordinates[2], coordinates[3], expected);
+
+            double distance = GeodesyUtils.distance(coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+
+            assertEquals(expected[0], distance, expected[0] * 0.006);
+        }
+    }
+
+    @Test
+    public void testDistance_antimeridian() {
+        float[] expected = new float[1];
+        Location.distanceBetween(10, 179.9995, 10, -179.9995, expected);
+
+        double distance = GeodesyUtils.distance(10, 179.9995, 10, -179.9995);
+
+        assertTrue(distance < 200);
+        assertEquals(expected[0], distance, 0.001);
+    }
+
+    @Test
+    public void testBearing() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double[] coordinates = randomCoordinates(1);
+            float[] expected = new float[2];
+            Location.distanceBetween(coordinates[0], coordinates[1], coordinates[2], coordinates[3], expected);
+            if (expected[0] < 10) {
+                continue;
+            }
+
+            double bearing = GeodesyUtils.bearing(coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+
+            double difference = Math.abs(expected[1] - bearing);
+            assertTrue(Math.min(difference, 360 - difference) < 0.25);
+        }
+    }
+
+    /**
+     * @return latitude1, longitude1, latitude2, longitude2 at most maxDelta degrees apart (latitudes within +-85 degrees).
+     */
+    private double[] randomCoordinates(double maxDelta) {
+        double latitude1 = -85 + 170 * random.nextDouble();
+        double longitude1 = -180 + 360 * random.nextDouble();
+        double latitude2 = Math.max(-85, Math.min(85, latitude1 + (2 * random.nextDouble() - 1) * maxDelta));
+        double longitude2 = longitude1 + (2 * random.nextDouble() - 1) * maxDelta;
+        if (longitude2 > 180) {
+            longitude2 -= 360;
+        } else if (longitude2 < -180) {
+            longitude2 += 360;
+        }
+        return new double[]{latitude1, longitude1, latitude2, longitude2};
+    }
+}
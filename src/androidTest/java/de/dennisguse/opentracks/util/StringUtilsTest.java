@@ -24,11 +24,17 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link StringUtils}.
@@ -226,4 +232,70 @@ public class StringUtilsTest {
         assertEquals("min/km", StringUtils.getSpeedParts(context, 0, true, false).second);
         assertEquals("min/mi", StringUtils.getSpeedParts(context, 0, false, false).second);
     }
+
+    @Test
+    public void testParseTime_charRange() {
+        // given
+        char[] chars = " 2010-05-04T03:02:01.352Z</time>".toCharArray();
+
+        // when
+        long time = StringUtils.parseTime(chars, 0, 25);
+
+        // then
+        assertEquals(StringUtils.parseTime("2010-05-04T03:02:01.352Z"), time);
+    }
+
+    @Test
+    public void testParseTime_sameAsInstant() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            // given
+            Instant instant = Instant.ofEpochMilli((long) (random.nextDouble() * 4e12));
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(36) - 18) * 1800);
+            String xmlDateTime = i % 2 == 0 ? instant.toString() : OffsetDateTime.ofInstant(instant, offset).toString();
+
+            // when
+            long time = StringUtils.parseTime(xmlDateTime);
+
+            // then
+            assertEquals(xmlDateTime, instant.toEpochMilli(), time);
+        }
+    }
+
+    @Test
+    public void testParseTime_invalid() {
+        String[] invalid = {"", "2010-02-29T00:00:00Z", "2010-13-04T03:02:01Z", "2010-05-04T03:02:60Z", "2010-05-04T03:02:01.Z", "2010-05-04T03:02"};
+        for (String xmlDateTime : invalid) {
+            try {
+                StringUtils.parseTime(xmlDateTime);
+                fail(xmlDateTime);
+            } catch (Exception e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseDouble_sameAsDouble() {
+        String[] values = {"0", "-0", "+1", "1.", ".5", "-.5", " 48.768364 ", "1.5e3", "NaN", "-Infinity", "123456789012345", "1234567890123456", "0.000000000000000000000001", "9007199254740993"};
+        for (String value : values) {
+            char[] chars = value.toCharArray();
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(StringUtils.parseDouble(chars, 0, chars.length)));
+            assertEquals(value, Float.floatToIntBits(Float.parseFloat(value)), Float.floatToIntBits(StringUtils.parseFloat(chars, 0, chars.length)));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            String value = String.format(Locale.US, "%." + random.nextInt(10) + "f", (random.nextDouble() - 0.5) * 360);
+            char[] chars = value.toCharArray();
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(StringUtils.parseDouble(chars, 0, chars.length)));
+            assertEquals(value, Float.floatToIntBits(Float.parseFloat(value)), Float.floatToIntBits(StringUtils.parseFloat(chars, 0, chars.length)));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDouble_invalid() {
+        char[] chars = "1.2.3".toCharArray();
+        StringUtils.parseDouble(chars, 0, chars.length);
+    }
 }
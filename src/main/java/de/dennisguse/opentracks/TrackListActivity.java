@@ -45,8 +45,15 @@ import androidx.loader.app.LoaderManager.LoaderCallbacks;
 import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPreview;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.databinding.TrackListBinding;
 import de.dennisguse.opentracks.fragments.ConfirmDeleteDialogFragment;
 import de.dennisguse.opentracks.services.TrackRecordingServiceConnection;
@@ -80,12 +87,17 @@ public class TrackListActivity extends AbstractListActivity implements ConfirmDe
 
     private TrackListBinding viewBinding;
 
+    // Computes the previews of tracks that do not have one yet (e.g., recorded before previews were introduced) and archives tracks.
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final Set<Track.Id> trackPreviewRequested = new HashSet<>();
+
     private final LoaderCallbacks<Cursor> loaderCallbacks = new LoaderCallbacks<Cursor>() {
         @Override
         public Loader<Cursor> onCreateLoader(int arg0, Bundle arg1) {
             String[] PROJECTION = new String[]{TracksColumns._ID, TracksColumns.NAME,
                     TracksColumns.DESCRIPTION, TracksColumns.CATEGORY, TracksColumns.STARTTIME,
-                    TracksColumns.TOTALDISTANCE, TracksColumns.TOTALTIME, TracksColumns.ICON, "markerCount"};
+                    TracksColumns.TOTALDISTANCE, TracksColumns.TOTALTIME, TracksColumns.ICON, "markerCount",
+                    TracksColumns.PREVIEW, TracksColumns.MINLATITUDE, TracksColumns.MAXLATITUDE, TracksColumns.MINLONGITUDE, TracksColumns.MAXLONGITUDE};
 
             return new CursorLoader(TrackListActivity.this, TracksColumns.CONTENT_URI, PROJECTION, null, null, TrackUtils.TRACK_SORT_ORDER);
         }
@@ -284,6 +296,12 @@ public class TrackListActivity extends AbstractListActivity implements ConfirmDe
                 ListItemUtils.setListItem(TrackListActivity.this, view, isRecording, recordingTrackPaused,
                         iconId, R.string.image_track, name, totalTime, totalDistance, markerCount,
                         startTime, true, category, description, null);
+
+                TrackPreview trackPreview = isRecording ? null : ContentProviderUtils.createTrackPreview(cursor);
+                ListItemUtils.setPreview(TrackListActivity.this, view, trackId, trackPreview);
+                if (trackPreview == null && !isRecording) {
+                    computeTrackPreview(trackId);
+                }
             }
         };
         viewBinding.trackList.setAdapter(resourceCursorAdapter);
@@ -302,6 +320,12 @@ public class TrackListActivity extends AbstractListActivity implements ConfirmDe
         sharedPreferences.registerOnSharedPreferenceChangeListener(sharedPreferenceChangeListener);
         sharedPreferenceChangeListener.onSharedPreferenceChanged(null, null);
         trackRecordingServiceConnection.startConnection(this);
+
+        if (PreferencesUtils.shouldArchiveTrackPoints(this)) {
+            ContentProviderUtils contentProviderUtils = new ContentProviderUtils(this);
+            Context context = getApplicationContext();
+            backgroundExecutor.execute(() -> contentProviderUtils.archiveTracks(context));
+        }
     }
 
     @Override
@@ -330,6 +354,25 @@ public class TrackListActivity extends AbstractListActivity implements ConfirmDe
         trackRecordingServiceConnection.unbind(this);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        backgroundExecutor.shutdownNow();
+    }
+
+    /**
+     * Computes and stores the preview of a track in the background (once per track); the list is reloaded via the tracks table update.
+     *
+     * @param trackId the track id
+     */
+    private void computeTrackPreview(Track.Id trackId) {
+        if (!trackPreviewRequested.add(trackId)) {
+            return;
+        }
+        ContentProviderUtils contentProviderUtils = new ContentProviderUtils(this);
+        backgroundExecutor.execute(() -> contentProviderUtils.getTrackPreview(trackId));
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         if (requestCode == GPS_REQUEST_CODE) {
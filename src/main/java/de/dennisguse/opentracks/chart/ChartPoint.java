@@ -29,7 +29,9 @@ public class ChartPoint {
         TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
 
         if (chartByDistance) {
-            double distance = trackStatistics.getTotalDistance() * UnitConversions.M_TO_KM;
+            // Stored distance if available: does not depend on which trackPoints were loaded.
+            double distance_m = trackPoint != null && trackPoint.hasCumulativeStatistics() ? trackPoint.getCumulativeDistance_m() : trackStatistics.getTotalDistance();
+            double distance = distance_m * UnitConversions.M_TO_KM;
             if (!metricUnits) {
                 distance *= UnitConversions.KM_TO_MI;
             }
@@ -41,6 +41,7 @@ import java.util.List;
 
 import de.dennisguse.opentracks.MarkerDetailActivity;
 import de.dennisguse.opentracks.R;
+import de.dennisguse.opentracks.content.data.Climb;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.stats.ExtremityMonitor;
 import de.dennisguse.opentracks.util.IntentUtils;
@@ -88,12 +89,15 @@ public class ChartView extends View {
 
     private final List<ChartPoint> chartPoints = new ArrayList<>();
     private final List<Marker> markers = new ArrayList<>();
+    private final List<Climb> climbs = new ArrayList<>();
     private final ExtremityMonitor xExtremityMonitor = new ExtremityMonitor();
     private final int backgroundColor;
     private final Paint axisPaint;
     private final Paint xAxisMarkerPaint;
     private final Paint gridPaint;
     private final Paint markerPaint;
+    private final Paint climbPaint;
+    private final Paint descentPaint;
     private final Drawable pointer;
     private final Drawable markerPin;
     private final int markerWidth;
@@ -330,6 +334,14 @@ public class ChartView extends View {
         markerPaint.setStyle(Style.STROKE);
         markerPaint.setAntiAlias(false);
 
+        climbPaint = new Paint();
+        climbPaint.setStyle(Style.FILL);
+        climbPaint.setColor(context.getResources().getColor(R.color.chart_climb_fill));
+
+        descentPaint = new Paint();
+        descentPaint.setStyle(Style.FILL);
+        descentPaint.setColor(context.getResources().getColor(R.color.chart_descent_fill));
+
         pointer = context.getResources().getDrawable(R.drawable.ic_logo_color_24dp);
         pointer.setBounds(0, 0, pointer.getIntrinsicWidth(), pointer.getIntrinsicHeight());
 
@@ -447,6 +459,16 @@ public class ChartView extends View {
         }
     }
 
+    /**
+     * Sets the climbs (and descents) to be shaded.
+     */
+    public void setClimbs(@NonNull List<Climb> climbs) {
+        synchronized (this.climbs) {
+            this.climbs.clear();
+            this.climbs.addAll(climbs);
+        }
+    }
+
     private boolean canZoomIn() {
         return zoomLevel < MAX_ZOOM_LEVEL;
     }
@@ -546,6 +568,7 @@ public class ChartView extends View {
             canvas.save();
 
             clipToGraphArea(canvas);
+            drawClimbs(canvas);
             drawDataSeries(canvas);
             drawMarker(canvas);
             drawGrid(canvas);
@@ -588,6 +611,25 @@ public class ChartView extends View {
         }
     }
 
+    /**
+     * Shades the climbs (and descents) behind the data series.
+     *
+     * @param canvas the canvas
+     */
+    private void drawClimbs(Canvas canvas) {
+        synchronized (climbs) {
+            for (Climb climb : climbs) {
+                double startXValue = getClimbXValue(climb, true);
+                if (startXValue > maxX) {
+                    continue;
+                }
+                float startX = getX(startXValue);
+                float endX = getX(Math.min(getClimbXValue(climb, false), maxX));
+                canvas.drawRect(startX, topBorder, endX, topBorder + effectiveHeight, climb.getType() == Climb.Type.CLIMB ? climbPaint : descentPaint);
+            }
+        }
+    }
+
     private void drawMarker(Canvas canvas) {
         synchronized (markers) {
             for (Marker marker : markers) {
@@ -980,6 +1022,15 @@ public class ChartView extends View {
         }
     }
 
+    private double getClimbXValue(Climb climb, boolean start) {
+        if (chartByDistance) {
+            double length_km = (start ? climb.getStartDistance_m() : climb.getEndDistance_m()) * UnitConversions.M_TO_KM;
+            return metricUnits ? length_km : length_km * UnitConversions.KM_TO_MI;
+        } else {
+            return start ? climb.getStartDuration_ms() : climb.getEndDuration_ms();
+        }
+    }
+
     /**
      * Gets a paint's Rect for a string.
      *
@@ -34,6 +34,7 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.util.GeodesyUtils;
 import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.UnitConversions;
 
@@ -346,6 +347,7 @@ public class SearchEngine {
 
     /**
      * Calculates the boosting of the score due to proximity to a location.
+     * Computed here rather than in the query: it ranks all (at most {@link #MAX_SCORED_MARKERS}) text matches, so a bounding box prefilter would drop far away matches, and SQLite on Android has no trigonometric functions to order by distance.
      *
      * @param query     the query to boost for
      * @param latitude  the latitude to calculate the boost for
@@ -357,15 +359,8 @@ public class SearchEngine {
             return 1.0;
         }
 
-        float[] distanceResults = new float[1];
-
-        Location.distanceBetween(
-                latitude, longitude,
-                query.currentLocation.getLatitude(), query.currentLocation.getLongitude(),
-                distanceResults);
-
         // Score tracks close to the current location higher.
-        double distanceKm = distanceResults[0] * UnitConversions.M_TO_KM;
+        double distanceKm = GeodesyUtils.distance(latitude, longitude, query.currentLocation.getLatitude(), query.currentLocation.getLongitude()) * UnitConversions.M_TO_KM;
 
         if (distanceKm > 0.0) {
             // Use the inverse of the amortized distance.
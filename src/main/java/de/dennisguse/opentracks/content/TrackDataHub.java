@@ -34,6 +34,7 @@ import java.util.Set;
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.Segment;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
@@ -362,31 +363,31 @@ public class TrackDataHub implements SharedPreferences.OnSharedPreferenceChangeL
 
         long lastTrackPointId = contentProviderUtils.getLastTrackPointId(selectedTrackId);
         int samplingFrequency = -1;
-        boolean includeNextPoint = false;
 
-        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(selectedTrackId, localLastSeenTrackPointIdId + 1, false)) {
-
-            while (trackPointIterator.hasNext()) {
-                TrackPoint trackPoint = trackPointIterator.next();
-                long trackPointId = trackPointIterator.getTrackPointId();
+        // Only the trackPoints of segments; so pause/resume trackPoints are not read.
+        for (Segment segment : contentProviderUtils.getSegments(selectedTrackId)) {
+            long startTrackPointId = Math.max(segment.getFirstTrackPointId(), localLastSeenTrackPointIdId + 1);
+            long endTrackPointId = maxPointId != -1L ? Math.min(segment.getLastTrackPointId(), maxPointId) : segment.getLastTrackPointId();
+            if (startTrackPointId > endTrackPointId) {
+                continue;
+            }
 
-                // Stop if past the last wanted point
-                if (maxPointId != -1L && trackPointId > maxPointId) {
-                    break;
-                }
+            // Always include the first point of a segment.
+            boolean includeNextPoint = startTrackPointId == segment.getFirstTrackPointId();
+            try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(segment, startTrackPointId, endTrackPointId)) {
+                while (trackPointIterator.hasNext()) {
+                    TrackPoint trackPoint = trackPointIterator.next();
+                    long trackPointId = trackPointIterator.getTrackPointId();
 
-                if (localFirstSeenTrackPointId == -1) {
-                    localFirstSeenTrackPointId = trackPointId;
-                }
+                    if (localFirstSeenTrackPointId == -1) {
+                        localFirstSeenTrackPointId = trackPointId;
+                    }
 
-                if (samplingFrequency == -1) {
-                    long numTotalPoints = Math.max(0L, lastTrackPointId - localFirstSeenTrackPointId);
-                    samplingFrequency = 1 + (int) (numTotalPoints / targetNumPoints);
-                }
+                    if (samplingFrequency == -1) {
+                        long numTotalPoints = Math.max(0L, lastTrackPointId - localFirstSeenTrackPointId);
+                        samplingFrequency = 1 + (int) (numTotalPoints / targetNumPoints);
+                    }
 
-                if (!LocationUtils.isValidLocation(trackPoint.getLocation())) { //This can be split markers (not anymore supported feature)
-                    includeNextPoint = true;
-                } else {
                     // Also include the last point if the selected track is not recording.
                     if (includeNextPoint || (localNumLoadedTrackPoints % samplingFrequency == 0) || (trackPointId == lastTrackPointId && !isSelectedTrackRecording())) {
                         includeNextPoint = false;
@@ -398,10 +399,10 @@ public class TrackDataHub implements SharedPreferences.OnSharedPreferenceChangeL
                             trackDataListener.onSampledOutTrackPoint(trackPoint);
                         }
                     }
-                }
 
-                localNumLoadedTrackPoints++;
-                localLastSeenTrackPointIdId = trackPointId;
+                    localNumLoadedTrackPoints++;
+                    localLastSeenTrackPointIdId = trackPointId;
+                }
             }
         }
 
@@ -0,0 +1,232 @@
+package de.dennisguse.opentracks.content;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPreview;
+
+/**
+ * Renders {@link TrackPreview}s as thumbnails and caches them in memory and on disk (both LRU).
+ * <p>
+ * The cache key contains the hash of the {@link TrackPreview}; so a changed preview results in a new thumbnail and outdated thumbnails are evicted eventually.
+ * <p>
+ * On the UI thread, only {@link #getIfCached(Track.Id, TrackPreview, int, int, int)} is used; thumbnails not in memory are loaded (decoded or rendered) in the background by {@link #load(Track.Id, TrackPreview, int, int, int, Callback)}.
+ */
+public class TrackThumbnailCache {
+
+    private static final String TAG = TrackThumbnailCache.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+    private static final String FILE_EXTENSION = ".png";
+
+    @VisibleForTesting
+    static final long MAX_DISK_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static TrackThumbnailCache instance;
+
+    private final File directory;
+    private final LruCache<String, Bitmap> memoryCache;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Callback {
+        /**
+         * Called on the UI thread.
+         *
+         * @param bitmap the thumbnail or null
+         */
+        void onLoaded(@Nullable Bitmap bitmap);
+    }
+
+    public static synchronized TrackThumbnailCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new TrackThumbnailCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME), (int) (Runtime.getRuntime().maxMemory() / 32));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    TrackThumbnailCache(File directory, int maxMemorySizeBytes) {
+        this.directory = directory;
+        this.memoryCache = new LruCache<String, Bitmap>(maxMemorySizeBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the thumbnail if it is in the memory cache; does not access the disk.
+     */
+    @Nullable
+    public Bitmap getIfCached(@NonNull Track.Id trackId, @Nullable TrackPreview trackPreview, int width, int height, int color) {
+        if (!isValid(trackPreview, width, height)) {
+            return null;
+        }
+        return memoryCache.get(getKey(trackId, trackPreview, width, height, color));
+    }
+
+    /**
+     * Loads the thumbnail in the background (see {@link #get(Track.Id, TrackPreview, int, int, int)}) and passes it to the callback on the UI thread.
+     */
+    public void load(@NonNull Track.Id trackId, @Nullable TrackPreview trackPreview, int width, int height, int color, @NonNull Callback callback) {
+        executor.execute(() -> {
+            Bitmap bitmap = get(trackId, trackPreview, width, height, color);
+            mainHandler.post(() -> callback.onLoaded(bitmap));
+        });
+    }
+
+    /**
+     * Returns the thumbnail; renders it if not cached.
+     * Accesses the disk; so not to be called on the UI thread.
+     *
+     * @param trackId      the track id
+     * @param trackPreview the preview
+     * @param width        the width in pixels
+     * @param height       the height in pixels
+     * @param color        the color of the polyline
+     */
+    @Nullable
+    public synchronized Bitmap get(@NonNull Track.Id trackId, @Nullable TrackPreview trackPreview, int width, int height, int color) {
+        if (!isValid(trackPreview, width, height)) {
+            return null;
+        }
+
+        String key = getKey(trackId, trackPreview, width, height, color);
+
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = new File(directory, key + FILE_EXTENSION);
+        if (file.exists()) {
+            bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+                memoryCache.put(key, bitmap);
+                return bitmap;
+            }
+        }
+
+        bitmap = render(trackPreview, width, height, color);
+        memoryCache.put(key, bitmap);
+        writeToDisk(file, bitmap);
+        return bitmap;
+    }
+
+    private static boolean isValid(@Nullable TrackPreview trackPreview, int width, int height) {
+        return trackPreview != null && !trackPreview.isEmpty() && width > 0 && height > 0;
+    }
+
+    private static String getKey(@NonNull Track.Id trackId, @NonNull TrackPreview trackPreview, int width, int height, int color) {
+        return trackId.getId() + "_" + Integer.toHexString(trackPreview.hashCode()) + "_" + width + "x" + height + "_" + Integer.toHexString(color);
+    }
+
+    /**
+     * Renders the polyline of a {@link TrackPreview} keeping the aspect ratio (equirectangular projection).
+     */
+    @VisibleForTesting
+    static Bitmap render(@NonNull TrackPreview trackPreview, int width, int height, int color) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+        float strokeWidth = Math.max(1f, Math.min(width, height) / 32f);
+        float padding = strokeWidth;
+
+        double lonScale = Math.cos(Math.toRadians((trackPreview.getMinLatitudeE6() + trackPreview.getMaxLatitudeE6()) / 2E6));
+        double spanX = Math.max(1, (trackPreview.getMaxLongitudeE6() - trackPreview.getMinLongitudeE6()) * lonScale);
+        double spanY = Math.max(1, trackPreview.getMaxLatitudeE6() - trackPreview.getMinLatitudeE6());
+        double scale = Math.min((width - 2 * padding) / spanX, (height - 2 * padding) / spanY);
+        double offsetX = (width - spanX * scale) / 2;
+        double offsetY = (height - spanY * scale) / 2;
+
+        Path path = new Path();
+        for (int i = 0; i < trackPreview.size(); i++) {
+            float x = (float) (offsetX + (trackPreview.getLongitudeE6(i) - trackPreview.getMinLongitudeE6()) * lonScale * scale);
+            float y = (float) (offsetY + (trackPreview.getMaxLatitudeE6() - trackPreview.getLatitudeE6(i)) * scale);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setColor(color);
+
+        new Canvas(bitmap).drawPath(path, paint);
+        return bitmap;
+    }
+
+    private void writeToDisk(File file, Bitmap bitmap) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create directory " + directory);
+            return;
+        }
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, fileOutputStream);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store thumbnail " + file, e);
+            return;
+        }
+
+        trimDisk();
+    }
+
+    /**
+     * Deletes the least recently used thumbnails until the disk cache is below {@link #MAX_DISK_SIZE_BYTES}.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_DISK_SIZE_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (size <= MAX_DISK_SIZE_BYTES * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+}
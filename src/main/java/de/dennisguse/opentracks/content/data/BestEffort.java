@@ -0,0 +1,87 @@
+package de.dennisguse.opentracks.content.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The best effort of a track for a target distance or duration (e.g., fastest 5 km or longest distance in 20 min).
+ */
+public final class BestEffort {
+
+    public enum Type {
+        /**
+         * Shortest time (ms) for a target distance (m).
+         */
+        TIME_FOR_DISTANCE,
+        /**
+         * Longest distance (m) within a target duration (ms).
+         */
+        DISTANCE_FOR_DURATION,
+        /**
+         * Highest average power (W) within a target duration (ms).
+         */
+        POWER_FOR_DURATION;
+
+        /**
+         * @return true if smaller values are better
+         */
+        public boolean isLowerBetter() {
+            return this == TIME_FOR_DISTANCE;
+        }
+    }
+
+    private final Track.Id trackId;
+    private final Type type;
+    private final double target;
+    private final double value;
+    private final long startTime_ms;
+
+    public BestEffort(@Nullable Track.Id trackId, @NonNull Type type, double target, double value, long startTime_ms) {
+        this.trackId = trackId;
+        this.type = type;
+        this.target = target;
+        this.value = value;
+        this.startTime_ms = startTime_ms;
+    }
+
+    @Nullable
+    public Track.Id getTrackId() {
+        return trackId;
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the target distance (m) or duration (ms)
+     */
+    public double getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the time (ms), distance (m), or average power (W) depending on the {@link Type}
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the time when the best effort started
+     */
+    public long getStartTime_ms() {
+        return startTime_ms;
+    }
+
+    public boolean isBetterThan(@NonNull BestEffort other) {
+        return type.isLowerBetter() ? value < other.value : value > other.value;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BestEffort{" + type + " target=" + target + " value=" + value + " startTime=" + startTime_ms + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the best efforts table (see {@link BestEffort}).
+ * The best efforts of a track are replaced as a whole; inserting and deleting updates the {@link PersonalRecordsColumns#TABLE_NAME}.
+ */
+public interface BestEffortsColumns extends BaseColumns {
+
+    String TABLE_NAME = "besteffort";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.besteffort";
+
+    // Columns
+    String TRACKID = "trackid";
+    String TYPE = "type"; // BestEffort.Type
+    String TARGET = "target"; // target distance (m) or duration (ms)
+    String VALUE = "value"; // time (ms), distance (m), or average power (W)
+    String STARTTIME = "starttime"; // start time of the best effort
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + TYPE + " TEXT NOT NULL, "
+            + TARGET + " FLOAT NOT NULL, "
+            + VALUE + " FLOAT NOT NULL, "
+            + STARTTIME + " INTEGER, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ")";
+}
@@ -0,0 +1,117 @@
+package de.dennisguse.opentracks.content.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A climb (or descent) of a track: a section with a (mostly) monotonic elevation change.
+ * Elevation gain, grades, and VAM are negative for descents.
+ */
+public final class Climb {
+
+    public enum Type {
+        CLIMB,
+        DESCENT
+    }
+
+    private final Track.Id trackId;
+    private final long startTrackPointId;
+    private final long endTrackPointId;
+    private final double startDistance_m;
+    private final double endDistance_m;
+    private final long startDuration_ms;
+    private final long endDuration_ms;
+    private final double elevationGain_m;
+    private final double averageGrade;
+    private final double maxGrade;
+    private final double vam_mph;
+
+    public Climb(@Nullable Track.Id trackId, long startTrackPointId, long endTrackPointId, double startDistance_m, double endDistance_m, long startDuration_ms, long endDuration_ms, double elevationGain_m, double averageGrade, double maxGrade, double vam_mph) {
+        this.trackId = trackId;
+        this.startTrackPointId = startTrackPointId;
+        this.endTrackPointId = endTrackPointId;
+        this.startDistance_m = startDistance_m;
+        this.endDistance_m = endDistance_m;
+        this.startDuration_ms = startDuration_ms;
+        this.endDuration_ms = endDuration_ms;
+        this.elevationGain_m = elevationGain_m;
+        this.averageGrade = averageGrade;
+        this.maxGrade = maxGrade;
+        this.vam_mph = vam_mph;
+    }
+
+    @Nullable
+    public Track.Id getTrackId() {
+        return trackId;
+    }
+
+    @NonNull
+    public Type getType() {
+        return elevationGain_m >= 0 ? Type.CLIMB : Type.DESCENT;
+    }
+
+    public long getStartTrackPointId() {
+        return startTrackPointId;
+    }
+
+    public long getEndTrackPointId() {
+        return endTrackPointId;
+    }
+
+    /**
+     * @return the distance from the track start (like {@link Marker#getLength()})
+     */
+    public double getStartDistance_m() {
+        return startDistance_m;
+    }
+
+    public double getEndDistance_m() {
+        return endDistance_m;
+    }
+
+    /**
+     * @return the total time from the track start (like {@link Marker#getDuration()})
+     */
+    public long getStartDuration_ms() {
+        return startDuration_ms;
+    }
+
+    public long getEndDuration_ms() {
+        return endDuration_ms;
+    }
+
+    public double getLength_m() {
+        return endDistance_m - startDistance_m;
+    }
+
+    public double getElevationGain_m() {
+        return elevationGain_m;
+    }
+
+    /**
+     * @return elevation gain per distance (e.g., 0.05 for 5%)
+     */
+    public double getAverageGrade() {
+        return averageGrade;
+    }
+
+    /**
+     * @return the steepest grade over {@link de.dennisguse.opentracks.stats.ClimbDetector#GRADE_DISTANCE_M}; NaN if the climb is shorter
+     */
+    public double getMaxGrade() {
+        return maxGrade;
+    }
+
+    /**
+     * @return the VAM (velocita ascensionale media): elevation gain per moving time (m/h); NaN without moving time
+     */
+    public double getVAM_mph() {
+        return vam_mph;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Climb{trackPoints=" + startTrackPointId + "-" + endTrackPointId + ", distance_m=" + startDistance_m + "-" + endDistance_m + ", elevationGain_m=" + elevationGain_m + ", averageGrade=" + averageGrade + ", maxGrade=" + maxGrade + ", vam_mph=" + vam_mph + "}";
+    }
+}
@@ -0,0 +1,48 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the climbs table (see {@link Climb}).
+ * Climbs are added while recording; the climbs of a track are replaced as a whole when it is finished, imported, or its statistics are recomputed.
+ */
+public interface ClimbsColumns extends BaseColumns {
+
+    String TABLE_NAME = "climbs";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.climb";
+
+    // Columns
+    String TRACKID = "trackid";
+    String START_TRACKPOINT_ID = "starttrackpointid";
+    String END_TRACKPOINT_ID = "endtrackpointid";
+    String START_DISTANCE = "startdistance"; // distance from the track start (m)
+    String END_DISTANCE = "enddistance";
+    String START_DURATION = "startduration"; // total time from the track start (ms)
+    String END_DURATION = "endduration";
+    String ELEVATION_GAIN = "elevationgain"; // negative for descents (m)
+    String AVERAGE_GRADE = "averagegrade";
+    String MAX_GRADE = "maxgrade";
+    String VAM = "vam"; // elevation gain per moving time (m/h)
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + START_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + END_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + START_DISTANCE + " FLOAT NOT NULL, "
+            + END_DISTANCE + " FLOAT NOT NULL, "
+            + START_DURATION + " INTEGER NOT NULL, "
+            + END_DURATION + " INTEGER NOT NULL, "
+            + ELEVATION_GAIN + " FLOAT NOT NULL, "
+            + AVERAGE_GRADE + " FLOAT NOT NULL, "
+            + MAX_GRADE + " FLOAT, "
+            + VAM + " FLOAT, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ")";
+}
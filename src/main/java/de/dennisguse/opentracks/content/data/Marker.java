@@ -27,6 +27,7 @@ import androidx.annotation.VisibleForTesting;
 
 import java.util.Objects;
 
+import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 
 /**
@@ -50,7 +51,7 @@ public final class Marker {
 
     @VisibleForTesting
     public Marker(@NonNull Track.Id trackId, @NonNull TrackPoint trackPoint) {
-        this(trackId, trackPoint.getLocation());
+        this(trackId, LocationUtils.createLocation(trackPoint));
     }
 
     @Deprecated
@@ -74,4 +74,15 @@ public interface MarkerColumns extends BaseColumns {
             + ")";
 
     String CREATE_TABLE_INDEX = "CREATE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ")";
+
+    String CREATE_TRIGGER_MODIFICATION_INSERT = "CREATE TRIGGER " + TABLE_NAME + "_insert_modification_trigger AFTER INSERT ON " + TABLE_NAME
+            + " BEGIN UPDATE " + TracksColumns.TABLE_NAME + " SET " + TracksColumns.MODIFICATION_COUNT + " = " + TracksColumns.MODIFICATION_COUNT + " + 1 WHERE " + TracksColumns._ID + " = NEW." + TRACKID + "; END";
+
+    String CREATE_TRIGGER_MODIFICATION_UPDATE = "CREATE TRIGGER " + TABLE_NAME + "_update_modification_trigger AFTER UPDATE ON " + TABLE_NAME
+            + " BEGIN UPDATE " + TracksColumns.TABLE_NAME + " SET " + TracksColumns.MODIFICATION_COUNT + " = " + TracksColumns.MODIFICATION_COUNT + " + 1 WHERE " + TracksColumns._ID + " IN (OLD." + TRACKID + ", NEW." + TRACKID + "); END";
+
+    String CREATE_TRIGGER_MODIFICATION_DELETE = "CREATE TRIGGER " + TABLE_NAME + "_delete_modification_trigger AFTER DELETE ON " + TABLE_NAME
+            + " BEGIN UPDATE " + TracksColumns.TABLE_NAME + " SET " + TracksColumns.MODIFICATION_COUNT + " = " + TracksColumns.MODIFICATION_COUNT + " + 1 WHERE " + TracksColumns._ID + " = OLD." + TRACKID + "; END";
+
+    String CREATE_TABLE_INDEX_LOCATION = "CREATE INDEX " + TABLE_NAME + "_location_index ON " + TABLE_NAME + "(" + LATITUDE + ", " + LONGITUDE + ")";
 }
@@ -0,0 +1,37 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the personal records table: the best {@link BestEffort} per activity type (category), type, and target of all (not deleted) tracks.
+ * Maintained by the content provider; read-only.
+ * Queries return the columns of {@link BestEffortsColumns} (prefixed by the table name if ambiguous) and {@link #CATEGORY}.
+ */
+public interface PersonalRecordsColumns extends BaseColumns {
+
+    String TABLE_NAME = "personalrecord";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.personalrecord";
+
+    // Columns
+    String CATEGORY = "category"; // track activity type; empty if none
+    String TYPE = "type";
+    String TARGET = "target";
+    String BESTEFFORTID = "besteffortid";
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + CATEGORY + " TEXT NOT NULL, "
+            + TYPE + " TEXT NOT NULL, "
+            + TARGET + " FLOAT NOT NULL, "
+            + BESTEFFORTID + " INTEGER NOT NULL, "
+            + "FOREIGN KEY (" + BESTEFFORTID + ") REFERENCES " + BestEffortsColumns.TABLE_NAME + "(" + BestEffortsColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_key_index ON " + TABLE_NAME + "(" + CATEGORY + ", " + TYPE + ", " + TARGET + ")";
+
+    String CREATE_TABLE_INDEX_BESTEFFORT = "CREATE INDEX " + TABLE_NAME + "_" + BESTEFFORTID + "_index ON " + TABLE_NAME + "(" + BESTEFFORTID + ")";
+}
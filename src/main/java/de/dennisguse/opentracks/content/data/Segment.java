@@ -0,0 +1,73 @@
+package de.dennisguse.opentracks.content.data;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A maximal run of consecutive valid trackPoints of a track (i.e., recorded without pause).
+ * All trackPoints with ids from {@link #getFirstTrackPointId()} to {@link #getLastTrackPointId()} of the track have valid locations.
+ */
+public final class Segment {
+
+    private final Track.Id trackId;
+    private final int index;
+    private final long firstTrackPointId;
+    private final long lastTrackPointId;
+    private final long startTime_ms;
+    private final long stopTime_ms;
+
+    public Segment(@NonNull Track.Id trackId, int index, long firstTrackPointId, long lastTrackPointId, long startTime_ms, long stopTime_ms) {
+        this.trackId = trackId;
+        this.index = index;
+        this.firstTrackPointId = firstTrackPointId;
+        this.lastTrackPointId = lastTrackPointId;
+        this.startTime_ms = startTime_ms;
+        this.stopTime_ms = stopTime_ms;
+    }
+
+    @NonNull
+    public Track.Id getTrackId() {
+        return trackId;
+    }
+
+    /**
+     * @return the index within the track (starting at 0)
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public long getFirstTrackPointId() {
+        return firstTrackPointId;
+    }
+
+    public long getLastTrackPointId() {
+        return lastTrackPointId;
+    }
+
+    /**
+     * @return the time of the first trackPoint
+     */
+    public long getStartTime_ms() {
+        return startTime_ms;
+    }
+
+    /**
+     * @return the time of the last trackPoint or of the pause (if paused afterwards)
+     */
+    public long getStopTime_ms() {
+        return stopTime_ms;
+    }
+
+    /**
+     * @return true if the segment has only one trackPoint
+     */
+    public boolean isSingleTrackPoint() {
+        return firstTrackPointId == lastTrackPointId;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Segment{trackId=" + trackId.getId() + ", index=" + index + ", trackPoints=" + firstTrackPointId + "-" + lastTrackPointId + ", startTime_ms=" + startTime_ms + ", stopTime_ms=" + stopTime_ms + "}";
+    }
+}
@@ -0,0 +1,46 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the segments table (see {@link Segment}).
+ * A segment is a maximal run of consecutive valid trackPoints of a track (i.e., between pause/resume trackPoints).
+ * <p>
+ * The table is maintained by the CustomContentProvider on inserting into {@link TrackPointsColumns#TABLE_NAME} (recording and import); once per transaction rather than per trackPoint.
+ * Restored archived trackPoints keep their segments.
+ */
+public interface SegmentsColumns extends BaseColumns {
+
+    String TABLE_NAME = "segments";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.segment";
+
+    // Columns
+    String TRACKID = "trackid";
+    String SEGMENT_INDEX = "segmentindex"; // index of the segment within the track (starting at 0)
+    String FIRST_TRACKPOINT_ID = "firsttrackpointid"; // id of the first trackPoint of the segment
+    String LAST_TRACKPOINT_ID = "lasttrackpointid"; // id of the last trackPoint of the segment
+    String STARTTIME = "starttime"; // time of the first trackPoint
+    String STOPTIME = "stoptime"; // time of the last trackPoint or of the pause
+    String CLOSED = "closed"; // 1 if followed by a pause/resume trackPoint: the next valid trackPoint starts a new segment
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + SEGMENT_INDEX + " INTEGER NOT NULL, "
+            + FIRST_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + LAST_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + STARTTIME + " INTEGER, "
+            + STOPTIME + " INTEGER, "
+            + CLOSED + " INTEGER NOT NULL DEFAULT 0, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + SEGMENT_INDEX + ")";
+
+    // Latitude (E6) of valid trackPoints; pause/resume trackPoints are stored with larger latitudes.
+    int MAX_LATITUDE_E6 = 90000000;
+}
@@ -45,6 +45,8 @@ public class Track {
 
     private String icon = "";
 
+    private long modificationCount = 0;
+
     private TrackStatistics trackStatistics = new TrackStatistics();
 
     public Track() {
@@ -102,6 +104,17 @@ public class Track {
         this.icon = icon;
     }
 
+    /**
+     * Incremented by the database whenever the track, its trackPoints, or its markers are modified; together with the uuid it identifies the content of a track.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    public void setModificationCount(long modificationCount) {
+        this.modificationCount = modificationCount;
+    }
+
     public TrackStatistics getTrackStatistics() {
         return trackStatistics;
     }
@@ -15,51 +15,80 @@
  */
 package de.dennisguse.opentracks.content.data;
 
-import android.location.Location;
-import android.location.LocationManager;
-
 import androidx.annotation.NonNull;
 
+import de.dennisguse.opentracks.util.GeodesyUtils;
+
 /**
- * This class extends the standard Android location with extra information.
+ * A recorded location with extra information (sensor data).
+ * <p>
+ * Only primitive fields; optional values are marked by flags.
+ * Does not depend on {@link android.location.Location}; so it can be used on a plain JVM.
+ * {@link android.location.Location}s are converted by {@link de.dennisguse.opentracks.util.LocationUtils}.
  *
  * @author Sandor Dornbush
  */
 public class TrackPoint {
 
-    private final Location location;
-
-    private Float heartRate_bpm = null;
-    private Float cyclingCadence_rpm = null;
-    private Float power = null;
-    private Float elevationGain = null;
+    private static final int HAS_ALTITUDE = 1;
+    private static final int HAS_SPEED = 1 << 1;
+    private static final int HAS_BEARING = 1 << 2;
+    private static final int HAS_ACCURACY = 1 << 3;
+    private static final int HAS_HEART_RATE = 1 << 4;
+    private static final int HAS_CYCLING_CADENCE = 1 << 5;
+    private static final int HAS_POWER = 1 << 6;
+    private static final int HAS_ELEVATION_GAIN = 1 << 7;
+    private static final int HAS_CUMULATIVE_STATISTICS = 1 << 8;
+
+    private double latitude;
+    private double longitude;
+    private double altitude;
+    private long time;
+    private float speed;
+    private float bearing;
+    private float accuracy;
+
+    private float heartRate_bpm;
+    private float cyclingCadence_rpm;
+    private float power;
+    private float elevationGain;
+
+    private double cumulativeDistance_m;
+    private long cumulativeMovingTime_ms;
+
+    private int flags = 0;
 
     public TrackPoint() {
-        this.location = new Location("");
-    }
-
-    public TrackPoint(@NonNull Location location) {
-        this.location = location;
     }
 
     public TrackPoint(@NonNull TrackPoint trackPoint) {
-        this.location = trackPoint.getLocation();
+        this.latitude = trackPoint.latitude;
+        this.longitude = trackPoint.longitude;
+        this.altitude = trackPoint.altitude;
+        this.time = trackPoint.time;
+        this.speed = trackPoint.speed;
+        this.bearing = trackPoint.bearing;
+        this.accuracy = trackPoint.accuracy;
 
-        this.heartRate_bpm = trackPoint.getHeartRate_bpm();
-        this.cyclingCadence_rpm = trackPoint.getCyclingCadence_rpm();
-        this.power = trackPoint.getPower();
+        this.heartRate_bpm = trackPoint.heartRate_bpm;
+        this.cyclingCadence_rpm = trackPoint.cyclingCadence_rpm;
+        this.power = trackPoint.power;
 
-        this.elevationGain = trackPoint.getElevationGain();
+        this.elevationGain = trackPoint.elevationGain;
+
+        this.cumulativeDistance_m = trackPoint.cumulativeDistance_m;
+        this.cumulativeMovingTime_ms = trackPoint.cumulativeMovingTime_ms;
+
+        this.flags = trackPoint.flags;
     }
 
     public TrackPoint(double latitude, double longitude, Double altitude, long time) {
-        location = new Location(LocationManager.GPS_PROVIDER);
-        location.setLatitude(latitude);
-        location.setLongitude(longitude);
+        this.latitude = latitude;
+        this.longitude = longitude;
         if (altitude != null) {
-            location.setAltitude(altitude);
+            setAltitude(altitude);
         }
-        location.setTime(time);
+        this.time = time;
     }
 
     @Deprecated //See #316
@@ -69,11 +98,7 @@ public class TrackPoint {
 
     @Deprecated //See #316
     public static TrackPoint createPauseWithTime(long time) {
-        Location pause = new Location(LocationManager.GPS_PROVIDER);
-        pause.setLongitude(0);
-        pause.setLatitude(TrackPointsColumns.PAUSE_LATITUDE);
-        pause.setTime(time);
-        return new TrackPoint(pause);
+        return new TrackPoint(TrackPointsColumns.PAUSE_LATITUDE, 0, null, time);
     }
 
     @Deprecated //See #316
@@ -83,20 +108,19 @@ public class TrackPoint {
 
     @Deprecated //See #316
     public static TrackPoint createResumeWithTime(long time) {
-        Location resume = new Location(LocationManager.GPS_PROVIDER);
-        resume.setLongitude(0);
-        resume.setLatitude(TrackPointsColumns.RESUME_LATITUDE);
-        resume.setTime(time);
-        return new TrackPoint(resume);
+        return new TrackPoint(TrackPointsColumns.RESUME_LATITUDE, 0, null, time);
     }
 
-    public @NonNull
-    Location getLocation() {
-        return location;
+    /**
+     * Checks if the location is valid (i.e. physically possible) location on Earth.
+     * Note: The special separator locations (which have latitude = 100) will not qualify as valid.
+     */
+    public boolean hasValidLocation() {
+        return Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180;
     }
 
     public boolean hasElevationGain() {
-        return elevationGain != null;
+        return (flags & HAS_ELEVATION_GAIN) != 0;
     }
 
     public float getElevationGain() {
@@ -104,91 +128,119 @@ public class TrackPoint {
     }
 
     public void setElevationGain(Float elevationGain) {
-        this.elevationGain = elevationGain;
+        this.elevationGain = elevationGain != null ? elevationGain : 0f;
+        setFlag(HAS_ELEVATION_GAIN, elevationGain != null);
+    }
+
+    /**
+     * @return true if the total distance and moving time of the track up to this trackPoint are known (i.e., stored or computed while recording/importing).
+     */
+    public boolean hasCumulativeStatistics() {
+        return (flags & HAS_CUMULATIVE_STATISTICS) != 0;
+    }
+
+    public double getCumulativeDistance_m() {
+        return cumulativeDistance_m;
+    }
+
+    public long getCumulativeMovingTime_ms() {
+        return cumulativeMovingTime_ms;
+    }
+
+    public void setCumulativeStatistics(double cumulativeDistance_m, long cumulativeMovingTime_ms) {
+        this.cumulativeDistance_m = cumulativeDistance_m;
+        this.cumulativeMovingTime_ms = cumulativeMovingTime_ms;
+        flags |= HAS_CUMULATIVE_STATISTICS;
     }
 
     public double getLatitude() {
-        return location.getLatitude();
+        return latitude;
     }
 
     public void setLatitude(double latitude) {
-        location.setLatitude(latitude);
+        this.latitude = latitude;
     }
 
     public double getLongitude() {
-        return location.getLongitude();
+        return longitude;
     }
 
     public void setLongitude(double longitude) {
-        location.setLongitude(longitude);
+        this.longitude = longitude;
     }
 
     public long getTime() {
-        return location.getTime();
+        return time;
     }
 
     public void setTime(long time) {
-        location.setTime(time);
+        this.time = time;
     }
 
     public boolean hasAltitude() {
-        return location.hasAltitude();
+        return (flags & HAS_ALTITUDE) != 0;
     }
 
     public double getAltitude() {
-        return location.getAltitude();
+        return altitude;
     }
 
     public void setAltitude(double altitude) {
-        location.setAltitude(altitude);
+        this.altitude = altitude;
+        flags |= HAS_ALTITUDE;
     }
 
     public boolean hasSpeed() {
-        return location.hasSpeed();
+        return (flags & HAS_SPEED) != 0;
     }
 
     public float getSpeed() {
-        return location.getSpeed();
+        return speed;
     }
 
     public void setSpeed(float speed) {
-        location.setSpeed(speed);
+        this.speed = speed;
+        flags |= HAS_SPEED;
     }
 
     public boolean hasBearing() {
-        return location.hasBearing();
+        return (flags & HAS_BEARING) != 0;
     }
 
     public float getBearing() {
-        return location.getBearing();
+        return bearing;
     }
 
     public void setBearing(float bearing) {
-        location.setBearing(bearing);
+        this.bearing = bearing;
+        flags |= HAS_BEARING;
     }
 
     public boolean hasAccuracy() {
-        return location.hasAccuracy();
+        return (flags & HAS_ACCURACY) != 0;
     }
 
     public float getAccuracy() {
-        return location.getAccuracy();
+        return accuracy;
     }
 
     public void setAccuracy(float horizontalAccuracy) {
-        location.setAccuracy(horizontalAccuracy);
+        this.accuracy = horizontalAccuracy;
+        flags |= HAS_ACCURACY;
     }
 
+    /**
+     * @return the distance in meters (see {@link GeodesyUtils#distance(double, double, double, double)}).
+     */
     public float distanceTo(@NonNull TrackPoint dest) {
-        return location.distanceTo(dest.getLocation());
+        return (float) GeodesyUtils.distance(latitude, longitude, dest.latitude, dest.longitude);
     }
 
+    /**
+     * @return the initial bearing in degrees (see {@link GeodesyUtils#bearing(double, double, double, double)}).
+     */
     public float bearingTo(@NonNull TrackPoint dest) {
-        return location.bearingTo(dest.getLocation());
-    }
-
-    public float bearingTo(@NonNull Location dest) {
-        return location.bearingTo(dest);
+        return (float) GeodesyUtils.bearing(latitude, longitude, dest.latitude, dest.longitude);
     }
 
     // Sensor data
@@ -197,7 +249,7 @@ public class TrackPoint {
     }
 
     public boolean hasHeartRate() {
-        return heartRate_bpm != null && heartRate_bpm > 0;
+        return (flags & HAS_HEART_RATE) != 0 && heartRate_bpm > 0;
     }
 
     public float getHeartRate_bpm() {
@@ -205,31 +257,42 @@ public class TrackPoint {
     }
 
     public void setHeartRate_bpm(Float heartRate_bpm) {
-        this.heartRate_bpm = heartRate_bpm;
+        this.heartRate_bpm = heartRate_bpm != null ? heartRate_bpm : 0f;
+        setFlag(HAS_HEART_RATE, heartRate_bpm != null);
     }
 
     public boolean hasCyclingCadence() {
-        return cyclingCadence_rpm != null;
+        return (flags & HAS_CYCLING_CADENCE) != 0;
     }
 
-    public Float getCyclingCadence_rpm() {
+    public float getCyclingCadence_rpm() {
         return cyclingCadence_rpm;
     }
 
     public void setCyclingCadence_rpm(Float cyclingCadence_rpm) {
-        this.cyclingCadence_rpm = cyclingCadence_rpm;
+        this.cyclingCadence_rpm = cyclingCadence_rpm != null ? cyclingCadence_rpm : 0f;
+        setFlag(HAS_CYCLING_CADENCE, cyclingCadence_rpm != null);
     }
 
     public boolean hasPower() {
-        return power != null;
+        return (flags & HAS_POWER) != 0;
     }
 
-    public Float getPower() {
+    public float getPower() {
         return power;
     }
 
     public void setPower(Float power) {
-        this.power = power;
+        this.power = power != null ? power : 0f;
+        setFlag(HAS_POWER, power != null);
+    }
+
+    private void setFlag(int flag, boolean value) {
+        if (value) {
+            flags |= flag;
+        } else {
+            flags &= ~flag;
+        }
     }
 
     @NonNull
@@ -0,0 +1,36 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the archived track points table.
+ * Each row contains a chunk of consecutive trackPoints of one track encoded column-wise (see TrackPointsArchive).
+ */
+public interface TrackPointsArchiveColumns extends BaseColumns {
+
+    String TABLE_NAME = "trackpoints_archive";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.trackpoints_archive";
+
+    // Columns
+    String TRACKID = "trackid";
+    String FIRST_TRACKPOINT_ID = "firsttrackpointid"; // id of the first trackPoint in the chunk
+    String LAST_TRACKPOINT_ID = "lasttrackpointid"; // id of the last trackPoint in the chunk
+    String NUMPOINTS = "numpoints"; // number of trackPoints in the chunk
+    String DATA = "data"; // the encoded trackPoints
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + FIRST_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + LAST_TRACKPOINT_ID + " INTEGER NOT NULL, "
+            + NUMPOINTS + " INTEGER NOT NULL, "
+            + DATA + " BLOB NOT NULL, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + FIRST_TRACKPOINT_ID + ")";
+}
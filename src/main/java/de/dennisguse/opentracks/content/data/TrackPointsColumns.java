@@ -55,6 +55,10 @@ public interface TrackPointsColumns extends BaseColumns {
     String SENSOR_POWER = "sensor_power";
     String ELEVATION_GAIN = "elevation_gain";
 
+    // Statistics of the track up to (and including) the trackPoint; see TrackStatisticsUpdater.
+    String CUMULATIVE_DISTANCE = "distance";
+    String CUMULATIVE_MOVING_TIME = "movingtime";
+
     String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
             + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
             + TRACKID + " INTEGER NOT NULL, "
@@ -69,8 +73,14 @@ public interface TrackPointsColumns extends BaseColumns {
             + SENSOR_CADENCE + " FLOAT, "
             + SENSOR_POWER + " FLOAT, "
             + ELEVATION_GAIN + " FLOAT, "
+            + CUMULATIVE_DISTANCE + " FLOAT, "
+            + CUMULATIVE_MOVING_TIME + " INTEGER, "
             + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
             + ")";
 
     String CREATE_TABLE_INDEX = "CREATE INDEX " + TABLE_NAME + "_" + TRACKID + "_index ON " + TABLE_NAME + "(" + TRACKID + ")";
+
+    // Seek to a distance or moving time within a track.
+    String CREATE_TABLE_INDEX_CUMULATIVE_DISTANCE = "CREATE INDEX " + TABLE_NAME + "_" + CUMULATIVE_DISTANCE + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + CUMULATIVE_DISTANCE + ")";
+    String CREATE_TABLE_INDEX_CUMULATIVE_MOVING_TIME = "CREATE INDEX " + TABLE_NAME + "_" + CUMULATIVE_MOVING_TIME + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + CUMULATIVE_MOVING_TIME + ")";
 }
@@ -0,0 +1,246 @@
+package de.dennisguse.opentracks.content.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import de.dennisguse.opentracks.util.PolylineUtils;
+import de.dennisguse.opentracks.util.VarIntUtils;
+
+/**
+ * A compact preview of a {@link Track}: a simplified polyline and the bounding box of all its {@link TrackPoint}s.
+ * Allows to draw the shape of a track without loading its {@link TrackPoint}s.
+ * <p>
+ * Stored as blob: version, number of vertices, and then the vertices as zig-zag varint encoded deltas of latitude and longitude (E6).
+ */
+public class TrackPreview {
+
+    /**
+     * Maximal number of vertices of the simplified polyline.
+     */
+    public static final int MAX_VERTICES = 128;
+
+    private static final byte BLOB_VERSION = 1;
+
+    private final int[] latitudesE6;
+    private final int[] longitudesE6;
+
+    private final int minLatitudeE6;
+    private final int maxLatitudeE6;
+    private final int minLongitudeE6;
+    private final int maxLongitudeE6;
+
+    public TrackPreview(@NonNull int[] latitudesE6, @NonNull int[] longitudesE6, int minLatitudeE6, int maxLatitudeE6, int minLongitudeE6, int maxLongitudeE6) {
+        if (latitudesE6.length != longitudesE6.length) {
+            throw new IllegalArgumentException("Number of latitudes and longitudes must be equal.");
+        }
+        this.latitudesE6 = latitudesE6;
+        this.longitudesE6 = longitudesE6;
+        this.minLatitudeE6 = minLatitudeE6;
+        this.maxLatitudeE6 = maxLatitudeE6;
+        this.minLongitudeE6 = minLongitudeE6;
+        this.maxLongitudeE6 = maxLongitudeE6;
+    }
+
+    public int size() {
+        return latitudesE6.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getLatitudeE6(int index) {
+        return latitudesE6[index];
+    }
+
+    public int getLongitudeE6(int index) {
+        return longitudesE6[index];
+    }
+
+    public int getMinLatitudeE6() {
+        return minLatitudeE6;
+    }
+
+    public int getMaxLatitudeE6() {
+        return maxLatitudeE6;
+    }
+
+    public int getMinLongitudeE6() {
+        return minLongitudeE6;
+    }
+
+    public int getMaxLongitudeE6() {
+        return maxLongitudeE6;
+    }
+
+    /**
+     * Encodes the polyline (without bounding box).
+     */
+    public byte[] toBlob() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(2 + size() * 4);
+        outputStream.write(BLOB_VERSION);
+        VarIntUtils.writeVarInt(outputStream, size());
+
+        int lastLatitudeE6 = 0;
+        int lastLongitudeE6 = 0;
+        for (int i = 0; i < size(); i++) {
+            VarIntUtils.writeVarInt(outputStream, VarIntUtils.zigZagEncode(latitudesE6[i] - lastLatitudeE6));
+            VarIntUtils.writeVarInt(outputStream, VarIntUtils.zigZagEncode(longitudesE6[i] - lastLongitudeE6));
+            lastLatitudeE6 = latitudesE6[i];
+            lastLongitudeE6 = longitudesE6[i];
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes a polyline created by {@link #toBlob()}.
+     *
+     * @return the preview or null if the blob is null or cannot be decoded.
+     */
+    @Nullable
+    public static TrackPreview fromBlob(@Nullable byte[] blob, int minLatitudeE6, int maxLatitudeE6, int minLongitudeE6, int maxLongitudeE6) {
+        if (blob == null || blob.length < 2 || blob[0] != BLOB_VERSION) {
+            return null;
+        }
+
+        try {
+            int[] position = {1};
+            int size = VarIntUtils.readVarInt(blob, position);
+            int[] latitudesE6 = new int[size];
+            int[] longitudesE6 = new int[size];
+
+            int lastLatitudeE6 = 0;
+            int lastLongitudeE6 = 0;
+            for (int i = 0; i < size; i++) {
+                lastLatitudeE6 += VarIntUtils.zigZagDecode(VarIntUtils.readVarInt(blob, position));
+                lastLongitudeE6 += VarIntUtils.zigZagDecode(VarIntUtils.readVarInt(blob, position));
+                latitudesE6[i] = lastLatitudeE6;
+                longitudesE6[i] = lastLongitudeE6;
+            }
+            return new TrackPreview(latitudesE6, longitudesE6, minLatitudeE6, maxLatitudeE6, minLongitudeE6, maxLongitudeE6);
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TrackPreview that = (TrackPreview) o;
+        return minLatitudeE6 == that.minLatitudeE6
+                && maxLatitudeE6 == that.maxLatitudeE6
+                && minLongitudeE6 == that.minLongitudeE6
+                && maxLongitudeE6 == that.maxLongitudeE6
+                && Arrays.equals(latitudesE6, that.latitudesE6)
+                && Arrays.equals(longitudesE6, that.longitudesE6);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * Arrays.hashCode(latitudesE6) + Arrays.hashCode(longitudesE6);
+        result = 31 * result + minLatitudeE6;
+        result = 31 * result + maxLatitudeE6;
+        result = 31 * result + minLongitudeE6;
+        return 31 * result + maxLongitudeE6;
+    }
+
+    /**
+     * Creates a {@link TrackPreview} from a stream of {@link TrackPoint}s.
+     * Invalid locations (e.g., pause/resume) are ignored.
+     * <p>
+     * Memory and time per added {@link TrackPoint} are bounded: the vertices are buffered and once the buffer is full, the buffer is simplified to {@link #MAX_VERTICES}.
+     * The bounding box is computed from all added {@link TrackPoint}s.
+     */
+    public static class Builder {
+
+        @VisibleForTesting
+        static final int BUFFER_SIZE = 4 * MAX_VERTICES;
+
+        private final int[] latitudesE6 = new int[BUFFER_SIZE];
+        private final int[] longitudesE6 = new int[BUFFER_SIZE];
+        private int count = 0;
+
+        private int minLatitudeE6 = Integer.MAX_VALUE;
+        private int maxLatitudeE6 = Integer.MIN_VALUE;
+        private int minLongitudeE6 = Integer.MAX_VALUE;
+        private int maxLongitudeE6 = Integer.MIN_VALUE;
+
+        public Builder() {
+        }
+
+        /**
+         * Continues an existing preview (e.g., when resuming a track).
+         *
+         * @param trackPreview the preview to continue; may be null
+         */
+        public Builder(@Nullable TrackPreview trackPreview) {
+            if (trackPreview == null) {
+                return;
+            }
+            count = Math.min(trackPreview.size(), BUFFER_SIZE);
+            System.arraycopy(trackPreview.latitudesE6, 0, latitudesE6, 0, count);
+            System.arraycopy(trackPreview.longitudesE6, 0, longitudesE6, 0, count);
+            minLatitudeE6 = trackPreview.minLatitudeE6;
+            maxLatitudeE6 = trackPreview.maxLatitudeE6;
+            minLongitudeE6 = trackPreview.minLongitudeE6;
+            maxLongitudeE6 = trackPreview.maxLongitudeE6;
+        }
+
+        public Builder add(@NonNull TrackPoint trackPoint) {
+            if (!trackPoint.hasValidLocation()) {
+                return this;
+            }
+
+            if (count == BUFFER_SIZE) {
+                compact();
+            }
+
+            int latitudeE6 = (int) (trackPoint.getLatitude() * 1E6);
+            int longitudeE6 = (int) (trackPoint.getLongitude() * 1E6);
+            latitudesE6[count] = latitudeE6;
+            longitudesE6[count] = longitudeE6;
+            count++;
+
+            minLatitudeE6 = Math.min(minLatitudeE6, latitudeE6);
+            maxLatitudeE6 = Math.max(maxLatitudeE6, latitudeE6);
+            minLongitudeE6 = Math.min(minLongitudeE6, longitudeE6);
+            maxLongitudeE6 = Math.max(maxLongitudeE6, longitudeE6);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * @return the preview or null if no valid {@link TrackPoint} was added.
+         */
+        @Nullable
+        public TrackPreview build() {
+            if (isEmpty()) {
+                return null;
+            }
+
+            compact();
+            return new TrackPreview(Arrays.copyOf(latitudesE6, count), Arrays.copyOf(longitudesE6, count), minLatitudeE6, maxLatitudeE6, minLongitudeE6, maxLongitudeE6);
+        }
+
+        private void compact() {
+            boolean[] keep = PolylineUtils.simplify(latitudesE6, longitudesE6, count, MAX_VERTICES);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (keep[i]) {
+                    latitudesE6[kept] = latitudesE6[i];
+                    longitudesE6[kept] = longitudesE6[i];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+    }
+}
@@ -55,6 +55,28 @@ public interface TracksColumns extends BaseColumns {
     String MAXELEVATION = "maxelevation"; // maximum elevation
     String ELEVATIONGAIN = "elevationgain"; // elevation gain
     String ICON = "icon"; // track activity type icon
+    String PREVIEW = "preview"; // simplified polyline (see TrackPreview)
+    String MINLATITUDE = "minlatitude"; // minimum latitude (bounding box)
+    String MAXLATITUDE = "maxlatitude"; // maximum latitude (bounding box)
+    String MINLONGITUDE = "minlongitude"; // minimum longitude (bounding box)
+    String MAXLONGITUDE = "maxlongitude"; // maximum longitude (bounding box)
+    String DELETED = "deleted"; // 1 if the track was deleted and its data is not yet purged; such tracks are not returned by the content provider
+    String MODIFICATION_COUNT = "modificationcount"; // incremented if the track, its trackPoints, or its markers are modified (by triggers; for inserted trackPoints once per transaction by the CustomContentProvider)
+
+    // Sensor statistics (time-weighted); the time with data is needed to merge statistics
+    String AVGHEARTRATE = "avgheartrate"; // average heart rate (bpm)
+    String MAXHEARTRATE = "maxheartrate"; // maximum heart rate (bpm)
+    String HEARTRATETIME = "heartratetime"; // time with heart rate data
+    String AVGCADENCE = "avgcadence"; // average cadence (rpm)
+    String MAXCADENCE = "maxcadence"; // maximum cadence (rpm)
+    String CADENCETIME = "cadencetime"; // time with cadence data
+    String AVGPOWER = "avgpower"; // average power (W)
+    String MAXPOWER = "maxpower"; // maximum power (W)
+    String POWERTIME = "powertime"; // time with power data
+    String NORMALIZEDPOWER = "normalizedpower"; // normalized power (W)
+    String NORMALIZEDPOWERTIME = "normalizedpowertime"; // time the normalized power is based on
+    String HEARTRATEZONES = "heartratezones"; // time in heart rate zones (see ZoneHistogram)
+    String POWERZONES = "powerzones"; // time in power zones (see ZoneHistogram)
 
     String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
             + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -74,8 +96,35 @@ public interface TracksColumns extends BaseColumns {
             + MAXELEVATION + " FLOAT, "
             + ELEVATIONGAIN + " FLOAT, "
             + ICON + " TEXT, "
-            + UUID + " BLOB)";
+            + UUID + " BLOB, "
+            + PREVIEW + " BLOB, "
+            + MINLATITUDE + " INTEGER, "
+            + MAXLATITUDE + " INTEGER, "
+            + MINLONGITUDE + " INTEGER, "
+            + MAXLONGITUDE + " INTEGER, "
+            + DELETED + " INTEGER NOT NULL DEFAULT 0, "
+            + MODIFICATION_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+            + AVGHEARTRATE + " FLOAT, "
+            + MAXHEARTRATE + " FLOAT, "
+            + HEARTRATETIME + " INTEGER, "
+            + AVGCADENCE + " FLOAT, "
+            + MAXCADENCE + " FLOAT, "
+            + CADENCETIME + " INTEGER, "
+            + AVGPOWER + " FLOAT, "
+            + MAXPOWER + " FLOAT, "
+            + POWERTIME + " INTEGER, "
+            + NORMALIZEDPOWER + " FLOAT, "
+            + NORMALIZEDPOWERTIME + " INTEGER, "
+            + HEARTRATEZONES + " TEXT, "
+            + POWERZONES + " TEXT)";
 
     String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + UUID + "_index ON " + TABLE_NAME + "(" + UUID + ")";
 
+    String CREATE_TABLE_INDEX_BOUNDINGBOX = "CREATE INDEX " + TABLE_NAME + "_boundingbox_index ON " + TABLE_NAME + "(" + MINLATITUDE + ", " + MAXLATITUDE + ", " + MINLONGITUDE + ", " + MAXLONGITUDE + ")";
+
+    String CREATE_TRIGGER_MODIFICATION = "CREATE TRIGGER " + TABLE_NAME + "_modification_trigger AFTER UPDATE OF " + NAME + ", " + DESCRIPTION + ", " + CATEGORY + ", " + ICON + ", " + STARTTIME + ", " + STOPTIME + ", " + TOTALDISTANCE + " ON " + TABLE_NAME
+            + " WHEN OLD." + NAME + " IS NOT NEW." + NAME + " OR OLD." + DESCRIPTION + " IS NOT NEW." + DESCRIPTION + " OR OLD." + CATEGORY + " IS NOT NEW." + CATEGORY + " OR OLD." + ICON + " IS NOT NEW." + ICON
+            + " OR OLD." + STARTTIME + " IS NOT NEW." + STARTTIME + " OR OLD." + STOPTIME + " IS NOT NEW." + STOPTIME + " OR OLD." + TOTALDISTANCE + " IS NOT NEW." + TOTALDISTANCE
+            + " BEGIN UPDATE " + TABLE_NAME + " SET " + MODIFICATION_COUNT + " = " + MODIFICATION_COUNT + " + 1 WHERE " + _ID + " = NEW." + _ID + "; END";
+
 }
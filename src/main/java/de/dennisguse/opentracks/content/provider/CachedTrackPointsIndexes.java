@@ -20,6 +20,8 @@ class CachedTrackPointsIndexes {
     final int sensorCadenceIndex;
     final int sensorPowerIndex;
     final int elevationGainIndex;
+    final int cumulativeDistanceIndex;
+    final int cumulativeMovingTimeIndex;
 
     CachedTrackPointsIndexes(Cursor cursor) {
         idIndex = cursor.getColumnIndex(TrackPointsColumns._ID);
@@ -34,5 +36,7 @@ class CachedTrackPointsIndexes {
         sensorCadenceIndex = cursor.getColumnIndexOrThrow(TrackPointsColumns.SENSOR_CADENCE);
         sensorPowerIndex = cursor.getColumnIndexOrThrow(TrackPointsColumns.SENSOR_POWER);
         elevationGainIndex = cursor.getColumnIndexOrThrow(TrackPointsColumns.ELEVATION_GAIN);
+        cumulativeDistanceIndex = cursor.getColumnIndexOrThrow(TrackPointsColumns.CUMULATIVE_DISTANCE);
+        cumulativeMovingTimeIndex = cursor.getColumnIndexOrThrow(TrackPointsColumns.CUMULATIVE_MOVING_TIME);
     }
 }
@@ -22,6 +22,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.location.Location;
 import android.net.Uri;
+import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -34,19 +35,39 @@ import androidx.loader.content.Loader;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import de.dennisguse.opentracks.BuildConfig;
+import de.dennisguse.opentracks.content.data.BestEffort;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.Climb;
+import de.dennisguse.opentracks.content.data.ClimbsColumns;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.PersonalRecordsColumns;
+import de.dennisguse.opentracks.content.data.Segment;
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.content.data.TrackPreview;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.BestEffortsCalculator;
+import de.dennisguse.opentracks.stats.ClimbDetector;
+import de.dennisguse.opentracks.stats.SensorAggregate;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
 import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+import de.dennisguse.opentracks.stats.ZoneHistogram;
 import de.dennisguse.opentracks.util.FileUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 import de.dennisguse.opentracks.util.UUIDUtils;
 
 /**
@@ -57,7 +78,11 @@ import de.dennisguse.opentracks.util.UUIDUtils;
 public class ContentProviderUtils {
 
     private static final String TAG = ContentProviderUtils.class.getSimpleName();
-    private static final int MAX_LATITUDE = 90000000;
+
+    private static final double EARTH_RADIUS_M = 6371009;
+    // Initial search radius for nearest neighbor queries; enlarged until enough results are found.
+    private static final double NEAREST_INITIAL_RADIUS_M = 1000;
+    private static final double NEAREST_MAX_RADIUS_M = Math.PI * EARTH_RADIUS_M;
 
     // The authority (the first part of the URI) for the app's content provider.
     @VisibleForTesting
@@ -117,6 +142,7 @@ public class ContentProviderUtils {
         int maxElevationIndex = cursor.getColumnIndexOrThrow(TracksColumns.MAXELEVATION);
         int elevationGainIndex = cursor.getColumnIndexOrThrow(TracksColumns.ELEVATIONGAIN);
         int iconIndex = cursor.getColumnIndexOrThrow(TracksColumns.ICON);
+        int modificationCountIndex = cursor.getColumnIndex(TracksColumns.MODIFICATION_COUNT);
 
         Track track = new Track();
         TrackStatistics trackStatistics = track.getTrackStatistics();
@@ -165,14 +191,52 @@ public class ContentProviderUtils {
         if (!cursor.isNull(iconIndex)) {
             track.setIcon(cursor.getString(iconIndex));
         }
+        if (modificationCountIndex != -1) {
+            track.setModificationCount(cursor.getLong(modificationCountIndex));
+        }
+        setSensorStatistics(cursor, trackStatistics);
         return track;
     }
 
+    /**
+     * Sensor statistics are optional columns (i.e., may not be in the projection).
+     */
+    private static void setSensorStatistics(Cursor cursor, TrackStatistics trackStatistics) {
+        setSensorAggregate(cursor, TracksColumns.AVGHEARTRATE, TracksColumns.MAXHEARTRATE, TracksColumns.HEARTRATETIME, trackStatistics.getHeartRate());
+        setSensorAggregate(cursor, TracksColumns.AVGCADENCE, TracksColumns.MAXCADENCE, TracksColumns.CADENCETIME, trackStatistics.getCadence());
+        setSensorAggregate(cursor, TracksColumns.AVGPOWER, TracksColumns.MAXPOWER, TracksColumns.POWERTIME, trackStatistics.getPower());
+
+        int normalizedPowerIndex = cursor.getColumnIndex(TracksColumns.NORMALIZEDPOWER);
+        int normalizedPowerTimeIndex = cursor.getColumnIndex(TracksColumns.NORMALIZEDPOWERTIME);
+        if (normalizedPowerIndex != -1 && normalizedPowerTimeIndex != -1 && !cursor.isNull(normalizedPowerIndex) && !cursor.isNull(normalizedPowerTimeIndex)) {
+            trackStatistics.setNormalizedPower(cursor.getFloat(normalizedPowerIndex), cursor.getLong(normalizedPowerTimeIndex));
+        }
+
+        int heartRateZonesIndex = cursor.getColumnIndex(TracksColumns.HEARTRATEZONES);
+        if (heartRateZonesIndex != -1 && !cursor.isNull(heartRateZonesIndex)) {
+            trackStatistics.setHeartRateZones(ZoneHistogram.decode(cursor.getString(heartRateZonesIndex)));
+        }
+        int powerZonesIndex = cursor.getColumnIndex(TracksColumns.POWERZONES);
+        if (powerZonesIndex != -1 && !cursor.isNull(powerZonesIndex)) {
+            trackStatistics.setPowerZones(ZoneHistogram.decode(cursor.getString(powerZonesIndex)));
+        }
+    }
+
+    private static void setSensorAggregate(Cursor cursor, String averageColumn, String maxColumn, String timeColumn, SensorAggregate sensorAggregate) {
+        int averageIndex = cursor.getColumnIndex(averageColumn);
+        int maxIndex = cursor.getColumnIndex(maxColumn);
+        int timeIndex = cursor.getColumnIndex(timeColumn);
+        if (averageIndex == -1 || maxIndex == -1 || timeIndex == -1 || cursor.isNull(averageIndex) || cursor.isNull(maxIndex) || cursor.isNull(timeIndex)) {
+            return;
+        }
+        sensorAggregate.set(cursor.getFloat(averageIndex), cursor.getFloat(maxIndex), cursor.getLong(timeIndex));
+    }
+
     @VisibleForTesting
     public void deleteAllTracks(Context context) {
         contentResolver.delete(TrackPointsColumns.CONTENT_URI_BY_ID, null, null);
         contentResolver.delete(MarkerColumns.CONTENT_URI, null, null);
-        // Delete tracks last since it triggers a database vaccum call
+        // TrackPoints and markers are deleted right away; the tracks are only marked as deleted, their archived trackPoints and rows are purged in the background.
         contentResolver.delete(TracksColumns.CONTENT_URI, null, null);
 
         File dir = FileUtils.getPhotoDir(context);
@@ -185,7 +249,7 @@ public class ContentProviderUtils {
             FileUtils.deleteDirectoryRecurse(FileUtils.getPhotoDir(context, trackId));
         }
 
-        // Delete track last since it triggers a database vacuum call
+        // Only marks the tracks as deleted; their trackPoints are purged in the background
         String whereClause = String.format(TracksColumns._ID + " IN (%s)", TextUtils.join(",", Collections.nCopies(trackIds.size(), "?")));
         contentResolver.delete(TracksColumns.CONTENT_URI, whereClause, trackIds.stream().map(id->Long.toString(id.getId())).toArray(String[]::new));
     }
@@ -194,7 +258,7 @@ public class ContentProviderUtils {
         // Delete track folder resources.
         FileUtils.deleteDirectoryRecurse(FileUtils.getPhotoDir(context, trackId));
 
-        // Delete track last since it triggers a database vacuum call
+        // Only marks the tracks as deleted; their trackPoints are purged in the background
         contentResolver.delete(TracksColumns.CONTENT_URI, TracksColumns._ID + "=?", new String[]{Long.toString(trackId.getId())});
     }
 
@@ -202,6 +266,9 @@ public class ContentProviderUtils {
         String[] selectionArgs = new String[]{Long.toString(trackId.getId())};
 
         contentResolver.delete(TrackPointsColumns.CONTENT_URI_BY_ID, TrackPointsColumns.TRACKID + "=?", selectionArgs);
+        contentResolver.delete(TrackPointsArchiveColumns.CONTENT_URI, TrackPointsArchiveColumns.TRACKID + "=?", selectionArgs);
+        contentResolver.delete(SegmentsColumns.CONTENT_URI, SegmentsColumns.TRACKID + "=?", selectionArgs);
+        contentResolver.delete(ClimbsColumns.CONTENT_URI, ClimbsColumns.TRACKID + "=?", selectionArgs);
         contentResolver.delete(MarkerColumns.CONTENT_URI, MarkerColumns.TRACKID + "=?", selectionArgs);
     }
 
@@ -251,8 +318,8 @@ public class ContentProviderUtils {
      * @param trackUUID the track uuid.
      */
     public Track getTrack(@NonNull UUID trackUUID) {
-        String trackUUIDsearch = UUIDUtils.toHex(trackUUID);
-        try (Cursor cursor = getTrackCursor("hex(" + TracksColumns.UUID + ")=?", new String[]{trackUUIDsearch}, null)) {
+        // A blob literal (instead of comparing hex(uuid)) allows using the unique index on uuid.
+        try (Cursor cursor = getTrackCursor(TracksColumns.UUID + "=x'" + UUIDUtils.toHex(trackUUID) + "'", null, null)) {
             if (cursor != null && cursor.moveToNext()) {
                 return createTrack(cursor);
             }
@@ -272,6 +339,75 @@ public class ContentProviderUtils {
         return contentResolver.query(TracksColumns.CONTENT_URI, null, selection, selectionArgs, sortOrder);
     }
 
+    /**
+     * Gets the tracks whose bounding box intersects the given bounding box (E6).
+     * Tracks without bounding box (i.e., without valid trackPoints) are not returned.
+     */
+    public List<Track> getTracks(int minLatitudeE6, int maxLatitudeE6, int minLongitudeE6, int maxLongitudeE6) {
+        ArrayList<Track> tracks = new ArrayList<>();
+        try (Cursor cursor = getTrackCursor(minLatitudeE6, maxLatitudeE6, minLongitudeE6, maxLongitudeE6)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                tracks.ensureCapacity(cursor.getCount());
+                do {
+                    tracks.add(createTrack(cursor));
+                } while (cursor.moveToNext());
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Gets the k tracks closest to a location; the distance of a track is the distance from the location to its bounding box.
+     * The search area is enlarged until k tracks are found.
+     *
+     * @param location the location
+     * @param k        the maximal number of tracks
+     * @return the tracks ordered by distance
+     */
+    public List<Track> getNearestTracks(@NonNull Location location, int k) {
+        List<Track> tracks = new ArrayList<>();
+        Map<Track.Id, Double> distances = new HashMap<>();
+        for (double radius = NEAREST_INITIAL_RADIUS_M; ; radius *= 4) {
+            boolean lastRound = radius >= NEAREST_MAX_RADIUS_M;
+            int[] boundingBox = getBoundingBoxE6(location, radius);
+
+            tracks.clear();
+            try (Cursor cursor = getTrackCursor(boundingBox[0], boundingBox[1], boundingBox[2], boundingBox[3])) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    int minLatitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MINLATITUDE);
+                    int maxLatitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MAXLATITUDE);
+                    int minLongitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MINLONGITUDE);
+                    int maxLongitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MAXLONGITUDE);
+                    do {
+                        double latitude = clamp(location.getLatitude(), cursor.getInt(minLatitudeIndex) / 1E6, cursor.getInt(maxLatitudeIndex) / 1E6);
+                        double longitude = clamp(location.getLongitude(), cursor.getInt(minLongitudeIndex) / 1E6, cursor.getInt(maxLongitudeIndex) / 1E6);
+                        double distance = getDistance(location, latitude, longitude);
+
+                        // Only tracks within the radius are guaranteed to be closer than tracks outside of the bounding box.
+                        if (lastRound || distance <= radius) {
+                            Track track = createTrack(cursor);
+                            distances.put(track.getId(), distance);
+                            tracks.add(track);
+                        }
+                    } while (cursor.moveToNext());
+                }
+            }
+
+            if (lastRound || tracks.size() >= k) {
+                break;
+            }
+        }
+
+        Collections.sort(tracks, (t1, t2) -> Double.compare(distances.get(t1.getId()), distances.get(t2.getId())));
+        return tracks.size() > k ? new ArrayList<>(tracks.subList(0, k)) : tracks;
+    }
+
+    private Cursor getTrackCursor(int minLatitudeE6, int maxLatitudeE6, int minLongitudeE6, int maxLongitudeE6) {
+        String selection = TracksColumns.MINLATITUDE + "<=? AND " + TracksColumns.MAXLATITUDE + ">=? AND " + TracksColumns.MINLONGITUDE + "<=? AND " + TracksColumns.MAXLONGITUDE + ">=?";
+        String[] selectionArgs = new String[]{Integer.toString(maxLatitudeE6), Integer.toString(minLatitudeE6), Integer.toString(maxLongitudeE6), Integer.toString(minLongitudeE6)};
+        return getTrackCursor(selection, selectionArgs, TracksColumns._ID);
+    }
+
     /**
      * Inserts a track.
      * NOTE: This doesn't insert any trackPoints.
@@ -305,6 +441,16 @@ public class ContentProviderUtils {
         values.put(TracksColumns.NAME, track.getName());
         values.put(TracksColumns.DESCRIPTION, track.getDescription());
         values.put(TracksColumns.CATEGORY, track.getCategory());
+        values.put(TracksColumns.ICON, track.getIcon());
+        putTrackStatistics(values, trackStatistics);
+
+        return values;
+    }
+
+    /**
+     * Puts the statistics columns of a track.
+     */
+    static void putTrackStatistics(ContentValues values, TrackStatistics trackStatistics) {
         values.put(TracksColumns.STARTTIME, trackStatistics.getStartTime_ms());
         values.put(TracksColumns.STOPTIME, trackStatistics.getStopTime_ms());
         values.put(TracksColumns.TOTALDISTANCE, trackStatistics.getTotalDistance());
@@ -316,9 +462,110 @@ public class ContentProviderUtils {
         values.put(TracksColumns.MINELEVATION, trackStatistics.getMinElevation());
         values.put(TracksColumns.MAXELEVATION, trackStatistics.getMaxElevation());
         values.put(TracksColumns.ELEVATIONGAIN, trackStatistics.getTotalElevationGain());
-        values.put(TracksColumns.ICON, track.getIcon());
 
-        return values;
+        putSensorAggregate(values, TracksColumns.AVGHEARTRATE, TracksColumns.MAXHEARTRATE, TracksColumns.HEARTRATETIME, trackStatistics.getHeartRate());
+        putSensorAggregate(values, TracksColumns.AVGCADENCE, TracksColumns.MAXCADENCE, TracksColumns.CADENCETIME, trackStatistics.getCadence());
+        putSensorAggregate(values, TracksColumns.AVGPOWER, TracksColumns.MAXPOWER, TracksColumns.POWERTIME, trackStatistics.getPower());
+        if (trackStatistics.hasNormalizedPower()) {
+            values.put(TracksColumns.NORMALIZEDPOWER, trackStatistics.getNormalizedPower());
+            values.put(TracksColumns.NORMALIZEDPOWERTIME, trackStatistics.getNormalizedPowerDuration_ms());
+        } else {
+            values.putNull(TracksColumns.NORMALIZEDPOWER);
+            values.putNull(TracksColumns.NORMALIZEDPOWERTIME);
+        }
+        ZoneHistogram heartRateZones = trackStatistics.getHeartRateZones();
+        values.put(TracksColumns.HEARTRATEZONES, heartRateZones != null ? heartRateZones.encode() : null);
+        ZoneHistogram powerZones = trackStatistics.getPowerZones();
+        values.put(TracksColumns.POWERZONES, powerZones != null ? powerZones.encode() : null);
+    }
+
+    private static void putSensorAggregate(ContentValues values, String averageColumn, String maxColumn, String timeColumn, SensorAggregate sensorAggregate) {
+        values.put(averageColumn, sensorAggregate.getAverage());
+        values.put(maxColumn, sensorAggregate.getMax());
+        values.put(timeColumn, sensorAggregate.hasData() ? sensorAggregate.getDuration_ms() : null);
+    }
+
+    /**
+     * Creates a {@link TrackPreview} from a cursor.
+     *
+     * @param cursor the cursor pointing to the track
+     * @return the preview or null if the track has no preview (yet)
+     */
+    @Nullable
+    public static TrackPreview createTrackPreview(Cursor cursor) {
+        int previewIndex = cursor.getColumnIndexOrThrow(TracksColumns.PREVIEW);
+        int minLatitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MINLATITUDE);
+        int maxLatitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MAXLATITUDE);
+        int minLongitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MINLONGITUDE);
+        int maxLongitudeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MAXLONGITUDE);
+
+        if (cursor.isNull(previewIndex)) {
+            return null;
+        }
+        return TrackPreview.fromBlob(cursor.getBlob(previewIndex),
+                cursor.getInt(minLatitudeIndex), cursor.getInt(maxLatitudeIndex),
+                cursor.getInt(minLongitudeIndex), cursor.getInt(maxLongitudeIndex));
+    }
+
+    /**
+     * Gets the {@link TrackPreview} of a track.
+     * If the track does not have a preview yet (e.g., recorded before previews were introduced), it is computed from the trackPoints and stored.
+     *
+     * @param trackId the track id
+     * @return the preview or null if the track does not exist or has no valid trackPoints
+     */
+    @Nullable
+    public TrackPreview getTrackPreview(@NonNull Track.Id trackId) {
+        String[] projection = {TracksColumns.PREVIEW, TracksColumns.MINLATITUDE, TracksColumns.MAXLATITUDE, TracksColumns.MINLONGITUDE, TracksColumns.MAXLONGITUDE};
+        try (Cursor cursor = contentResolver.query(TracksColumns.CONTENT_URI, projection, TracksColumns._ID + "=?", new String[]{Long.toString(trackId.getId())}, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            TrackPreview trackPreview = createTrackPreview(cursor);
+            if (trackPreview != null) {
+                return trackPreview;
+            }
+        }
+
+        TrackPreview trackPreview = computeTrackPreview(trackId);
+        if (trackPreview != null) {
+            updateTrackPreview(trackId, trackPreview);
+        }
+        return trackPreview;
+    }
+
+    /**
+     * Computes the {@link TrackPreview} from all trackPoints of a track.
+     *
+     * @param trackId the track id
+     * @return the preview or null if the track has no valid trackPoints
+     */
+    @Nullable
+    public TrackPreview computeTrackPreview(@NonNull Track.Id trackId) {
+        TrackPreview.Builder builder = new TrackPreview.Builder();
+        try (TrackPointIterator trackPointIterator = getTrackPointLocationIterator(trackId, -1L, false)) {
+            while (trackPointIterator.hasNext()) {
+                builder.add(trackPointIterator.next());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stores the {@link TrackPreview} of a track.
+     * NOTE: not part of {@link #updateTrack(Track)} as the preview is computed independently.
+     *
+     * @param trackId      the track id
+     * @param trackPreview the preview
+     */
+    public void updateTrackPreview(@NonNull Track.Id trackId, @NonNull TrackPreview trackPreview) {
+        ContentValues values = new ContentValues();
+        values.put(TracksColumns.PREVIEW, trackPreview.toBlob());
+        values.put(TracksColumns.MINLATITUDE, trackPreview.getMinLatitudeE6());
+        values.put(TracksColumns.MAXLATITUDE, trackPreview.getMaxLatitudeE6());
+        values.put(TracksColumns.MINLONGITUDE, trackPreview.getMinLongitudeE6());
+        values.put(TracksColumns.MAXLONGITUDE, trackPreview.getMaxLongitudeE6());
+        contentResolver.update(TracksColumns.CONTENT_URI, values, TracksColumns._ID + "=?", new String[]{Long.toString(trackId.getId())});
     }
 
     public Marker createMarker(Cursor cursor) {
@@ -507,6 +754,101 @@ public class ContentProviderUtils {
         }
     }
 
+    /**
+     * Gets the markers within a bounding box (E6).
+     *
+     * @param maxCount the maximum number of markers to return. -1 for no limit
+     */
+    public List<Marker> getMarkers(int minLatitudeE6, int maxLatitudeE6, int minLongitudeE6, int maxLongitudeE6, int maxCount) {
+        String selection = MarkerColumns.LATITUDE + " BETWEEN ? AND ? AND " + MarkerColumns.LONGITUDE + " BETWEEN ? AND ?";
+        String[] selectionArgs = new String[]{Integer.toString(minLatitudeE6), Integer.toString(maxLatitudeE6), Integer.toString(minLongitudeE6), Integer.toString(maxLongitudeE6)};
+
+        ArrayList<Marker> markers = new ArrayList<>();
+        try (Cursor cursor = getMarkerCursor(null, selection, selectionArgs, null, maxCount)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                markers.ensureCapacity(cursor.getCount());
+                do {
+                    markers.add(createMarker(cursor));
+                } while (cursor.moveToNext());
+            }
+        }
+        return markers;
+    }
+
+    /**
+     * Gets the k markers closest to a location.
+     * The search area is enlarged until k markers are found.
+     *
+     * @param location the location
+     * @param k        the maximal number of markers
+     * @return the markers ordered by distance
+     */
+    public List<Marker> getNearestMarkers(@NonNull Location location, int k) {
+        List<Marker> markers = new ArrayList<>();
+        Map<Marker.Id, Double> distances = new HashMap<>();
+        for (double radius = NEAREST_INITIAL_RADIUS_M; ; radius *= 4) {
+            boolean lastRound = radius >= NEAREST_MAX_RADIUS_M;
+            int[] boundingBox = getBoundingBoxE6(location, radius);
+
+            markers.clear();
+            for (Marker marker : getMarkers(boundingBox[0], boundingBox[1], boundingBox[2], boundingBox[3], -1)) {
+                double distance = getDistance(location, marker.getLocation().getLatitude(), marker.getLocation().getLongitude());
+
+                // Only markers within the radius are guaranteed to be closer than markers outside of the bounding box.
+                if (lastRound || distance <= radius) {
+                    distances.put(marker.getId(), distance);
+                    markers.add(marker);
+                }
+            }
+
+            if (lastRound || markers.size() >= k) {
+                break;
+            }
+        }
+
+        Collections.sort(markers, (m1, m2) -> Double.compare(distances.get(m1.getId()), distances.get(m2.getId())));
+        return markers.size() > k ? new ArrayList<>(markers.subList(0, k)) : markers;
+    }
+
+    /**
+     * Computes a bounding box (E6) containing all locations within radius of location.
+     * Spans all longitudes if the bounding box would cross the antimeridian or contain a pole.
+     *
+     * @return minLatitudeE6, maxLatitudeE6, minLongitudeE6, maxLongitudeE6
+     */
+    @VisibleForTesting
+    static int[] getBoundingBoxE6(@NonNull Location location, double radius_m) {
+        double deltaLatitude = Math.toDegrees(radius_m / EARTH_RADIUS_M);
+        double minLatitude = location.getLatitude() - deltaLatitude;
+        double maxLatitude = location.getLatitude() + deltaLatitude;
+
+        double minLongitude = -180;
+        double maxLongitude = 180;
+        if (minLatitude > -90 && maxLatitude < 90) {
+            double deltaLongitude = Math.toDegrees(Math.asin(Math.min(1, Math.sin(radius_m / EARTH_RADIUS_M) / Math.cos(Math.toRadians(location.getLatitude())))));
+            if (location.getLongitude() - deltaLongitude >= -180 && location.getLongitude() + deltaLongitude <= 180) {
+                minLongitude = location.getLongitude() - deltaLongitude;
+                maxLongitude = location.getLongitude() + deltaLongitude;
+            }
+        }
+
+        return new int[]{
+                (int) Math.floor(Math.max(-90, minLatitude) * 1E6),
+                (int) Math.ceil(Math.min(90, maxLatitude) * 1E6),
+                (int) Math.floor(minLongitude * 1E6),
+                (int) Math.ceil(maxLongitude * 1E6)};
+    }
+
+    private static double getDistance(@NonNull Location location, double latitude, double longitude) {
+        float[] results = new float[1];
+        Location.distanceBetween(location.getLatitude(), location.getLongitude(), latitude, longitude, results);
+        return results[0];
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
     /**
      * @return the content provider URI of the inserted marker.
      */
@@ -636,6 +978,11 @@ public class ContentProviderUtils {
             trackPoint.setElevationGain(cursor.getFloat(indexes.elevationGainIndex));
         }
 
+        // Not yet computed for trackPoints recorded before database version 34 (see CustomContentProvider).
+        if (!cursor.isNull(indexes.cumulativeDistanceIndex) && !cursor.isNull(indexes.cumulativeMovingTimeIndex)) {
+            trackPoint.setCumulativeStatistics(cursor.getFloat(indexes.cumulativeDistanceIndex), cursor.getLong(indexes.cumulativeMovingTimeIndex));
+        }
+
         return trackPoint;
     }
 
@@ -655,6 +1002,29 @@ public class ContentProviderUtils {
         return contentResolver.bulkInsert(TrackPointsColumns.CONTENT_URI_BY_ID, values);
     }
 
+    /**
+     * Inserts the trackPoints of multiple tracks in one transaction.
+     *
+     * @param trackPoints the arrays of trackPoints
+     * @param trackIds    the track id of each array of trackPoints
+     * @return the number of trackPoints inserted
+     */
+    public int bulkInsertTrackPoint(@NonNull List<TrackPoint[]> trackPoints, @NonNull List<Track.Id> trackIds) {
+        int size = 0;
+        for (TrackPoint[] trackPointArray : trackPoints) {
+            size += trackPointArray.length;
+        }
+
+        ContentValues[] values = new ContentValues[size];
+        int index = 0;
+        for (int i = 0; i < trackPoints.size(); i++) {
+            for (TrackPoint trackPoint : trackPoints.get(i)) {
+                values[index++] = createContentValues(trackPoint, trackIds.get(i));
+            }
+        }
+        return contentResolver.bulkInsert(TrackPointsColumns.CONTENT_URI_BY_ID, values);
+    }
+
     /**
      * Gets the first location id for a track.
      * Returns null if it doesn't exist.
@@ -695,6 +1065,13 @@ public class ContentProviderUtils {
                 return cursor.getLong(cursor.getColumnIndexOrThrow(TrackPointsColumns._ID));
             }
         }
+
+        // The trackPoints might be archived.
+        try (Cursor cursor = getTrackPointsArchiveCursor(trackId, -1L, true)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(cursor.getColumnIndexOrThrow(TrackPointsArchiveColumns.LAST_TRACKPOINT_ID));
+            }
+        }
         return -1L;
     }
 
@@ -719,6 +1096,44 @@ public class ContentProviderUtils {
         return -1L;
     }
 
+    /**
+     * Gets the id of the first trackPoint at or after a distance from the start of the track (indexed lookup).
+     * Archived trackPoints are not considered (see {@link #restoreTrack(Track.Id)}).
+     *
+     * @param trackId    the track id
+     * @param distance_m the distance in meters
+     * @return trackPoint id or -1L if the track is shorter (or its cumulative statistics are not yet computed).
+     */
+    public long getTrackPointIdAtDistance(Track.Id trackId, double distance_m) {
+        return getFirstTrackPointIdAtLeast(trackId, TrackPointsColumns.CUMULATIVE_DISTANCE, Double.toString(distance_m));
+    }
+
+    /**
+     * Gets the id of the first trackPoint at or after a moving time since the start of the track (indexed lookup).
+     * Archived trackPoints are not considered (see {@link #restoreTrack(Track.Id)}).
+     *
+     * @param trackId       the track id
+     * @param movingTime_ms the moving time in milliseconds
+     * @return trackPoint id or -1L if the track is shorter (or its cumulative statistics are not yet computed).
+     */
+    public long getTrackPointIdAtMovingTime(Track.Id trackId, long movingTime_ms) {
+        return getFirstTrackPointIdAtLeast(trackId, TrackPointsColumns.CUMULATIVE_MOVING_TIME, Long.toString(movingTime_ms));
+    }
+
+    private long getFirstTrackPointIdAtLeast(Track.Id trackId, String column, String value) {
+        if (!trackId.isValid()) {
+            return -1L;
+        }
+        String selection = TrackPointsColumns.TRACKID + "=? AND " + column + ">=?";
+        String[] selectionArgs = new String[]{Long.toString(trackId.getId()), value};
+        try (Cursor cursor = getTrackPointCursor(new String[]{TrackPointsColumns._ID}, selection, selectionArgs, column + ", " + TrackPointsColumns._ID + " LIMIT 1")) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(cursor.getColumnIndexOrThrow(TrackPointsColumns._ID));
+            }
+        }
+        return -1L;
+    }
+
     /**
      * Creates a {@link TrackPoint} object from a cursor.
      *
@@ -773,9 +1188,16 @@ public class ContentProviderUtils {
         if (!trackId.isValid()) {
             return null;
         }
-        String selection = TrackPointsColumns._ID + "=(SELECT MAX(" + TrackPointsColumns._ID + ") FROM " + TrackPointsColumns.TABLE_NAME + " WHERE " + TrackPointsColumns.TRACKID + "=? AND " + TrackPointsColumns.LATITUDE + "<=" + MAX_LATITUDE + ")";
-        String[] selectionArgs = new String[]{Long.toString(trackId.getId())};
-        return findTrackPointBy(selection, selectionArgs);
+        List<Segment> segments = getSegments(trackId);
+        if (segments.isEmpty()) {
+            return null;
+        }
+
+        // The trackPoint might be archived.
+        long trackPointId = segments.get(segments.size() - 1).getLastTrackPointId();
+        try (TrackPointIterator trackPointIterator = new TrackPointIterator(this, trackId, trackPointId, trackPointId, false)) {
+            return trackPointIterator.hasNext() ? trackPointIterator.next() : null;
+        }
     }
 
     /**
@@ -829,6 +1251,11 @@ public class ContentProviderUtils {
             values.put(TrackPointsColumns.ELEVATION_GAIN, trackPoint.getElevationGain());
         }
 
+        if (trackPoint.hasCumulativeStatistics()) {
+            values.put(TrackPointsColumns.CUMULATIVE_DISTANCE, (float) trackPoint.getCumulativeDistance_m());
+            values.put(TrackPointsColumns.CUMULATIVE_MOVING_TIME, trackPoint.getCumulativeMovingTime_ms());
+        }
+
         return values;
     }
 
@@ -847,13 +1274,61 @@ public class ContentProviderUtils {
         return new TrackPointIterator(this, trackId, startTrackPointId, descending);
     }
 
-    private TrackPoint findTrackPointBy(String selection, String[] selectionArgs) {
-        try (Cursor cursor = getTrackPointCursor(null, selection, selectionArgs, TrackPointsColumns._ID)) {
-            if (cursor != null && cursor.moveToNext()) {
-                return createTrackPoint(cursor);
+    /**
+     * Creates a new read-only iterator over all trackPoints of a track (ascending) that exist at the time of creation.
+     * TrackPoints inserted afterwards (e.g., while recording) are ignored; to be used for long reads like exports.
+     * When done with iteration, {@link TrackPointIterator#close()} must be called.
+     *
+     * @param trackId the track id
+     */
+    public TrackPointIterator getTrackPointSnapshotIterator(final Track.Id trackId) {
+        // TrackPoint ids start at 1: 0 returns nothing if the track had no trackPoints.
+        return new TrackPointIterator(this, trackId, -1L, Math.max(0L, getLastTrackPointId(trackId)), false);
+    }
+
+    /**
+     * Creates a new read-only iterator over the trackPoints of a segment (ascending); all have valid locations.
+     * When done with iteration, {@link TrackPointIterator#close()} must be called.
+     *
+     * @param segment         the segment
+     * @param endTrackPointId the last trackPoint id to return, if the segment was extended since (e.g., while recording)
+     */
+    public TrackPointIterator getTrackPointLocationIterator(@NonNull Segment segment, long endTrackPointId) {
+        return getTrackPointLocationIterator(segment, segment.getFirstTrackPointId(), endTrackPointId);
+    }
+
+    /**
+     * Creates a new read-only iterator over the trackPoints of a segment (ascending) starting within the segment (e.g., the trackPoints not yet loaded).
+     * When done with iteration, {@link TrackPointIterator#close()} must be called.
+     *
+     * @param segment           the segment
+     * @param startTrackPointId the first trackPoint id to return
+     * @param endTrackPointId   the last trackPoint id to return, if the segment was extended since (e.g., while recording)
+     */
+    public TrackPointIterator getTrackPointLocationIterator(@NonNull Segment segment, long startTrackPointId, long endTrackPointId) {
+        return new TrackPointIterator(this, segment.getTrackId(), Math.max(segment.getFirstTrackPointId(), startTrackPointId), Math.min(segment.getLastTrackPointId(), endTrackPointId), false);
+    }
+
+    /**
+     * Gets the segments of a track (ordered by index), i.e., the runs of valid trackPoints between pauses.
+     *
+     * @param trackId the track id
+     */
+    public List<Segment> getSegments(@NonNull Track.Id trackId) {
+        List<Segment> segments = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(SegmentsColumns.CONTENT_URI, null, SegmentsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())}, SegmentsColumns.SEGMENT_INDEX)) {
+            if (cursor != null) {
+                int indexIndex = cursor.getColumnIndexOrThrow(SegmentsColumns.SEGMENT_INDEX);
+                int firstTrackPointIdIndex = cursor.getColumnIndexOrThrow(SegmentsColumns.FIRST_TRACKPOINT_ID);
+                int lastTrackPointIdIndex = cursor.getColumnIndexOrThrow(SegmentsColumns.LAST_TRACKPOINT_ID);
+                int startTimeIndex = cursor.getColumnIndexOrThrow(SegmentsColumns.STARTTIME);
+                int stopTimeIndex = cursor.getColumnIndexOrThrow(SegmentsColumns.STOPTIME);
+                while (cursor.moveToNext()) {
+                    segments.add(new Segment(trackId, cursor.getInt(indexIndex), cursor.getLong(firstTrackPointIdIndex), cursor.getLong(lastTrackPointIdIndex), cursor.getLong(startTimeIndex), cursor.getLong(stopTimeIndex)));
+                }
             }
         }
-        return null;
+        return segments;
     }
 
     /**
@@ -886,6 +1361,439 @@ public class ContentProviderUtils {
         return trackPoints;
     }
 
+    /**
+     * Moves the trackPoints of a (finished) track into the archive, which stores them column-wise and delta encoded.
+     * The trackPoints remain accessible via {@link TrackPointIterator}.
+     *
+     * @return the number of archived trackPoints
+     */
+    public int archiveTrack(@NonNull Track.Id trackId) {
+        return callContentProvider(CustomContentProvider.CALL_ARCHIVE_TRACK, trackId);
+    }
+
+    /**
+     * Archives the trackPoints of all tracks (except the one that is currently recorded) and reclaims the freed space.
+     * Stops early if the current thread is interrupted.
+     *
+     * @return the number of archived trackPoints
+     */
+    public int archiveTracks(Context context) {
+        List<Track.Id> trackIds = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(TracksColumns.CONTENT_URI, new String[]{TracksColumns._ID}, null, null, TracksColumns._ID)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    trackIds.add(new Track.Id(cursor.getLong(0)));
+                }
+            }
+        }
+
+        int count = 0;
+        for (Track.Id trackId : trackIds) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (!trackId.equals(PreferencesUtils.getRecordingTrackId(context))) {
+                count += archiveTrack(trackId);
+            }
+        }
+
+        if (count > 0) {
+            Log.i(TAG, "Archived " + count + " trackPoints.");
+            vacuum();
+        }
+        return count;
+    }
+
+    /**
+     * Moves archived trackPoints back; required before trackPoints are added to a track (e.g., resume) or accessed via the trackPoints table directly.
+     *
+     * @return the number of restored trackPoints
+     */
+    public int restoreTrack(@NonNull Track.Id trackId) {
+        return callContentProvider(CustomContentProvider.CALL_RESTORE_TRACK, trackId);
+    }
+
+    /**
+     * Schedules the purge of deleted tracks and reclaims unused space of the database (e.g., after archiving tracks) in the background.
+     * A database without incremental vacuum is only converted (full VACUUM) this way and only while charging and not recording.
+     */
+    public void vacuum() {
+        contentResolver.call(Uri.parse(CONTENT_BASE_URI), CustomContentProvider.CALL_VACUUM, null, null);
+    }
+
+    /**
+     * Gets the progress of purging deleted tracks and the size of the database.
+     */
+    public PurgeStatus getPurgeStatus() {
+        Bundle result = contentResolver.call(Uri.parse(CONTENT_BASE_URI), CustomContentProvider.CALL_PURGE_STATUS, null, null);
+        return result != null ? new PurgeStatus(result) : null;
+    }
+
+    public static class PurgeStatus {
+
+        private final long deletedTracks;
+        private final long pendingTrackPoints;
+        private final long pageSize;
+        private final long pageCount;
+        private final long freePageCount;
+
+        private PurgeStatus(Bundle bundle) {
+            deletedTracks = bundle.getLong(CustomContentProvider.CALL_RESULT_DELETED_TRACKS);
+            pendingTrackPoints = bundle.getLong(CustomContentProvider.CALL_RESULT_PENDING_TRACKPOINTS);
+            pageSize = bundle.getLong(CustomContentProvider.CALL_RESULT_PAGE_SIZE);
+            pageCount = bundle.getLong(CustomContentProvider.CALL_RESULT_PAGE_COUNT);
+            freePageCount = bundle.getLong(CustomContentProvider.CALL_RESULT_FREE_PAGE_COUNT);
+        }
+
+        /**
+         * Tracks that are marked as deleted, but not yet purged.
+         */
+        public long getDeletedTracks() {
+            return deletedTracks;
+        }
+
+        /**
+         * TrackPoints (incl. archived trackPoints) of deleted tracks that are not yet purged.
+         */
+        public long getPendingTrackPoints() {
+            return pendingTrackPoints;
+        }
+
+        public long getPageSize() {
+            return pageSize;
+        }
+
+        public long getPageCount() {
+            return pageCount;
+        }
+
+        /**
+         * Pages that are not used anymore, but not yet reclaimed.
+         */
+        public long getFreePageCount() {
+            return freePageCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "PurgeStatus{deletedTracks=" + deletedTracks + ", pendingTrackPoints=" + pendingTrackPoints + ", pageSize=" + pageSize + ", pageCount=" + pageCount + ", freePageCount=" + freePageCount + "}";
+        }
+    }
+
+    /**
+     * Recomputes the statistics of all tracks from their trackPoints in the background (e.g., after changing the smoothing or zones).
+     */
+    public void recomputeStatistics() {
+        contentResolver.call(Uri.parse(CONTENT_BASE_URI), CustomContentProvider.CALL_RECOMPUTE_STATISTICS, null, null);
+    }
+
+    /**
+     * Gets the progress of recomputing the statistics of all tracks.
+     */
+    public RecomputeStatus getRecomputeStatus() {
+        Bundle result = contentResolver.call(Uri.parse(CONTENT_BASE_URI), CustomContentProvider.CALL_RECOMPUTE_STATISTICS_STATUS, null, null);
+        return result != null ? new RecomputeStatus(result) : null;
+    }
+
+    public static class RecomputeStatus {
+
+        private final int recomputedTracks;
+        private final int totalTracks;
+
+        private RecomputeStatus(Bundle bundle) {
+            recomputedTracks = bundle.getInt(CustomContentProvider.CALL_RESULT_RECOMPUTED_TRACKS);
+            totalTracks = bundle.getInt(CustomContentProvider.CALL_RESULT_TOTAL_TRACKS);
+        }
+
+        public int getRecomputedTracks() {
+            return recomputedTracks;
+        }
+
+        /**
+         * Tracks to be recomputed by the current (or last) run; 0 if not run since the app was started.
+         */
+        public int getTotalTracks() {
+            return totalTracks;
+        }
+
+        public boolean isDone() {
+            return recomputedTracks >= totalTracks;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "RecomputeStatus{recomputedTracks=" + recomputedTracks + ", totalTracks=" + totalTracks + "}";
+        }
+    }
+
+    private int callContentProvider(String method, Track.Id trackId) {
+        Bundle result = contentResolver.call(Uri.parse(CONTENT_BASE_URI), method, Long.toString(trackId.getId()), null);
+        return result != null ? result.getInt(CustomContentProvider.CALL_RESULT_COUNT) : 0;
+    }
+
+    /**
+     * Computes the best efforts of a track from its trackPoints and replaces the stored ones; the personal records are updated accordingly.
+     * All trackPoints of the track must have been inserted (e.g., the trackPoints queued by an import).
+     *
+     * @return the best efforts
+     */
+    public List<BestEffort> updateBestEfforts(@NonNull Track.Id trackId) {
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator();
+        try (TrackPointIterator trackPointIterator = getTrackPointLocationIterator(trackId, -1L, false)) {
+            while (trackPointIterator.hasNext()) {
+                bestEffortsCalculator.add(trackPointIterator.next());
+            }
+        }
+        List<BestEffort> bestEfforts = bestEffortsCalculator.compute(trackId);
+
+        contentResolver.delete(BestEffortsColumns.CONTENT_URI, BestEffortsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())});
+        ContentValues[] values = new ContentValues[bestEfforts.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = createContentValues(bestEfforts.get(i));
+        }
+        contentResolver.bulkInsert(BestEffortsColumns.CONTENT_URI, values);
+        return bestEfforts;
+    }
+
+    /**
+     * Computes the best efforts of all tracks that have none (e.g., recorded before best efforts were introduced).
+     * Tracks are checked only once (see {@link PreferencesUtils#getBestEffortsCheckedTrackId(Context)}); so tracks too short for any target are not checked again.
+     *
+     * @param excludeTrackId a track to skip (i.e., the one currently recorded; it is checked next time) or null
+     * @return the number of tracks
+     */
+    public int updateMissingBestEfforts(Context context, @Nullable Track.Id excludeTrackId) {
+        long checkedTrackId = PreferencesUtils.getBestEffortsCheckedTrackId(context);
+        String[] selectionArgs = {Long.toString(checkedTrackId)};
+        List<Track.Id> trackIds = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(TracksColumns.CONTENT_URI, new String[]{TracksColumns._ID}, TracksColumns._ID + ">?", selectionArgs, TracksColumns._ID)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    trackIds.add(new Track.Id(cursor.getLong(0)));
+                }
+            }
+        }
+        Set<Track.Id> withBestEfforts = new HashSet<>();
+        try (Cursor cursor = contentResolver.query(BestEffortsColumns.CONTENT_URI, new String[]{BestEffortsColumns.TRACKID}, BestEffortsColumns.TRACKID + ">?", selectionArgs, null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    withBestEfforts.add(new Track.Id(cursor.getLong(0)));
+                }
+            }
+        }
+
+        int count = 0;
+        boolean skipped = false;
+        for (Track.Id trackId : trackIds) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (trackId.equals(excludeTrackId)) {
+                skipped = true;
+                continue;
+            }
+            if (!withBestEfforts.contains(trackId)) {
+                updateBestEfforts(trackId);
+                count++;
+            }
+            if (!skipped) {
+                checkedTrackId = trackId.getId();
+            }
+        }
+        PreferencesUtils.setBestEffortsCheckedTrackId(context, checkedTrackId);
+        return count;
+    }
+
+    public List<BestEffort> getBestEfforts(@NonNull Track.Id trackId) {
+        List<BestEffort> bestEfforts = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(BestEffortsColumns.CONTENT_URI, null, BestEffortsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())}, BestEffortsColumns._ID)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    bestEfforts.add(createBestEffort(cursor));
+                }
+            }
+        }
+        return bestEfforts;
+    }
+
+    /**
+     * Gets the personal records (i.e., the best efforts of all tracks) of an activity type.
+     *
+     * @param category the track category; null for tracks without
+     */
+    public List<BestEffort> getPersonalRecords(@Nullable String category) {
+        String[] projection = {
+                BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns.TRACKID + " AS " + BestEffortsColumns.TRACKID,
+                BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns.TYPE + " AS " + BestEffortsColumns.TYPE,
+                BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns.TARGET + " AS " + BestEffortsColumns.TARGET,
+                BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns.VALUE + " AS " + BestEffortsColumns.VALUE,
+                BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns.STARTTIME + " AS " + BestEffortsColumns.STARTTIME};
+        String selection = PersonalRecordsColumns.TABLE_NAME + "." + PersonalRecordsColumns.CATEGORY + "=?";
+        String sortOrder = BestEffortsColumns.TYPE + ", " + BestEffortsColumns.TARGET;
+
+        List<BestEffort> personalRecords = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(PersonalRecordsColumns.CONTENT_URI, projection, selection, new String[]{category == null ? "" : category}, sortOrder)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    personalRecords.add(createBestEffort(cursor));
+                }
+            }
+        }
+        return personalRecords;
+    }
+
+    private static BestEffort createBestEffort(Cursor cursor) {
+        return new BestEffort(
+                new Track.Id(cursor.getLong(cursor.getColumnIndexOrThrow(BestEffortsColumns.TRACKID))),
+                BestEffort.Type.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(BestEffortsColumns.TYPE))),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(BestEffortsColumns.TARGET)),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(BestEffortsColumns.VALUE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(BestEffortsColumns.STARTTIME)));
+    }
+
+    private static ContentValues createContentValues(@NonNull BestEffort bestEffort) {
+        ContentValues values = new ContentValues();
+        values.put(BestEffortsColumns.TRACKID, bestEffort.getTrackId().getId());
+        values.put(BestEffortsColumns.TYPE, bestEffort.getType().name());
+        values.put(BestEffortsColumns.TARGET, bestEffort.getTarget());
+        values.put(BestEffortsColumns.VALUE, bestEffort.getValue());
+        values.put(BestEffortsColumns.STARTTIME, bestEffort.getStartTime_ms());
+        return values;
+    }
+
+    /**
+     * Detects the climbs of a track from its trackPoints and replaces the stored ones.
+     * All trackPoints of the track must have been inserted (e.g., the trackPoints queued by an import).
+     *
+     * @param minRecordingDistance the min recording distance (as used for the track's statistics)
+     * @param elevationSmoothing   the filter for the elevation readings (as used for the track's statistics)
+     * @return the climbs
+     */
+    public List<Climb> updateClimbs(@NonNull Track.Id trackId, int minRecordingDistance, @NonNull SmoothingFilter.Type elevationSmoothing) {
+        Track track = getTrack(trackId);
+        if (track == null) {
+            return new ArrayList<>();
+        }
+        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics().getStartTime_ms(), elevationSmoothing, SmoothingFilter.Type.MOVING_AVERAGE);
+        ClimbDetector climbDetector = new ClimbDetector(trackId);
+        List<Climb> climbs;
+        try (TrackPointIterator trackPointIterator = getTrackPointLocationIterator(trackId, -1L, false)) {
+            climbs = climbDetector.addAll(trackPointIterator, trackStatisticsUpdater, minRecordingDistance);
+        }
+        Climb climb = climbDetector.finish();
+        if (climb != null) {
+            climbs.add(climb);
+        }
+
+        contentResolver.delete(ClimbsColumns.CONTENT_URI, ClimbsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())});
+        ContentValues[] values = new ContentValues[climbs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = createContentValues(climbs.get(i));
+        }
+        contentResolver.bulkInsert(ClimbsColumns.CONTENT_URI, values);
+        return climbs;
+    }
+
+    /**
+     * Inserts a climb (e.g., detected while recording).
+     */
+    public Uri insertClimb(@NonNull Climb climb) {
+        return contentResolver.insert(ClimbsColumns.CONTENT_URI, createContentValues(climb));
+    }
+
+    /**
+     * Gets the climbs (and descents) of a track ordered by distance.
+     */
+    public List<Climb> getClimbs(@NonNull Track.Id trackId) {
+        List<Climb> climbs = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(ClimbsColumns.CONTENT_URI, null, ClimbsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())}, ClimbsColumns.START_DISTANCE)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    climbs.add(createClimb(cursor));
+                }
+            }
+        }
+        return climbs;
+    }
+
+    private static Climb createClimb(Cursor cursor) {
+        int maxGradeIndex = cursor.getColumnIndexOrThrow(ClimbsColumns.MAX_GRADE);
+        int vamIndex = cursor.getColumnIndexOrThrow(ClimbsColumns.VAM);
+        return new Climb(
+                new Track.Id(cursor.getLong(cursor.getColumnIndexOrThrow(ClimbsColumns.TRACKID))),
+                cursor.getLong(cursor.getColumnIndexOrThrow(ClimbsColumns.START_TRACKPOINT_ID)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(ClimbsColumns.END_TRACKPOINT_ID)),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(ClimbsColumns.START_DISTANCE)),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(ClimbsColumns.END_DISTANCE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(ClimbsColumns.START_DURATION)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(ClimbsColumns.END_DURATION)),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(ClimbsColumns.ELEVATION_GAIN)),
+                cursor.getDouble(cursor.getColumnIndexOrThrow(ClimbsColumns.AVERAGE_GRADE)),
+                cursor.isNull(maxGradeIndex) ? Double.NaN : cursor.getDouble(maxGradeIndex),
+                cursor.isNull(vamIndex) ? Double.NaN : cursor.getDouble(vamIndex));
+    }
+
+    static ContentValues createContentValues(@NonNull Climb climb) {
+        ContentValues values = new ContentValues();
+        values.put(ClimbsColumns.TRACKID, climb.getTrackId().getId());
+        values.put(ClimbsColumns.START_TRACKPOINT_ID, climb.getStartTrackPointId());
+        values.put(ClimbsColumns.END_TRACKPOINT_ID, climb.getEndTrackPointId());
+        values.put(ClimbsColumns.START_DISTANCE, climb.getStartDistance_m());
+        values.put(ClimbsColumns.END_DISTANCE, climb.getEndDistance_m());
+        values.put(ClimbsColumns.START_DURATION, climb.getStartDuration_ms());
+        values.put(ClimbsColumns.END_DURATION, climb.getEndDuration_ms());
+        values.put(ClimbsColumns.ELEVATION_GAIN, climb.getElevationGain_m());
+        values.put(ClimbsColumns.AVERAGE_GRADE, climb.getAverageGrade());
+        if (!Double.isNaN(climb.getMaxGrade())) {
+            values.put(ClimbsColumns.MAX_GRADE, climb.getMaxGrade());
+        }
+        if (!Double.isNaN(climb.getVAM_mph())) {
+            values.put(ClimbsColumns.VAM, climb.getVAM_mph());
+        }
+        return values;
+    }
+
+    /**
+     * Gets the archived chunks of a track (without data).
+     * The caller owns the returned cursor and is responsible for closing it.
+     *
+     * @param trackId           the track id
+     * @param startTrackPointId only chunks containing trackPoints from this id on (in iteration order). -1L to ignore
+     * @param descending        true to sort the result in descending order
+     */
+    Cursor getTrackPointsArchiveCursor(Track.Id trackId, long startTrackPointId, boolean descending) {
+        String[] projection = {TrackPointsArchiveColumns._ID, TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID, TrackPointsArchiveColumns.LAST_TRACKPOINT_ID};
+        String selection = TrackPointsArchiveColumns.TRACKID + "=?";
+        String[] selectionArgs;
+        if (startTrackPointId >= 0) {
+            selection += " AND " + (descending ? TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID + "<=?" : TrackPointsArchiveColumns.LAST_TRACKPOINT_ID + ">=?");
+            selectionArgs = new String[]{Long.toString(trackId.getId()), Long.toString(startTrackPointId)};
+        } else {
+            selectionArgs = new String[]{Long.toString(trackId.getId())};
+        }
+        String sortOrder = TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID + (descending ? " DESC" : " ASC");
+        return contentResolver.query(TrackPointsArchiveColumns.CONTENT_URI, projection, selection, selectionArgs, sortOrder);
+    }
+
+    /**
+     * Gets the trackPoints of an archived chunk.
+     * The caller owns the returned cursor and is responsible for closing it.
+     *
+     * @param archiveId the {@link TrackPointsArchiveColumns#_ID}
+     * @return the trackPoints (ascending) or null if the chunk does not exist
+     */
+    Cursor getArchivedTrackPointCursor(long archiveId) {
+        String[] projection = {TrackPointsArchiveColumns.TRACKID, TrackPointsArchiveColumns.DATA};
+        try (Cursor cursor = contentResolver.query(TrackPointsArchiveColumns.CONTENT_URI, projection, TrackPointsArchiveColumns._ID + "=?", new String[]{Long.toString(archiveId)}, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            return TrackPointsArchive.decode(cursor.getLong(0), cursor.getBlob(1));
+        }
+    }
+
     int getDefaultCursorBatchSize() {
         return defaultCursorBatchSize;
     }
@@ -0,0 +1,177 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+
+/**
+ * Computes the cumulative statistics ({@link TrackPointsColumns#CUMULATIVE_DISTANCE} and {@link TrackPointsColumns#CUMULATIVE_MOVING_TIME}) of trackPoints that were stored without (i.e., before database version 34).
+ * The trackPoints of a track are replayed through a {@link TrackStatisticsUpdater} like while recording; archived chunks are re-encoded.
+ * <p>
+ * Chunked transactions, so concurrent writers are not blocked for long; an interrupted run is continued by the next one.
+ */
+class CumulativeStatisticsBackfill {
+
+    private static final String TAG = CumulativeStatisticsBackfill.class.getSimpleName();
+
+    /**
+     * Number of trackPoints updated per transaction.
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    private final SQLiteDatabase db;
+    private final int minRecordingDistance;
+    private final SmoothingFilter.Type elevationSmoothing;
+    private final SmoothingFilter.Type speedSmoothing;
+
+    CumulativeStatisticsBackfill(@NonNull SQLiteDatabase db, int minRecordingDistance, @NonNull SmoothingFilter.Type elevationSmoothing, @NonNull SmoothingFilter.Type speedSmoothing) {
+        this.db = db;
+        this.minRecordingDistance = minRecordingDistance;
+        this.elevationSmoothing = elevationSmoothing;
+        this.speedSmoothing = speedSmoothing;
+    }
+
+    /**
+     * @return the number of tracks that were updated
+     */
+    int run() {
+        int count = 0;
+        for (long trackId : getTrackIds()) {
+            if (isMissing(trackId)) {
+                Log.i(TAG, "Computing cumulative statistics of track " + trackId);
+                compute(trackId);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<Long> getTrackIds() {
+        List<Long> trackIds = new ArrayList<>();
+        try (Cursor cursor = db.query(TracksColumns.TABLE_NAME, new String[]{TracksColumns._ID}, TracksColumns.DELETED + "=0", null, null, null, TracksColumns._ID)) {
+            while (cursor.moveToNext()) {
+                trackIds.add(cursor.getLong(0));
+            }
+        }
+        return trackIds;
+    }
+
+    /**
+     * Cheap check: uses the index on (trackid, distance) and only reads the last archived chunk (chunks are re-encoded in order).
+     */
+    private boolean isMissing(long trackId) {
+        String[] selectionArgs = {Long.toString(trackId)};
+        if (DatabaseUtils.longForQuery(db, "SELECT EXISTS(SELECT 1 FROM " + TrackPointsColumns.TABLE_NAME + " WHERE " + TrackPointsColumns.TRACKID + "=? AND " + TrackPointsColumns.CUMULATIVE_DISTANCE + " IS NULL)", selectionArgs) != 0) {
+            return true;
+        }
+
+        try (Cursor cursor = db.query(TrackPointsArchiveColumns.TABLE_NAME, new String[]{TrackPointsArchiveColumns.DATA}, TrackPointsArchiveColumns.TRACKID + "=?", selectionArgs, null, null, TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID + " DESC", "1")) {
+            return cursor.moveToFirst() && !TrackPointsArchive.isCurrentVersion(cursor.getBlob(0));
+        }
+    }
+
+    /**
+     * Archived trackPoints precede the trackPoints in the table (i.e., a resumed archived track).
+     */
+    private void compute(long trackId) {
+        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(0, elevationSmoothing, speedSmoothing);
+        computeArchive(trackId, trackStatisticsUpdater);
+        computeTrackPoints(trackId, trackStatisticsUpdater);
+    }
+
+    private void computeArchive(long trackId, TrackStatisticsUpdater trackStatisticsUpdater) {
+        String[] columns = {TrackPointsArchiveColumns._ID, TrackPointsArchiveColumns.DATA};
+        try (Cursor chunks = db.query(TrackPointsArchiveColumns.TABLE_NAME, columns, TrackPointsArchiveColumns.TRACKID + "=?", new String[]{Long.toString(trackId)}, null, null, TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID)) {
+            while (chunks.moveToNext()) {
+                byte[] data = chunks.getBlob(1);
+                boolean currentVersion = TrackPointsArchive.isCurrentVersion(data);
+
+                try (MatrixCursor trackPoints = TrackPointsArchive.decode(trackId, data);
+                     MatrixCursor updated = new MatrixCursor(TrackPointsArchive.COLUMNS, trackPoints.getCount())) {
+                    CachedTrackPointsIndexes indexes = new CachedTrackPointsIndexes(trackPoints);
+                    while (trackPoints.moveToNext()) {
+                        TrackPoint trackPoint = ContentProviderUtils.fillTrackPoint(trackPoints, indexes);
+                        trackStatisticsUpdater.addTrackPoint(trackPoint, minRecordingDistance);
+                        if (currentVersion) {
+                            continue;
+                        }
+                        trackStatisticsUpdater.setCumulativeStatistics(trackPoint);
+
+                        Object[] row = new Object[TrackPointsArchive.COLUMNS.length];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = getValue(trackPoints, i);
+                        }
+                        row[indexes.cumulativeDistanceIndex] = (float) trackPoint.getCumulativeDistance_m();
+                        row[indexes.cumulativeMovingTimeIndex] = trackPoint.getCumulativeMovingTime_ms();
+                        updated.addRow(row);
+                    }
+
+                    if (!currentVersion && updated.moveToFirst()) {
+                        ContentValues values = new ContentValues();
+                        values.put(TrackPointsArchiveColumns.DATA, TrackPointsArchive.encode(trackId, updated, updated.getCount()).getAsByteArray(TrackPointsArchiveColumns.DATA));
+                        db.update(TrackPointsArchiveColumns.TABLE_NAME, values, TrackPointsArchiveColumns._ID + "=?", new String[]{Long.toString(chunks.getLong(0))});
+                    }
+                }
+            }
+        }
+    }
+
+    private void computeTrackPoints(long trackId, TrackStatisticsUpdater trackStatisticsUpdater) {
+        String update = "UPDATE " + TrackPointsColumns.TABLE_NAME + " SET " + TrackPointsColumns.CUMULATIVE_DISTANCE + "=?, " + TrackPointsColumns.CUMULATIVE_MOVING_TIME + "=? WHERE " + TrackPointsColumns._ID + "=?";
+        try (SQLiteStatement statement = db.compileStatement(update)) {
+            long lastTrackPointId = -1L;
+            int count;
+            do {
+                String[] selectionArgs = {Long.toString(trackId), Long.toString(lastTrackPointId)};
+                try (Cursor cursor = db.query(TrackPointsColumns.TABLE_NAME, null, TrackPointsColumns.TRACKID + "=? AND " + TrackPointsColumns._ID + ">?", selectionArgs, null, null, TrackPointsColumns._ID, Integer.toString(CHUNK_SIZE))) {
+                    count = cursor.getCount();
+                    CachedTrackPointsIndexes indexes = new CachedTrackPointsIndexes(cursor);
+                    try {
+                        db.beginTransaction();
+                        while (cursor.moveToNext()) {
+                            TrackPoint trackPoint = ContentProviderUtils.fillTrackPoint(cursor, indexes);
+                            trackStatisticsUpdater.addTrackPoint(trackPoint, minRecordingDistance);
+                            trackStatisticsUpdater.setCumulativeStatistics(trackPoint);
+                            lastTrackPointId = cursor.getLong(indexes.idIndex);
+
+                            statement.bindDouble(1, (float) trackPoint.getCumulativeDistance_m());
+                            statement.bindLong(2, trackPoint.getCumulativeMovingTime_ms());
+                            statement.bindLong(3, lastTrackPointId);
+                            statement.executeUpdateDelete();
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                }
+            } while (count == CHUNK_SIZE);
+        }
+    }
+
+    private static Object getValue(Cursor cursor, int index) {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getFloat(index);
+            default:
+                return cursor.getLong(index);
+        }
+    }
+}
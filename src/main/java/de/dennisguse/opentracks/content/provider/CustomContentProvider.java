@@ -20,29 +20,65 @@ import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Bundle;
+import android.provider.BaseColumns;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import de.dennisguse.opentracks.content.data.BestEffort;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.ClimbsColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.PersonalRecordsColumns;
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 
 /**
  * A {@link ContentProvider} that handles access to track points, tracks, and markers tables.
  * <p>
  * Data consistency is enforced using Foreign Key Constraints within the database incl. cascading deletes.
+ * <p>
+ * Deleting tracks only marks them as deleted (and deletes their markers); their trackPoints are purged in the background in chunks.
+ * Afterwards, the freed pages are reclaimed via incremental vacuum (completely only while charging).
+ * <p>
+ * Missing cumulative statistics of trackPoints (stored before database version 34) are computed in the background by {@link CumulativeStatisticsBackfill}.
+ * <p>
+ * Track statistics computed by an older {@link de.dennisguse.opentracks.stats.TrackStatisticsUpdater#STATISTICS_VERSION} are recomputed in the background by {@link StatisticsRecompute}.
+ * <p>
+ * The segments (see {@link SegmentsColumns}) and the modification count of tracks are updated once per transaction that inserts trackPoints (see {@link SegmentsUpdater}).
+ * <p>
+ * The personal records are updated with each inserted best effort; if best efforts are removed (e.g., their track is deleted or its category changed), only the missing records are recomputed.
+ * <p>
+ * The database uses write-ahead logging: queries run on a pool of read connections and do not block the writer (e.g., recording).
+ * WAL checkpoints are run in the background after {@link #CHECKPOINT_INTERVAL} changes instead of by the committing (recording) thread.
  *
  * @author Leif Hendrik Wilden
  */
@@ -52,22 +88,123 @@ public class CustomContentProvider extends ContentProvider {
 
     private static final String SQL_LIST_DELIMITER = ",";
 
+    /**
+     * Methods for {@link #call(String, String, Bundle)}; arg is the track id.
+     * The result contains the number of affected trackPoints as {@link #CALL_RESULT_COUNT}.
+     */
+    static final String CALL_ARCHIVE_TRACK = "archiveTrack";
+    static final String CALL_RESTORE_TRACK = "restoreTrack";
+    static final String CALL_VACUUM = "vacuum";
+    static final String CALL_RESULT_COUNT = "count";
+
+    /**
+     * Method for {@link #call(String, String, Bundle)}: returns the state of the background purge and the database file.
+     */
+    static final String CALL_PURGE_STATUS = "purgeStatus";
+    static final String CALL_RESULT_DELETED_TRACKS = "deletedTracks";
+    static final String CALL_RESULT_PENDING_TRACKPOINTS = "pendingTrackPoints";
+    static final String CALL_RESULT_PAGE_SIZE = "pageSize";
+    static final String CALL_RESULT_PAGE_COUNT = "pageCount";
+    static final String CALL_RESULT_FREE_PAGE_COUNT = "freePageCount";
+
+    /**
+     * Methods for {@link #call(String, String, Bundle)}: recomputes the statistics of all tracks in the background and returns its progress.
+     */
+    static final String CALL_RECOMPUTE_STATISTICS = "recomputeStatistics";
+    static final String CALL_RECOMPUTE_STATISTICS_STATUS = "recomputeStatisticsStatus";
+    static final String CALL_RESULT_RECOMPUTED_TRACKS = "recomputedTracks";
+    static final String CALL_RESULT_TOTAL_TRACKS = "totalTracks";
+
+    /**
+     * Number of trackPoints deleted per transaction while purging.
+     */
+    private static final int PURGE_CHUNK_SIZE = 5000;
+
+    /**
+     * Number of pages reclaimed by one incremental vacuum while not charging.
+     */
+    private static final int INCREMENTAL_VACUUM_PAGES = 1024;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Number of changed rows after which a (passive) WAL checkpoint is run in the background.
+     */
+    @VisibleForTesting
+    static final int CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * Fallback: the committing thread only checkpoints if the WAL exceeds this many pages (i.e., background checkpoints could not keep up).
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 10000;
+
+    private static final String DELETED_TRACK_IDS = "SELECT " + TracksColumns._ID + " FROM " + TracksColumns.TABLE_NAME + " WHERE " + TracksColumns.DELETED + "=1";
+
+    private static final String BEST_EFFORT_JOIN_TRACK = BestEffortsColumns.TABLE_NAME + " b JOIN " + TracksColumns.TABLE_NAME + " t ON b." + BestEffortsColumns.TRACKID + "=t." + TracksColumns._ID;
+
+    private static final String RECORD_CATEGORY = "IFNULL(t." + TracksColumns.CATEGORY + ", '')";
+
+    // Increments the modification count of a track (arg: its id).
+    private static final String INCREMENT_MODIFICATION_COUNT = "UPDATE " + TracksColumns.TABLE_NAME + " SET " + TracksColumns.MODIFICATION_COUNT + " = " + TracksColumns.MODIFICATION_COUNT + " + 1 WHERE " + TracksColumns._ID + "=?";
+
+    /**
+     * Makes a best effort (arg: its id) the personal record if it is better than the current one.
+     */
+    private static final String UPDATE_PERSONAL_RECORD = "INSERT OR REPLACE INTO " + PersonalRecordsColumns.TABLE_NAME
+            + " (" + PersonalRecordsColumns.CATEGORY + ", " + PersonalRecordsColumns.TYPE + ", " + PersonalRecordsColumns.TARGET + ", " + PersonalRecordsColumns.BESTEFFORTID + ")"
+            + " SELECT " + RECORD_CATEGORY + ", b." + BestEffortsColumns.TYPE + ", b." + BestEffortsColumns.TARGET + ", b." + BestEffortsColumns._ID
+            + " FROM " + BEST_EFFORT_JOIN_TRACK + " WHERE b." + BestEffortsColumns._ID + "=? AND t." + TracksColumns.DELETED + "=0"
+            + " AND NOT EXISTS (SELECT 1 FROM " + PersonalRecordsColumns.TABLE_NAME + " p JOIN " + BestEffortsColumns.TABLE_NAME + " r ON p." + PersonalRecordsColumns.BESTEFFORTID + "=r." + BestEffortsColumns._ID
+            + " WHERE p." + PersonalRecordsColumns.CATEGORY + "=" + RECORD_CATEGORY + " AND p." + PersonalRecordsColumns.TYPE + "=b." + BestEffortsColumns.TYPE + " AND p." + PersonalRecordsColumns.TARGET + "=b." + BestEffortsColumns.TARGET
+            + " AND (CASE WHEN b." + BestEffortsColumns.TYPE + "='" + BestEffort.Type.TIME_FOR_DISTANCE.name() + "' THEN r." + BestEffortsColumns.VALUE + "<=b." + BestEffortsColumns.VALUE + " ELSE r." + BestEffortsColumns.VALUE + ">=b." + BestEffortsColumns.VALUE + " END))";
+
+    /**
+     * Adds the missing personal records (i.e., existing records are kept); SQLite takes the other columns from the row with the minimal aggregate.
+     */
+    private static final String FILL_PERSONAL_RECORDS = "INSERT OR IGNORE INTO " + PersonalRecordsColumns.TABLE_NAME
+            + " (" + PersonalRecordsColumns.CATEGORY + ", " + PersonalRecordsColumns.TYPE + ", " + PersonalRecordsColumns.TARGET + ", " + PersonalRecordsColumns.BESTEFFORTID + ")"
+            + " SELECT category, type, target, besteffortid FROM (SELECT " + RECORD_CATEGORY + " AS category, b." + BestEffortsColumns.TYPE + " AS type, b." + BestEffortsColumns.TARGET + " AS target, b." + BestEffortsColumns._ID + " AS besteffortid"
+            + ", MIN(CASE WHEN b." + BestEffortsColumns.TYPE + "='" + BestEffort.Type.TIME_FOR_DISTANCE.name() + "' THEN b." + BestEffortsColumns.VALUE + " ELSE -b." + BestEffortsColumns.VALUE + " END)"
+            + " FROM " + BEST_EFFORT_JOIN_TRACK + " WHERE t." + TracksColumns.DELETED + "=0 GROUP BY 1, 2, 3)";
+
     private final UriMatcher uriMatcher;
 
     private SQLiteDatabase db;
 
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean purgeScheduled = new AtomicBoolean(false);
+    // Set by CALL_VACUUM; only then a database without incremental vacuum may be converted by the scheduled purge.
+    private final AtomicBoolean vacuumRequested = new AtomicBoolean(false);
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean(false);
+    // Recomputing statistics takes long; so it does not delay checkpoints and purges.
+    private final ExecutorService recomputeExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean recomputeScheduled = new AtomicBoolean(false);
+    // Set by CALL_RECOMPUTE_STATISTICS; the scheduled run restarts from the first track.
+    private final AtomicBoolean recomputeRequested = new AtomicBoolean(false);
+    private volatile StatisticsRecompute statisticsRecompute;
+    private final AtomicInteger changesSinceCheckpoint = new AtomicInteger(0);
+
     public CustomContentProvider() {
         uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TrackPointsColumns.CONTENT_URI_BY_ID.getPath(), UrlType.TRACKPOINTS.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TrackPointsColumns.CONTENT_URI_BY_ID.getPath() + "/#", UrlType.TRACKPOINTS_BY_ID.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TrackPointsColumns.CONTENT_URI_BY_TRACKID.getPath() + "/*", UrlType.TRACKPOINTS_BY_TRACKID.ordinal());
 
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TrackPointsArchiveColumns.CONTENT_URI.getPath(), UrlType.TRACKPOINTS_ARCHIVE.ordinal());
+
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TracksColumns.CONTENT_URI.getPath(), UrlType.TRACKS.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, TracksColumns.CONTENT_URI.getPath() + "/*", UrlType.TRACKS_BY_ID.ordinal());
 
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI.getPath(), UrlType.MARKERS.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI.getPath() + "/#", UrlType.MARKERS_BY_ID.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI_BY_TRACKID.getPath() + "/*", UrlType.MARKERS_BY_TRACKID.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, BestEffortsColumns.CONTENT_URI.getPath(), UrlType.BEST_EFFORTS.ordinal());
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, PersonalRecordsColumns.CONTENT_URI.getPath(), UrlType.PERSONAL_RECORDS.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, SegmentsColumns.CONTENT_URI.getPath(), UrlType.SEGMENTS.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, ClimbsColumns.CONTENT_URI.getPath(), UrlType.CLIMBS.ordinal());
     }
 
     @Override
@@ -84,31 +221,119 @@ public class CustomContentProvider extends ContentProvider {
     @VisibleForTesting
     boolean onCreate(Context context) {
         CustomSQLiteOpenHelper databaseHelper = new CustomSQLiteOpenHelper(context);
+        // Readers use a connection pool and see a consistent snapshot per query; only one writer.
+        databaseHelper.setWriteAheadLoggingEnabled(true);
         try {
             db = databaseHelper.getWritableDatabase();
             // Necessary to enable cascade deletion from Track to TrackPoints and Markers
             db.setForeignKeyConstraintsEnabled(true);
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
         } catch (SQLiteException e) {
             Log.e(TAG, "Unable to open database for writing.", e);
         }
+        if (db != null) {
+            // Continue purging tracks that were deleted before the process was stopped.
+            schedulePurge();
+
+            // TrackPoints stored before database version 34 have no cumulative statistics.
+            int minRecordingDistance = PreferencesUtils.getRecordingDistanceInterval(context);
+            SmoothingFilter.Type elevationSmoothing = PreferencesUtils.getElevationSmoothing(context);
+            SmoothingFilter.Type speedSmoothing = PreferencesUtils.getSpeedSmoothing(context);
+            backgroundExecutor.execute(() -> {
+                try {
+                    int tracks = new CumulativeStatisticsBackfill(db, minRecordingDistance, elevationSmoothing, speedSmoothing).run();
+                    if (tracks > 0) {
+                        Log.i(TAG, "Computed cumulative statistics of " + tracks + " tracks.");
+                    }
+                } catch (SQLiteException | IllegalArgumentException e) {
+                    Log.e(TAG, "Computing cumulative statistics failed.", e);
+                }
+            });
+
+            // Tracks recorded or imported before database version 35 have no best efforts.
+            backgroundExecutor.execute(() -> {
+                try {
+                    int tracks = new ContentProviderUtils(context).updateMissingBestEfforts(context, PreferencesUtils.getRecordingTrackId(context));
+                    if (tracks > 0) {
+                        Log.i(TAG, "Computed best efforts of " + tracks + " tracks.");
+                    }
+                } catch (SQLiteException | IllegalArgumentException e) {
+                    Log.e(TAG, "Computing best efforts failed.", e);
+                }
+            });
+
+            // Statistics stored by an older version of TrackStatisticsUpdater (e.g., without sensor statistics).
+            if (StatisticsRecompute.isPending(context)) {
+                scheduleRecompute(context);
+            }
+        }
         return db != null;
     }
 
+    /**
+     * Requests to recompute the statistics of all tracks; a running recompute is cancelled and restarts from the first track.
+     */
+    private void requestRecompute(Context context) {
+        recomputeRequested.set(true);
+        StatisticsRecompute current = statisticsRecompute;
+        if (current != null) {
+            current.cancel();
+        }
+        scheduleRecompute(context);
+    }
+
+    private void scheduleRecompute(Context context) {
+        if (!recomputeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        recomputeExecutor.execute(() -> {
+            try {
+                do {
+                    if (recomputeRequested.getAndSet(false)) {
+                        StatisticsRecompute.request(context);
+                    }
+                    statisticsRecompute = new StatisticsRecompute(context, db);
+                    int tracks = statisticsRecompute.run();
+                    Log.i(TAG, "Recomputed statistics of " + tracks + " tracks.");
+                } while (recomputeRequested.get());
+            } catch (SQLiteException | IllegalArgumentException e) {
+                Log.e(TAG, "Recomputing statistics failed.", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                recomputeScheduled.set(false);
+            }
+            // Requested after the last check.
+            if (recomputeRequested.get()) {
+                scheduleRecompute(context);
+            }
+        });
+    }
+
     @Override
     public int delete(@NonNull Uri url, String where, String[] selectionArgs) {
         String table;
-        boolean shouldVacuum = false;
         switch (getUrlType(url)) {
             case TRACKPOINTS:
                 table = TrackPointsColumns.TABLE_NAME;
                 break;
-            case TRACKS:
-                table = TracksColumns.TABLE_NAME;
-                shouldVacuum = true;
+            case TRACKPOINTS_ARCHIVE:
+                table = TrackPointsArchiveColumns.TABLE_NAME;
                 break;
+            case TRACKS:
+                return deleteTracks(url, where, selectionArgs);
             case MARKERS:
                 table = MarkerColumns.TABLE_NAME;
                 break;
+            case BEST_EFFORTS:
+                table = BestEffortsColumns.TABLE_NAME;
+                break;
+            case SEGMENTS:
+                table = SegmentsColumns.TABLE_NAME;
+                break;
+            case CLIMBS:
+                table = ClimbsColumns.TABLE_NAME;
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URL " + url);
         }
@@ -118,20 +343,187 @@ public class CustomContentProvider extends ContentProvider {
         try {
             db.beginTransaction();
             count = db.delete(table, where, selectionArgs);
+            if (count > 0 && table.equals(BestEffortsColumns.TABLE_NAME)) {
+                // Records of deleted best efforts were removed by cascade.
+                db.execSQL(FILL_PERSONAL_RECORDS);
+            }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
+        onChanged(count);
+        return count;
+    }
 
-        if (shouldVacuum) {
-            // If a potentially large amount of data was deleted, reclaim its space.
-            Log.i(TAG, "Vacuuming the database.");
-            db.execSQL("VACUUM");
+    /**
+     * Marks tracks as deleted and deletes their markers; the trackPoints are purged in the background.
+     * The uuid is removed, so a deleted track can be imported again right away.
+     */
+    private int deleteTracks(@NonNull Uri url, String where, String[] selectionArgs) {
+        String whereClause = TracksColumns.DELETED + "=0";
+        if (!TextUtils.isEmpty(where)) {
+            whereClause += " AND (" + where + ")";
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(TracksColumns.DELETED, 1);
+        values.putNull(TracksColumns.UUID);
+
+        Log.w(TAG, "Deleting tracks");
+        int count;
+        try {
+            db.beginTransaction();
+            count = db.update(TracksColumns.TABLE_NAME, values, whereClause, selectionArgs);
+            db.delete(MarkerColumns.TABLE_NAME, MarkerColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + ")", null);
+            // The best efforts are purged with the trackPoints; but the personal records must not refer to deleted tracks.
+            int records = db.delete(PersonalRecordsColumns.TABLE_NAME, PersonalRecordsColumns.BESTEFFORTID + " IN (SELECT " + BestEffortsColumns._ID + " FROM " + BestEffortsColumns.TABLE_NAME + " WHERE " + BestEffortsColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + "))", null);
+            if (records > 0) {
+                db.execSQL(FILL_PERSONAL_RECORDS);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        getContext().getContentResolver().notifyChange(url, null, false);
+
+        if (count > 0) {
+            schedulePurge();
         }
         return count;
     }
 
+    /**
+     * Schedules a WAL checkpoint every {@link #CHECKPOINT_INTERVAL} changed rows.
+     */
+    private void onChanged(int count) {
+        if (changesSinceCheckpoint.addAndGet(count) >= CHECKPOINT_INTERVAL && checkpointScheduled.compareAndSet(false, true)) {
+            backgroundExecutor.execute(() -> {
+                checkpointScheduled.set(false);
+                changesSinceCheckpoint.set(0);
+                try {
+                    checkpoint();
+                } catch (SQLiteException e) {
+                    Log.e(TAG, "WAL checkpoint failed.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies the WAL into the database without waiting for readers or the writer (PASSIVE); incomplete checkpoints are continued by the next one.
+     */
+    @VisibleForTesting
+    void checkpoint() {
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null)) {
+            if (cursor.moveToFirst()) {
+                Log.d(TAG, "WAL checkpoint: busy=" + cursor.getInt(0) + " walPages=" + cursor.getInt(1) + " checkpointedPages=" + cursor.getInt(2));
+            }
+        }
+    }
+
+    /**
+     * Schedules {@link #purge()} unless it is already scheduled.
+     */
+    private void schedulePurge() {
+        if (purgeScheduled.compareAndSet(false, true)) {
+            backgroundExecutor.execute(() -> {
+                purgeScheduled.set(false);
+                try {
+                    purge();
+                } catch (SQLiteException e) {
+                    Log.e(TAG, "Purging deleted tracks failed.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the data of deleted tracks (chunked transactions, so concurrent writers are not blocked for long) and reclaims the freed space.
+     */
+    @VisibleForTesting
+    void purge() {
+        int trackPoints = deleteChunked(TrackPointsColumns.TABLE_NAME, TrackPointsColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + ")", PURGE_CHUNK_SIZE);
+        deleteChunked(TrackPointsArchiveColumns.TABLE_NAME, TrackPointsArchiveColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + ")", Math.max(1, PURGE_CHUNK_SIZE / TrackPointsArchive.CHUNK_SIZE));
+
+        int tracks;
+        try {
+            db.beginTransaction();
+            // Cascades to the trackPoints of tracks that were deleted while purging.
+            tracks = db.delete(TracksColumns.TABLE_NAME, TracksColumns.DELETED + "=1", null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (tracks > 0 || trackPoints > 0) {
+            Log.i(TAG, "Purged " + tracks + " tracks and " + trackPoints + " trackPoints.");
+        }
+
+        reclaimSpace(vacuumRequested.getAndSet(false));
+        checkpoint();
+    }
+
+    /**
+     * Deletes all rows of table matching where; at most chunkSize per transaction.
+     *
+     * @return the number of deleted rows
+     */
+    private int deleteChunked(String table, String where, int chunkSize) {
+        String chunkWhere = BaseColumns._ID + " IN (SELECT " + BaseColumns._ID + " FROM " + table + " WHERE " + where + " LIMIT " + chunkSize + ")";
+        int total = 0;
+        int count;
+        do {
+            try {
+                db.beginTransaction();
+                count = db.delete(table, chunkWhere, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            total += count;
+            if (count > 0) {
+                Log.d(TAG, "Purged " + total + " rows from " + table);
+            }
+        } while (count == chunkSize);
+        return total;
+    }
+
+    /**
+     * Returns free pages to the file system.
+     * While charging, all free pages are reclaimed; otherwise at most {@link #INCREMENTAL_VACUUM_PAGES}.
+     * Databases created without incremental vacuum are converted once by a full VACUUM; it rewrites the whole database while blocking all writers.
+     * So only if requested (see {@link #CALL_VACUUM}) while charging and not recording.
+     *
+     * @param vacuumRequested true if requested via {@link #CALL_VACUUM}
+     */
+    private void reclaimSpace(boolean vacuumRequested) {
+        boolean charging = isCharging();
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            if (vacuumRequested && charging && !PreferencesUtils.isRecording(getContext())) {
+                Log.i(TAG, "Vacuuming the database to enable incremental vacuum.");
+                db.execSQL("VACUUM");
+            }
+            return;
+        }
+
+        long freePages;
+        while ((freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null)) > 0) {
+            Log.d(TAG, "Reclaiming free pages: " + freePages);
+            // Each freed page is returned as a row; the pragma runs until the cursor is consumed.
+            try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + INCREMENTAL_VACUUM_PAGES + ")", null)) {
+                cursor.getCount();
+            }
+            if (!charging) {
+                break;
+            }
+        }
+    }
+
+    private boolean isCharging() {
+        Intent batteryStatus = getContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return batteryStatus != null && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
     @Override
     public String getType(@NonNull Uri url) {
         switch (getUrlType(url)) {
@@ -140,6 +532,8 @@ public class CustomContentProvider extends ContentProvider {
             case TRACKPOINTS_BY_ID:
             case TRACKPOINTS_BY_TRACKID:
                 return TrackPointsColumns.CONTENT_ITEMTYPE;
+            case TRACKPOINTS_ARCHIVE:
+                return TrackPointsArchiveColumns.CONTENT_TYPE;
             case TRACKS:
                 return TracksColumns.CONTENT_TYPE;
             case TRACKS_BY_ID:
@@ -149,6 +543,14 @@ public class CustomContentProvider extends ContentProvider {
             case MARKERS_BY_ID:
             case MARKERS_BY_TRACKID:
                 return MarkerColumns.CONTENT_ITEMTYPE;
+            case BEST_EFFORTS:
+                return BestEffortsColumns.CONTENT_TYPE;
+            case PERSONAL_RECORDS:
+                return PersonalRecordsColumns.CONTENT_TYPE;
+            case SEGMENTS:
+                return SegmentsColumns.CONTENT_TYPE;
+            case CLIMBS:
+                return ClimbsColumns.CONTENT_TYPE;
             default:
                 throw new IllegalArgumentException("Unknown URL " + url);
         }
@@ -162,12 +564,20 @@ public class CustomContentProvider extends ContentProvider {
         Uri result;
         try {
             db.beginTransaction();
-            result = insertContentValues(url, getUrlType(url), initialValues);
+            UrlType urlType = getUrlType(url);
+            result = insertContentValues(url, urlType, initialValues);
+            if (urlType == UrlType.TRACKPOINTS) {
+                SegmentsUpdater segmentsUpdater = new SegmentsUpdater(db);
+                segmentsUpdater.add(ContentUris.parseId(result), initialValues);
+                segmentsUpdater.flush();
+                incrementModificationCount(Collections.singleton(initialValues.getAsLong(TrackPointsColumns.TRACKID)));
+            }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
+        onChanged(1);
         return result;
     }
 
@@ -179,18 +589,27 @@ public class CustomContentProvider extends ContentProvider {
             db.beginTransaction();
 
             UrlType urlType = getUrlType(url);
+            Set<Long> trackIds = new HashSet<>();
+            SegmentsUpdater segmentsUpdater = new SegmentsUpdater(db);
             for (numInserted = 0; numInserted < valuesBulk.length; numInserted++) {
                 ContentValues contentValues = valuesBulk[numInserted];
                 if (contentValues == null) {
                     contentValues = new ContentValues();
                 }
-                insertContentValues(url, urlType, contentValues);
+                Uri result = insertContentValues(url, urlType, contentValues);
+                if (urlType == UrlType.TRACKPOINTS) {
+                    segmentsUpdater.add(ContentUris.parseId(result), contentValues);
+                    trackIds.add(contentValues.getAsLong(TrackPointsColumns.TRACKID));
+                }
             }
+            segmentsUpdater.flush();
+            incrementModificationCount(trackIds);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
+        onChanged(numInserted);
         return numInserted;
     }
 
@@ -201,15 +620,23 @@ public class CustomContentProvider extends ContentProvider {
         switch (getUrlType(url)) {
             case TRACKPOINTS:
                 queryBuilder.setTables(TrackPointsColumns.TABLE_NAME);
+                queryBuilder.appendWhere(TrackPointsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
                 sortOrder = sort != null ? sort : TrackPointsColumns.DEFAULT_SORT_ORDER;
                 break;
             case TRACKPOINTS_BY_ID:
                 queryBuilder.setTables(TrackPointsColumns.TABLE_NAME);
                 queryBuilder.appendWhere(TrackPointsColumns._ID + "=" + ContentUris.parseId(url));
+                queryBuilder.appendWhere(" AND " + TrackPointsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
                 break;
             case TRACKPOINTS_BY_TRACKID:
                 queryBuilder.setTables(TrackPointsColumns.TABLE_NAME);
                 queryBuilder.appendWhere(TrackPointsColumns.TRACKID + " IN (" + TextUtils.join(SQL_LIST_DELIMITER, ContentProviderUtils.parseTrackIdsFromUri(url)) + ")");
+                queryBuilder.appendWhere(" AND " + TrackPointsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
+                break;
+            case TRACKPOINTS_ARCHIVE:
+                queryBuilder.setTables(TrackPointsArchiveColumns.TABLE_NAME);
+                queryBuilder.appendWhere(TrackPointsArchiveColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
+                sortOrder = sort != null ? sort : TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID;
                 break;
             case TRACKS:
                 if (projection != null && Arrays.asList(projection).contains(TracksColumns.MARKER_COUNT)) {
@@ -217,11 +644,13 @@ public class CustomContentProvider extends ContentProvider {
                 } else {
                     queryBuilder.setTables(TracksColumns.TABLE_NAME);
                 }
+                queryBuilder.appendWhere(TracksColumns.DELETED + "=0");
                 sortOrder = sort != null ? sort : TracksColumns.DEFAULT_SORT_ORDER;
                 break;
             case TRACKS_BY_ID:
                 queryBuilder.setTables(TracksColumns.TABLE_NAME);
                 queryBuilder.appendWhere(TracksColumns._ID + " IN (" + TextUtils.join(SQL_LIST_DELIMITER, ContentProviderUtils.parseTrackIdsFromUri(url)) + ")");
+                queryBuilder.appendWhere(" AND " + TracksColumns.DELETED + "=0");
                 break;
             case MARKERS:
                 queryBuilder.setTables(MarkerColumns.TABLE_NAME);
@@ -235,6 +664,21 @@ public class CustomContentProvider extends ContentProvider {
                 queryBuilder.setTables(MarkerColumns.TABLE_NAME);
                 queryBuilder.appendWhere(MarkerColumns.TRACKID + " IN (" + TextUtils.join(SQL_LIST_DELIMITER, ContentProviderUtils.parseTrackIdsFromUri(url)) + ")");
                 break;
+            case BEST_EFFORTS:
+                queryBuilder.setTables(BestEffortsColumns.TABLE_NAME);
+                queryBuilder.appendWhere(BestEffortsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
+                break;
+            case PERSONAL_RECORDS:
+                queryBuilder.setTables(PersonalRecordsColumns.TABLE_NAME + " JOIN " + BestEffortsColumns.TABLE_NAME + " ON (" + PersonalRecordsColumns.TABLE_NAME + "." + PersonalRecordsColumns.BESTEFFORTID + "=" + BestEffortsColumns.TABLE_NAME + "." + BestEffortsColumns._ID + ")");
+                break;
+            case SEGMENTS:
+                queryBuilder.setTables(SegmentsColumns.TABLE_NAME);
+                queryBuilder.appendWhere(SegmentsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
+                break;
+            case CLIMBS:
+                queryBuilder.setTables(ClimbsColumns.TABLE_NAME);
+                queryBuilder.appendWhere(ClimbsColumns.TRACKID + " NOT IN (" + DELETED_TRACK_IDS + ")");
+                break;
             default:
                 throw new IllegalArgumentException("Unknown url " + url);
         }
@@ -288,12 +732,140 @@ public class CustomContentProvider extends ContentProvider {
         int count;
         try {
             db.beginTransaction();
+            boolean categoryChanged = table.equals(TracksColumns.TABLE_NAME) && values.containsKey(TracksColumns.CATEGORY) && isCategoryChanged(values.getAsString(TracksColumns.CATEGORY), whereClause, selectionArgs);
             count = db.update(table, values, whereClause, selectionArgs);
+            if (categoryChanged) {
+                // The best efforts of the tracks now count for another category.
+                db.delete(PersonalRecordsColumns.TABLE_NAME, null, null);
+                db.execSQL(FILL_PERSONAL_RECORDS);
+            }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
+        onChanged(count);
+        return count;
+    }
+
+    private boolean isCategoryChanged(String category, String where, String[] selectionArgs) {
+        String whereClause = "IFNULL(" + TracksColumns.CATEGORY + ", '') IS NOT " + DatabaseUtils.sqlEscapeString(category == null ? "" : category);
+        if (!TextUtils.isEmpty(where)) {
+            whereClause += " AND (" + where + ")";
+        }
+        return DatabaseUtils.queryNumEntries(db, TracksColumns.TABLE_NAME, whereClause, selectionArgs) > 0;
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        int count;
+        switch (method) {
+            case CALL_ARCHIVE_TRACK:
+                count = archiveTrack(Long.parseLong(arg));
+                break;
+            case CALL_RESTORE_TRACK:
+                count = restoreTrack(Long.parseLong(arg));
+                break;
+            case CALL_VACUUM:
+                vacuumRequested.set(true);
+                schedulePurge();
+                return null;
+            case CALL_PURGE_STATUS:
+                return getPurgeStatus();
+            case CALL_RECOMPUTE_STATISTICS:
+                requestRecompute(getContext());
+                return null;
+            case CALL_RECOMPUTE_STATISTICS_STATUS:
+                return getRecomputeStatus();
+            default:
+                throw new IllegalArgumentException("Unknown method " + method);
+        }
+
+        if (count > 0) {
+            getContext().getContentResolver().notifyChange(TrackPointsColumns.CONTENT_URI_BY_ID, null, false);
+            onChanged(count);
+        }
+        Bundle result = new Bundle();
+        result.putInt(CALL_RESULT_COUNT, count);
+        return result;
+    }
+
+    private Bundle getPurgeStatus() {
+        Bundle result = new Bundle();
+        result.putLong(CALL_RESULT_DELETED_TRACKS, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TracksColumns.TABLE_NAME + " WHERE " + TracksColumns.DELETED + "=1", null));
+        result.putLong(CALL_RESULT_PENDING_TRACKPOINTS, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TrackPointsColumns.TABLE_NAME + " WHERE " + TrackPointsColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + ")", null)
+                + DatabaseUtils.longForQuery(db, "SELECT IFNULL(SUM(" + TrackPointsArchiveColumns.NUMPOINTS + "), 0) FROM " + TrackPointsArchiveColumns.TABLE_NAME + " WHERE " + TrackPointsArchiveColumns.TRACKID + " IN (" + DELETED_TRACK_IDS + ")", null));
+        result.putLong(CALL_RESULT_PAGE_SIZE, DatabaseUtils.longForQuery(db, "PRAGMA page_size", null));
+        result.putLong(CALL_RESULT_PAGE_COUNT, DatabaseUtils.longForQuery(db, "PRAGMA page_count", null));
+        result.putLong(CALL_RESULT_FREE_PAGE_COUNT, DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+        return result;
+    }
+
+    private Bundle getRecomputeStatus() {
+        Bundle result = new Bundle();
+        StatisticsRecompute current = statisticsRecompute;
+        if (current != null) {
+            result.putInt(CALL_RESULT_RECOMPUTED_TRACKS, current.getDoneTracks());
+            result.putInt(CALL_RESULT_TOTAL_TRACKS, current.getTotalTracks());
+        }
+        return result;
+    }
+
+    /**
+     * Moves all trackPoints of a track into {@link TrackPointsArchiveColumns#TABLE_NAME} (chunks of {@link TrackPointsArchive#CHUNK_SIZE}).
+     *
+     * @return the number of archived trackPoints
+     */
+    private int archiveTrack(long trackId) {
+        String[] selectionArgs = new String[]{Long.toString(trackId)};
+        int count = 0;
+        try {
+            db.beginTransaction();
+            try (Cursor cursor = db.query(TrackPointsColumns.TABLE_NAME, null, TrackPointsColumns.TRACKID + "=?", selectionArgs, null, null, TrackPointsColumns._ID)) {
+                cursor.moveToFirst();
+                while (!cursor.isAfterLast()) {
+                    ContentValues values = TrackPointsArchive.encode(trackId, cursor, TrackPointsArchive.CHUNK_SIZE);
+                    db.insertOrThrow(TrackPointsArchiveColumns.TABLE_NAME, null, values);
+                    count += values.getAsInteger(TrackPointsArchiveColumns.NUMPOINTS);
+                }
+            }
+            db.delete(TrackPointsColumns.TABLE_NAME, TrackPointsColumns.TRACKID + "=?", selectionArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Moves all archived trackPoints of a track back into {@link TrackPointsColumns#TABLE_NAME}.
+     *
+     * @return the number of restored trackPoints
+     */
+    private int restoreTrack(long trackId) {
+        String[] selectionArgs = new String[]{Long.toString(trackId)};
+        int count = 0;
+        try {
+            db.beginTransaction();
+            try (Cursor cursor = db.query(TrackPointsArchiveColumns.TABLE_NAME, new String[]{TrackPointsArchiveColumns.DATA}, TrackPointsArchiveColumns.TRACKID + "=?", selectionArgs, null, null, TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID)) {
+                while (cursor.moveToNext()) {
+                    try (Cursor trackPoints = TrackPointsArchive.decode(trackId, cursor.getBlob(0))) {
+                        while (trackPoints.moveToNext()) {
+                            db.insertOrThrow(TrackPointsColumns.TABLE_NAME, null, TrackPointsArchive.toContentValues(trackPoints));
+                            count++;
+                        }
+                    }
+                }
+            }
+            db.delete(TrackPointsArchiveColumns.TABLE_NAME, TrackPointsArchiveColumns.TRACKID + "=?", selectionArgs);
+            if (count > 0) {
+                incrementModificationCount(Collections.singleton(trackId));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         return count;
     }
 
@@ -323,6 +895,10 @@ public class CustomContentProvider extends ContentProvider {
                 return insertTrack(url, contentValues);
             case MARKERS:
                 return insertMarker(url, contentValues);
+            case BEST_EFFORTS:
+                return insertBestEffort(url, contentValues);
+            case CLIMBS:
+                return insertClimb(url, contentValues);
             default:
                 throw new IllegalArgumentException("Unknown url " + url);
         }
@@ -342,6 +918,15 @@ public class CustomContentProvider extends ContentProvider {
         throw new SQLiteException("Failed to insert a track point " + url);
     }
 
+    /**
+     * Increments the modification count of the tracks with inserted trackPoints; once per transaction rather than per trackPoint.
+     */
+    private void incrementModificationCount(Set<Long> trackIds) {
+        for (Long trackId : trackIds) {
+            db.execSQL(INCREMENT_MODIFICATION_COUNT, new Object[]{trackId});
+        }
+    }
+
     private Uri insertTrack(Uri url, ContentValues contentValues) {
         boolean hasStartTime = contentValues.containsKey(TracksColumns.STARTTIME);
         if (!hasStartTime) {
@@ -362,15 +947,37 @@ public class CustomContentProvider extends ContentProvider {
         throw new SQLException("Failed to insert a marker " + url);
     }
 
+    private Uri insertBestEffort(Uri url, ContentValues contentValues) {
+        long rowId = db.insert(BestEffortsColumns.TABLE_NAME, BestEffortsColumns._ID, contentValues);
+        if (rowId >= 0) {
+            db.execSQL(UPDATE_PERSONAL_RECORD, new Object[]{rowId});
+            return ContentUris.appendId(BestEffortsColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert a best effort " + url);
+    }
+
+    private Uri insertClimb(Uri url, ContentValues contentValues) {
+        long rowId = db.insert(ClimbsColumns.TABLE_NAME, ClimbsColumns._ID, contentValues);
+        if (rowId >= 0) {
+            return ContentUris.appendId(ClimbsColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert a climb " + url);
+    }
+
     @VisibleForTesting
     enum UrlType {
         TRACKPOINTS,
         TRACKPOINTS_BY_ID,
         TRACKPOINTS_BY_TRACKID,
+        TRACKPOINTS_ARCHIVE,
         TRACKS,
         TRACKS_BY_ID,
         MARKERS,
         MARKERS_BY_ID,
-        MARKERS_BY_TRACKID
+        MARKERS_BY_TRACKID,
+        BEST_EFFORTS,
+        PERSONAL_RECORDS,
+        SEGMENTS,
+        CLIMBS
     }
 }
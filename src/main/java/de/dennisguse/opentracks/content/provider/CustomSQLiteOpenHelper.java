@@ -11,8 +11,13 @@ import androidx.annotation.VisibleForTesting;
 
 import java.util.UUID;
 
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.ClimbsColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.PersonalRecordsColumns;
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 import de.dennisguse.opentracks.util.UUIDUtils;
@@ -25,7 +30,7 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
 
     private static final String TAG = CustomSQLiteOpenHelper.class.getSimpleName();
 
-    private static final int DATABASE_VERSION = 28;
+    private static final int DATABASE_VERSION = 39;
 
     @VisibleForTesting
     public static final String DATABASE_NAME = "database.db";
@@ -44,16 +49,49 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
         super(context, databaseName, null, databaseVersion);
     }
 
+    /**
+     * Enables incremental vacuum (space is reclaimed by CustomContentProvider in the background).
+     * Only affects new databases; existing databases are converted by the next full VACUUM.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(TrackPointsColumns.CREATE_TABLE);
         db.execSQL(TrackPointsColumns.CREATE_TABLE_INDEX);
+        db.execSQL(TrackPointsColumns.CREATE_TABLE_INDEX_CUMULATIVE_DISTANCE);
+        db.execSQL(TrackPointsColumns.CREATE_TABLE_INDEX_CUMULATIVE_MOVING_TIME);
 
         db.execSQL(TracksColumns.CREATE_TABLE);
         db.execSQL(TracksColumns.CREATE_TABLE_INDEX);
+        db.execSQL(TracksColumns.CREATE_TABLE_INDEX_BOUNDINGBOX);
 
         db.execSQL(MarkerColumns.CREATE_TABLE);
         db.execSQL(MarkerColumns.CREATE_TABLE_INDEX);
+        db.execSQL(MarkerColumns.CREATE_TABLE_INDEX_LOCATION);
+
+        db.execSQL(TrackPointsArchiveColumns.CREATE_TABLE);
+        db.execSQL(TrackPointsArchiveColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(BestEffortsColumns.CREATE_TABLE);
+        db.execSQL(BestEffortsColumns.CREATE_TABLE_INDEX);
+        db.execSQL(PersonalRecordsColumns.CREATE_TABLE);
+        db.execSQL(PersonalRecordsColumns.CREATE_TABLE_INDEX);
+        db.execSQL(PersonalRecordsColumns.CREATE_TABLE_INDEX_BESTEFFORT);
+
+        db.execSQL(SegmentsColumns.CREATE_TABLE);
+        db.execSQL(SegmentsColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(ClimbsColumns.CREATE_TABLE);
+        db.execSQL(ClimbsColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(TracksColumns.CREATE_TRIGGER_MODIFICATION);
+        db.execSQL(MarkerColumns.CREATE_TRIGGER_MODIFICATION_INSERT);
+        db.execSQL(MarkerColumns.CREATE_TRIGGER_MODIFICATION_UPDATE);
+        db.execSQL(MarkerColumns.CREATE_TRIGGER_MODIFICATION_DELETE);
     }
 
     @Override
@@ -76,6 +114,39 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
                 case 28:
                     upgradeFrom27to28(db);
                     break;
+                case 29:
+                    upgradeFrom28to29(db);
+                    break;
+                case 30:
+                    upgradeFrom29to30(db);
+                    break;
+                case 31:
+                    upgradeFrom30to31(db);
+                    break;
+                case 32:
+                    upgradeFrom31to32(db);
+                    break;
+                case 33:
+                    upgradeFrom32to33(db);
+                    break;
+                case 34:
+                    upgradeFrom33to34(db);
+                    break;
+                case 35:
+                    upgradeFrom34to35(db);
+                    break;
+                case 36:
+                    upgradeFrom35to36(db);
+                    break;
+                case 37:
+                    upgradeFrom36to37(db);
+                    break;
+                case 38:
+                    upgradeFrom37to38(db);
+                    break;
+                case 39:
+                    upgradeFrom38to39(db);
+                    break;
 
                 default:
                     throw new RuntimeException("Not implemented: upgrade to " + toVersion);
@@ -103,6 +174,39 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
                 case 27:
                     downgradeFrom28to27(db);
                     break;
+                case 28:
+                    downgradeFrom29to28(db);
+                    break;
+                case 29:
+                    downgradeFrom30to29(db);
+                    break;
+                case 30:
+                    downgradeFrom31to30(db);
+                    break;
+                case 31:
+                    downgradeFrom32to31(db);
+                    break;
+                case 32:
+                    downgradeFrom33to32(db);
+                    break;
+                case 33:
+                    downgradeFrom34to33(db);
+                    break;
+                case 34:
+                    downgradeFrom35to34(db);
+                    break;
+                case 35:
+                    downgradeFrom36to35(db);
+                    break;
+                case 36:
+                    downgradeFrom37to36(db);
+                    break;
+                case 37:
+                    downgradeFrom38to37(db);
+                    break;
+                case 38:
+                    downgradeFrom39to38(db);
+                    break;
 
                 default:
                     throw new RuntimeException("Not implemented: downgrade to " + toVersion);
@@ -284,4 +388,386 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
         db.setTransactionSuccessful();
         db.endTransaction();
     }
+
+    /**
+     * Add track preview (simplified polyline) and bounding box.
+     * The preview of existing tracks is computed lazily (see ContentProviderUtils.getTrackPreview()).
+     */
+    private void upgradeFrom28to29(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("ALTER TABLE tracks ADD COLUMN preview BLOB");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN minlatitude INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN maxlatitude INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN minlongitude INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN maxlongitude INTEGER");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom29to28(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP INDEX tracks_uuid_index");
+
+        // Otherwise SQLite rewrites the foreign keys of trackpoints and markers to reference tracks_old.
+        db.execSQL("PRAGMA legacy_alter_table=ON");
+        db.execSQL("ALTER TABLE tracks RENAME TO tracks_old");
+        db.execSQL("CREATE TABLE tracks (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, description TEXT, category TEXT, starttime INTEGER, stoptime INTEGER, numpoints INTEGER, totaldistance FLOAT, totaltime INTEGER, movingtime INTEGER, avgspeed FLOAT, avgmovingspeed FLOAT, maxspeed FLOAT, minelevation FLOAT, maxelevation FLOAT, elevationgain FLOAT, icon TEXT, uuid BLOB)");
+        db.execSQL("INSERT INTO tracks SELECT _id, name, description, category, starttime, stoptime, numpoints, totaldistance, totaltime, movingtime, avgspeed, avgmovingspeed, maxspeed, minelevation, maxelevation, elevationgain, icon, uuid FROM tracks_old");
+        db.execSQL("DROP TABLE tracks_old");
+        db.execSQL("PRAGMA legacy_alter_table=OFF");
+
+        db.execSQL("CREATE UNIQUE INDEX tracks_uuid_index ON tracks(uuid)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add spatial indices for markers and track bounding boxes.
+     */
+    private void upgradeFrom29to30(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude)");
+        db.execSQL("CREATE INDEX markers_location_index ON markers(latitude, longitude)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom30to29(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+        db.execSQL("DROP INDEX markers_location_index");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add table for archived (column-wise encoded) trackPoints.
+     */
+    private void upgradeFrom30to31(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE trackpoints_archive (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, firsttrackpointid INTEGER NOT NULL, lasttrackpointid INTEGER NOT NULL, numpoints INTEGER NOT NULL, data BLOB NOT NULL, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX trackpoints_archive_trackid_index ON trackpoints_archive(trackid, firsttrackpointid)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Restores all archived trackPoints before dropping the archive.
+     */
+    private void downgradeFrom31to30(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        try (Cursor cursor = db.query("trackpoints_archive", new String[]{"trackid", "data"}, null, null, null, null, "trackid, firsttrackpointid")) {
+            while (cursor.moveToNext()) {
+                try (Cursor trackPoints = TrackPointsArchive.decode(cursor.getLong(0), cursor.getBlob(1))) {
+                    while (trackPoints.moveToNext()) {
+                        db.insertOrThrow("trackpoints", null, TrackPointsArchive.toContentValues(trackPoints));
+                    }
+                }
+            }
+        }
+        db.execSQL("DROP TABLE trackpoints_archive");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add deleted flag to tracks; data of deleted tracks is purged in the background.
+     */
+    private void upgradeFrom31to32(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("ALTER TABLE tracks ADD COLUMN deleted INTEGER NOT NULL DEFAULT 0");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom32to31(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        // Purge deleted tracks (foreign key constraints are not enabled during downgrade)
+        db.execSQL("DELETE FROM trackpoints WHERE trackid IN (SELECT _id FROM tracks WHERE deleted=1)");
+        db.execSQL("DELETE FROM trackpoints_archive WHERE trackid IN (SELECT _id FROM tracks WHERE deleted=1)");
+        db.execSQL("DELETE FROM markers WHERE trackid IN (SELECT _id FROM tracks WHERE deleted=1)");
+        db.execSQL("DELETE FROM tracks WHERE deleted=1");
+
+        db.execSQL("DROP INDEX tracks_uuid_index");
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+
+        // Otherwise SQLite rewrites the foreign keys of trackpoints, markers, and trackpoints_archive to reference tracks_old.
+        db.execSQL("PRAGMA legacy_alter_table=ON");
+        db.execSQL("ALTER TABLE tracks RENAME TO tracks_old");
+        db.execSQL("CREATE TABLE tracks (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, description TEXT, category TEXT, starttime INTEGER, stoptime INTEGER, numpoints INTEGER, totaldistance FLOAT, totaltime INTEGER, movingtime INTEGER, avgspeed FLOAT, avgmovingspeed FLOAT, maxspeed FLOAT, minelevation FLOAT, maxelevation FLOAT, elevationgain FLOAT, icon TEXT, uuid BLOB, preview BLOB, minlatitude INTEGER, maxlatitude INTEGER, minlongitude INTEGER, maxlongitude INTEGER)");
+        db.execSQL("INSERT INTO tracks SELECT _id, name, description, category, starttime, stoptime, numpoints, totaldistance, totaltime, movingtime, avgspeed, avgmovingspeed, maxspeed, minelevation, maxelevation, elevationgain, icon, uuid, preview, minlatitude, maxlatitude, minlongitude, maxlongitude FROM tracks_old");
+        db.execSQL("DROP TABLE tracks_old");
+        db.execSQL("PRAGMA legacy_alter_table=OFF");
+
+        db.execSQL("CREATE UNIQUE INDEX tracks_uuid_index ON tracks(uuid)");
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add modification count to tracks; maintained by triggers on tracks, trackpoints, and markers.
+     */
+    private void upgradeFrom32to33(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("ALTER TABLE tracks ADD COLUMN modificationcount INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("CREATE TRIGGER tracks_modification_trigger AFTER UPDATE OF name, description, category, icon, starttime, stoptime, totaldistance ON tracks WHEN OLD.name IS NOT NEW.name OR OLD.description IS NOT NEW.description OR OLD.category IS NOT NEW.category OR OLD.icon IS NOT NEW.icon OR OLD.starttime IS NOT NEW.starttime OR OLD.stoptime IS NOT NEW.stoptime OR OLD.totaldistance IS NOT NEW.totaldistance BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW._id; END");
+        db.execSQL("CREATE TRIGGER trackpoints_modification_trigger AFTER INSERT ON trackpoints BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW.trackid; END");
+        db.execSQL("CREATE TRIGGER markers_insert_modification_trigger AFTER INSERT ON markers BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW.trackid; END");
+        db.execSQL("CREATE TRIGGER markers_update_modification_trigger AFTER UPDATE ON markers BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id IN (OLD.trackid, NEW.trackid); END");
+        db.execSQL("CREATE TRIGGER markers_delete_modification_trigger AFTER DELETE ON markers BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = OLD.trackid; END");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom33to32(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TRIGGER tracks_modification_trigger");
+        db.execSQL("DROP TRIGGER trackpoints_modification_trigger");
+        db.execSQL("DROP TRIGGER markers_insert_modification_trigger");
+        db.execSQL("DROP TRIGGER markers_update_modification_trigger");
+        db.execSQL("DROP TRIGGER markers_delete_modification_trigger");
+
+        db.execSQL("DROP INDEX tracks_uuid_index");
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+
+        // Otherwise SQLite rewrites the foreign keys of trackpoints, markers, and trackpoints_archive to reference tracks_old.
+        db.execSQL("PRAGMA legacy_alter_table=ON");
+        db.execSQL("ALTER TABLE tracks RENAME TO tracks_old");
+        db.execSQL("CREATE TABLE tracks (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, description TEXT, category TEXT, starttime INTEGER, stoptime INTEGER, numpoints INTEGER, totaldistance FLOAT, totaltime INTEGER, movingtime INTEGER, avgspeed FLOAT, avgmovingspeed FLOAT, maxspeed FLOAT, minelevation FLOAT, maxelevation FLOAT, elevationgain FLOAT, icon TEXT, uuid BLOB, preview BLOB, minlatitude INTEGER, maxlatitude INTEGER, minlongitude INTEGER, maxlongitude INTEGER, deleted INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("INSERT INTO tracks SELECT _id, name, description, category, starttime, stoptime, numpoints, totaldistance, totaltime, movingtime, avgspeed, avgmovingspeed, maxspeed, minelevation, maxelevation, elevationgain, icon, uuid, preview, minlatitude, maxlatitude, minlongitude, maxlongitude, deleted FROM tracks_old");
+        db.execSQL("DROP TABLE tracks_old");
+        db.execSQL("PRAGMA legacy_alter_table=OFF");
+
+        db.execSQL("CREATE UNIQUE INDEX tracks_uuid_index ON tracks(uuid)");
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add cumulative distance and moving time to trackPoints.
+     * The values of existing trackPoints are computed in the background by {@link CustomContentProvider}.
+     */
+    private void upgradeFrom33to34(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("ALTER TABLE trackpoints ADD COLUMN distance FLOAT");
+        db.execSQL("ALTER TABLE trackpoints ADD COLUMN movingtime INTEGER");
+        db.execSQL("CREATE INDEX trackpoints_distance_index ON trackpoints(trackid, distance)");
+        db.execSQL("CREATE INDEX trackpoints_movingtime_index ON trackpoints(trackid, movingtime)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Archived trackPoints (version 2 encoding) are restored, as version 33 cannot decode them.
+     */
+    private void downgradeFrom34to33(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        try (Cursor cursor = db.query("trackpoints_archive", new String[]{"trackid", "data"}, null, null, null, null, "trackid, firsttrackpointid")) {
+            while (cursor.moveToNext()) {
+                try (Cursor trackPoints = TrackPointsArchive.decode(cursor.getLong(0), cursor.getBlob(1))) {
+                    while (trackPoints.moveToNext()) {
+                        db.insertOrThrow("trackpoints", null, TrackPointsArchive.toContentValues(trackPoints));
+                    }
+                }
+            }
+        }
+        db.execSQL("DELETE FROM trackpoints_archive");
+
+        db.execSQL("DROP INDEX trackpoints_distance_index");
+        db.execSQL("DROP INDEX trackpoints_movingtime_index");
+
+        db.execSQL("ALTER TABLE trackpoints RENAME TO trackpoints_old");
+        db.execSQL("CREATE TABLE trackpoints (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, longitude INTEGER, latitude INTEGER, time INTEGER, elevation FLOAT, accuracy FLOAT, speed FLOAT, bearing FLOAT, sensor_heartrate FLOAT, sensor_cadence FLOAT, sensor_power FLOAT, elevation_gain FLOAT, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("INSERT INTO trackpoints SELECT _id, trackid, longitude, latitude, time, elevation, accuracy, speed, bearing, sensor_heartrate, sensor_cadence, sensor_power, elevation_gain FROM trackpoints_old");
+        db.execSQL("DROP TABLE trackpoints_old");
+
+        db.execSQL("CREATE INDEX trackpoints_trackid_index ON trackpoints(trackid)");
+        db.execSQL("CREATE TRIGGER trackpoints_modification_trigger AFTER INSERT ON trackpoints BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW.trackid; END");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Best efforts are computed in the background (see CustomContentProvider).
+     */
+    private void upgradeFrom34to35(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE besteffort (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, type TEXT NOT NULL, target FLOAT NOT NULL, value FLOAT NOT NULL, starttime INTEGER, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE INDEX besteffort_trackid_index ON besteffort(trackid)");
+        db.execSQL("CREATE TABLE personalrecord (_id INTEGER PRIMARY KEY AUTOINCREMENT, category TEXT NOT NULL, type TEXT NOT NULL, target FLOAT NOT NULL, besteffortid INTEGER NOT NULL, FOREIGN KEY (besteffortid) REFERENCES besteffort(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX personalrecord_key_index ON personalrecord(category, type, target)");
+        db.execSQL("CREATE INDEX personalrecord_besteffortid_index ON personalrecord(besteffortid)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom35to34(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE personalrecord");
+        db.execSQL("DROP TABLE besteffort");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add sensor statistics (heart rate, cadence, power, and time in zones) to tracks.
+     * Existing tracks have none until their statistics are recomputed.
+     */
+    private void upgradeFrom35to36(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("ALTER TABLE tracks ADD COLUMN avgheartrate FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN maxheartrate FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN heartratetime INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN avgcadence FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN maxcadence FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN cadencetime INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN avgpower FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN maxpower FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN powertime INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN normalizedpower FLOAT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN normalizedpowertime INTEGER");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN heartratezones TEXT");
+        db.execSQL("ALTER TABLE tracks ADD COLUMN powerzones TEXT");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom36to35(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TRIGGER tracks_modification_trigger");
+        db.execSQL("DROP INDEX tracks_uuid_index");
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+
+        // Otherwise SQLite rewrites the foreign keys referencing tracks to reference tracks_old.
+        db.execSQL("PRAGMA legacy_alter_table=ON");
+        db.execSQL("ALTER TABLE tracks RENAME TO tracks_old");
+        db.execSQL("CREATE TABLE tracks (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, description TEXT, category TEXT, starttime INTEGER, stoptime INTEGER, numpoints INTEGER, totaldistance FLOAT, totaltime INTEGER, movingtime INTEGER, avgspeed FLOAT, avgmovingspeed FLOAT, maxspeed FLOAT, minelevation FLOAT, maxelevation FLOAT, elevationgain FLOAT, icon TEXT, uuid BLOB, preview BLOB, minlatitude INTEGER, maxlatitude INTEGER, minlongitude INTEGER, maxlongitude INTEGER, deleted INTEGER NOT NULL DEFAULT 0, modificationcount INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("INSERT INTO tracks SELECT _id, name, description, category, starttime, stoptime, numpoints, totaldistance, totaltime, movingtime, avgspeed, avgmovingspeed, maxspeed, minelevation, maxelevation, elevationgain, icon, uuid, preview, minlatitude, maxlatitude, minlongitude, maxlongitude, deleted, modificationcount FROM tracks_old");
+        db.execSQL("DROP TABLE tracks_old");
+        db.execSQL("PRAGMA legacy_alter_table=OFF");
+
+        db.execSQL("CREATE UNIQUE INDEX tracks_uuid_index ON tracks(uuid)");
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude)");
+        db.execSQL("CREATE TRIGGER tracks_modification_trigger AFTER UPDATE OF name, description, category, icon, starttime, stoptime, totaldistance ON tracks WHEN OLD.name IS NOT NEW.name OR OLD.description IS NOT NEW.description OR OLD.category IS NOT NEW.category OR OLD.icon IS NOT NEW.icon OR OLD.starttime IS NOT NEW.starttime OR OLD.stoptime IS NOT NEW.stoptime OR OLD.totaldistance IS NOT NEW.totaldistance BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW._id; END");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Add segments (runs of valid trackPoints between pause/resume trackPoints) maintained by triggers; existing segments are built from the trackPoints.
+     */
+    private void upgradeFrom36to37(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE segments (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, segmentindex INTEGER NOT NULL, firsttrackpointid INTEGER NOT NULL, lasttrackpointid INTEGER NOT NULL, starttime INTEGER, stoptime INTEGER, closed INTEGER NOT NULL DEFAULT 0, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX segments_trackid_index ON segments(trackid, segmentindex)");
+
+        int segments = new SegmentsBuilder(db).run();
+        Log.i(TAG, "Created " + segments + " segments.");
+
+        db.execSQL("CREATE TRIGGER segments_extend_trigger AFTER INSERT ON trackpoints WHEN NEW.latitude <= 90000000 BEGIN UPDATE segments SET lasttrackpointid = NEW._id, stoptime = NEW.time WHERE trackid = NEW.trackid AND closed = 0 AND lasttrackpointid < NEW._id; INSERT INTO segments (trackid, segmentindex, firsttrackpointid, lasttrackpointid, starttime, stoptime) SELECT NEW.trackid, (SELECT COUNT(*) FROM segments WHERE trackid = NEW.trackid), NEW._id, NEW._id, NEW.time, NEW.time WHERE NOT EXISTS (SELECT 1 FROM segments WHERE trackid = NEW.trackid AND (closed = 0 OR lasttrackpointid >= NEW._id)); END");
+        db.execSQL("CREATE TRIGGER segments_close_trigger AFTER INSERT ON trackpoints WHEN NEW.latitude > 90000000 BEGIN UPDATE segments SET closed = 1, stoptime = MAX(stoptime, NEW.time) WHERE trackid = NEW.trackid AND closed = 0 AND lasttrackpointid < NEW._id; END");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom37to36(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TRIGGER segments_close_trigger");
+        db.execSQL("DROP TRIGGER segments_extend_trigger");
+        db.execSQL("DROP TABLE segments");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Climbs are detected while recording; existing tracks get theirs when their statistics are recomputed (see StatisticsRecompute).
+     */
+    private void upgradeFrom37to38(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE climbs (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, starttrackpointid INTEGER NOT NULL, endtrackpointid INTEGER NOT NULL, startdistance FLOAT NOT NULL, enddistance FLOAT NOT NULL, startduration INTEGER NOT NULL, endduration INTEGER NOT NULL, elevationgain FLOAT NOT NULL, averagegrade FLOAT NOT NULL, maxgrade FLOAT, vam FLOAT, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE INDEX climbs_trackid_index ON climbs(trackid)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom38to37(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE climbs");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * The bounding box index covers all four bounds; so tracks outside of the longitude range are rejected using the index.
+     * The modification count of a track and its segments are updated once per insert transaction of trackPoints by the CustomContentProvider instead of by triggers per trackPoint.
+     */
+    private void upgradeFrom38to39(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude, minlongitude, maxlongitude)");
+
+        db.execSQL("DROP TRIGGER trackpoints_modification_trigger");
+        db.execSQL("DROP TRIGGER segments_close_trigger");
+        db.execSQL("DROP TRIGGER segments_extend_trigger");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom39to38(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP INDEX tracks_boundingbox_index");
+        db.execSQL("CREATE INDEX tracks_boundingbox_index ON tracks(minlatitude, maxlatitude)");
+
+        db.execSQL("CREATE TRIGGER trackpoints_modification_trigger AFTER INSERT ON trackpoints BEGIN UPDATE tracks SET modificationcount = modificationcount + 1 WHERE _id = NEW.trackid; END");
+        db.execSQL("CREATE TRIGGER segments_extend_trigger AFTER INSERT ON trackpoints WHEN NEW.latitude <= 90000000 BEGIN UPDATE segments SET lasttrackpointid = NEW._id, stoptime = NEW.time WHERE trackid = NEW.trackid AND closed = 0 AND lasttrackpointid < NEW._id; INSERT INTO segments (trackid, segmentindex, firsttrackpointid, lasttrackpointid, starttime, stoptime) SELECT NEW.trackid, (SELECT COUNT(*) FROM segments WHERE trackid = NEW.trackid), NEW._id, NEW._id, NEW.time, NEW.time WHERE NOT EXISTS (SELECT 1 FROM segments WHERE trackid = NEW.trackid AND (closed = 0 OR lasttrackpointid >= NEW._id)); END");
+        db.execSQL("CREATE TRIGGER segments_close_trigger AFTER INSERT ON trackpoints WHEN NEW.latitude > 90000000 BEGIN UPDATE segments SET closed = 1, stoptime = MAX(stoptime, NEW.time) WHERE trackid = NEW.trackid AND closed = 0 AND lasttrackpointid < NEW._id; END");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
 }
@@ -0,0 +1,110 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+
+/**
+ * Builds the segments of existing tracks from their pause/resume trackPoints (incl. archived trackPoints); same result as {@link SegmentsUpdater}.
+ * Used when upgrading to database version 37.
+ */
+class SegmentsBuilder {
+
+    private final SQLiteDatabase db;
+
+    // The current segment
+    private long trackId;
+    private int index;
+    private long firstTrackPointId = -1L;
+    private long lastTrackPointId;
+    private long startTime;
+    private long stopTime;
+    private boolean closed;
+
+    SegmentsBuilder(@NonNull SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * @return the number of segments
+     */
+    int run() {
+        int count = 0;
+        try (Cursor tracks = db.query(TracksColumns.TABLE_NAME, new String[]{TracksColumns._ID}, null, null, null, null, TracksColumns._ID)) {
+            while (tracks.moveToNext()) {
+                trackId = tracks.getLong(0);
+                index = 0;
+                firstTrackPointId = -1L;
+                closed = false;
+
+                // Archived trackPoints precede the trackPoints in the table.
+                try (Cursor chunks = db.query(TrackPointsArchiveColumns.TABLE_NAME, new String[]{TrackPointsArchiveColumns.DATA}, TrackPointsArchiveColumns.TRACKID + "=?", new String[]{Long.toString(trackId)}, null, null, TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID)) {
+                    while (chunks.moveToNext()) {
+                        try (Cursor trackPoints = TrackPointsArchive.decode(trackId, chunks.getBlob(0))) {
+                            addAll(trackPoints);
+                        }
+                    }
+                }
+                String[] columns = {TrackPointsColumns._ID, TrackPointsColumns.LATITUDE, TrackPointsColumns.TIME};
+                try (Cursor trackPoints = db.query(TrackPointsColumns.TABLE_NAME, columns, TrackPointsColumns.TRACKID + "=?", new String[]{Long.toString(trackId)}, null, null, TrackPointsColumns._ID)) {
+                    addAll(trackPoints);
+                }
+
+                insertSegment();
+                count += index;
+            }
+        }
+        return count;
+    }
+
+    private void addAll(Cursor trackPoints) {
+        int idIndex = trackPoints.getColumnIndexOrThrow(TrackPointsColumns._ID);
+        int latitudeIndex = trackPoints.getColumnIndexOrThrow(TrackPointsColumns.LATITUDE);
+        int timeIndex = trackPoints.getColumnIndexOrThrow(TrackPointsColumns.TIME);
+        while (trackPoints.moveToNext()) {
+            long id = trackPoints.getLong(idIndex);
+            long time = trackPoints.getLong(timeIndex);
+            if (trackPoints.getLong(latitudeIndex) > SegmentsColumns.MAX_LATITUDE_E6) {
+                // Pause or resume
+                if (firstTrackPointId != -1L && !closed) {
+                    closed = true;
+                    stopTime = Math.max(stopTime, time);
+                }
+                continue;
+            }
+
+            if (firstTrackPointId == -1L || closed) {
+                insertSegment();
+                firstTrackPointId = id;
+                startTime = time;
+                closed = false;
+            }
+            lastTrackPointId = id;
+            stopTime = time;
+        }
+    }
+
+    private void insertSegment() {
+        if (firstTrackPointId == -1L) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(SegmentsColumns.TRACKID, trackId);
+        values.put(SegmentsColumns.SEGMENT_INDEX, index);
+        values.put(SegmentsColumns.FIRST_TRACKPOINT_ID, firstTrackPointId);
+        values.put(SegmentsColumns.LAST_TRACKPOINT_ID, lastTrackPointId);
+        values.put(SegmentsColumns.STARTTIME, startTime);
+        values.put(SegmentsColumns.STOPTIME, stopTime);
+        values.put(SegmentsColumns.CLOSED, closed ? 1 : 0);
+        db.insertOrThrow(SegmentsColumns.TABLE_NAME, null, values);
+        index++;
+        firstTrackPointId = -1L;
+    }
+}
@@ -0,0 +1,141 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.dennisguse.opentracks.content.data.SegmentsColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+
+/**
+ * Maintains the segments of tracks while trackPoints are inserted within one transaction (see {@link SegmentsColumns}); same result as {@link SegmentsBuilder}.
+ * The last segment of a track is read once and written once per segment (on {@link #flush()} or if a new segment starts) rather than per trackPoint.
+ * TrackPoints with ids not after the last segment of their track are ignored.
+ */
+class SegmentsUpdater {
+
+    private static final String[] COLUMNS = {SegmentsColumns._ID, SegmentsColumns.SEGMENT_INDEX, SegmentsColumns.FIRST_TRACKPOINT_ID, SegmentsColumns.LAST_TRACKPOINT_ID, SegmentsColumns.STARTTIME, SegmentsColumns.STOPTIME, SegmentsColumns.CLOSED};
+
+    private final SQLiteDatabase db;
+
+    private final Map<Long, LastSegment> lastSegments = new HashMap<>();
+
+    SegmentsUpdater(@NonNull SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * @param trackPointId the id of the inserted trackPoint
+     * @param values       the values of the inserted trackPoint
+     */
+    void add(long trackPointId, @NonNull ContentValues values) {
+        long trackId = values.getAsLong(TrackPointsColumns.TRACKID);
+        long time = values.getAsLong(TrackPointsColumns.TIME);
+
+        LastSegment segment = lastSegments.get(trackId);
+        if (segment == null) {
+            segment = load(trackId);
+            lastSegments.put(trackId, segment);
+        }
+        if (trackPointId <= segment.lastTrackPointId) {
+            return;
+        }
+
+        if (values.getAsLong(TrackPointsColumns.LATITUDE) > SegmentsColumns.MAX_LATITUDE_E6) {
+            // Pause or resume
+            if (segment.exists() && !segment.closed) {
+                segment.closed = true;
+                segment.stopTime = Math.max(segment.stopTime, time);
+                segment.modified = true;
+            }
+            return;
+        }
+
+        if (!segment.exists() || segment.closed) {
+            if (segment.exists()) {
+                write(segment);
+                segment.index++;
+            }
+            segment.rowId = -1L;
+            segment.firstTrackPointId = trackPointId;
+            segment.startTime = time;
+            segment.closed = false;
+        }
+        segment.lastTrackPointId = trackPointId;
+        segment.stopTime = time;
+        segment.modified = true;
+    }
+
+    /**
+     * Writes the modified last segments; must be called before the transaction is committed.
+     */
+    void flush() {
+        for (LastSegment segment : lastSegments.values()) {
+            write(segment);
+        }
+        lastSegments.clear();
+    }
+
+    private LastSegment load(long trackId) {
+        LastSegment segment = new LastSegment(trackId);
+        try (Cursor cursor = db.query(SegmentsColumns.TABLE_NAME, COLUMNS, SegmentsColumns.TRACKID + "=?", new String[]{Long.toString(trackId)}, null, null, SegmentsColumns.SEGMENT_INDEX + " DESC", "1")) {
+            if (cursor.moveToFirst()) {
+                segment.rowId = cursor.getLong(0);
+                segment.index = cursor.getInt(1);
+                segment.firstTrackPointId = cursor.getLong(2);
+                segment.lastTrackPointId = cursor.getLong(3);
+                segment.startTime = cursor.getLong(4);
+                segment.stopTime = cursor.getLong(5);
+                segment.closed = cursor.getInt(6) == 1;
+            }
+        }
+        return segment;
+    }
+
+    private void write(LastSegment segment) {
+        if (!segment.modified) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(SegmentsColumns.LAST_TRACKPOINT_ID, segment.lastTrackPointId);
+        values.put(SegmentsColumns.STOPTIME, segment.stopTime);
+        values.put(SegmentsColumns.CLOSED, segment.closed ? 1 : 0);
+        if (segment.rowId == -1L) {
+            values.put(SegmentsColumns.TRACKID, segment.trackId);
+            values.put(SegmentsColumns.SEGMENT_INDEX, segment.index);
+            values.put(SegmentsColumns.FIRST_TRACKPOINT_ID, segment.firstTrackPointId);
+            values.put(SegmentsColumns.STARTTIME, segment.startTime);
+            segment.rowId = db.insertOrThrow(SegmentsColumns.TABLE_NAME, null, values);
+        } else {
+            db.update(SegmentsColumns.TABLE_NAME, values, SegmentsColumns._ID + "=?", new String[]{Long.toString(segment.rowId)});
+        }
+        segment.modified = false;
+    }
+
+    private static class LastSegment {
+        private final long trackId;
+        // -1 if not yet stored
+        private long rowId = -1L;
+        private int index;
+        // -1 if the track has no segment
+        private long firstTrackPointId = -1L;
+        private long lastTrackPointId = -1L;
+        private long startTime;
+        private long stopTime;
+        private boolean closed;
+        private boolean modified;
+
+        private LastSegment(long trackId) {
+            this.trackId = trackId;
+        }
+
+        private boolean exists() {
+            return firstTrackPointId != -1L;
+        }
+    }
+}
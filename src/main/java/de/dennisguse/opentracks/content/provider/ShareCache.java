@@ -0,0 +1,249 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
+
+/**
+ * Renders the files shared via {@link ShareContentProvider} once and caches them on disk (LRU by total size).
+ * <p>
+ * The file name contains the {@link TrackFileFormat}, the track ids, and their modification counts; so a modified track results in a new file and the outdated file is deleted.
+ * <p>
+ * Each file is rendered by one {@link FutureTask}; concurrent requests for the same file wait for it.
+ * The task is removed after the file was published (renamed to its final name); later requests find the file on disk.
+ */
+class ShareCache {
+
+    private static final String TAG = ShareCache.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "share";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    // Longer names are replaced by their hash.
+    private static final int MAX_NAME_LENGTH = 100;
+
+    @VisibleForTesting
+    static final long MAX_DISK_SIZE_BYTES = 64 * 1024 * 1024;
+
+    private static ShareCache instance;
+
+    private final File directory;
+    private final long maxSizeBytes;
+
+    // Files being rendered (by file name).
+    private final ConcurrentMap<String, FutureTask<File>> renderings = new ConcurrentHashMap<>();
+
+    // Renders files in advance (see prefetch()).
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+
+    static synchronized ShareCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ShareCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME), MAX_DISK_SIZE_BYTES);
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    ShareCache(File directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the exported file if it is already cached; does not render it.
+     *
+     * @param tracks          the tracks (must be sorted by id)
+     * @param trackFileFormat the format
+     */
+    @Nullable
+    File getIfCached(@NonNull Track[] tracks, @NonNull TrackFileFormat trackFileFormat) {
+        File file = new File(directory, getName(tracks, trackFileFormat));
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * Starts rendering the exported file in the background (if not cached or already rendering).
+     *
+     * @param tracks          the tracks (must be sorted by id)
+     * @param trackFileFormat the format
+     * @param trackExporter   the exporter for the format
+     */
+    void prefetch(@NonNull Track[] tracks, @NonNull TrackFileFormat trackFileFormat, @NonNull TrackExporter trackExporter) {
+        String name = getName(tracks, trackFileFormat);
+        if (new File(directory, name).exists()) {
+            return;
+        }
+        prefetchExecutor.execute(getRendering(name, tracks, trackFileFormat, trackExporter));
+    }
+
+    /**
+     * Returns the exported file; renders it if not cached.
+     *
+     * @param tracks          the tracks (must be sorted by id)
+     * @param trackFileFormat the format
+     * @param trackExporter   the exporter for the format
+     */
+    @NonNull
+    File get(@NonNull Track[] tracks, @NonNull TrackFileFormat trackFileFormat, @NonNull TrackExporter trackExporter) throws IOException {
+        String name = getName(tracks, trackFileFormat);
+        File file = new File(directory, name);
+        if (file.exists()) {
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+
+        FutureTask<File> rendering = getRendering(name, tracks, trackFileFormat, trackExporter);
+        // Renders in this thread unless another thread is already rendering (or has rendered) the file.
+        rendering.run();
+        try {
+            return rendering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + name);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not export " + name, e.getCause());
+        }
+    }
+
+    private FutureTask<File> getRendering(String name, Track[] tracks, TrackFileFormat trackFileFormat, TrackExporter trackExporter) {
+        String prefix = getPrefix(tracks, trackFileFormat);
+        return renderings.computeIfAbsent(name, key -> new FutureTask<File>(() -> {
+            File file = new File(directory, key);
+            if (file.exists()) {
+                file.setLastModified(System.currentTimeMillis());
+                return file;
+            }
+
+            deleteOutdated(prefix, key);
+            render(file, tracks, trackExporter);
+            trimDisk(file);
+            return file;
+        }) {
+            @Override
+            protected void done() {
+                // The file is published (or rendering failed); later requests do not need to wait anymore.
+                renderings.remove(key, this);
+            }
+        });
+    }
+
+    private static String getPrefix(Track[] tracks, TrackFileFormat trackFileFormat) {
+        StringBuilder trackIds = new StringBuilder();
+        for (Track track : tracks) {
+            if (trackIds.length() > 0) {
+                trackIds.append('-');
+            }
+            trackIds.append(track.getId().getId());
+        }
+        return trackFileFormat.getName() + "_" + shorten(trackIds.toString()) + "_";
+    }
+
+    private static String getName(Track[] tracks, TrackFileFormat trackFileFormat) {
+        StringBuilder modificationCounts = new StringBuilder();
+        for (Track track : tracks) {
+            if (modificationCounts.length() > 0) {
+                modificationCounts.append('-');
+            }
+            modificationCounts.append(track.getModificationCount());
+        }
+        return getPrefix(tracks, trackFileFormat) + shorten(modificationCounts.toString());
+    }
+
+    private void render(File file, Track[] tracks, TrackExporter trackExporter) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+
+        // Written to a temporary file first; so an incomplete file is never shared.
+        File tempFile = new File(directory, file.getName() + TEMP_FILE_EXTENSION);
+        boolean success;
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+            success = trackExporter.writeTrack(tracks, fileOutputStream);
+        }
+        if (!success || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not export " + file.getName());
+        }
+        Log.d(TAG, "Rendered " + file.getName() + " (" + file.length() + " bytes)");
+    }
+
+    /**
+     * Deletes the files of the same tracks and format with other modification counts.
+     */
+    private void deleteOutdated(String prefix, String name) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !file.getName().equals(name) && !file.getName().endsWith(TEMP_FILE_EXTENSION)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files (except the current one) until the cache is below maxSizeBytes.
+     * Files that are still open by a receiving app remain readable until they are closed.
+     */
+    private void trimDisk(File current) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSizeBytes) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (size <= maxSizeBytes) {
+                break;
+            }
+            if (file.equals(current) || file.getName().endsWith(TEMP_FILE_EXTENSION)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static String shorten(String value) {
+        if (value.length() <= MAX_NAME_LENGTH / 2) {
+            return value;
+        }
+        return UUID.nameUUIDFromBytes(value.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
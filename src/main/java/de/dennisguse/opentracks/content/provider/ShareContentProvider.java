@@ -15,8 +15,8 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,7 +32,7 @@ import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
 
 /**
  * A content provider that mimics the behavior of {@link androidx.core.content.FileProvider}, which shares virtual (non-existing) KML-files.
- * The actual content of the virtual files is generated by using the functionality defined in {@link CustomContentProvider}.
+ * The actual content of the virtual files is generated by using the functionality defined in {@link CustomContentProvider} and cached by {@link ShareCache}.
  * <p>
  * Moreover, it manages access to OpenTrack's database via {@link CustomContentProvider}.
  * <p>
@@ -184,7 +184,7 @@ public class ShareContentProvider extends CustomContentProvider {
                 values[i++] = uri.getLastPathSegment();
             } else if (OpenableColumns.SIZE.equals(col)) {
                 cols[i] = OpenableColumns.SIZE;
-                values[i++] = -1;
+                values[i++] = getShareFileSize(uri);
             }
         }
 
@@ -207,9 +207,56 @@ public class ShareContentProvider extends CustomContentProvider {
         return super.getType(uri);
     }
 
+    /**
+     * Serves the cached export as a seekable file (see {@link ShareCache}); waits for a rendering already started by {@link #query}.
+     */
     @Nullable
     @Override
     public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        try {
+            return ParcelFileDescriptor.open(getShareFile(uri), ParcelFileDescriptor.MODE_READ_ONLY);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            Log.w(TAG, "there occurred an error while sharing a file: " + e);
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the size if the file is cached; otherwise starts rendering it in the background (does not block the binder thread) and the size is unknown.
+     *
+     * @return the size or null if unknown
+     */
+    @Nullable
+    private Long getShareFileSize(@NonNull Uri uri) {
+        try {
+            Track[] tracks = getTracks(uri);
+            TrackFileFormat trackFileFormat = getTrackFileFormat(uri);
+            ShareCache shareCache = ShareCache.getInstance(getContext());
+            File file = shareCache.getIfCached(tracks, trackFileFormat);
+            if (file != null) {
+                return file.length();
+            }
+            shareCache.prefetch(tracks, trackFileFormat, trackFileFormat.newTrackExporter(getContext()));
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not determine the size of " + uri, e);
+            return null;
+        }
+    }
+
+    private File getShareFile(@NonNull Uri uri) throws IOException {
+        Track[] tracks = getTracks(uri);
+        TrackFileFormat trackFileFormat = getTrackFileFormat(uri);
+        TrackExporter trackExporter = trackFileFormat.newTrackExporter(getContext());
+        return ShareCache.getInstance(getContext()).get(tracks, trackFileFormat, trackExporter);
+    }
+
+    /**
+     * @return the tracks sorted by id
+     */
+    private Track[] getTracks(@NonNull Uri uri) throws FileNotFoundException {
         Set<Track.Id> trackIds = parseURI(uri);
         final ArrayList<Track> tracks = new ArrayList<>();
         String[] trackIdsString = trackIds.stream().map(Track.Id::toString).toArray(String[]::new);
@@ -220,17 +267,9 @@ public class ShareContentProvider extends CustomContentProvider {
                 tracks.add(ContentProviderUtils.createTrack(cursor));
             }
         }
-
-        final TrackExporter trackExporter = getTrackFileFormat(uri).newTrackExporter(getContext());
-
-        PipeDataWriter<String> pipeDataWriter = (output, uri1, mimeType, opts, args) -> {
-            try (FileOutputStream fileOutputStream = new FileOutputStream(output.getFileDescriptor())) {
-                trackExporter.writeTrack(tracks.toArray(new Track[0]), fileOutputStream);
-            } catch (IOException e) {
-                Log.w(TAG, "there occurred an error while sharing a file: " + e);
-            }
-        };
-
-        return openPipeHelper(uri, getType(uri), null, null, pipeDataWriter);
+        if (tracks.isEmpty()) {
+            throw new FileNotFoundException("No tracks for " + uri);
+        }
+        return tracks.toArray(new Track[0]);
     }
 }
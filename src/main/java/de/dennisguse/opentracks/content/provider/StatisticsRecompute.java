@@ -0,0 +1,318 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.dennisguse.opentracks.content.data.Climb;
+import de.dennisguse.opentracks.content.data.ClimbsColumns;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.ClimbDetector;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+/**
+ * Recomputes the statistics (and climbs) of all tracks by replaying their trackPoints through a {@link TrackStatisticsUpdater} and a {@link ClimbDetector} (like restarting a recording).
+ * Runs if the stored statistics are older than {@link TrackStatisticsUpdater#STATISTICS_VERSION} (or on request).
+ * <p>
+ * Tracks are processed in batches (ordered by id): a {@link ForkJoinPool} of readers replays the tracks of a batch in parallel, then the batch is written in one transaction.
+ * The last written track id is persisted, so an interrupted run continues with the next batch.
+ * <p>
+ * Readers cannot hold read transactions (Android binds transactions to the single writer connection); instead, a fingerprint of the track's data is compared before and after reading and again while writing.
+ * Tracks modified in between (e.g., archived or still imported) are replayed again.
+ * <p>
+ * While recording, only one reader runs and pauses before each track; the recorded track is skipped (its statistics are maintained by the recording).
+ * <p>
+ * A cancelled run stops after the current batch and is not marked as complete.
+ */
+class StatisticsRecompute {
+
+    private static final String TAG = StatisticsRecompute.class.getSimpleName();
+
+    /**
+     * Number of tracks written per transaction.
+     */
+    private static final int BATCH_SIZE = 50;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @VisibleForTesting
+    static final long THROTTLE_DELAY_MS = 200;
+
+    private static final String FINGERPRINT_QUERY = "SELECT " + TracksColumns.MODIFICATION_COUNT
+            + ", (SELECT COUNT(*) FROM " + TrackPointsColumns.TABLE_NAME + " WHERE " + TrackPointsColumns.TRACKID + "=?)"
+            + ", (SELECT IFNULL(MAX(" + TrackPointsColumns._ID + "), 0) FROM " + TrackPointsColumns.TABLE_NAME + " WHERE " + TrackPointsColumns.TRACKID + "=?)"
+            + ", (SELECT COUNT(*) FROM " + TrackPointsArchiveColumns.TABLE_NAME + " WHERE " + TrackPointsArchiveColumns.TRACKID + "=?)"
+            + " FROM " + TracksColumns.TABLE_NAME + " WHERE " + TracksColumns._ID + "=? AND " + TracksColumns.DELETED + "=0";
+
+    private final Context context;
+    private final SQLiteDatabase db;
+    private final ContentProviderUtils contentProviderUtils;
+
+    private final int minRecordingDistance;
+    private final SmoothingFilter.Type elevationSmoothing;
+    private final SmoothingFilter.Type speedSmoothing;
+    private final double[] heartRateZones_bpm;
+    private final double[] powerZones_W;
+
+    private final Semaphore throttle = new Semaphore(1);
+
+    private final AtomicInteger doneTracks = new AtomicInteger(0);
+    private final AtomicInteger totalTracks = new AtomicInteger(0);
+
+    private volatile boolean cancelled = false;
+
+    StatisticsRecompute(@NonNull Context context, @NonNull SQLiteDatabase db) {
+        this.context = context;
+        this.db = db;
+        this.contentProviderUtils = new ContentProviderUtils(context);
+
+        minRecordingDistance = PreferencesUtils.getRecordingDistanceInterval(context);
+        elevationSmoothing = PreferencesUtils.getElevationSmoothing(context);
+        speedSmoothing = PreferencesUtils.getSpeedSmoothing(context);
+        heartRateZones_bpm = PreferencesUtils.getHeartRateZones(context);
+        powerZones_W = PreferencesUtils.getPowerZones(context);
+    }
+
+    static boolean isPending(@NonNull Context context) {
+        return PreferencesUtils.getStatisticsVersion(context) < TrackStatisticsUpdater.STATISTICS_VERSION;
+    }
+
+    /**
+     * Recomputes the statistics of all tracks on the next run.
+     */
+    static void request(@NonNull Context context) {
+        PreferencesUtils.setStatisticsRecomputeTrackId(context, -1L);
+        PreferencesUtils.setStatisticsVersion(context, 0);
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    int getDoneTracks() {
+        return doneTracks.get();
+    }
+
+    int getTotalTracks() {
+        return totalTracks.get();
+    }
+
+    /**
+     * @return the number of recomputed tracks (so far, if cancelled)
+     */
+    int run() throws InterruptedException {
+        long lastTrackId = PreferencesUtils.getStatisticsRecomputeTrackId(context);
+        List<Long> trackIds = getTrackIds(lastTrackId);
+        totalTracks.set(trackIds.size());
+        Log.i(TAG, "Recomputing statistics of " + trackIds.size() + " tracks.");
+
+        int count = 0;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        try {
+            for (int from = 0; from < trackIds.size(); from += BATCH_SIZE) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                if (cancelled) {
+                    Log.i(TAG, "Recomputing statistics cancelled.");
+                    return count;
+                }
+                List<Long> batch = trackIds.subList(from, Math.min(from + BATCH_SIZE, trackIds.size()));
+
+                List<Callable<Result>> readers = new ArrayList<>(batch.size());
+                for (long trackId : batch) {
+                    readers.add(() -> read(trackId));
+                }
+                List<Result> results = new ArrayList<>(batch.size());
+                for (Future<Result> future : pool.invokeAll(readers)) {
+                    results.add(getResult(future));
+                }
+
+                List<Long> modified = write(results);
+                for (long trackId : modified) {
+                    // Rare: replay and write on its own.
+                    Result result = read(trackId);
+                    if (!write(Arrays.asList(result)).isEmpty()) {
+                        Log.w(TAG, "Track " + trackId + " is being modified; statistics not recomputed.");
+                    }
+                }
+                for (Result result : results) {
+                    if (result != null) {
+                        count++;
+                    }
+                }
+
+                PreferencesUtils.setStatisticsRecomputeTrackId(context, batch.get(batch.size() - 1));
+                doneTracks.addAndGet(batch.size());
+                context.getContentResolver().notifyChange(TracksColumns.CONTENT_URI, null, false);
+                Log.d(TAG, "Recomputed statistics: " + doneTracks.get() + "/" + totalTracks.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        PreferencesUtils.setStatisticsVersion(context, TrackStatisticsUpdater.STATISTICS_VERSION);
+        PreferencesUtils.setStatisticsRecomputeTrackId(context, -1L);
+        return count;
+    }
+
+    private List<Long> getTrackIds(long lastTrackId) {
+        List<Long> trackIds = new ArrayList<>();
+        try (Cursor cursor = db.query(TracksColumns.TABLE_NAME, new String[]{TracksColumns._ID}, TracksColumns._ID + ">? AND " + TracksColumns.DELETED + "=0", new String[]{Long.toString(lastTrackId)}, null, null, TracksColumns._ID)) {
+            while (cursor.moveToNext()) {
+                trackIds.add(cursor.getLong(0));
+            }
+        }
+        return trackIds;
+    }
+
+    private static Result getResult(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Replaying track failed.", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Replays a track; throttled while recording.
+     *
+     * @return the statistics or null if the track is recorded, deleted, has no trackPoints, or is being modified.
+     */
+    @Nullable
+    private Result read(long trackId) throws InterruptedException {
+        if (!PreferencesUtils.isRecording(context)) {
+            return replay(trackId);
+        }
+
+        throttle.acquire();
+        try {
+            Thread.sleep(THROTTLE_DELAY_MS);
+            if (trackId == PreferencesUtils.getRecordingTrackId(context).getId()) {
+                return null;
+            }
+            return replay(trackId);
+        } finally {
+            throttle.release();
+        }
+    }
+
+    @Nullable
+    private Result replay(long trackId) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long[] fingerprint = getFingerprint(trackId);
+            Track track = contentProviderUtils.getTrack(new Track.Id(trackId));
+            if (fingerprint == null || track == null || (fingerprint[1] == 0 && fingerprint[3] == 0)) {
+                return null;
+            }
+
+            TrackStatistics stored = track.getTrackStatistics();
+            TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(stored.getStartTime_ms(), elevationSmoothing, speedSmoothing);
+            trackStatisticsUpdater.setZones(heartRateZones_bpm, powerZones_W);
+            ClimbDetector climbDetector = new ClimbDetector(track.getId());
+            List<Climb> climbs;
+            try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), -1L, false)) {
+                climbs = climbDetector.addAll(trackPointIterator, trackStatisticsUpdater, minRecordingDistance);
+            }
+            Climb climb = climbDetector.finish();
+            if (climb != null) {
+                climbs.add(climb);
+            }
+
+            if (Arrays.equals(fingerprint, getFingerprint(trackId))) {
+                // Times are not derived from the trackPoints only (e.g., the recording stopped after the last trackPoint).
+                TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
+                trackStatistics.setStartTime_ms(stored.getStartTime_ms());
+                trackStatistics.setStopTime_ms(stored.getStopTime_ms());
+                trackStatistics.setTotalTime(stored.getTotalTime());
+                return new Result(trackId, fingerprint, trackStatistics, climbs);
+            }
+        }
+        Log.w(TAG, "Track " + trackId + " is being modified; statistics not recomputed.");
+        return null;
+    }
+
+    /**
+     * Writes the statistics and climbs of unmodified tracks in one transaction.
+     *
+     * @return the ids of tracks that were modified since they were replayed
+     */
+    private List<Long> write(List<Result> results) {
+        List<Long> modified = new ArrayList<>();
+        try {
+            db.beginTransaction();
+            for (Result result : results) {
+                if (result == null) {
+                    continue;
+                }
+                if (!Arrays.equals(result.fingerprint, getFingerprint(result.trackId))) {
+                    modified.add(result.trackId);
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                ContentProviderUtils.putTrackStatistics(values, result.trackStatistics);
+                db.update(TracksColumns.TABLE_NAME, values, TracksColumns._ID + "=?", new String[]{Long.toString(result.trackId)});
+
+                db.delete(ClimbsColumns.TABLE_NAME, ClimbsColumns.TRACKID + "=?", new String[]{Long.toString(result.trackId)});
+                for (Climb climb : result.climbs) {
+                    db.insert(ClimbsColumns.TABLE_NAME, ClimbsColumns._ID, ContentProviderUtils.createContentValues(climb));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return modified;
+    }
+
+    /**
+     * @return modification count and the number and last id of (archived) trackPoints or null if the track does not exist (anymore).
+     */
+    @Nullable
+    private long[] getFingerprint(long trackId) {
+        String id = Long.toString(trackId);
+        try (Cursor cursor = db.rawQuery(FINGERPRINT_QUERY, new String[]{id, id, id, id})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new long[]{cursor.getLong(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3)};
+        }
+    }
+
+    private static class Result {
+        final long trackId;
+        final long[] fingerprint;
+        final TrackStatistics trackStatistics;
+        final List<Climb> climbs;
+
+        Result(long trackId, long[] fingerprint, TrackStatistics trackStatistics, List<Climb> climbs) {
+            this.trackId = trackId;
+            this.fingerprint = fingerprint;
+            this.trackStatistics = trackStatistics;
+            this.climbs = climbs;
+        }
+    }
+}
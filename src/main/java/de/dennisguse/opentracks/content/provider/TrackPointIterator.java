@@ -3,6 +3,8 @@ package de.dennisguse.opentracks.content.provider;
 import android.database.Cursor;
 import android.util.Log;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -11,6 +13,11 @@ import de.dennisguse.opentracks.content.data.TrackPoint;
 
 /**
  * A lightweight wrapper around the original {@link Cursor} with a method to clean up.
+ * <p>
+ * Also returns archived trackPoints (see {@link TrackPointsArchive}).
+ * Archived trackPoints always have smaller ids than the trackPoints in the trackPoints table (a track is only archived after recording).
+ * <p>
+ * If endTrackPointId is set, trackPoints added afterwards (e.g., while recording) are not returned; so long reads (e.g., export) see a consistent snapshot without blocking the writer.
  */
 public class TrackPointIterator implements Iterator<TrackPoint>, AutoCloseable {
 
@@ -23,15 +30,38 @@ public class TrackPointIterator implements Iterator<TrackPoint>, AutoCloseable {
     private long lastTrackPointId = -1L;
     private Cursor cursor;
 
+    private final long startTrackPointId;
+    private final long endTrackPointId;
+    private final Deque<Long> archiveIds = new ArrayDeque<>();
+    private Cursor archiveCursor;
+    private CachedTrackPointsIndexes archiveIndexes;
+
 
     public TrackPointIterator(ContentProviderUtils contentProviderUtils, Track.Id trackId, long startTrackPointId, boolean descending) {
+        this(contentProviderUtils, trackId, startTrackPointId, -1L, descending);
+    }
+
+    /**
+     * @param endTrackPointId the last trackPoint id to return (only if ascending). -1L to ignore
+     */
+    public TrackPointIterator(ContentProviderUtils contentProviderUtils, Track.Id trackId, long startTrackPointId, long endTrackPointId, boolean descending) {
         this.contentProviderUtils = contentProviderUtils;
         this.trackId = trackId;
         this.descending = descending;
+        this.startTrackPointId = startTrackPointId;
+        this.endTrackPointId = descending ? -1L : endTrackPointId;
 
         cursor = getCursor(startTrackPointId);
         indexes = cursor != null ? new CachedTrackPointsIndexes(cursor)
                 : null;
+
+        try (Cursor archiveChunks = contentProviderUtils.getTrackPointsArchiveCursor(trackId, startTrackPointId, descending)) {
+            if (archiveChunks != null) {
+                while (archiveChunks.moveToNext()) {
+                    archiveIds.add(archiveChunks.getLong(0));
+                }
+            }
+        }
     }
 
     /**
@@ -60,6 +90,33 @@ public class TrackPointIterator implements Iterator<TrackPoint>, AutoCloseable {
 
     @Override
     public boolean hasNext() {
+        if (descending) {
+            return hasNextRow() || hasNextArchived();
+        }
+        return hasNextArchived() || hasNextRow();
+    }
+
+    @Override
+    public TrackPoint next() {
+        boolean useArchive = descending ? !hasNextRow() && hasNextArchived() : hasNextArchived();
+        return useArchive ? nextArchived() : nextRow();
+    }
+
+    private boolean hasNextRow() {
+        if (!hasNextRowUnbounded()) {
+            return false;
+        }
+        if (endTrackPointId < 0) {
+            return true;
+        }
+
+        cursor.moveToNext();
+        long trackPointId = cursor.getLong(indexes.idIndex);
+        cursor.moveToPrevious();
+        return trackPointId <= endTrackPointId;
+    }
+
+    private boolean hasNextRowUnbounded() {
         if (cursor == null) {
             return false;
         }
@@ -75,9 +132,8 @@ public class TrackPointIterator implements Iterator<TrackPoint>, AutoCloseable {
         return true;
     }
 
-    @Override
-    public TrackPoint next() {
-        if (cursor == null) {
+    private TrackPoint nextRow() {
+        if (cursor == null || (endTrackPointId >= 0 && !hasNextRow())) {
             throw new NoSuchElementException();
         }
         if (!cursor.moveToNext()) {
@@ -89,12 +145,60 @@ public class TrackPointIterator implements Iterator<TrackPoint>, AutoCloseable {
         return ContentProviderUtils.fillTrackPoint(cursor, indexes);
     }
 
+    /**
+     * Positions the archiveCursor before the next archived trackPoint (decodes the next chunk if needed).
+     */
+    private boolean hasNextArchived() {
+        while (true) {
+            if (archiveCursor != null) {
+                while (descending ? archiveCursor.moveToPrevious() : archiveCursor.moveToNext()) {
+                    long trackPointId = archiveCursor.getLong(archiveIndexes.idIndex);
+                    if (startTrackPointId < 0 || (descending ? trackPointId <= startTrackPointId : trackPointId >= startTrackPointId)) {
+                        // Step back; next() moves forward again.
+                        if (descending) {
+                            archiveCursor.moveToNext();
+                        } else {
+                            archiveCursor.moveToPrevious();
+                        }
+                        return true;
+                    }
+                }
+                archiveCursor.close();
+                archiveCursor = null;
+            }
+
+            if (archiveIds.isEmpty()) {
+                return false;
+            }
+            archiveCursor = contentProviderUtils.getArchivedTrackPointCursor(archiveIds.poll());
+            if (archiveCursor != null) {
+                archiveIndexes = new CachedTrackPointsIndexes(archiveCursor);
+                if (descending) {
+                    archiveCursor.moveToPosition(archiveCursor.getCount());
+                }
+            }
+        }
+    }
+
+    private TrackPoint nextArchived() {
+        if (!hasNextArchived() || !(descending ? archiveCursor.moveToPrevious() : archiveCursor.moveToNext())) {
+            throw new NoSuchElementException();
+        }
+        lastTrackPointId = archiveCursor.getLong(archiveIndexes.idIndex);
+        return ContentProviderUtils.fillTrackPoint(archiveCursor, archiveIndexes);
+    }
+
     @Override
     public void close() {
         if (cursor != null) {
             cursor.close();
             cursor = null;
         }
+        if (archiveCursor != null) {
+            archiveCursor.close();
+            archiveCursor = null;
+        }
+        archiveIds.clear();
     }
 
     @Override
@@ -0,0 +1,288 @@
+package de.dennisguse.opentracks.content.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+
+import de.dennisguse.opentracks.content.data.TrackPointsArchiveColumns;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+import de.dennisguse.opentracks.util.VarIntUtils;
+
+/**
+ * Encodes chunks of trackPoints column-wise for {@link TrackPointsArchiveColumns}.
+ * <p>
+ * Format: version, number of trackPoints, and then for each column a presence marker (all null, all present, or a bitmap) followed by the deltas of the present values (zig-zag varint).
+ * Float columns are stored as deltas of their IEEE 754 representation; so the encoding is lossless.
+ * Version 2 added the cumulative statistics (moving time and distance) as last long and float column; version 1 chunks are still decoded (these columns are null).
+ */
+class TrackPointsArchive {
+
+    /**
+     * Number of trackPoints per chunk.
+     */
+    static final int CHUNK_SIZE = 1024;
+
+    private static final byte VERSION = 2;
+
+    private static final byte VERSION_1 = 1;
+    private static final int VERSION_1_LONG_COLUMNS = 4;
+    private static final int VERSION_1_FLOAT_COLUMNS = 8;
+
+    private static final byte ALL_NULL = 0;
+    private static final byte ALL_PRESENT = 1;
+    private static final byte BITMAP = 2;
+
+    private static final String[] LONG_COLUMNS = {
+            TrackPointsColumns._ID,
+            TrackPointsColumns.LONGITUDE,
+            TrackPointsColumns.LATITUDE,
+            TrackPointsColumns.TIME,
+            TrackPointsColumns.CUMULATIVE_MOVING_TIME
+    };
+
+    private static final String[] FLOAT_COLUMNS = {
+            TrackPointsColumns.ALTITUDE,
+            TrackPointsColumns.ACCURACY,
+            TrackPointsColumns.SPEED,
+            TrackPointsColumns.BEARING,
+            TrackPointsColumns.SENSOR_HEARTRATE,
+            TrackPointsColumns.SENSOR_CADENCE,
+            TrackPointsColumns.SENSOR_POWER,
+            TrackPointsColumns.ELEVATION_GAIN,
+            TrackPointsColumns.CUMULATIVE_DISTANCE
+    };
+
+    /**
+     * Columns of the cursor returned by {@link #decode(long, byte[])}.
+     */
+    static final String[] COLUMNS = {
+            TrackPointsColumns._ID,
+            TrackPointsColumns.TRACKID,
+            TrackPointsColumns.LONGITUDE,
+            TrackPointsColumns.LATITUDE,
+            TrackPointsColumns.TIME,
+            TrackPointsColumns.CUMULATIVE_MOVING_TIME,
+            TrackPointsColumns.ALTITUDE,
+            TrackPointsColumns.ACCURACY,
+            TrackPointsColumns.SPEED,
+            TrackPointsColumns.BEARING,
+            TrackPointsColumns.SENSOR_HEARTRATE,
+            TrackPointsColumns.SENSOR_CADENCE,
+            TrackPointsColumns.SENSOR_POWER,
+            TrackPointsColumns.ELEVATION_GAIN,
+            TrackPointsColumns.CUMULATIVE_DISTANCE
+    };
+
+    private TrackPointsArchive() {
+    }
+
+    /**
+     * Encodes up to maxCount trackPoints starting at the current position of the cursor.
+     * Afterwards, the cursor is positioned at the first trackPoint that was not encoded (or after the last).
+     *
+     * @param trackId  the track id
+     * @param cursor   a trackPoints cursor (all columns) positioned at the first trackPoint to encode; ordered by id
+     * @param maxCount the maximal number of trackPoints to encode
+     * @return the values of a {@link TrackPointsArchiveColumns} row
+     */
+    static ContentValues encode(long trackId, @NonNull Cursor cursor, int maxCount) {
+        int[] longColumnIndexes = getColumnIndexes(cursor, LONG_COLUMNS);
+        int[] floatColumnIndexes = getColumnIndexes(cursor, FLOAT_COLUMNS);
+
+        long[][] longValues = new long[LONG_COLUMNS.length][maxCount];
+        int[][] floatValues = new int[FLOAT_COLUMNS.length][maxCount];
+        boolean[][] longPresent = new boolean[LONG_COLUMNS.length][maxCount];
+        boolean[][] floatPresent = new boolean[FLOAT_COLUMNS.length][maxCount];
+
+        int count = 0;
+        while (count < maxCount && !cursor.isAfterLast()) {
+            for (int c = 0; c < LONG_COLUMNS.length; c++) {
+                longPresent[c][count] = !cursor.isNull(longColumnIndexes[c]);
+                if (longPresent[c][count]) {
+                    longValues[c][count] = cursor.getLong(longColumnIndexes[c]);
+                }
+            }
+            for (int c = 0; c < FLOAT_COLUMNS.length; c++) {
+                floatPresent[c][count] = !cursor.isNull(floatColumnIndexes[c]);
+                if (floatPresent[c][count]) {
+                    floatValues[c][count] = Float.floatToRawIntBits(cursor.getFloat(floatColumnIndexes[c]));
+                }
+            }
+            count++;
+            cursor.moveToNext();
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(count * 16);
+        outputStream.write(VERSION);
+        VarIntUtils.writeVarInt(outputStream, count);
+        for (int c = 0; c < LONG_COLUMNS.length; c++) {
+            writePresence(outputStream, longPresent[c], count);
+            long last = 0;
+            for (int i = 0; i < count; i++) {
+                if (longPresent[c][i]) {
+                    VarIntUtils.writeVarLong(outputStream, VarIntUtils.zigZagEncode(longValues[c][i] - last));
+                    last = longValues[c][i];
+                }
+            }
+        }
+        for (int c = 0; c < FLOAT_COLUMNS.length; c++) {
+            writePresence(outputStream, floatPresent[c], count);
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                if (floatPresent[c][i]) {
+                    VarIntUtils.writeVarInt(outputStream, VarIntUtils.zigZagEncode(floatValues[c][i] - last));
+                    last = floatValues[c][i];
+                }
+            }
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(TrackPointsArchiveColumns.TRACKID, trackId);
+        values.put(TrackPointsArchiveColumns.FIRST_TRACKPOINT_ID, longValues[0][0]);
+        values.put(TrackPointsArchiveColumns.LAST_TRACKPOINT_ID, longValues[0][count - 1]);
+        values.put(TrackPointsArchiveColumns.NUMPOINTS, count);
+        values.put(TrackPointsArchiveColumns.DATA, outputStream.toByteArray());
+        return values;
+    }
+
+    /**
+     * Decodes a chunk created by {@link #encode(long, Cursor, int)}.
+     *
+     * @return a cursor with {@link #COLUMNS} containing the trackPoints ordered by id
+     * @throws IllegalArgumentException if the data cannot be decoded
+     */
+    static MatrixCursor decode(long trackId, @NonNull byte[] data) {
+        if (data.length < 2 || (data[0] != VERSION && data[0] != VERSION_1)) {
+            throw new IllegalArgumentException("Unsupported archive version");
+        }
+        int longColumns = data[0] == VERSION_1 ? VERSION_1_LONG_COLUMNS : LONG_COLUMNS.length;
+        int floatColumns = data[0] == VERSION_1 ? VERSION_1_FLOAT_COLUMNS : FLOAT_COLUMNS.length;
+
+        try {
+            int[] position = {1};
+            int count = VarIntUtils.readVarInt(data, position);
+
+            Object[][] rows = new Object[count][COLUMNS.length];
+            for (int c = 0; c < longColumns; c++) {
+                // Columns 0 (_id) and 2.. (after trackid)
+                int column = c == 0 ? 0 : c + 1;
+                boolean[] present = readPresence(data, position, count);
+                long last = 0;
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        last += VarIntUtils.zigZagDecode(VarIntUtils.readVarLong(data, position));
+                        rows[i][column] = last;
+                    }
+                }
+            }
+            for (int c = 0; c < floatColumns; c++) {
+                int column = LONG_COLUMNS.length + 1 + c;
+                boolean[] present = readPresence(data, position, count);
+                int last = 0;
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        last += VarIntUtils.zigZagDecode(VarIntUtils.readVarInt(data, position));
+                        rows[i][column] = Float.intBitsToFloat(last);
+                    }
+                }
+            }
+
+            MatrixCursor cursor = new MatrixCursor(COLUMNS, count);
+            for (Object[] row : rows) {
+                row[1] = trackId;
+                cursor.addRow(row);
+            }
+            return cursor;
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Corrupt archive data", e);
+        }
+    }
+
+    /**
+     * @return false if the chunk was encoded by an older version (i.e., without cumulative statistics)
+     */
+    static boolean isCurrentVersion(@NonNull byte[] data) {
+        return data.length > 0 && data[0] == VERSION;
+    }
+
+    /**
+     * Creates the values to insert the current row of a cursor returned by {@link #decode(long, byte[])} into {@link TrackPointsColumns#TABLE_NAME}.
+     */
+    static ContentValues toContentValues(@NonNull Cursor cursor) {
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    values.putNull(COLUMNS[i]);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.put(COLUMNS[i], cursor.getFloat(i));
+                    break;
+                default:
+                    values.put(COLUMNS[i], cursor.getLong(i));
+            }
+        }
+        return values;
+    }
+
+    private static int[] getColumnIndexes(Cursor cursor, String[] columns) {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(columns[i]);
+        }
+        return indexes;
+    }
+
+    private static void writePresence(ByteArrayOutputStream outputStream, boolean[] present, int count) {
+        int presentCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (present[i]) {
+                presentCount++;
+            }
+        }
+
+        if (presentCount == 0) {
+            outputStream.write(ALL_NULL);
+        } else if (presentCount == count) {
+            outputStream.write(ALL_PRESENT);
+        } else {
+            outputStream.write(BITMAP);
+            for (int i = 0; i < count; i += 8) {
+                int bits = 0;
+                for (int j = 0; j < 8 && i + j < count; j++) {
+                    if (present[i + j]) {
+                        bits |= 1 << j;
+                    }
+                }
+                outputStream.write(bits);
+            }
+        }
+    }
+
+    private static boolean[] readPresence(byte[] data, int[] position, int count) {
+        boolean[] present = new boolean[count];
+        byte marker = data[position[0]++];
+        switch (marker) {
+            case ALL_NULL:
+                break;
+            case ALL_PRESENT:
+                for (int i = 0; i < count; i++) {
+                    present[i] = true;
+                }
+                break;
+            case BITMAP:
+                for (int i = 0; i < count; i++) {
+                    present[i] = (data[position[0] + i / 8] & (1 << (i % 8))) != 0;
+                }
+                position[0] += (count + 7) / 8;
+                break;
+            default:
+                throw new ArrayIndexOutOfBoundsException("Unknown presence marker " + marker);
+        }
+        return present;
+    }
+}
@@ -29,6 +29,7 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import de.dennisguse.opentracks.R;
@@ -40,11 +41,14 @@ import de.dennisguse.opentracks.content.TrackDataListener;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.databinding.ChartBinding;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
+import de.dennisguse.opentracks.util.TrackPointDistances;
 
 /**
  * A fragment to display track chart to the user.
@@ -68,6 +72,11 @@ public class ChartFragment extends Fragment implements TrackDataListener {
 
     private final List<ChartPoint> pendingPoints = new ArrayList<>();
 
+    // The received trackPoints (sampled in and out) are processed at once in onNewTrackPointsDone().
+    private final List<TrackPoint> pendingTrackPoints = new ArrayList<>();
+    private final BitSet pendingTrackPointsSampledIn = new BitSet();
+    private final TrackPointDistances trackPointDistances = new TrackPointDistances();
+
     private TrackDataHub trackDataHub;
 
     // Stats gathered from the received data
@@ -78,6 +87,8 @@ public class ChartFragment extends Fragment implements TrackDataListener {
 
     //TODO Why is this needed?
     private int recordingDistanceInterval;
+    private SmoothingFilter.Type elevationSmoothing;
+    private SmoothingFilter.Type speedSmoothing;
     private String category = "";
 
     // Modes of operation
@@ -117,6 +128,14 @@ public class ChartFragment extends Fragment implements TrackDataListener {
             if (PreferencesUtils.isKey(getContext(), R.string.recording_distance_interval_key, key)) {
                 recordingDistanceInterval = PreferencesUtils.getRecordingDistanceInterval(getContext());
             }
+
+            // Applied when the trackPoints are loaded again.
+            if (PreferencesUtils.isKey(getContext(), R.string.stats_elevation_smoothing_key, key)) {
+                elevationSmoothing = PreferencesUtils.getElevationSmoothing(getContext());
+            }
+            if (PreferencesUtils.isKey(getContext(), R.string.stats_speed_smoothing_key, key)) {
+                speedSmoothing = PreferencesUtils.getSpeedSmoothing(getContext());
+            }
         }
     };
 
@@ -143,6 +162,8 @@ public class ChartFragment extends Fragment implements TrackDataListener {
         chartByDistance = getArguments().getBoolean(KEY_CHART_VIEW_BY_DISTANCE_KEY, true);
 
         recordingDistanceInterval = PreferencesUtils.getRecordingDistanceIntervalDefault(getContext());
+        elevationSmoothing = PreferencesUtils.getElevationSmoothing(getContext());
+        speedSmoothing = PreferencesUtils.getSpeedSmoothing(getContext());
 
         // Create a chartView here to store data thus won't need to reload all the data on every onStart or onResume.
         chartView = new ChartView(getContext(), chartByDistance);
@@ -199,6 +220,7 @@ public class ChartFragment extends Fragment implements TrackDataListener {
             if (track == null || track.getTrackStatistics() == null) {
                 startTime = -1L;
                 category = "";
+                chartView.setClimbs(new ArrayList<>());
                 return;
             }
 
@@ -209,14 +231,19 @@ public class ChartFragment extends Fragment implements TrackDataListener {
                 chartView.applyReportSpeed();
             }
             startTime = track.getTrackStatistics().getStartTime_ms();
+
+            // Few rows: cheaper than detecting the climbs from the trackPoints.
+            chartView.setClimbs(new ContentProviderUtils(getContext()).getClimbs(track.getId()));
         }
     }
 
     @Override
     public void clearTrackPoints() {
         if (isResumed()) {
-            trackStatisticsUpdater = startTime != -1L ? new TrackStatisticsUpdater(startTime) : null;
+            trackStatisticsUpdater = startTime != -1L ? new TrackStatisticsUpdater(startTime, elevationSmoothing, speedSmoothing) : null;
             pendingPoints.clear();
+            pendingTrackPoints.clear();
+            pendingTrackPointsSampledIn.clear();
             chartView.reset();
             runOnUiThread(() -> {
                 if (isResumed()) {
@@ -229,22 +256,22 @@ public class ChartFragment extends Fragment implements TrackDataListener {
     @Override
     public void onSampledInTrackPoint(TrackPoint trackPoint) {
         if (isResumed()) {
-            pendingPoints.add(createPendingPoint(trackPoint));
+            pendingTrackPointsSampledIn.set(pendingTrackPoints.size());
+            pendingTrackPoints.add(trackPoint);
         }
     }
 
     @Override
     public void onSampledOutTrackPoint(TrackPoint trackPoint) {
         if (isResumed()) {
-            if (trackStatisticsUpdater != null) {
-                trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-            }
+            pendingTrackPoints.add(trackPoint);
         }
     }
 
     @Override
     public void onNewTrackPointsDone() {
         if (isResumed()) {
+            addPendingTrackPoints();
             chartView.addChartPoints(pendingPoints);
             pendingPoints.clear();
             runOnUiThread(updateChart);
@@ -320,9 +347,31 @@ public class ChartFragment extends Fragment implements TrackDataListener {
         }
     }
 
+    /**
+     * Adds the pendingTrackPoints to the trackStatisticsUpdater (with the distances computed in one batch) and creates the {@link ChartPoint}s for the sampled in trackPoints.
+     */
+    private void addPendingTrackPoints() {
+        trackPointDistances.compute(pendingTrackPoints);
+        for (int i = 0; i < pendingTrackPoints.size(); i++) {
+            TrackPoint trackPoint = pendingTrackPoints.get(i);
+            double distanceToPrevious_m = i == 0 ? Double.NaN : trackPointDistances.get(i);
+            if (pendingTrackPointsSampledIn.get(i)) {
+                pendingPoints.add(createPendingPoint(trackPoint, distanceToPrevious_m));
+            } else if (trackStatisticsUpdater != null) {
+                trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval, distanceToPrevious_m);
+            }
+        }
+        pendingTrackPoints.clear();
+        pendingTrackPointsSampledIn.clear();
+    }
+
     @VisibleForTesting
     ChartPoint createPendingPoint(@NonNull TrackPoint trackPoint) {
-        trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+        return createPendingPoint(trackPoint, Double.NaN);
+    }
+
+    private ChartPoint createPendingPoint(@NonNull TrackPoint trackPoint, double distanceToPrevious_m) {
+        trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval, distanceToPrevious_m);
         return new ChartPoint(trackStatisticsUpdater, trackPoint, chartByDistance, chartView.getMetricUnits());
     }
 
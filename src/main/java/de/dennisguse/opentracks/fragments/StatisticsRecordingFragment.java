@@ -192,7 +192,7 @@ public class StatisticsRecordingFragment extends Fragment implements TrackDataLi
 
                     TrackPoint trackPoint = lastTrackPoint; //NOTE: There seems to be a race condition; just fix the symptom for now.
                     if (trackPoint != null) {
-                        boolean hasFix = !LocationUtils.isLocationOld(trackPoint.getLocation());
+                        boolean hasFix = !LocationUtils.isLocationOld(trackPoint);
 
                         if (!hasFix) {
                             lastTrackPoint = null;
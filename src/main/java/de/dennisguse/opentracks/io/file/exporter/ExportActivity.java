@@ -20,6 +20,8 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
@@ -30,7 +32,12 @@ import androidx.documentfile.provider.DocumentFile;
 import androidx.fragment.app.FragmentActivity;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import de.dennisguse.opentracks.R;
@@ -42,6 +49,7 @@ import de.dennisguse.opentracks.io.file.ErrorListDialog;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.util.ExportUtils;
 import de.dennisguse.opentracks.util.FileUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 
 /**
  * An activity for saving tracks to the external storage.
@@ -90,6 +98,16 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
     private int autoConflict;
 
+    private long exportStartTime_ms;
+    private int exportedSinceStartCount;
+
+    // Only for incremental exports.
+    private ExportManifest exportManifest;
+    // Directory listing (file name to document uri); also used to export single tracks (conflicts) without listing the directory again.
+    private Map<String, Uri> directoryFileUris;
+    private final Map<Track.Id, Track> tracks = new HashMap<>();
+    private final Set<UUID> trackUuids = new HashSet<>();
+
     private ContentProviderUtils contentProviderUtils;
 
     // List of tracks to be exported.
@@ -154,7 +172,11 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             autoConflict = CONFLICT_NONE;
             setProgress();
             new Thread(() -> {
-                directoryFiles = ExportUtils.getAllFiles(ExportActivity.this, documentFile.getUri());
+                directoryFileUris = ExportUtils.getAllFileUris(ExportActivity.this, documentFile.getUri());
+                directoryFiles = new ArrayList<>(directoryFileUris.keySet());
+                if (PreferencesUtils.shouldExportIncremental(ExportActivity.this)) {
+                    exportManifest = ExportManifest.read(ExportActivity.this, directoryFileUris);
+                }
                 runOnUiThread(() -> initExport(0));
             }).start();
         } else {
@@ -168,7 +190,14 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             trackErrors = savedInstanceState.getStringArrayList(BUNDLE_TRACK_ERRORS);
 
             setProgress();
-            initExport(getTotalDone());
+            new Thread(() -> {
+                // Manifest entries of tracks exported before the configuration change are lost; these are exported again next time.
+                if (PreferencesUtils.shouldExportIncremental(ExportActivity.this)) {
+                    directoryFileUris = ExportUtils.getAllFileUris(ExportActivity.this, documentFile.getUri());
+                    exportManifest = ExportManifest.read(ExportActivity.this, directoryFileUris);
+                }
+                runOnUiThread(() -> initExport(getTotalDone()));
+            }).start();
         }
     }
 
@@ -214,20 +243,62 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
             trackExportTotalCount = cursor.getCount();
             viewBinding.exportProgressTotal.setText("" + trackExportTotalCount);
-            for (int i = from; i < trackExportTotalCount; i++) {
+            for (int i = 0; i < trackExportTotalCount; i++) {
                 cursor.moveToPosition(i);
                 Track track = ContentProviderUtils.createTrack(cursor);
-                trackIds.add(track.getId());
+                trackUuids.add(track.getUuid());
+                if (i >= from) {
+                    trackIds.add(track.getId());
+                    tracks.put(track.getId(), track);
+                }
             }
 
             if (!trackIds.isEmpty()) {
-                export(trackIds.get(0));
+                exportStartTime_ms = SystemClock.elapsedRealtime();
+                exportAll();
             } else {
                 onExportEnded();
             }
         }
     }
 
+    /**
+     * Enqueue all tracks that have no conflict as one job (exported in parallel); conflicts are resolved one after another.
+     */
+    private void exportAll() {
+        ArrayList<Track.Id> exportTrackIds = new ArrayList<>();
+        for (Track.Id trackId : new ArrayList<>(trackIds)) {
+            boolean fileExists = ExportUtils.isExportFileExists(trackId, trackFileFormat.getExtension(), directoryFiles);
+            if (exportManifest != null) {
+                Track track = tracks.get(trackId);
+                String fileName = ExportUtils.getExportFileNameByTrackId(trackId, trackFileFormat.getExtension());
+                if (exportManifest.isUpToDate(track, fileName, directoryFiles)) {
+                    trackExportSkippedCount++;
+                    onExportCompleted(trackId);
+                    continue;
+                }
+                if (exportManifest.contains(track, fileName)) {
+                    // Modified since the last export: overwrite without asking.
+                    exportTrackIds.add(trackId);
+                    continue;
+                }
+            }
+
+            if (fileExists && autoConflict == CONFLICT_NONE) {
+                conflict(trackId);
+            } else if (fileExists && autoConflict == CONFLICT_SKIP) {
+                trackExportSkippedCount++;
+                onExportCompleted(trackId);
+            } else {
+                exportTrackIds.add(trackId);
+            }
+        }
+
+        if (!exportTrackIds.isEmpty()) {
+            ExportService.enqueue(this, resultReceiver, exportTrackIds, trackFileFormat, directoryUri);
+        }
+    }
+
     /**
      * Enqueue track identified by trackId to be exported if not exported already or there is a conflict resolution.
      *
@@ -243,10 +314,29 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             trackExportSkippedCount++;
             onExportCompleted(trackId);
         } else {
-            ExportService.enqueue(this, resultReceiver, trackId, trackFileFormat, directoryUri);
+            ArrayList<Track.Id> exportTrackIds = new ArrayList<>();
+            exportTrackIds.add(trackId);
+            ExportService.enqueue(this, resultReceiver, exportTrackIds, trackFileFormat, directoryUri, getKnownDirectoryFiles(trackId));
         }
     }
 
+    /**
+     * Returns the cached directory entry of the track's export file (if it exists), so the {@link ExportService} does not need to list the directory again.
+     * Returns null if the directory listing is not available anymore (e.g., after a configuration change).
+     */
+    private Bundle getKnownDirectoryFiles(Track.Id trackId) {
+        if (directoryFileUris == null) {
+            return null;
+        }
+        Bundle knownDirectoryFiles = new Bundle();
+        String fileName = ExportUtils.getExportFileNameByTrackId(trackId, trackFileFormat.getExtension());
+        Uri fileUri = directoryFileUris.get(fileName);
+        if (fileUri != null) {
+            knownDirectoryFiles.putParcelable(fileName, fileUri);
+        }
+        return knownDirectoryFiles;
+    }
+
     private void export(Track.Id trackId) {
         export(trackId, autoConflict);
     }
@@ -278,12 +368,25 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
         setProgress();
         if (trackIds.isEmpty()) {
             onExportEnded();
-            return;
         }
-        export(trackIds.get(0));
+    }
+
+    private void setThroughput() {
+        exportedSinceStartCount++;
+        long duration_ms = SystemClock.elapsedRealtime() - exportStartTime_ms;
+        if (exportStartTime_ms > 0 && duration_ms > 0) {
+            viewBinding.toolbar.toolbar.setSubtitle(getString(R.string.export_progress_throughput, exportedSinceStartCount * 60000f / duration_ms));
+        }
     }
 
     private void onExportEnded() {
+        if (exportManifest != null) {
+            ExportManifest manifest = exportManifest;
+            exportManifest = null;
+            boolean deleteRemoved = PreferencesUtils.shouldExportIncrementalDelete(this);
+            new Thread(() -> writeManifest(manifest, deleteRemoved)).start();
+        }
+
         viewBinding.exportProgressRightButton.setVisibility(View.VISIBLE);
         viewBinding.exportProgressRightButton.setText(getString(R.string.generic_ok));
         viewBinding.exportProgressRightButton.setOnClickListener((view) -> finish());
@@ -305,6 +408,24 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
     }
 
+    /**
+     * Stores the manifest and, if requested, deletes the files of tracks that do not exist anymore.
+     */
+    private void writeManifest(ExportManifest manifest, boolean deleteRemoved) {
+        DocumentFile directory = DocumentFile.fromTreeUri(this, directoryUri);
+        if (deleteRemoved) {
+            List<String> removedFileNames = manifest.removeDeletedTracks(trackUuids);
+            for (String fileName : removedFileNames) {
+                Uri fileUri = directoryFileUris.get(fileName);
+                if (fileUri != null && !DocumentFile.fromSingleUri(this, fileUri).delete()) {
+                    Log.w(TAG, "Unable to delete " + fileName);
+                }
+            }
+            Log.i(TAG, "Deleted " + removedFileNames.size() + " files of removed tracks");
+        }
+        manifest.write(this, directory, directoryFileUris);
+    }
+
     @Override
     public void onReceiveResult(int resultCode, Bundle resultData) {
         if (resultData == null) {
@@ -317,7 +438,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             case ExportServiceResultReceiver.RESULT_CODE_ERROR:
                 trackExportErrorCount++;
                 Track track = contentProviderUtils.getTrack(trackId);
-                trackErrors.add(track.getName());
+                trackErrors.add(track != null ? track.getName() : String.valueOf(trackId.getId()));
                 break;
             case ExportServiceResultReceiver.RESULT_CODE_SUCCESS:
                 if (ExportUtils.isExportFileExists(trackId, trackFileFormat.getExtension(), directoryFiles)) {
@@ -325,11 +446,15 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
                 } else {
                     trackExportSuccessCount++;
                 }
+                if (exportManifest != null && tracks.containsKey(trackId)) {
+                    exportManifest.put(tracks.get(trackId), ExportUtils.getExportFileNameByTrackId(trackId, trackFileFormat.getExtension()));
+                }
                 break;
             default:
                 throw new RuntimeException(TAG + ": export service result code invalid: " + resultCode);
         }
 
+        setThroughput();
         onExportCompleted(trackId);
     }
 
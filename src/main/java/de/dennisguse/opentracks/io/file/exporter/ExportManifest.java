@@ -0,0 +1,184 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import de.dennisguse.opentracks.content.data.Track;
+
+/**
+ * Manifest of an export directory: the uuid, modification count, and file name of each exported track.
+ * Allows incremental exports: only new or modified tracks need to be exported again.
+ * <p>
+ * Stored as {@link #FILE_NAME} in the export directory; one line per track: uuid, modification count, and file name separated by tabs.
+ */
+public class ExportManifest {
+
+    private static final String TAG = ExportManifest.class.getSimpleName();
+
+    public static final String FILE_NAME = ".opentracks-export-manifest";
+
+    // Other mime types may lead to an additional file extension.
+    private static final String MIME_TYPE = "application/octet-stream";
+
+    private static final String SEPARATOR = "\t";
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+
+    @VisibleForTesting
+    ExportManifest() {
+    }
+
+    /**
+     * Reads the manifest of a directory; returns an empty manifest if there is none or it cannot be read.
+     *
+     * @param directoryFiles the files of the directory (see {@link de.dennisguse.opentracks.util.ExportUtils#getAllFileUris(Context, Uri)})
+     */
+    @NonNull
+    public static ExportManifest read(Context context, Map<String, Uri> directoryFiles) {
+        ExportManifest manifest = new ExportManifest();
+        Uri manifestUri = directoryFiles.get(FILE_NAME);
+        if (manifestUri == null) {
+            return manifest;
+        }
+
+        try (InputStream inputStream = context.getContentResolver().openInputStream(manifestUri)) {
+            manifest.read(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Unable to read export manifest; exporting all tracks.", e);
+            manifest.entries.clear();
+        }
+        return manifest;
+    }
+
+    @VisibleForTesting
+    void read(Reader reader) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            String[] values = line.split(SEPARATOR, 3);
+            if (values.length != 3) {
+                Log.w(TAG, "Ignoring invalid line: " + line);
+                continue;
+            }
+            try {
+                entries.put(UUID.fromString(values[0]), new Entry(Long.parseLong(values[1]), values[2]));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Ignoring invalid line: " + line);
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest into the directory (replaces an existing manifest).
+     *
+     * @return true if successful
+     */
+    public boolean write(Context context, DocumentFile directory, Map<String, Uri> directoryFiles) {
+        Uri manifestUri = directoryFiles.get(FILE_NAME);
+        if (manifestUri == null) {
+            DocumentFile manifestFile = directory.createFile(MIME_TYPE, FILE_NAME);
+            if (manifestFile == null) {
+                Log.e(TAG, "Unable to create export manifest.");
+                return false;
+            }
+            manifestUri = manifestFile.getUri();
+            directoryFiles.put(FILE_NAME, manifestUri);
+        }
+
+        // Mode "wt": truncate an existing manifest.
+        try (OutputStream outputStream = context.getContentResolver().openOutputStream(manifestUri, "wt")) {
+            write(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Unable to write export manifest.", e);
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    void write(Writer writer) throws IOException {
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            writer.write(entry.getKey() + SEPARATOR + entry.getValue().modificationCount + SEPARATOR + entry.getValue().fileName + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param fileName           the file name the track would be exported to
+     * @param directoryFileNames the files of the directory
+     * @return true if the track was exported to fileName and was not modified afterwards.
+     */
+    public boolean isUpToDate(@NonNull Track track, @NonNull String fileName, @NonNull Collection<String> directoryFileNames) {
+        Entry entry = entries.get(track.getUuid());
+        return entry != null
+                && entry.modificationCount == track.getModificationCount()
+                && entry.fileName.equals(fileName)
+                && directoryFileNames.contains(fileName);
+    }
+
+    /**
+     * @return true if the file was created by an export listed in this manifest (i.e., it may be overwritten).
+     */
+    public boolean contains(@NonNull Track track, @NonNull String fileName) {
+        Entry entry = entries.get(track.getUuid());
+        return entry != null && entry.fileName.equals(fileName);
+    }
+
+    /**
+     * Records a successful export of a track.
+     */
+    public void put(@NonNull Track track, @NonNull String fileName) {
+        entries.put(track.getUuid(), new Entry(track.getModificationCount(), fileName));
+    }
+
+    /**
+     * Removes all tracks that do not exist anymore.
+     *
+     * @param uuids the uuids of all existing tracks
+     * @return the file names of the removed tracks
+     */
+    public List<String> removeDeletedTracks(@NonNull Set<UUID> uuids) {
+        List<String> fileNames = new ArrayList<>();
+        for (Iterator<Map.Entry<UUID, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<UUID, Entry> entry = iterator.next();
+            if (!uuids.contains(entry.getKey())) {
+                fileNames.add(entry.getValue().fileName);
+                iterator.remove();
+            }
+        }
+        return fileNames;
+    }
+
+    private static class Entry {
+        private final long modificationCount;
+        private final String fileName;
+
+        private Entry(long modificationCount, String fileName) {
+            this.modificationCount = modificationCount;
+            this.fileName = fileName;
+        }
+    }
+}
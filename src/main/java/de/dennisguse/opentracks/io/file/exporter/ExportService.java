@@ -6,31 +6,59 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.ResultReceiver;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.JobIntentService;
 import androidx.documentfile.provider.DocumentFile;
 
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.util.ExportUtils;
 
+/**
+ * Exports tracks into a directory.
+ * The directory is listed once per job and the tracks are exported concurrently by a bounded pool; so the database reads of one track overlap with the file writes of others.
+ */
 public class ExportService extends JobIntentService {
 
+    private static final String TAG = ExportService.class.getSimpleName();
+
     private static final int JOB_ID = 1;
 
+    private static final int MAX_PARALLEL_EXPORTS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     private static final String EXTRA_RECEIVER = "extra_receiver";
-    private static final String EXTRA_TRACK_ID = "extra_track_id";
+    private static final String EXTRA_TRACK_IDS = "extra_track_ids";
     private static final String EXTRA_TRACK_FILE_FORMAT = "extra_track_file_format";
     private static final String EXTRA_DIRECTORY_URI = "extra_directory_uri";
+    private static final String EXTRA_DIRECTORY_FILES = "extra_directory_files";
 
-    public static void enqueue(Context context, ExportServiceResultReceiver receiver, Track.Id trackId, TrackFileFormat trackFileFormat, Uri directoryUri) {
+    public static void enqueue(Context context, ExportServiceResultReceiver receiver, ArrayList<Track.Id> trackIds, TrackFileFormat trackFileFormat, Uri directoryUri) {
+        enqueue(context, receiver, trackIds, trackFileFormat, directoryUri, null);
+    }
+
+    /**
+     * @param directoryFiles the already known export files of the tracks (file name to document uri); if null, the directory is listed.
+     */
+    public static void enqueue(Context context, ExportServiceResultReceiver receiver, ArrayList<Track.Id> trackIds, TrackFileFormat trackFileFormat, Uri directoryUri, Bundle directoryFiles) {
         Intent intent = new Intent(context, JobService.class);
         intent.putExtra(EXTRA_RECEIVER, receiver);
-        intent.putExtra(EXTRA_TRACK_ID, trackId);
+        intent.putParcelableArrayListExtra(EXTRA_TRACK_IDS, trackIds);
         intent.putExtra(EXTRA_TRACK_FILE_FORMAT, trackFileFormat);
         intent.putExtra(EXTRA_DIRECTORY_URI, directoryUri);
+        if (directoryFiles != null) {
+            intent.putExtra(EXTRA_DIRECTORY_FILES, directoryFiles);
+        }
         enqueueWork(context, ExportService.class, JOB_ID, intent);
     }
 
@@ -38,24 +66,55 @@ public class ExportService extends JobIntentService {
     protected void onHandleWork(@NonNull Intent intent) {
         // Get all data.
         ResultReceiver resultReceiver = intent.getParcelableExtra(EXTRA_RECEIVER);
-        Track.Id trackId = intent.getParcelableExtra(EXTRA_TRACK_ID);
+        ArrayList<Track.Id> trackIds = intent.getParcelableArrayListExtra(EXTRA_TRACK_IDS);
         TrackFileFormat trackFileFormat = (TrackFileFormat) intent.getSerializableExtra(EXTRA_TRACK_FILE_FORMAT);
         Uri directoryUri = intent.getParcelableExtra(EXTRA_DIRECTORY_URI);
+        Bundle knownDirectoryFiles = intent.getBundleExtra(EXTRA_DIRECTORY_FILES);
+        if (trackIds == null || trackIds.isEmpty()) {
+            return;
+        }
 
-        // Build directory file.
+        // Build directory file and list its files once (unless already known).
         DocumentFile directoryFile = DocumentFile.fromTreeUri(this, directoryUri);
+        Map<String, Uri> directoryFiles = new ConcurrentHashMap<>();
+        if (knownDirectoryFiles != null) {
+            for (String fileName : knownDirectoryFiles.keySet()) {
+                directoryFiles.put(fileName, knownDirectoryFiles.getParcelable(fileName));
+            }
+        } else {
+            directoryFiles.putAll(ExportUtils.getAllFileUris(this, directoryFile.getUri()));
+        }
 
         // Export.
         ContentProviderUtils contentProviderUtils = new ContentProviderUtils(this);
-        Track track = contentProviderUtils.getTrack(trackId);
-        boolean success = ExportUtils.exportTrack(this, trackFileFormat, directoryFile, track);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_EXPORTS, trackIds.size()));
+        long start = SystemClock.elapsedRealtime();
+        for (Track.Id trackId : trackIds) {
+            executor.execute(() -> {
+                Track track = contentProviderUtils.getTrack(trackId);
+                boolean success = track != null && ExportUtils.exportTrack(this, trackFileFormat, directoryFile, track, directoryFiles);
+
+                // Prepare resultCode and bundle to send to the receiver.
+                Bundle bundle = new Bundle();
+                bundle.putParcelable(ExportServiceResultReceiver.RESULT_EXTRA_TRACK_ID, trackId);
+
+                // Send result to the receiver.
+                int resultCode = success ? ExportServiceResultReceiver.RESULT_CODE_SUCCESS : ExportServiceResultReceiver.RESULT_CODE_ERROR;
+                resultReceiver.send(resultCode, bundle);
+            });
+        }
 
-        // Prepare resultCode and bundle to send to the receiver.
-        Bundle bundle = new Bundle();
-        bundle.putParcelable(ExportServiceResultReceiver.RESULT_EXTRA_TRACK_ID, trackId);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Export interrupted", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
 
-        // Send result to the receiver.
-        int resultCode = success ? ExportServiceResultReceiver.RESULT_CODE_SUCCESS : ExportServiceResultReceiver.RESULT_CODE_ERROR;
-        resultReceiver.send(resultCode, bundle);
+        long duration_ms = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, "Exported " + trackIds.size() + " tracks in " + duration_ms + "ms (" + trackIds.size() * 60000L / duration_ms + " tracks/min)");
     }
 }
@@ -24,11 +24,11 @@ import androidx.annotation.NonNull;
 import java.io.OutputStream;
 
 import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.Segment;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.TrackPointIterator;
-import de.dennisguse.opentracks.util.LocationUtils;
 
 /**
  * Track Writer for writing tracks to an {@link OutputStream}.
@@ -118,68 +118,54 @@ public class FileTrackExporter implements TrackExporter {
     }
 
     /**
-     * Writes the locations.
+     * Writes the locations; each segment (i.e., trackPoints recorded without pause) with at least two trackPoints.
+     * TrackPoints inserted afterwards (e.g., while recording) are ignored.
      */
     private void writeLocations(Track track, long offset) throws InterruptedException {
         boolean wroteTrack = false;
-        boolean wroteSegment = false;
-        boolean isLastLocationValid = false;
-        TrackPoint lastTrackPoint = null;
+        TrackPoint lastValidTrackPoint = null;
 
-        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), -1L, false)) {
-
-            while (trackPointIterator.hasNext()) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
-                }
-                TrackPoint trackPoint = trackPointIterator.next();
-
-                setLocationTime(trackPoint, offset);
-
-                boolean isLocationValid = LocationUtils.isValidLocation(trackPoint.getLocation());
-                boolean isSegmentValid = isLocationValid && isLastLocationValid;
-                if (!wroteTrack && isSegmentValid) {
-                    // Found the first two consecutive locations that are valid
-                    trackWriter.writeBeginTrack(track, lastTrackPoint);
-                    wroteTrack = true;
-                }
+        long lastTrackPointId = contentProviderUtils.getLastTrackPointId(track.getId());
+        for (Segment segment : contentProviderUtils.getSegments(track.getId())) {
+            if (segment.getFirstTrackPointId() > lastTrackPointId) {
+                break;
+            }
 
-                if (isSegmentValid) {
-                    if (!wroteSegment) {
-                        // Start a segment
+            boolean wroteSegment = false;
+            try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(segment, lastTrackPointId)) {
+                while (trackPointIterator.hasNext()) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    TrackPoint trackPoint = trackPointIterator.next();
+                    setLocationTime(trackPoint, offset);
+
+                    if (!wroteSegment && trackPointIterator.hasNext()) {
+                        // Found the first two consecutive locations of a segment
+                        if (!wroteTrack) {
+                            trackWriter.writeBeginTrack(track, trackPoint);
+                            wroteTrack = true;
+                        }
                         trackWriter.writeOpenSegment();
                         wroteSegment = true;
-
-                        // Write the previous trackPoint, which we had previously skipped
-                        trackWriter.writeTrackPoint(lastTrackPoint);
                     }
-
-                    // Write the current trackPoint
-                    trackWriter.writeTrackPoint(trackPoint);
-                } else {
                     if (wroteSegment) {
-                        trackWriter.writeCloseSegment();
-                        wroteSegment = false;
+                        trackWriter.writeTrackPoint(trackPoint);
                     }
+                    lastValidTrackPoint = trackPoint;
                 }
-                lastTrackPoint = trackPoint;
-                isLastLocationValid = isLocationValid;
             }
-
             if (wroteSegment) {
-                //Close the last segment
                 trackWriter.writeCloseSegment();
             }
+        }
 
-            if (wroteTrack) {
-                TrackPoint lastValidTrackPoint = contentProviderUtils.getLastValidTrackPoint(track.getId());
-                setLocationTime(lastValidTrackPoint, offset);
-                trackWriter.writeEndTrack(track, lastValidTrackPoint);
-            } else {
-                // Write an empty track
-                trackWriter.writeBeginTrack(track, null);
-                trackWriter.writeEndTrack(track, null);
-            }
+        if (wroteTrack) {
+            trackWriter.writeEndTrack(track, lastValidTrackPoint);
+        } else {
+            // Write an empty track
+            trackWriter.writeBeginTrack(track, null);
+            trackWriter.writeEndTrack(track, null);
         }
     }
 
@@ -18,15 +18,15 @@ package de.dennisguse.opentracks.io.file.exporter;
 
 import android.location.Location;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.text.NumberFormat;
 import java.util.Locale;
 
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
-import de.dennisguse.opentracks.util.StringUtils;
 
 /**
  * Write track as GPX to a file.
@@ -65,57 +65,63 @@ public class GpxTrackWriter implements TrackWriter {
     }
 
     private final String creator;
-    private PrintWriter printWriter;
+    private int bufferSize = XmlWriter.DEFAULT_BUFFER_SIZE;
+    private XmlWriter xmlWriter;
 
     public GpxTrackWriter(String creator) {
         this.creator = creator;
     }
 
+    @VisibleForTesting
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
     @Override
     public void prepare(OutputStream outputStream) {
-        this.printWriter = new PrintWriter(outputStream);
+        this.xmlWriter = new XmlWriter(outputStream, bufferSize);
     }
 
     @Override
     public void close() {
-        if (printWriter != null) {
-            printWriter.flush();
-            printWriter = null;
+        if (xmlWriter != null) {
+            xmlWriter.flush();
+            xmlWriter = null;
         }
     }
 
     @Override
     public void writeHeader(Track[] tracks) {
-        if (printWriter != null) {
-            printWriter.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            printWriter.println("<gpx");
-            printWriter.println("version=\"1.1\"");
-            printWriter.println("creator=\"" + creator + "\"");
-            printWriter.println("xmlns=\"http://www.topografix.com/GPX/1/1\"");
-            printWriter.println("xmlns:topografix=\"http://www.topografix.com/GPX/Private/TopoGrafix/0/1\"");
-            printWriter.println("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
-            printWriter.println("xmlns:atom=\"http://www.w3.org/2005/Atom\"");
-            printWriter.println("xmlns:opentracks=\"http://opentracksapp.com/xmlschemas/v1\"");
-            printWriter.println("xmlns:gpxtpx=\"http://www.garmin.com/xmlschemes/TrackPointExtension/v2\"");
-            printWriter.println("xsi:schemaLocation=" +
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            xmlWriter.appendLine("<gpx");
+            xmlWriter.appendLine("version=\"1.1\"");
+            xmlWriter.appendLine("creator=\"" + creator + "\"");
+            xmlWriter.appendLine("xmlns=\"http://www.topografix.com/GPX/1/1\"");
+            xmlWriter.appendLine("xmlns:topografix=\"http://www.topografix.com/GPX/Private/TopoGrafix/0/1\"");
+            xmlWriter.appendLine("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+            xmlWriter.appendLine("xmlns:atom=\"http://www.w3.org/2005/Atom\"");
+            xmlWriter.appendLine("xmlns:opentracks=\"http://opentracksapp.com/xmlschemas/v1\"");
+            xmlWriter.appendLine("xmlns:gpxtpx=\"http://www.garmin.com/xmlschemes/TrackPointExtension/v2\"");
+            xmlWriter.appendLine("xsi:schemaLocation=" +
                     "\"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd"
                     + " http://www.topografix.com/GPX/Private/TopoGrafix/0/1 http://www.topografix.com/GPX/Private/TopoGrafix/0/1/topografix.xsd"
                     + " http://www.garmin.com/xmlschemas/TrackPointExtension/v2 https://www8.garmin.com/xmlschemas/TrackPointExtensionv2.xsd"
                     + " http://opentracksapp.com/xmlschemas/v1 http://opentracksapp.com/xmlschemas/OpenTracks_v1.xsd\">");
 
-            printWriter.println("<metadata>");
+            xmlWriter.appendLine("<metadata>");
 
             Track track = tracks[0];
-            printWriter.println("<name>" + StringUtils.formatCData(track.getName()) + "</name>");
-            printWriter.println("<desc>" + StringUtils.formatCData(track.getDescription()) + "</desc>");
-            printWriter.println("</metadata>");
+            xmlWriter.append("<name>").appendCData(track.getName()).appendLine("</name>");
+            xmlWriter.append("<desc>").appendCData(track.getDescription()).appendLine("</desc>");
+            xmlWriter.appendLine("</metadata>");
         }
     }
 
     @Override
     public void writeFooter() {
-        if (printWriter != null) {
-            printWriter.println("</gpx>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</gpx>");
         }
     }
 
@@ -131,17 +137,19 @@ public class GpxTrackWriter implements TrackWriter {
 
     @Override
     public void writeMarker(Marker marker) {
-        if (printWriter != null) {
+        if (xmlWriter != null) {
             Location location = marker.getLocation();
-            printWriter.println("<wpt " + formatLocation(location) + ">");
+            xmlWriter.append("<wpt ");
+            writeLocation(location.getLatitude(), location.getLongitude());
+            xmlWriter.append('>').newLine();
             if (location.hasAltitude()) {
-                printWriter.println("<ele>" + ELEVATION_FORMAT.format(location.getAltitude()) + "</ele>");
+                xmlWriter.append("<ele>").append(location.getAltitude(), ELEVATION_FORMAT).appendLine("</ele>");
             }
-            printWriter.println("<time>" + StringUtils.formatDateTimeIso8601(location.getTime()) + "</time>");
-            printWriter.println("<name>" + StringUtils.formatCData(marker.getName()) + "</name>");
-            printWriter.println("<desc>" + StringUtils.formatCData(marker.getDescription()) + "</desc>");
-            printWriter.println("<type>" + StringUtils.formatCData(marker.getCategory()) + "</type>");
-            printWriter.println("</wpt>");
+            xmlWriter.append("<time>").appendDateTimeIso8601(location.getTime()).appendLine("</time>");
+            xmlWriter.append("<name>").appendCData(marker.getName()).appendLine("</name>");
+            xmlWriter.append("<desc>").appendCData(marker.getDescription()).appendLine("</desc>");
+            xmlWriter.append("<type>").appendCData(marker.getCategory()).appendLine("</type>");
+            xmlWriter.appendLine("</wpt>");
         }
     }
 
@@ -157,75 +165,74 @@ public class GpxTrackWriter implements TrackWriter {
 
     @Override
     public void writeBeginTrack(Track track, TrackPoint startTrackPoint) {
-        if (printWriter != null) {
-            printWriter.println("<trk>");
-            printWriter.println("<name>" + StringUtils.formatCData(track.getName()) + "</name>");
-            printWriter.println("<desc>" + StringUtils.formatCData(track.getDescription()) + "</desc>");
-            printWriter.println("<type>" + StringUtils.formatCData(track.getCategory()) + "</type>");
-
-            printWriter.println("<extensions>");
-            printWriter.println("<topografix:color>c0c0c0</topografix:color>");
-            printWriter.println("<opentracks:trackid>" + track.getUuid() + "</opentracks:trackid>");
-            printWriter.println("</extensions>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<trk>");
+            xmlWriter.append("<name>").appendCData(track.getName()).appendLine("</name>");
+            xmlWriter.append("<desc>").appendCData(track.getDescription()).appendLine("</desc>");
+            xmlWriter.append("<type>").appendCData(track.getCategory()).appendLine("</type>");
+
+            xmlWriter.appendLine("<extensions>");
+            xmlWriter.appendLine("<topografix:color>c0c0c0</topografix:color>");
+            xmlWriter.appendLine("<opentracks:trackid>" + track.getUuid() + "</opentracks:trackid>");
+            xmlWriter.appendLine("</extensions>");
         }
     }
 
     @Override
     public void writeEndTrack(Track track, TrackPoint endTrackPoint) {
-        if (printWriter != null) {
-            printWriter.println("</trk>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</trk>");
         }
     }
 
     @Override
     public void writeOpenSegment() {
-        printWriter.println("<trkseg>");
+        xmlWriter.appendLine("<trkseg>");
     }
 
     @Override
     public void writeCloseSegment() {
-        printWriter.println("</trkseg>");
+        xmlWriter.appendLine("</trkseg>");
     }
 
     @Override
     public void writeTrackPoint(TrackPoint trackPoint) {
-        if (printWriter != null) {
-            printWriter.println("<trkpt " + formatLocation(trackPoint.getLocation()) + ">");
+        if (xmlWriter != null) {
+            xmlWriter.append("<trkpt ");
+            writeLocation(trackPoint.getLatitude(), trackPoint.getLongitude());
+            xmlWriter.append('>').newLine();
             if (trackPoint.hasAltitude()) {
-                printWriter.println("<ele>" + ELEVATION_FORMAT.format(trackPoint.getAltitude()) + "</ele>");
+                xmlWriter.append("<ele>").append(trackPoint.getAltitude(), ELEVATION_FORMAT).appendLine("</ele>");
             }
 
-            printWriter.println("<time>" + StringUtils.formatDateTimeIso8601(trackPoint.getTime()) + "</time>");
+            xmlWriter.append("<time>").appendDateTimeIso8601(trackPoint.getTime()).appendLine("</time>");
 
             if (trackPoint.hasSpeed() || trackPoint.hasHeartRate() || trackPoint.hasCyclingCadence()) {
-                printWriter.println("<extensions><gpxtpx:TrackPointExtension>");
-
+                xmlWriter.appendLine("<extensions><gpxtpx:TrackPointExtension>");
 
                 if (trackPoint.hasSpeed()) {
-                    printWriter.println("<gpxtpx:speed>" + SPEED_FORMAT.format(trackPoint.getSpeed()) + "</gpxtpx:speed>");
+                    xmlWriter.append("<gpxtpx:speed>").append(trackPoint.getSpeed(), SPEED_FORMAT).appendLine("</gpxtpx:speed>");
                 }
 
                 if (trackPoint.hasHeartRate()) {
-                    printWriter.println("<gpxtpx:hr>" + HEARTRATE_FORMAT.format(trackPoint.getHeartRate_bpm()) + "</gpxtpx:hr>");
+                    xmlWriter.append("<gpxtpx:hr>").append(trackPoint.getHeartRate_bpm(), HEARTRATE_FORMAT).appendLine("</gpxtpx:hr>");
                 }
 
                 if (trackPoint.hasCyclingCadence()) {
-                    printWriter.println("<gpxtpx:cad>" + HEARTRATE_FORMAT.format(trackPoint.getCyclingCadence_rpm()) + "</gpxtpx:cad>");
+                    xmlWriter.append("<gpxtpx:cad>").append(trackPoint.getCyclingCadence_rpm(), CADENCE_FORMAT).appendLine("</gpxtpx:cad>");
                 }
 
-                printWriter.println("</gpxtpx:TrackPointExtension></extensions>");
+                xmlWriter.appendLine("</gpxtpx:TrackPointExtension></extensions>");
             }
 
-            printWriter.println("</trkpt>");
+            xmlWriter.appendLine("</trkpt>");
         }
     }
 
     /**
-     * Formats a location with latitude and longitude coordinates.
-     *
-     * @param location the location
+     * Writes latitude and longitude coordinates as attributes.
      */
-    private String formatLocation(Location location) {
-        return "lat=\"" + COORDINATE_FORMAT.format(location.getLatitude()) + "\" lon=\"" + COORDINATE_FORMAT.format(location.getLongitude()) + "\"";
+    private void writeLocation(double latitude, double longitude) {
+        xmlWriter.append("lat=\"").append(latitude, COORDINATE_FORMAT).append("\" lon=\"").append(longitude, COORDINATE_FORMAT).append('"');
     }
 }
@@ -19,10 +19,10 @@ import android.content.Context;
 import android.database.Cursor;
 import android.location.Location;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.DescriptionGenerator;
@@ -31,7 +31,8 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.util.FileUtils;
-import de.dennisguse.opentracks.util.StringUtils;
+import de.dennisguse.opentracks.util.GeodesyUtils;
+import de.dennisguse.opentracks.util.LocationUtils;
 
 /**
  * Write track as KML to a file.
@@ -64,12 +65,13 @@ public class KmlTrackWriter implements TrackWriter {
     private final DescriptionGenerator descriptionGenerator;
     private final ContentProviderUtils contentProviderUtils;
 
-    private PrintWriter printWriter;
-    private final List<Float> speedList = new ArrayList<>();
-    private final List<Float> powerList = new ArrayList<>();
-    private final List<Float> cadenceList = new ArrayList<>();
-    private final List<Float> heartRateList = new ArrayList<>();
-    private final List<Float> elevationGainList = new ArrayList<>();
+    private int bufferSize = XmlWriter.DEFAULT_BUFFER_SIZE;
+    private XmlWriter xmlWriter;
+    private final FloatList speedList = new FloatList();
+    private final FloatList powerList = new FloatList();
+    private final FloatList cadenceList = new FloatList();
+    private final FloatList heartRateList = new FloatList();
+    private final FloatList elevationGainList = new FloatList();
 
     private TrackPoint startTrackPoint;
 
@@ -88,44 +90,49 @@ public class KmlTrackWriter implements TrackWriter {
         this.contentProviderUtils = new ContentProviderUtils(context);
     }
 
+    @VisibleForTesting
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
     @Override
     public void prepare(OutputStream outputStream) {
-        this.printWriter = new PrintWriter(outputStream);
+        this.xmlWriter = new XmlWriter(outputStream, bufferSize);
     }
 
     @Override
     public void close() {
-        if (printWriter != null) {
-            printWriter.flush();
-            printWriter = null;
+        if (xmlWriter != null) {
+            xmlWriter.flush();
+            xmlWriter = null;
         }
     }
 
     @Override
     public void writeHeader(Track[] tracks) {
-        if (printWriter != null) {
-            printWriter.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            printWriter.println("<kml xmlns=\"http://www.opengis.net/kml/2.2\"");
-            printWriter.println("xmlns:gx=\"http://www.google.com/kml/ext/2.2\"");
-            printWriter.println("xmlns:atom=\"http://www.w3.org/2005/Atom\"");
-            printWriter.println("xmlns:opentracks=\"http://opentracksapp.com/xmlschemas/v1\">");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            xmlWriter.appendLine("<kml xmlns=\"http://www.opengis.net/kml/2.2\"");
+            xmlWriter.appendLine("xmlns:gx=\"http://www.google.com/kml/ext/2.2\"");
+            xmlWriter.appendLine("xmlns:atom=\"http://www.w3.org/2005/Atom\"");
+            xmlWriter.appendLine("xmlns:opentracks=\"http://opentracksapp.com/xmlschemas/v1\">");
             //TODO ADD xsi:schemaLocation here!
 
-            printWriter.println("<Document>");
-            printWriter.println("<open>1</open>");
-            printWriter.println("<visibility>1</visibility>");
+            xmlWriter.appendLine("<Document>");
+            xmlWriter.appendLine("<open>1</open>");
+            xmlWriter.appendLine("<visibility>1</visibility>");
 
             if (exportTrackDetail) {
                 Track track = tracks[0];
-                printWriter.println("<name>" + StringUtils.formatCData(track.getName()) + "</name>");
-                printWriter.println("<atom:generator>" + StringUtils.formatCData(context.getString(R.string.app_name)) + "</atom:generator>");
+                xmlWriter.append("<name>").appendCData(track.getName()).appendLine("</name>");
+                xmlWriter.append("<atom:generator>").appendCData(context.getString(R.string.app_name)).appendLine("</atom:generator>");
             }
 
             writeTrackStyle();
             writePlacemarkerStyle(START_STYLE, START_ICON, 32, 1);
             writePlacemarkerStyle(END_STYLE, END_ICON, 32, 1);
             writePlacemarkerStyle(MARKER_STYLE, MARKER_ICON, 20, 2);
-            printWriter.println("<Schema id=\"" + SCHEMA_ID + "\">");
+            xmlWriter.appendLine("<Schema id=\"" + SCHEMA_ID + "\">");
 
             writeSimpleArrayStyle(EXTENDED_DATA_TYPE_SPEED, context.getString(R.string.description_speed_ms));
 
@@ -134,39 +141,39 @@ public class KmlTrackWriter implements TrackWriter {
                 writeSimpleArrayStyle(EXTENDED_DATA_TYPE_CADENCE, context.getString(R.string.description_sensor_cadence));
                 writeSimpleArrayStyle(EXTENDED_DATA_TYPE_HEART_RATE, context.getString(R.string.description_sensor_heart_rate));
             }
-            printWriter.println("</Schema>");
+            xmlWriter.appendLine("</Schema>");
         }
     }
 
     @Override
     public void writeFooter() {
-        if (printWriter != null) {
-            printWriter.println("</Document>");
-            printWriter.println("</kml>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</Document>");
+            xmlWriter.appendLine("</kml>");
         }
     }
 
     @Override
     public void writeBeginMarkers(Track track) {
-        if (printWriter != null) {
-            printWriter.println("<Folder>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<Folder>");
             if (exportTrackDetail) {
-                printWriter.println("<name>" + StringUtils.formatCData(context.getString(R.string.track_markers, track.getName())) + "</name>");
+                xmlWriter.append("<name>").appendCData(context.getString(R.string.track_markers, track.getName())).appendLine("</name>");
             }
-            printWriter.println("<open>1</open>");
+            xmlWriter.appendLine("<open>1</open>");
         }
     }
 
     @Override
     public void writeEndMarkers() {
-        if (printWriter != null) {
-            printWriter.println("</Folder>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</Folder>");
         }
     }
 
     @Override
     public void writeMarker(Marker marker) {
-        if (printWriter != null && exportTrackDetail) {
+        if (xmlWriter != null && exportTrackDetail) {
             boolean existsPhoto = FileUtils.getPhotoFileIfExists(context, marker.getTrackId(), marker.getPhotoURI()) != null;
             if (marker.hasPhoto() && exportPhotos && existsPhoto) {
                 float heading = getHeading(marker.getTrackId(), marker.getLocation());
@@ -178,53 +185,53 @@ public class KmlTrackWriter implements TrackWriter {
     }
 
     public void writeMultiTrackBegin() {
-        if (printWriter != null) {
-            printWriter.println("<Folder id=tour>");
-            printWriter.println("<name>" + context.getString(R.string.generic_tracks) + "</name>");
-            printWriter.println("<open>1</open>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<Folder id=tour>");
+            xmlWriter.appendLine("<name>" + context.getString(R.string.generic_tracks) + "</name>");
+            xmlWriter.appendLine("<open>1</open>");
         }
     }
 
     public void writeMultiTrackEnd() {
-        if (printWriter != null) {
-            printWriter.println("</Folder>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</Folder>");
         }
     }
 
     @Override
     public void writeBeginTrack(Track track, TrackPoint startTrackPoint) {
         this.startTrackPoint = startTrackPoint;
-        if (printWriter != null) {
+        if (xmlWriter != null) {
             String name = context.getString(R.string.marker_label_start, track.getName());
-            Location location = startTrackPoint != null ? startTrackPoint.getLocation() : null;
+            Location location = startTrackPoint != null ? LocationUtils.createLocation(startTrackPoint) : null;
             writePlacemark(name, "", "", START_STYLE, location);
-            printWriter.println("<Placemark>");
+            xmlWriter.appendLine("<Placemark>");
 
             if (exportTrackDetail) {
-                printWriter.println("<name>" + StringUtils.formatCData(track.getName()) + "</name>");
-                printWriter.println("<description>" + StringUtils.formatCData(track.getDescription()) + "</description>");
-                printWriter.println("<icon>" + StringUtils.formatCData(track.getIcon()) + "</icon>");
-                printWriter.println("<opentracks:trackid>" + track.getUuid() + "</opentracks:trackid>");
+                xmlWriter.append("<name>").appendCData(track.getName()).appendLine("</name>");
+                xmlWriter.append("<description>").appendCData(track.getDescription()).appendLine("</description>");
+                xmlWriter.append("<icon>").appendCData(track.getIcon()).appendLine("</icon>");
+                xmlWriter.appendLine("<opentracks:trackid>" + track.getUuid() + "</opentracks:trackid>");
             }
 
-            printWriter.println("<styleUrl>#" + TRACK_STYLE + "</styleUrl>");
+            xmlWriter.appendLine("<styleUrl>#" + TRACK_STYLE + "</styleUrl>");
             writeCategory(track.getCategory());
-            printWriter.println("<gx:MultiTrack>");
-            printWriter.println("<altitudeMode>absolute</altitudeMode>");
-            printWriter.println("<gx:interpolate>1</gx:interpolate>");
+            xmlWriter.appendLine("<gx:MultiTrack>");
+            xmlWriter.appendLine("<altitudeMode>absolute</altitudeMode>");
+            xmlWriter.appendLine("<gx:interpolate>1</gx:interpolate>");
         }
     }
 
     @Override
     public void writeEndTrack(Track track, TrackPoint endTrackPoint) {
-        if (printWriter != null) {
-            printWriter.println("</gx:MultiTrack>");
-            printWriter.println("</Placemark>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("</gx:MultiTrack>");
+            xmlWriter.appendLine("</Placemark>");
 
             if (exportTrackDetail) {
                 String name = context.getString(R.string.marker_label_end, track.getName());
                 String description = descriptionGenerator.generateTrackDescription(track, false);
-                Location location = endTrackPoint != null ? endTrackPoint.getLocation() : null;
+                Location location = endTrackPoint != null ? LocationUtils.createLocation(endTrackPoint) : null;
                 writePlacemark(name, "", description, END_STYLE, location);
             }
         }
@@ -232,8 +239,8 @@ public class KmlTrackWriter implements TrackWriter {
 
     @Override
     public void writeOpenSegment() {
-        if (printWriter != null) {
-            printWriter.println("<gx:Track>");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<gx:Track>");
             speedList.clear();
             powerList.clear();
             cadenceList.clear();
@@ -243,9 +250,9 @@ public class KmlTrackWriter implements TrackWriter {
 
     @Override
     public void writeCloseSegment() {
-        if (printWriter != null) {
-            printWriter.println("<ExtendedData>");
-            printWriter.println("<SchemaData schemaUrl=\"#" + SCHEMA_ID + "\">");
+        if (xmlWriter != null) {
+            xmlWriter.appendLine("<ExtendedData>");
+            xmlWriter.appendLine("<SchemaData schemaUrl=\"#" + SCHEMA_ID + "\">");
             if (speedList.size() > 0) {
                 writeSimpleArrayData(speedList, EXTENDED_DATA_TYPE_SPEED);
             }
@@ -263,20 +270,24 @@ public class KmlTrackWriter implements TrackWriter {
                     writeSimpleArrayData(elevationGainList, EXTENDED_DATA_TYPE_ELEVATION_GAIN);
                 }
             }
-            printWriter.println("</SchemaData>");
-            printWriter.println("</ExtendedData>");
-            printWriter.println("</gx:Track>");
+            xmlWriter.appendLine("</SchemaData>");
+            xmlWriter.appendLine("</ExtendedData>");
+            xmlWriter.appendLine("</gx:Track>");
         }
     }
 
     @Override
     public void writeTrackPoint(TrackPoint trackPoint) {
-        if (printWriter != null) {
+        if (xmlWriter != null) {
             if (exportTrackDetail) {
-                printWriter.println("<when>" + getTime(trackPoint.getLocation()) + "</when>");
+                xmlWriter.append("<when>");
+                writeTime(trackPoint.getTime());
+                xmlWriter.appendLine("</when>");
             }
 
-            printWriter.println("<gx:coord>" + getCoordinates(trackPoint.getLocation(), " ") + "</gx:coord>");
+            xmlWriter.append("<gx:coord>");
+            writeCoordinates(trackPoint, ' ');
+            xmlWriter.appendLine("</gx:coord>");
 
             if (trackPoint.hasSpeed()) {
                 speedList.add(trackPoint.getSpeed());
@@ -305,12 +316,12 @@ public class KmlTrackWriter implements TrackWriter {
      * @param list a list of simple array data
      * @param name the name of the simple array data
      */
-    private void writeSimpleArrayData(List<Float> list, String name) {
-        printWriter.println("<gx:SimpleArrayData name=\"" + name + "\">");
+    private void writeSimpleArrayData(FloatList list, String name) {
+        xmlWriter.appendLine("<gx:SimpleArrayData name=\"" + name + "\">");
         for (int i = 0; i < list.size(); i++) {
-            printWriter.println("<gx:value>" + list.get(i) + "</gx:value>");
+            xmlWriter.append("<gx:value>").append(list.get(i)).appendLine("</gx:value>");
         }
-        printWriter.println("</gx:SimpleArrayData>");
+        xmlWriter.appendLine("</gx:SimpleArrayData>");
     }
 
     /**
@@ -324,63 +335,71 @@ public class KmlTrackWriter implements TrackWriter {
      */
     private void writePlacemark(String name, String category, String description, String styleName, Location location) {
         if (location != null && exportTrackDetail) {
-            printWriter.println("<Placemark>");
-            printWriter.println("<name>" + StringUtils.formatCData(name) + "</name>");
-            printWriter.println("<description>" + StringUtils.formatCData(description) + "</description>");
-            printWriter.println("<TimeStamp><when>" + getTime(location) + "</when></TimeStamp>");
-            printWriter.println("<styleUrl>#" + styleName + "</styleUrl>");
+            xmlWriter.appendLine("<Placemark>");
+            xmlWriter.append("<name>").appendCData(name).appendLine("</name>");
+            xmlWriter.append("<description>").appendCData(description).appendLine("</description>");
+            xmlWriter.append("<TimeStamp><when>");
+            writeTime(location.getTime());
+            xmlWriter.appendLine("</when></TimeStamp>");
+            xmlWriter.appendLine("<styleUrl>#" + styleName + "</styleUrl>");
             writeCategory(category);
-            printWriter.println("<Point>");
-            printWriter.println("<coordinates>" + getCoordinates(location, ",") + "</coordinates>");
-            printWriter.println("</Point>");
-            printWriter.println("</Placemark>");
+            xmlWriter.appendLine("<Point>");
+            xmlWriter.append("<coordinates>");
+            writeCoordinates(location, ',');
+            xmlWriter.appendLine("</coordinates>");
+            xmlWriter.appendLine("</Point>");
+            xmlWriter.appendLine("</Placemark>");
         }
     }
 
     private void writePhotoOverlay(Marker marker, float heading) {
         if (exportTrackDetail) {
-            printWriter.println("<PhotoOverlay>");
-            printWriter.println("<name>" + StringUtils.formatCData(marker.getName()) + "</name>");
-            printWriter.println("<description>" + StringUtils.formatCData(marker.getDescription()) + "</description>");
-            printWriter.print("<Camera>");
-            printWriter.print("<longitude>" + marker.getLocation().getLongitude() + "</longitude>");
-            printWriter.print("<latitude>" + marker.getLocation().getLatitude() + "</latitude>");
-            printWriter.print("<altitude>20</altitude>");
-            printWriter.print("<heading>" + heading + "</heading>");
-            printWriter.print("<tilt>90</tilt>");
-            printWriter.println("</Camera>");
-            printWriter.println("<TimeStamp><when>" + getTime(marker.getLocation()) + "</when></TimeStamp>");
-            printWriter.println("<styleUrl>#" + KmlTrackWriter.MARKER_STYLE + "</styleUrl>");
+            xmlWriter.appendLine("<PhotoOverlay>");
+            xmlWriter.append("<name>").appendCData(marker.getName()).appendLine("</name>");
+            xmlWriter.append("<description>").appendCData(marker.getDescription()).appendLine("</description>");
+            xmlWriter.append("<Camera>");
+            xmlWriter.append("<longitude>").append(marker.getLocation().getLongitude()).append("</longitude>");
+            xmlWriter.append("<latitude>").append(marker.getLocation().getLatitude()).append("</latitude>");
+            xmlWriter.append("<altitude>20</altitude>");
+            xmlWriter.append("<heading>").append(heading).append("</heading>");
+            xmlWriter.append("<tilt>90</tilt>");
+            xmlWriter.appendLine("</Camera>");
+            xmlWriter.append("<TimeStamp><when>");
+            writeTime(marker.getLocation().getTime());
+            xmlWriter.appendLine("</when></TimeStamp>");
+            xmlWriter.appendLine("<styleUrl>#" + KmlTrackWriter.MARKER_STYLE + "</styleUrl>");
             writeCategory(marker.getCategory());
 
             if (exportPhotos) {
-                printWriter.println("<Icon><href>" + KmzTrackExporter.buildKmzImageFilePath(marker) + "</href></Icon>");
+                xmlWriter.appendLine("<Icon><href>" + KmzTrackExporter.buildKmzImageFilePath(marker) + "</href></Icon>");
             }
 
-            printWriter.print("<ViewVolume>");
-            printWriter.print("<near>10</near>");
-            printWriter.print("<leftFov>-60</leftFov>");
-            printWriter.print("<rightFov>60</rightFov>");
-            printWriter.print("<bottomFov>-45</bottomFov>");
-            printWriter.print("<topFov>45</topFov>");
-            printWriter.println("</ViewVolume>");
-            printWriter.println("<Point>");
-            printWriter.println("<coordinates>" + getCoordinates(marker.getLocation(), ",") + "</coordinates>");
-            printWriter.println("</Point>");
-            printWriter.println("</PhotoOverlay>");
+            xmlWriter.append("<ViewVolume>");
+            xmlWriter.append("<near>10</near>");
+            xmlWriter.append("<leftFov>-60</leftFov>");
+            xmlWriter.append("<rightFov>60</rightFov>");
+            xmlWriter.append("<bottomFov>-45</bottomFov>");
+            xmlWriter.append("<topFov>45</topFov>");
+            xmlWriter.appendLine("</ViewVolume>");
+            xmlWriter.appendLine("<Point>");
+            xmlWriter.append("<coordinates>");
+            writeCoordinates(marker.getLocation(), ',');
+            xmlWriter.appendLine("</coordinates>");
+            xmlWriter.appendLine("</Point>");
+            xmlWriter.appendLine("</PhotoOverlay>");
         }
     }
 
     /**
-     * Returns the formatted time of the location; either absolute or relative depending exportTrackDetail.
+     * Writes the formatted time; either absolute or relative depending exportTrackDetail.
      *
-     * @param location the location
+     * @param time the time
      */
-    private String getTime(Location location) {
+    private void writeTime(long time) {
         if (exportTrackDetail) {
-            return StringUtils.formatDateTimeIso8601(location.getTime());
+            xmlWriter.appendDateTimeIso8601(time);
         } else {
-            return StringUtils.formatDateTimeIso8601(location.getTime() - startTrackPoint.getTime());
+            xmlWriter.appendDateTimeIso8601(time - startTrackPoint.getTime());
         }
     }
 
@@ -403,16 +422,21 @@ public class KmlTrackWriter implements TrackWriter {
             cursor.moveToPosition(cursor.getCount() - 1);
             viewLocation = contentProviderUtils.createTrackPoint(cursor);
         }
-        return viewLocation.bearingTo(location);
+        return (float) GeodesyUtils.bearing(viewLocation.getLatitude(), viewLocation.getLongitude(), location.getLatitude(), location.getLongitude());
     }
 
-    private String getCoordinates(Location location, String separator) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(location.getLongitude()).append(separator).append(location.getLatitude());
+    private void writeCoordinates(Location location, char separator) {
+        xmlWriter.append(location.getLongitude()).append(separator).append(location.getLatitude());
         if (location.hasAltitude()) {
-            builder.append(separator).append(location.getAltitude());
+            xmlWriter.append(separator).append(location.getAltitude());
+        }
+    }
+
+    private void writeCoordinates(TrackPoint trackPoint, char separator) {
+        xmlWriter.append(trackPoint.getLongitude()).append(separator).append(trackPoint.getLatitude());
+        if (trackPoint.hasAltitude()) {
+            xmlWriter.append(separator).append(trackPoint.getAltitude());
         }
-        return builder.toString();
     }
 
     /**
@@ -424,22 +448,22 @@ public class KmlTrackWriter implements TrackWriter {
         if (category == null || category.equals("")) {
             return;
         }
-        printWriter.println("<ExtendedData>");
-        printWriter.println("<Data name=\"type\"><value>" + StringUtils.formatCData(category) + "</value></Data>");
-        printWriter.println("</ExtendedData>");
+        xmlWriter.appendLine("<ExtendedData>");
+        xmlWriter.append("<Data name=\"type\"><value>").appendCData(category).appendLine("</value></Data>");
+        xmlWriter.appendLine("</ExtendedData>");
     }
 
     /**
      * Writes the track style.
      */
     private void writeTrackStyle() {
-        printWriter.println("<Style id=\"" + TRACK_STYLE + "\">");
-        printWriter.println("<LineStyle><color>7f0000ff</color><width>4</width></LineStyle>");
-        printWriter.println("<IconStyle>");
-        printWriter.println("<scale>1.3</scale>");
-        printWriter.println("<Icon><href>" + TRACK_ICON + "</href></Icon>");
-        printWriter.println("</IconStyle>");
-        printWriter.println("</Style>");
+        xmlWriter.appendLine("<Style id=\"" + TRACK_STYLE + "\">");
+        xmlWriter.appendLine("<LineStyle><color>7f0000ff</color><width>4</width></LineStyle>");
+        xmlWriter.appendLine("<IconStyle>");
+        xmlWriter.appendLine("<scale>1.3</scale>");
+        xmlWriter.appendLine("<Icon><href>" + TRACK_ICON + "</href></Icon>");
+        xmlWriter.appendLine("</IconStyle>");
+        xmlWriter.appendLine("</Style>");
     }
 
     /**
@@ -451,11 +475,11 @@ public class KmlTrackWriter implements TrackWriter {
      * @param y    the y position of the hotspot
      */
     private void writePlacemarkerStyle(String name, String url, int x, int y) {
-        printWriter.println("<Style id=\"" + name + "\"><IconStyle>");
-        printWriter.println("<scale>1.3</scale>");
-        printWriter.println("<Icon><href>" + url + "</href></Icon>");
-        printWriter.println("<hotSpot x=\"" + x + "\" y=\"" + y + "\" xunits=\"pixels\" yunits=\"pixels\"/>");
-        printWriter.println("</IconStyle></Style>");
+        xmlWriter.appendLine("<Style id=\"" + name + "\"><IconStyle>");
+        xmlWriter.appendLine("<scale>1.3</scale>");
+        xmlWriter.appendLine("<Icon><href>" + url + "</href></Icon>");
+        xmlWriter.appendLine("<hotSpot x=\"" + x + "\" y=\"" + y + "\" xunits=\"pixels\" yunits=\"pixels\"/>");
+        xmlWriter.appendLine("</IconStyle></Style>");
     }
 
     /**
@@ -465,8 +489,35 @@ public class KmlTrackWriter implements TrackWriter {
      * @param extendedDataType the extended data display name
      */
     private void writeSimpleArrayStyle(String name, String extendedDataType) {
-        printWriter.println("<gx:SimpleArrayField name=\"" + name + "\" type=\"float\">");
-        printWriter.println("<displayName>" + StringUtils.formatCData(extendedDataType) + "</displayName>");
-        printWriter.println("</gx:SimpleArrayField>");
+        xmlWriter.appendLine("<gx:SimpleArrayField name=\"" + name + "\" type=\"float\">");
+        xmlWriter.append("<displayName>").appendCData(extendedDataType).appendLine("</displayName>");
+        xmlWriter.appendLine("</gx:SimpleArrayField>");
+    }
+
+    /**
+     * Growable list of primitive floats; avoids boxing each value.
+     */
+    private static class FloatList {
+        private float[] values = new float[1024];
+        private int size = 0;
+
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        float get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
     }
 }
@@ -18,7 +18,6 @@ package de.dennisguse.opentracks.io.file.exporter;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -26,10 +25,8 @@ import androidx.annotation.NonNull;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.Deflater;
 
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
@@ -47,7 +44,6 @@ public class KmzTrackExporter implements TrackExporter {
     public static final String KMZ_KML_FILE = "doc.kml";
 
     private static final String TAG = KmzTrackExporter.class.getSimpleName();
-    private static final int BUFFER_SIZE = 4096;
 
     private final ContentProviderUtils contentProviderUtils;
     private final FileTrackExporter fileTrackExporter;
@@ -55,6 +51,10 @@ public class KmzTrackExporter implements TrackExporter {
     private final boolean exportPhotos;
     private Context context;
 
+    private int bufferSize = ZipWriter.DEFAULT_BUFFER_SIZE;
+    private int blockSize = ZipWriter.DEFAULT_BLOCK_SIZE;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
     /**
      * Constructor.
      *
@@ -76,20 +76,22 @@ public class KmzTrackExporter implements TrackExporter {
 
     @Override
     public boolean writeTrack(Track[] tracks, @NonNull OutputStream outputStream) {
-        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-            // Add kml file
-            ZipEntry zipEntry = new ZipEntry(KMZ_KML_FILE);
-            zipOutputStream.putNextEntry(zipEntry);
+        try (ZipWriter zipWriter = new ZipWriter(outputStream, bufferSize)) {
+            zipWriter.setCompressionLevel(compressionLevel);
+            zipWriter.setBlockSize(blockSize);
 
-            boolean success = fileTrackExporter.writeTrack(tracks, zipOutputStream);
-            zipOutputStream.closeEntry();
+            // Add kml file
+            boolean success;
+            try (OutputStream kmlOutputStream = zipWriter.putDeflatedEntry(KMZ_KML_FILE)) {
+                success = fileTrackExporter.writeTrack(tracks, kmlOutputStream);
+            }
             if (!success) {
                 Log.e(TAG, "Unable to write kml in kmz");
                 return false;
             }
 
             // Add photos
-            if (exportPhotos) addImages(context, tracks ,zipOutputStream);
+            if (exportPhotos) addImages(context, tracks, zipWriter);
             return true;
         } catch (InterruptedException | IOException e) {
             Log.e(TAG, "Unable to write track", e);
@@ -97,7 +99,28 @@ public class KmzTrackExporter implements TrackExporter {
         }
     }
 
-    private void addImages(Context context, Track[] tracks, ZipOutputStream zipOutputStream) throws InterruptedException, IOException {
+    /**
+     * @param bufferSize the size of the output buffer and of the buffer to copy photos
+     */
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param blockSize the size of the blocks of the KML being deflated concurrently
+     */
+    void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param compressionLevel the {@link java.util.zip.Deflater} level for the KML
+     */
+    void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    private void addImages(Context context, Track[] tracks, ZipWriter zipWriter) throws InterruptedException, IOException {
         for (Track track : tracks) {
             try (Cursor cursor = contentProviderUtils.getMarkerCursor(track.getId(), null, -1)) {
                 if (cursor != null && cursor.moveToFirst()) {
@@ -107,10 +130,9 @@ public class KmzTrackExporter implements TrackExporter {
                         }
                         Marker marker = contentProviderUtils.createMarker(cursor);
                         if (marker.hasPhoto()) {
-                            Uri uriPhoto = marker.getPhotoURI();
-                            boolean existsPhoto = FileUtils.getPhotoFileIfExists(context, track.getId(), uriPhoto) != null;
-                            if (existsPhoto) {
-                                addImage(context, zipOutputStream, uriPhoto, marker);
+                            File photo = FileUtils.getPhotoFileIfExists(context, track.getId(), marker.getPhotoURI());
+                            if (photo != null) {
+                                addImage(zipWriter, photo, marker);
                             }
                         }
 
@@ -121,27 +143,15 @@ public class KmzTrackExporter implements TrackExporter {
         }
     }
 
-    private void addImage(Context context, ZipOutputStream zipOutputStream, Uri uri, Marker marker) throws IOException {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
-            ZipEntry zipEntry = new ZipEntry(buildKmzImageFilePath(marker));
-            zipOutputStream.putNextEntry(zipEntry);
-
-            if (inputStream == null) throw new FileNotFoundException();
-
-            readToOutputStream(inputStream, zipOutputStream);
-            zipOutputStream.closeEntry();
-
+    /**
+     * Photos (JPEG) are already compressed; so they are stored as is.
+     */
+    private void addImage(ZipWriter zipWriter, File photo, Marker marker) throws IOException {
+        try {
+            zipWriter.putStoredEntry(buildKmzImageFilePath(marker), photo);
             Log.i(TAG, "added an image to zip");
         } catch (FileNotFoundException e) {
-            Log.e(TAG, "could not get image via FileProvider via uri " + uri);
-        }
-    }
-
-    private void readToOutputStream(InputStream inputStream, OutputStream outputStream) throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int byteCount;
-        while ((byteCount = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, byteCount);
+            Log.e(TAG, "could not read image " + photo);
         }
     }
 
@@ -0,0 +1,302 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.time.Instant;
+
+/**
+ * Streaming writer for XML-based track formats (GPX, KML).
+ * Numbers and timestamps are formatted directly into a reusable char buffer; so writing a trackPoint does not create intermediate Strings.
+ * The output is identical to {@link java.io.PrintWriter} with {@link NumberFormat}, {@link Double#toString(double)}, {@link de.dennisguse.opentracks.util.StringUtils#formatDateTimeIso8601(long)}, and {@link de.dennisguse.opentracks.util.StringUtils#formatCData(String)}.
+ * <p>
+ * Like {@link java.io.PrintWriter}, it does not throw {@link IOException}s.
+ * NOTE: Not thread-safe.
+ */
+public class XmlWriter {
+
+    private static final String TAG = XmlWriter.class.getSimpleName();
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+
+    // Scaled values must be exact enough to decide rounding.
+    private static final double MAX_SCALED_VALUE = 1e12;
+
+    // Values this close to a rounding tie are formatted by the NumberFormat (its rounding depends on the exact decimal representation).
+    private static final double TIE_TOLERANCE = 1e-3;
+
+    private final Writer writer;
+    private final char[] buffer = new char[64];
+    private final StringBuilder scratch = new StringBuilder(32);
+    private boolean error = false;
+
+    public XmlWriter(@NonNull OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the output buffer in chars
+     */
+    public XmlWriter(@NonNull OutputStream outputStream, int bufferSize) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    public XmlWriter append(String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            onError(e);
+        }
+        return this;
+    }
+
+    public XmlWriter append(char c) {
+        try {
+            writer.write(c);
+        } catch (IOException e) {
+            onError(e);
+        }
+        return this;
+    }
+
+    /**
+     * Appends text and a line separator.
+     */
+    public XmlWriter appendLine(String text) {
+        return append(text).newLine();
+    }
+
+    public XmlWriter newLine() {
+        return append(LINE_SEPARATOR);
+    }
+
+    public XmlWriter append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        int start = buffer.length;
+        long remaining = Math.abs(value);
+        do {
+            buffer[--start] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[--start] = '-';
+        }
+        return writeBuffer(start, buffer.length - start);
+    }
+
+    /**
+     * Same as {@link Double#toString(double)}.
+     */
+    public XmlWriter append(double value) {
+        scratch.setLength(0);
+        scratch.append(value);
+        return writeScratch();
+    }
+
+    /**
+     * Same as {@link Float#toString(float)}.
+     */
+    public XmlWriter append(float value) {
+        scratch.setLength(0);
+        scratch.append(value);
+        return writeScratch();
+    }
+
+    /**
+     * Same as {@link NumberFormat#format(double)}.
+     * Only for formats without grouping and with the default minimum integer (1) and fraction digits (0).
+     * Values close to a rounding tie (and out of range) are formatted using the format itself.
+     */
+    public XmlWriter append(double value, @NonNull NumberFormat format) {
+        int fractionDigits = format.getMaximumFractionDigits();
+        if (fractionDigits >= POWERS_OF_TEN.length) {
+            return appendFormatted(value, format);
+        }
+
+        double scaled = Math.abs(value) * POWERS_OF_TEN[fractionDigits];
+        if (!(scaled < MAX_SCALED_VALUE)) {
+            // Also NaN and infinity.
+            return appendFormatted(value, format);
+        }
+
+        long integral = (long) scaled;
+        double fraction = scaled - integral;
+        if (Math.abs(fraction - 0.5) < TIE_TOLERANCE) {
+            return appendFormatted(value, format);
+        }
+        long rounded = fraction > 0.5 ? integral + 1 : integral;
+
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        if (negative && rounded == 0) {
+            // "-0"
+            return appendFormatted(value, format);
+        }
+
+        long integerPart = rounded / POWERS_OF_TEN[fractionDigits];
+        long fractionPart = rounded % POWERS_OF_TEN[fractionDigits];
+        int maxIntegerDigits = format.getMaximumIntegerDigits();
+        if (maxIntegerDigits < POWERS_OF_TEN.length && integerPart >= POWERS_OF_TEN[maxIntegerDigits]) {
+            return appendFormatted(value, format);
+        }
+
+        int digits = fractionDigits;
+        while (digits > 0 && fractionPart % 10 == 0) {
+            fractionPart /= 10;
+            digits--;
+        }
+
+        int end = buffer.length;
+        int start = end;
+        if (digits > 0) {
+            for (int i = 0; i < digits; i++) {
+                buffer[--start] = (char) ('0' + fractionPart % 10);
+                fractionPart /= 10;
+            }
+            buffer[--start] = '.';
+        }
+        do {
+            buffer[--start] = (char) ('0' + integerPart % 10);
+            integerPart /= 10;
+        } while (integerPart != 0);
+        if (negative) {
+            buffer[--start] = '-';
+        }
+        return writeBuffer(start, end - start);
+    }
+
+    /**
+     * Same as {@link de.dennisguse.opentracks.util.StringUtils#formatDateTimeIso8601(long)}.
+     */
+    public XmlWriter appendDateTimeIso8601(long time_ms) {
+        if (time_ms < 0) {
+            return append(Instant.ofEpochMilli(time_ms).toString());
+        }
+
+        int millis = (int) (time_ms % 1000);
+        long seconds = time_ms / 1000;
+        int secondOfDay = (int) (seconds % 86400);
+        long days = seconds / 86400;
+
+        // Civil date from days since epoch; see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = days + 719468;
+        long era = z / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (int) ((5 * dayOfYear + 2) / 153);
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year > 9999) {
+            return append(Instant.ofEpochMilli(time_ms).toString());
+        }
+
+        int length = 0;
+        length = putDigits(length, (int) year, 4);
+        buffer[length++] = '-';
+        length = putDigits(length, month, 2);
+        buffer[length++] = '-';
+        length = putDigits(length, day, 2);
+        buffer[length++] = 'T';
+        length = putDigits(length, secondOfDay / 3600, 2);
+        buffer[length++] = ':';
+        length = putDigits(length, secondOfDay / 60 % 60, 2);
+        buffer[length++] = ':';
+        length = putDigits(length, secondOfDay % 60, 2);
+        if (millis != 0) {
+            buffer[length++] = '.';
+            length = putDigits(length, millis, 3);
+        }
+        buffer[length++] = 'Z';
+        return writeBuffer(0, length);
+    }
+
+    /**
+     * Same as {@link de.dennisguse.opentracks.util.StringUtils#formatCData(String)}.
+     */
+    public XmlWriter appendCData(String text) {
+        append("<![CDATA[");
+        try {
+            int start = 0;
+            int index;
+            while ((index = text.indexOf("]]>", start)) != -1) {
+                writer.write(text, start, index - start);
+                writer.write("]]]]><![CDATA[>");
+                start = index + 3;
+            }
+            writer.write(text, start, text.length() - start);
+        } catch (IOException e) {
+            onError(e);
+        }
+        return append("]]>");
+    }
+
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * @return true if an {@link IOException} occurred.
+     */
+    public boolean checkError() {
+        flush();
+        return error;
+    }
+
+    private int putDigits(int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    private XmlWriter appendFormatted(double value, NumberFormat format) {
+        String formatted;
+        // NumberFormat is not thread-safe, but shared between writers.
+        synchronized (format) {
+            formatted = format.format(value);
+        }
+        return append(formatted);
+    }
+
+    private XmlWriter writeScratch() {
+        int length = scratch.length();
+        scratch.getChars(0, length, buffer, 0);
+        return writeBuffer(0, length);
+    }
+
+    private XmlWriter writeBuffer(int offset, int length) {
+        try {
+            writer.write(buffer, offset, length);
+        } catch (IOException e) {
+            onError(e);
+        }
+        return this;
+    }
+
+    private void onError(IOException e) {
+        if (!error) {
+            Log.e(TAG, "Unable to write.", e);
+        }
+        error = true;
+    }
+}
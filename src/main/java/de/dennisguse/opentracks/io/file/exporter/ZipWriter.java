@@ -0,0 +1,455 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP file sequentially.
+ * In contrast to {@link java.util.zip.ZipOutputStream}:
+ * 1. already compressed files are stored as is (no CPU spent on deflating them again) and
+ * 2. deflated entries are compressed in independent blocks on all cores (like pigz): each block is primed with the last 32KiB of the previous block and ends on a byte boundary; so the blocks can be concatenated.
+ * <p>
+ * Neither ZIP64 nor more than 65535 entries are supported.
+ * NOTE: Not thread-safe.
+ */
+class ZipWriter implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    // Deflate's window size.
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final long MAX_SIZE = 0xffffffffL;
+    private static final int MAX_ENTRIES = 0xffff;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Shared by all ZipWriters; so concurrent exports do not oversubscribe the cores.
+    private static final ExecutorService DEFLATE_EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, ZipWriter.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        DEFLATE_EXECUTOR = executor;
+    }
+
+    private final CountingOutputStream outputStream;
+    private final byte[] buffer;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    private DeflatedEntryOutputStream openEntry;
+
+    ZipWriter(@NonNull OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the output buffer and of the buffer to copy files
+     */
+    ZipWriter(@NonNull OutputStream outputStream, int bufferSize) {
+        this.outputStream = new CountingOutputStream(new BufferedOutputStream(outputStream, bufferSize));
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @param compressionLevel the {@link Deflater} level for deflated entries
+     */
+    void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @param blockSize the size of the blocks being deflated concurrently (at least 32KiB for a compression ratio close to sequential deflating)
+     */
+    void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Adds a deflated entry.
+     * The returned {@link OutputStream} must be closed before the next entry is added.
+     */
+    OutputStream putDeflatedEntry(@NonNull String name) throws IOException {
+        Entry entry = newEntry(name, METHOD_DEFLATED, FLAG_DATA_DESCRIPTOR);
+        writeLocalHeader(entry);
+        openEntry = new DeflatedEntryOutputStream(entry);
+        return openEntry;
+    }
+
+    /**
+     * Adds a file without compressing it (e.g., JPEG).
+     * The file is read twice: first to compute the CRC (needed before its content) and then to copy it.
+     */
+    void putStoredEntry(@NonNull String name, @NonNull File file) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int byteCount;
+            while ((byteCount = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, byteCount);
+                size += byteCount;
+            }
+        }
+        checkSize(size);
+
+        Entry entry = newEntry(name, METHOD_STORED, 0);
+        entry.crc = crc.getValue();
+        entry.size = size;
+        entry.compressedSize = size;
+
+        writeLocalHeader(entry);
+        long copied = 0;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int byteCount;
+            while ((byteCount = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, byteCount);
+                copied += byteCount;
+            }
+        }
+        if (copied != size) {
+            throw new IOException("File was modified while being added: " + file);
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the underlying {@link OutputStream}.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (openEntry != null) {
+                throw new IOException("Entry was not closed: " + openEntry.entry.name);
+            }
+
+            long centralDirectoryOffset = outputStream.getCount();
+            for (Entry entry : entries) {
+                writeInt(CENTRAL_HEADER_SIGNATURE);
+                writeShort(VERSION);
+                writeShort(VERSION);
+                writeShort(entry.flags);
+                writeShort(entry.method);
+                writeInt(entry.dosTime);
+                writeInt(entry.crc);
+                writeInt(entry.compressedSize);
+                writeInt(entry.size);
+                writeShort(entry.name.length);
+                writeShort(0); // extra field length
+                writeShort(0); // comment length
+                writeShort(0); // disk number
+                writeShort(0); // internal attributes
+                writeInt(0); // external attributes
+                writeInt(entry.offset);
+                outputStream.write(entry.name);
+            }
+            long centralDirectorySize = outputStream.getCount() - centralDirectoryOffset;
+            checkSize(centralDirectoryOffset + centralDirectorySize);
+
+            writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            writeShort(0); // disk number
+            writeShort(0); // disk with central directory
+            writeShort(entries.size());
+            writeShort(entries.size());
+            writeInt(centralDirectorySize);
+            writeInt(centralDirectoryOffset);
+            writeShort(0); // comment length
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private Entry newEntry(String name, int method, int flags) throws IOException {
+        if (openEntry != null) {
+            throw new IOException("Entry was not closed: " + openEntry.entry.name);
+        }
+        if (entries.size() == MAX_ENTRIES) {
+            throw new IOException("Too many entries");
+        }
+        checkSize(outputStream.getCount());
+
+        Entry entry = new Entry(name.getBytes(StandardCharsets.UTF_8), method, flags | FLAG_UTF8, outputStream.getCount());
+        entries.add(entry);
+        return entry;
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        boolean hasDataDescriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(hasDataDescriptor ? 0 : entry.crc);
+        writeInt(hasDataDescriptor ? 0 : entry.compressedSize);
+        writeInt(hasDataDescriptor ? 0 : entry.size);
+        writeShort(entry.name.length);
+        writeShort(0); // extra field length
+        outputStream.write(entry.name);
+    }
+
+    private void writeDataDescriptor(Entry entry) throws IOException {
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+    }
+
+    private void writeShort(int value) throws IOException {
+        outputStream.write(value & 0xff);
+        outputStream.write((value >>> 8) & 0xff);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xffff));
+        writeShort((int) ((value >>> 16) & 0xffff));
+    }
+
+    private static void checkSize(long size) throws IOException {
+        if (size > MAX_SIZE) {
+            throw new IOException("ZIP64 is not supported");
+        }
+    }
+
+    private static long toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((long) (calendar.get(Calendar.MONTH) + 1) << 21)
+                | ((long) calendar.get(Calendar.DAY_OF_MONTH) << 16)
+                | ((long) calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | ((long) calendar.get(Calendar.MINUTE) << 5)
+                | ((long) calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final int method;
+        private final int flags;
+        private final long offset;
+        private final long dosTime = toDosTime(System.currentTimeMillis());
+
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(byte[] name, int method, int flags, long offset) {
+            this.name = name;
+            this.method = method;
+            this.flags = flags;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Collects the data into blocks and deflates them on the {@link #DEFLATE_EXECUTOR}.
+     * The deflated blocks are written in order; at most 2 blocks per core are pending (bounds the memory usage).
+     */
+    private class DeflatedEntryOutputStream extends OutputStream {
+
+        private final Entry entry;
+        private final int level = compressionLevel;
+        private final CRC32 crc = new CRC32();
+        private final ArrayDeque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+        private final int maxPendingBlocks = 2 * THREADS;
+
+        private byte[] block = new byte[blockSize];
+        private int blockLength = 0;
+        private byte[] dictionary = null;
+
+        private long size = 0;
+        private long compressedSize = 0;
+        private boolean closed = false;
+
+        private DeflatedEntryOutputStream(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            crc.update(b, off, len);
+            size += len;
+            while (len > 0) {
+                int count = Math.min(len, block.length - blockLength);
+                System.arraycopy(b, off, block, blockLength, count);
+                blockLength += count;
+                off += count;
+                len -= count;
+                if (blockLength == block.length) {
+                    submitBlock(false);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                submitBlock(true);
+                while (!pendingBlocks.isEmpty()) {
+                    writeNextBlock();
+                }
+            } finally {
+                for (Future<byte[]> pendingBlock : pendingBlocks) {
+                    pendingBlock.cancel(true);
+                }
+                openEntry = null;
+            }
+
+            checkSize(size);
+            checkSize(compressedSize);
+            entry.crc = crc.getValue();
+            entry.size = size;
+            entry.compressedSize = compressedSize;
+            writeDataDescriptor(entry);
+        }
+
+        private void submitBlock(boolean last) throws IOException {
+            final byte[] input = block;
+            final int inputLength = blockLength;
+            final byte[] inputDictionary = dictionary;
+            pendingBlocks.add(DEFLATE_EXECUTOR.submit(() -> deflate(input, inputLength, inputDictionary, last)));
+
+            if (!last) {
+                dictionary = Arrays.copyOfRange(input, inputLength - Math.min(inputLength, DICTIONARY_SIZE), inputLength);
+                block = new byte[blockSize];
+                blockLength = 0;
+            }
+            while (pendingBlocks.size() > maxPendingBlocks) {
+                writeNextBlock();
+            }
+        }
+
+        private void writeNextBlock() throws IOException {
+            try {
+                byte[] compressed = pendingBlocks.peek().get();
+                pendingBlocks.remove();
+                outputStream.write(compressed);
+                compressedSize += compressed.length;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to deflate", e.getCause());
+            }
+        }
+
+        private byte[] deflate(byte[] input, int inputLength, byte[] dictionary, boolean last) {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(input, 0, inputLength);
+
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(inputLength / 4 + 64);
+                byte[] output = new byte[Math.max(inputLength / 4, 1024)];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(output);
+                        compressed.write(output, 0, count);
+                    }
+                } else {
+                    // Ends the block on a byte boundary without ending the deflate stream.
+                    int count;
+                    do {
+                        count = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+                        compressed.write(output, 0, count);
+                    } while (count == output.length);
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private final OutputStream outputStream;
+        private long count = 0;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            outputStream.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+    }
+}
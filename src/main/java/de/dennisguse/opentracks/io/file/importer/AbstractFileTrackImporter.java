@@ -20,12 +20,13 @@ import android.content.Context;
 import android.database.sqlite.SQLiteConstraintException;
 import android.net.Uri;
 import android.util.Log;
+import android.util.Xml;
 
-import org.xml.sax.Locator;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
+import androidx.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -34,30 +35,26 @@ import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TrackPreview;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
-import de.dennisguse.opentracks.content.provider.TrackPointIterator;
 import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
-import de.dennisguse.opentracks.util.FileUtils;
+import de.dennisguse.opentracks.util.GeodesyKernels;
 import de.dennisguse.opentracks.util.LocationUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 import de.dennisguse.opentracks.util.StringUtils;
 import de.dennisguse.opentracks.util.TrackIconUtils;
-import de.dennisguse.opentracks.util.UnitConversions;
 
 /**
  * Abstract class for file track importers.
+ * Uses an {@link XmlPullParser}; the text content of elements is collected in a reusable char buffer and numbers/timestamps are parsed from it without creating Strings.
  *
  * @author Jimmy Shih
  */
-abstract class AbstractFileTrackImporter extends DefaultHandler implements TrackImporter {
+abstract class AbstractFileTrackImporter implements TrackImporter {
 
     private static final String TAG = AbstractFileTrackImporter.class.getSimpleName();
 
@@ -70,24 +67,27 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
 
     private Track.Id importTrackId;
     private final List<Track.Id> trackIds = new ArrayList<>();
-    private final List<Marker> markers = new ArrayList<>();
+
+    // Markers sorted by time; matched against the trackPoints while these are imported.
+    private final List<Marker> pendingMarkers = new ArrayList<>();
+    private int nextMarkerIndex = 0;
 
     // The current element content
-    //TODO Should be made private and getter be used by child classes.
-    protected String content;
+    private char[] content = new char[256];
+    private int contentLength = 0;
+    private char[] attributeValue = new char[32];
 
     protected String icon;
     protected String name;
     protected String description;
     protected String category;
-    protected String latitude;
-    protected String longitude;
-    protected String altitude;
-    protected String time;
-    protected String speed;
-    protected String heartrate;
-    protected String cadence;
-    protected String power;
+    protected Double latitude;
+    protected Double longitude;
+    protected Double altitude;
+    protected Long time;
+    protected Float speed;
+    protected Float heartrate;
+    protected Float cadence;
     protected String markerType;
     protected String photoUrl;
     protected String uuid;
@@ -95,8 +95,22 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
     // The current track data
     private TrackData trackData;
 
-    // The SAX locator to get the current line information
-    private Locator locator;
+    // If set, trackPoints are inserted by the shared writer of a multi-file import; otherwise directly.
+    private ImportTrackPointWriter.Session trackPointWriterSession;
+
+    // If not set, the photos of markers are not imported.
+    private PhotoImporter photoImporter;
+
+    // Reused by insertPendingTrackPoints(); index 0 may be the previous trackPoint of the segment.
+    private final double[] latitudes = new double[MAX_BUFFERED_LOCATIONS + 1];
+    private final double[] longitudes = new double[MAX_BUFFERED_LOCATIONS + 1];
+    private final long[] times = new long[MAX_BUFFERED_LOCATIONS + 1];
+    private final double[] distances = new double[MAX_BUFFERED_LOCATIONS + 1];
+    private final double[] speeds = new double[MAX_BUFFERED_LOCATIONS + 1];
+    private final double[] bearings = new double[MAX_BUFFERED_LOCATIONS + 1];
+
+    // The parser to get the current line information
+    private XmlPullParser parser;
 
     AbstractFileTrackImporter(Context context, ContentProviderUtils contentProviderUtils) {
         this.context = context;
@@ -109,36 +123,35 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         this.importTrackId = importTrackId;
     }
 
-    @Override
-    public void setDocumentLocator(Locator locator) {
-        this.locator = locator;
+    /**
+     * Inserts the trackPoints via the (shared) writer instead of directly.
+     */
+    void setTrackPointWriterSession(ImportTrackPointWriter.Session trackPointWriterSession) {
+        this.trackPointWriterSession = trackPointWriterSession;
     }
 
-    @Override
-    public void characters(char[] ch, int start, int length) {
-        String newContent = new String(ch, start, length);
-        if (content == null) {
-            content = newContent;
-        } else {
-            // In 99% of the cases, a single call to this method will be made for each sequence of characters we're interested in, so we'll rarely be concatenating strings, thus not justifying the use of a StringBuilder.
-            content += newContent;
-        }
+    void setPhotoImporter(PhotoImporter photoImporter) {
+        this.photoImporter = photoImporter;
     }
 
     @Override
     public Track.Id importFile(InputStream inputStream) {
         try {
-            SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+            parser = Xml.newPullParser();
+            // Tags are matched including their prefix (e.g., gpxtpx:hr).
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(inputStream, null);
             long start = System.currentTimeMillis();
 
-            saxParser.parse(inputStream, this);
+            parse();
+            awaitTrackPoints();
             Log.d(TAG, "Total import time: " + (System.currentTimeMillis() - start) + "ms");
             if (trackIds.size() != 1) {
                 // TODO Multi track is not supported yet.
                 throw new ImportParserException("Multi track not supported");
             }
             return trackIds.get(0);
-        } catch (IOException | SAXException | ParserConfigurationException e) {
+        } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Unable to import file", e);
             cleanImport();
             throw new ImportParserException(e);
@@ -146,109 +159,265 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
             Log.e(TAG, "Unable to import file", e);
             cleanImport();
             throw new ImportAlreadyExistsException(e);
+        } catch (ImportAlreadyExistsException e) {
+            Log.i(TAG, "Unable to import file: " + e.getMessage());
+            cleanImport();
+            throw e;
         }
     }
 
     /**
-     * On file end.
+     * Waits until the trackPoints queued at the writer were inserted; on failure the import is cleaned up.
      */
-    protected void onFileEnd() {
-        // Add markers to the last imported track
-        int size = trackIds.size();
-        if (size == 0) {
+    private void awaitTrackPoints() {
+        if (trackPointWriterSession == null) {
             return;
         }
-        Track.Id trackId = trackIds.get(size - 1);
-        Track track = contentProviderUtils.getTrack(trackId);
-        if (track == null) {
-            return;
+        try {
+            trackPointWriterSession.await();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to insert trackPoints", e);
+            cleanImport();
+            throw e instanceof ImportParserException ? (ImportParserException) e : new ImportParserException(e);
         }
+    }
 
-        int markerPosition = -1;
-        Marker marker = null;
-        TrackPoint trackPoint = null;
-        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics().getStartTime_ms());
-        // TODO Should not be necessary anymore?
-        TrackStatisticsUpdater markerTrackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics().getStartTime_ms());
+    private void parse() throws XmlPullParserException, IOException {
+        int[] startAndLength = new int[2];
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            switch (eventType) {
+                case XmlPullParser.START_TAG:
+                    contentLength = 0;
+                    onStartElement(parser.getName());
+                    break;
+                case XmlPullParser.TEXT:
+                    char[] text = parser.getTextCharacters(startAndLength);
+                    appendContent(text, startAndLength[0], startAndLength[1]);
+                    break;
+                case XmlPullParser.END_TAG:
+                    onEndElement(parser.getName());
+                    contentLength = 0;
+                    break;
+            }
+            eventType = parser.next();
+        }
+    }
 
-        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), -1L, false)) {
+    /**
+     * On element start; the attributes can be read via {@link #getAttributeValue(String)}.
+     *
+     * @param tag the tag name including its prefix
+     */
+    protected abstract void onStartElement(String tag) throws XmlPullParserException;
 
-            while (true) {
-                if (marker == null) {
-                    markerPosition++;
-                    marker = markerPosition < markers.size() ? markers.get(markerPosition) : null;
-                    if (marker == null) {
-                        // No more markers
-                        return;
-                    }
-                }
+    /**
+     * On element end; the element's content can be read via {@link #getContent()} and the parse methods.
+     *
+     * @param tag the tag name including its prefix
+     */
+    protected abstract void onEndElement(String tag) throws XmlPullParserException;
 
-                if (trackPoint == null) {
-                    if (!trackPointIterator.hasNext()) {
-                        // No more track points. Ignore the rest of the markers.
-                        return;
-                    }
-                    trackPoint = trackPointIterator.next();
-                    trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-                    markerTrackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-                }
+    private void appendContent(char[] text, int start, int length) {
+        if (contentLength + length > content.length) {
+            content = Arrays.copyOf(content, Math.max(content.length * 2, contentLength + length));
+        }
+        System.arraycopy(text, start, content, contentLength, length);
+        contentLength += length;
+    }
 
-                if (marker.getLocation().getTime() > trackPoint.getTime()) {
-                    trackPoint = null;
-                } else if (marker.getLocation().getTime() < trackPoint.getTime()) {
-                    Log.w(TAG, "Ignoring marker: current trackPoint was after marker.");
-                    marker = null;
-                } else {
-                    // The marker trackPoint time matches the track point time
-                    if (!LocationUtils.isValidLocation(trackPoint.getLocation())) {
-                        // Invalid trackPoint, load the next trackPoint
-                        trackPoint = null;
-                        continue;
-                    }
+    protected String getAttributeValue(String name) {
+        return parser.getAttributeValue(null, name);
+    }
 
-                    // Valid trackPoint
-                    if (trackPoint.getLatitude() == marker.getLocation().getLatitude() && trackPoint.getLongitude() == marker.getLocation().getLongitude()) {
-                        String markerDescription = marker.getDescription();
-                        String icon = context.getString(R.string.marker_icon_url);
-                        double length = trackStatisticsUpdater.getTrackStatistics().getTotalDistance();
-                        long duration = trackStatisticsUpdater.getTrackStatistics().getTotalTime();
+    /**
+     * @return the attribute's value or null if the current element does not have the attribute.
+     */
+    protected Double parseAttributeDouble(String name) throws XmlPullParserException {
+        String value = getAttributeValue(name);
+        if (value == null) {
+            return null;
+        }
+        if (value.length() > attributeValue.length) {
+            attributeValue = new char[value.length()];
+        }
+        value.getChars(0, value.length(), attributeValue, 0);
+        try {
+            return StringUtils.parseDouble(attributeValue, 0, value.length());
+        } catch (NumberFormatException e) {
+            throw new XmlPullParserException(createErrorMessage(String.format(Locale.US, "Unable to parse %s: %s", name, value)), null, e);
+        }
+    }
 
-                        // Insert marker
-                        Marker newMarker = new Marker(marker.getName(), markerDescription, marker.getCategory(), icon, track.getId(), length, duration, trackPoint.getLocation(), marker.getPhotoUrl());
-                        contentProviderUtils.insertMarker(newMarker);
-                    }
+    /**
+     * @return true if the current element has content.
+     */
+    protected boolean hasContent() {
+        return contentLength > 0;
+    }
+
+    /**
+     * @return true if the content of the current element consists of whitespace only.
+     */
+    protected boolean isContentBlank() {
+        for (int i = 0; i < contentLength; i++) {
+            if (content[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the trimmed content of the current element or null if there is no content.
+     */
+    protected String getContent() {
+        if (!hasContent()) {
+            return null;
+        }
+        return new String(content, 0, contentLength).trim();
+    }
+
+    protected double parseContentDouble(String description) throws XmlPullParserException {
+        return parseDouble(0, contentLength, description);
+    }
+
+    protected float parseContentFloat(String description) throws XmlPullParserException {
+        try {
+            return StringUtils.parseFloat(content, 0, contentLength);
+        } catch (NumberFormatException e) {
+            throw new XmlPullParserException(createErrorMessage(String.format(Locale.US, "Unable to parse %s: %s", description, getContent())), null, e);
+        }
+    }
+
+    protected long parseContentTime() throws XmlPullParserException {
+        try {
+            return StringUtils.parseTime(content, 0, contentLength);
+        } catch (Exception e) {
+            throw new XmlPullParserException(createErrorMessage(String.format(Locale.US, "Unable to parse time: %s", getContent())), null, e);
+        }
+    }
 
-                    // Load the next marker
-                    marker = null;
+    /**
+     * Parses the content as coordinates (longitude, latitude, and optional altitude) and sets {@link #longitude}, {@link #latitude}, and {@link #altitude}.
+     * Same as splitting the trimmed content with separator, but without creating Strings.
+     *
+     * @param separator the separator of the values
+     * @return false if there are not two or three values (nothing is set)
+     */
+    protected boolean parseContentCoordinates(char separator) throws XmlPullParserException {
+        int start = 0;
+        int end = contentLength;
+        while (start < end && content[start] <= ' ') {
+            start++;
+        }
+        while (end > start && content[end - 1] <= ' ') {
+            end--;
+        }
+        // Like String.split(): trailing empty values are ignored.
+        while (end > start && content[end - 1] == separator) {
+            end--;
+        }
+
+        int firstSeparator = -1;
+        int secondSeparator = -1;
+        for (int i = start; i < end; i++) {
+            if (content[i] == separator) {
+                if (firstSeparator == -1) {
+                    firstSeparator = i;
+                } else if (secondSeparator == -1) {
+                    secondSeparator = i;
+                } else {
+                    return false;
                 }
             }
         }
+        if (firstSeparator == -1) {
+            return false;
+        }
+
+        longitude = parseDouble(start, firstSeparator, "longitude");
+        latitude = parseDouble(firstSeparator + 1, secondSeparator != -1 ? secondSeparator : end, "latitude");
+        altitude = secondSeparator != -1 ? parseDouble(secondSeparator + 1, end, "altitude") : null;
+        return true;
+    }
+
+    private double parseDouble(int start, int end, String description) throws XmlPullParserException {
+        try {
+            return StringUtils.parseDouble(content, start, end);
+        } catch (NumberFormatException e) {
+            throw new XmlPullParserException(createErrorMessage(String.format(Locale.US, "Unable to parse %s: %s", description, new String(content, start, end - start))), null, e);
+        }
+    }
+
+    /**
+     * On file end.
+     */
+    protected void onFileEnd() {
+        int unmatchedMarkers = pendingMarkers.size() - nextMarkerIndex;
+        if (unmatchedMarkers > 0) {
+            Log.w(TAG, "Ignoring " + unmatchedMarkers + " marker(s): no matching trackPoint.");
+        }
+        pendingMarkers.clear();
+        nextMarkerIndex = 0;
     }
 
     /**
      * On track start.
      */
-    protected void onTrackStart() throws SAXException {
+    protected void onTrackStart() throws XmlPullParserException {
         trackData = new TrackData();
-        Track.Id trackId;
-        if (importTrackId == null) {
-            Uri uri = contentProviderUtils.insertTrack(trackData.track);
-            trackId = new Track.Id(Long.parseLong(uri.getLastPathSegment()));
-        } else {
+        if (importTrackId != null) {
             if (trackIds.size() > 0) {
-                throw new SAXException(createErrorMessage("Cannot import more than one track to an existing track " + importTrackId.getId()));
+                throw new XmlPullParserException(createErrorMessage("Cannot import more than one track to an existing track " + importTrackId.getId()));
             }
-            trackId = importTrackId;
-            contentProviderUtils.clearTrack(trackId);
+            contentProviderUtils.clearTrack(importTrackId);
+            trackIds.add(importTrackId);
+            trackData.track.setId(importTrackId);
+        }
+        // Otherwise the track is inserted when it is needed (see getTrackId()); so nothing needs to be deleted if it turns out to be a duplicate.
+    }
+
+    /**
+     * Gets the id of the current track; inserts the track if not yet done.
+     */
+    private Track.Id getTrackId() {
+        if (trackData.track.getId() == null) {
+            Uri uri = contentProviderUtils.insertTrack(trackData.track);
+            Track.Id trackId = new Track.Id(Long.parseLong(uri.getLastPathSegment()));
+            trackIds.add(trackId);
+            trackData.track.setId(trackId);
+        }
+        return trackData.track.getId();
+    }
+
+    /**
+     * On the track's uuid; rejects the file right away if the track was already imported (and re-importing is prevented).
+     * So nothing more is parsed or inserted for a duplicate; the uuid is stored before the trackPoints by OpenTracks' exporters.
+     */
+    protected void onTrackUuid() {
+        if (uuid == null || !PreferencesUtils.getPreventReimportTracks(context)) {
+            return;
+        }
+
+        UUID trackUuid;
+        try {
+            trackUuid = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (contentProviderUtils.getTrack(trackUuid) != null) {
+            throw new ImportAlreadyExistsException(createErrorMessage("Track " + trackUuid + " already exists"));
         }
-        trackIds.add(trackId);
-        trackData.track.setId(trackId);
     }
 
     /**
      * On track end.
      */
     protected void onTrackEnd() {
+        // Insert the track (if not yet done) before it gets the uuid of the file; a duplicate is detected by updateTrack().
+        getTrackId();
+        insertPendingTrackPoints();
         flushLocations(trackData);
         if (name != null) {
             trackData.track.setName(name);
@@ -274,7 +443,8 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
             trackData.track.setIcon(icon);
         }
         if (trackData.trackStatisticsUpdater == null) {
-            trackData.trackStatisticsUpdater = new TrackStatisticsUpdater(trackData.importTime);
+            trackData.trackStatisticsUpdater = new TrackStatisticsUpdater(trackData.importTime, PreferencesUtils.getElevationSmoothing(context), PreferencesUtils.getSpeedSmoothing(context));
+            trackData.trackStatisticsUpdater.setZones(PreferencesUtils.getHeartRateZones(context), PreferencesUtils.getPowerZones(context));
             trackData.trackStatisticsUpdater.updateTime(trackData.importTime);
         }
         trackData.track.setTrackStatistics(trackData.trackStatisticsUpdater.getTrackStatistics());
@@ -290,6 +460,16 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
             trackData.track.setUuid(UUID.randomUUID());
             contentProviderUtils.updateTrack(trackData.track);
         }
+
+        TrackPreview trackPreview = trackData.trackPreviewBuilder.build();
+        if (trackPreview != null) {
+            contentProviderUtils.updateTrackPreview(trackData.track.getId(), trackPreview);
+        }
+
+        // The best efforts and climbs are computed from the stored trackPoints (climbs refer to their ids); so the queued trackPoints must be inserted first.
+        awaitTrackPoints();
+        contentProviderUtils.updateBestEfforts(trackData.track.getId());
+        contentProviderUtils.updateClimbs(trackData.track.getId(), recordingDistanceInterval, PreferencesUtils.getElevationSmoothing(context));
     }
 
     /**
@@ -297,6 +477,8 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
      */
     protected void onTrackSegmentStart() {
         trackData.numberOfSegments++;
+        insertPendingTrackPoints();
+        trackData.previousTrackPointInCurrentSegment = null;
 
         //If not the first segment, add a pause separator if there is at least one location in the last segment.
         if (trackData.numberOfSegments > 1 && trackData.lastLocationInCurrentSegment != null) {
@@ -305,7 +487,7 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         trackData.lastLocationInCurrentSegment = null;
     }
 
-    protected void addMarker() throws SAXException {
+    protected void addMarker() throws XmlPullParserException {
         // Markers must have a time, else cannot match to the track points
         if (time == null) {
             return;
@@ -313,10 +495,10 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
 
         TrackPoint trackPoint = createTrackPoint();
 
-        if (!LocationUtils.isValidLocation(trackPoint.getLocation())) {
-            throw new SAXException(createErrorMessage("Invalid location detected: " + trackPoint));
+        if (!trackPoint.hasValidLocation()) {
+            throw new XmlPullParserException(createErrorMessage("Invalid location detected: " + trackPoint));
         }
-        Marker marker = new Marker(trackPoint.getLocation());
+        Marker marker = new Marker(LocationUtils.createLocation(trackPoint));
 
         if (name != null) {
             marker.setName(name);
@@ -331,42 +513,26 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         if (photoUrl != null) {
             marker.setPhotoUrl(photoUrl);
         }
-        markers.add(marker);
+
+        // Keep the file order for markers with the same time.
+        int index = pendingMarkers.size();
+        while (index > nextMarkerIndex && pendingMarkers.get(index - 1).getLocation().getTime() > marker.getLocation().getTime()) {
+            index--;
+        }
+        pendingMarkers.add(index, marker);
     }
 
     /**
      * Gets a track point.
      */
-    protected TrackPoint getTrackPoint() throws SAXException {
+    protected TrackPoint getTrackPoint() throws XmlPullParserException {
         TrackPoint trackPoint = createTrackPoint();
         if (trackPoint == null) {
-            throw new SAXException(createErrorMessage("Invalid location detected: " + trackPoint));
+            throw new XmlPullParserException(createErrorMessage("Invalid location detected: " + trackPoint));
         }
 
-        // Calculate derived attributes from the previous point
-        if (trackData.lastLocationInCurrentSegment != null && trackData.lastLocationInCurrentSegment.getTime() != 0) {
-            if (!trackPoint.hasSpeed()) {
-                long timeDifference = trackPoint.getTime() - trackData.lastLocationInCurrentSegment.getTime();
-
-                // Check for negative time change
-                if (timeDifference <= 0) {
-                    Log.w(TAG, "Time difference not positive.");
-                } else {
-
-                    /*
-                     * We don't have a speed and bearing in GPX, make something up from the last two points.
-                     * GPS points tend to have some inherent imprecision, speed and bearing will likely be off, so the statistics for things like max speed will also be off.
-                     */
-                    double duration = timeDifference * UnitConversions.MS_TO_S;
-                    double speed = trackData.lastLocationInCurrentSegment.distanceTo(trackPoint) / duration;
-                    trackPoint.setSpeed((float) speed);
-                }
-            }
-            trackPoint.setBearing(trackData.lastLocationInCurrentSegment.bearingTo(trackPoint));
-        }
-
-        if (!LocationUtils.isValidLocation(trackPoint.getLocation())) {
-            throw new SAXException(createErrorMessage("Invalid location detected: " + trackPoint));
+        if (!trackPoint.hasValidLocation()) {
+            throw new XmlPullParserException(createErrorMessage("Invalid location detected: " + trackPoint));
         }
 
         if (trackData.numberOfSegments > 1 && trackData.lastLocationInCurrentSegment == null) {
@@ -379,104 +545,104 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
 
     /**
      * Inserts a track point.
+     * The trackPoints are buffered, so that their derived attributes are computed in one batch (see {@link #insertPendingTrackPoints()}).
      *
      * @param trackPoint the trackPoint
      */
     protected void insertTrackPoint(TrackPoint trackPoint) {
-        insertLocation(trackPoint);
-    }
+        trackData.pendingTrackPoints[trackData.numPendingTrackPoints] = trackPoint;
+        trackData.numPendingTrackPoints++;
 
-    /**
-     * Creates an error message.
-     *
-     * @param message the message
-     */
-    protected String createErrorMessage(String message) {
-        return String.format(Locale.US, "Parsing error at line: %d column: %d. %s", locator.getLineNumber(), locator.getColumnNumber(), message);
+        if (trackData.numPendingTrackPoints >= MAX_BUFFERED_LOCATIONS) {
+            insertPendingTrackPoints();
+        }
     }
 
     /**
-     * Gets the photo url for a file.
-     *
-     * @param externalPhotoUrl the file name
+     * Calculates the derived attributes of the pending trackPoints from the previous trackPoint of the segment and inserts them.
+     * We don't have a speed and bearing in GPX, make something up from the last two points (the distances, speeds and bearings are computed in one batch by {@link GeodesyKernels}).
+     * GPS points tend to have some inherent imprecision, speed and bearing will likely be off, so the statistics for things like max speed will also be off.
      */
-    protected String getInternalPhotoUrl(String externalPhotoUrl) {
-        if (importTrackId == null) {
-            Log.e(TAG, "Track id is invalid.");
-            return null;
-        }
-
-        if (externalPhotoUrl == null) {
-            Log.i(TAG, "External photo url is null.");
-            return null;
+    private void insertPendingTrackPoints() {
+        int numPendingTrackPoints = trackData.numPendingTrackPoints;
+        if (numPendingTrackPoints <= 0) {
+            return;
         }
 
-        String importFileName = KmzTrackImporter.importNameForFilename(externalPhotoUrl);
-        File file = FileUtils.getPhotoFileIfExists(context, importTrackId, Uri.parse(importFileName));
-        if (file != null) {
-            Uri photoUri = FileUtils.getUriForFile(context, file);
-            return "" + photoUri;
+        // Index 0 is the previous trackPoint of the segment (if any).
+        TrackPoint previousTrackPoint = trackData.previousTrackPointInCurrentSegment;
+        int offset = previousTrackPoint != null ? 1 : 0;
+        if (previousTrackPoint != null) {
+            latitudes[0] = previousTrackPoint.getLatitude();
+            longitudes[0] = previousTrackPoint.getLongitude();
+            times[0] = previousTrackPoint.getTime();
+        }
+        for (int i = 0; i < numPendingTrackPoints; i++) {
+            TrackPoint trackPoint = trackData.pendingTrackPoints[i];
+            latitudes[i + offset] = trackPoint.getLatitude();
+            longitudes[i + offset] = trackPoint.getLongitude();
+            times[i + offset] = trackPoint.getTime();
+        }
+        int length = numPendingTrackPoints + offset;
+        GeodesyKernels.distances(latitudes, longitudes, length, distances);
+        GeodesyKernels.speeds(distances, times, length, speeds);
+        GeodesyKernels.bearings(latitudes, longitudes, length, bearings);
+
+        for (int i = 0; i < numPendingTrackPoints; i++) {
+            TrackPoint trackPoint = trackData.pendingTrackPoints[i];
+            trackData.pendingTrackPoints[i] = null;
+
+            int index = i + offset;
+            if (index > 0 && times[index - 1] != 0) {
+                if (!trackPoint.hasSpeed()) {
+                    // Check for negative time change
+                    if (times[index] - times[index - 1] <= 0) {
+                        Log.w(TAG, "Time difference not positive.");
+                    } else {
+                        trackPoint.setSpeed((float) speeds[index]);
+                    }
+                }
+                trackPoint.setBearing((float) bearings[index]);
+            }
+            insertLocation(trackPoint);
+            trackData.previousTrackPointInCurrentSegment = trackPoint;
         }
+        trackData.numPendingTrackPoints = 0;
+    }
 
-        return null;
+    /**
+     * Creates an error message.
+     *
+     * @param message the message
+     */
+    protected String createErrorMessage(String message) {
+        return String.format(Locale.US, "Parsing error at line: %d column: %d. %s", parser.getLineNumber(), parser.getColumnNumber(), message);
     }
 
     /**
      * Creates a location.
      */
-    private TrackPoint createTrackPoint() throws SAXException {
+    private TrackPoint createTrackPoint() {
         if (latitude == null || longitude == null) {
             return null;
         }
 
         TrackPoint trackPoint = new TrackPoint();
-
-        try {
-            trackPoint.setLatitude(Double.parseDouble(latitude));
-            trackPoint.setLongitude(Double.parseDouble(longitude));
-        } catch (NumberFormatException e) {
-            throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse latitude longitude: %s %s", latitude, longitude)), e);
-        }
-
-        if (time == null) {
-            trackPoint.setTime(trackData.importTime);
-        } else {
-            try {
-                trackPoint.setTime(StringUtils.parseTime(time));
-            } catch (Exception e) {
-                throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse time: %s", time)), e);
-            }
-        }
+        trackPoint.setLatitude(latitude);
+        trackPoint.setLongitude(longitude);
+        trackPoint.setTime(time == null ? trackData.importTime : time);
 
         if (altitude != null) {
-            try {
-                trackPoint.setAltitude(Double.parseDouble(altitude));
-            } catch (NumberFormatException e) {
-                throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse altitude: %s", altitude)), e);
-            }
+            trackPoint.setAltitude(altitude);
         }
-
         if (speed != null) {
-            try {
-                trackPoint.setSpeed(Float.parseFloat(speed));
-            } catch (Exception e) {
-                throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse speed: %s", speed)), e);
-            }
+            trackPoint.setSpeed(speed);
         }
         if (heartrate != null) {
-            try {
-                trackPoint.setHeartRate_bpm(Float.parseFloat(heartrate));
-            } catch (Exception e) {
-                throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse heart rate: %s", heartrate)), e);
-            }
+            trackPoint.setHeartRate_bpm(heartrate);
         }
-
         if (cadence != null) {
-            try {
-                trackPoint.setCyclingCadence_rpm(Float.parseFloat(cadence));
-            } catch (Exception e) {
-                throw new SAXException(createErrorMessage(String.format(Locale.US, "Unable to parse cadence: %s", cadence)), e);
-            }
+            trackPoint.setCyclingCadence_rpm(cadence);
         }
 
         return trackPoint;
@@ -489,9 +655,13 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
      */
     private void insertLocation(TrackPoint trackPoint) {
         if (trackData.trackStatisticsUpdater == null) {
-            trackData.trackStatisticsUpdater = new TrackStatisticsUpdater(trackPoint.getTime() != -1L ? trackPoint.getTime() : trackData.importTime);
+            trackData.trackStatisticsUpdater = new TrackStatisticsUpdater(trackPoint.getTime() != -1L ? trackPoint.getTime() : trackData.importTime, PreferencesUtils.getElevationSmoothing(context), PreferencesUtils.getSpeedSmoothing(context));
+            trackData.trackStatisticsUpdater.setZones(PreferencesUtils.getHeartRateZones(context), PreferencesUtils.getPowerZones(context));
         }
         trackData.trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+        trackData.trackStatisticsUpdater.setCumulativeStatistics(trackPoint);
+        trackData.trackPreviewBuilder.add(trackPoint);
+        matchMarkers(trackPoint);
 
         trackData.bufferedTrackPoints[trackData.numBufferedTrackPoints] = trackPoint;
         trackData.numBufferedTrackPoints++;
@@ -502,6 +672,46 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         }
     }
 
+    /**
+     * Inserts the pending markers that belong to the trackPoint (same time and location).
+     * Length and duration of a marker are taken from the statistics of the track up to the trackPoint.
+     * Markers before the trackPoint did not match any trackPoint and are ignored.
+     *
+     * @param trackPoint the trackPoint (already added to the statistics; with cumulative statistics)
+     */
+    private void matchMarkers(TrackPoint trackPoint) {
+        while (nextMarkerIndex < pendingMarkers.size()) {
+            Marker marker = pendingMarkers.get(nextMarkerIndex);
+            if (marker.getLocation().getTime() > trackPoint.getTime()) {
+                return;
+            }
+            if (marker.getLocation().getTime() < trackPoint.getTime()) {
+                Log.w(TAG, "Ignoring marker: current trackPoint was after marker.");
+                nextMarkerIndex++;
+                continue;
+            }
+
+            // The marker time matches the trackPoint time
+            if (!trackPoint.hasValidLocation()) {
+                // Invalid trackPoint; try the next trackPoint
+                return;
+            }
+
+            if (trackPoint.getLatitude() == marker.getLocation().getLatitude() && trackPoint.getLongitude() == marker.getLocation().getLongitude()) {
+                String icon = context.getString(R.string.marker_icon_url);
+                double length = trackPoint.getCumulativeDistance_m();
+                long duration = trackData.trackStatisticsUpdater.getTrackStatistics().getTotalTime();
+
+                // Only the photos of inserted markers are imported.
+                String photoUrl = marker.hasPhoto() && photoImporter != null ? photoImporter.importPhoto(marker.getPhotoUrl(), getTrackId()) : null;
+
+                Marker newMarker = new Marker(marker.getName(), marker.getDescription(), marker.getCategory(), icon, getTrackId(), length, duration, LocationUtils.createLocation(trackPoint), photoUrl);
+                contentProviderUtils.insertMarker(newMarker);
+            }
+            nextMarkerIndex++;
+        }
+    }
+
     /**
      * Flushes the locations to the database.
      *
@@ -511,7 +721,12 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         if (data.numBufferedTrackPoints <= 0) {
             return;
         }
-        contentProviderUtils.bulkInsertTrackPoint(Arrays.copyOfRange(data.bufferedTrackPoints, 0, data.numBufferedTrackPoints), data.track.getId());
+        TrackPoint[] trackPoints = Arrays.copyOfRange(data.bufferedTrackPoints, 0, data.numBufferedTrackPoints);
+        if (trackPointWriterSession != null) {
+            trackPointWriterSession.insert(trackPoints, getTrackId());
+        } else {
+            contentProviderUtils.bulkInsertTrackPoint(trackPoints, getTrackId());
+        }
         data.numBufferedTrackPoints = 0;
     }
 
@@ -519,9 +734,26 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
      * Cleans up import.
      */
     private void cleanImport() {
+        if (trackPointWriterSession != null) {
+            // Otherwise queued trackPoints might be inserted after the tracks were deleted.
+            trackPointWriterSession.awaitQuietly();
+        }
         contentProviderUtils.deleteTracks(context, trackIds);
     }
 
+    /**
+     * Imports the photos of markers (e.g., from a KMZ archive).
+     */
+    interface PhotoImporter {
+
+        /**
+         * @param photoUrl the photo url of the file (e.g., relative to the archive)
+         * @param trackId  the id of the imported track
+         * @return the internal photo url or null if the photo could not be imported
+         */
+        String importPhoto(@NonNull String photoUrl, @NonNull Track.Id trackId);
+    }
+
     /**
      * Data for the current track.
      *
@@ -538,12 +770,18 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         // The last location in the current segment; Null if the current segment doesn't have a last location
         TrackPoint lastLocationInCurrentSegment;
 
+        // The last inserted trackPoint of the current segment (the pending trackPoints are not yet inserted); null at the start of a segment
+        TrackPoint previousTrackPointInCurrentSegment;
+
         // The number of locations processed for the current track
         int numberOfLocations = 0;
 
         // The TrackStatisticsUpdater for the current track
         TrackStatisticsUpdater trackStatisticsUpdater;
 
+        // The preview of the current track
+        final TrackPreview.Builder trackPreviewBuilder = new TrackPreview.Builder();
+
         // The import time of the track.
         final long importTime = System.currentTimeMillis();
 
@@ -552,5 +790,11 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
 
         // The number of buffered locations
         int numBufferedTrackPoints = 0;
+
+        // The parsed trackPoints without derived attributes (see insertPendingTrackPoints())
+        final TrackPoint[] pendingTrackPoints = new TrackPoint[MAX_BUFFERED_LOCATIONS];
+
+        // The number of pending trackPoints
+        int numPendingTrackPoints = 0;
     }
 }
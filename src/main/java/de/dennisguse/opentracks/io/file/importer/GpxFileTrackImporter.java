@@ -20,8 +20,7 @@ import android.content.Context;
 
 import androidx.annotation.VisibleForTesting;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
 
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
@@ -69,10 +68,10 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
     }
 
     @Override
-    public void startElement(String uri, String localName, String tag, Attributes attributes) throws SAXException {
+    protected void onStartElement(String tag) throws XmlPullParserException {
         switch (tag) {
             case TAG_MARKER:
-                onMarkerStart(attributes);
+                onMarkerStart();
                 break;
             case TAG_TRACK:
                 onTrackStart();
@@ -81,13 +80,13 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
                 onTrackSegmentStart();
                 break;
             case TAG_TRACK_POINT:
-                onTrackPointStart(attributes);
+                onTrackPointStart();
                 break;
         }
     }
 
     @Override
-    public void endElement(String uri, String localName, String tag) throws SAXException {
+    protected void onEndElement(String tag) throws XmlPullParserException {
         switch (tag) {
             case TAG_GPX:
                 onFileEnd();
@@ -102,63 +101,61 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
                 onTrackPointEnd();
                 break;
             case TAG_NAME:
-                if (content != null) {
-                    name = content.trim();
+                if (hasContent()) {
+                    name = getContent();
                 }
                 break;
             case TAG_DESCRIPTION:
-                if (content != null) {
-                    description = content.trim();
+                if (hasContent()) {
+                    description = getContent();
                 }
                 break;
             case TAG_TYPE:
-                if (content != null) {
-                    category = content.trim();
+                if (hasContent()) {
+                    category = getContent();
                 }
                 break;
             case TAG_TIME:
-                if (content != null) {
-                    time = content.trim();
+                if (hasContent()) {
+                    time = parseContentTime();
                 }
                 break;
             case TAG_ELEVATION:
-                if (content != null) {
-                    altitude = content.trim();
+                if (hasContent()) {
+                    altitude = parseContentDouble("altitude");
                 }
                 break;
             case TAG_COMMENT:
-                if (content != null) {
-                    markerType = content.trim();
+                if (hasContent()) {
+                    markerType = getContent();
                 }
                 break;
             case TAG_EXTENSION_SPEED:
-                if (content != null) {
-                    speed = content.trim();
+                if (hasContent()) {
+                    speed = parseContentFloat("speed");
                 }
                 break;
             case TAG_EXTENSION_HEARTRATE:
-                if (content != null) {
-                    heartrate = content.trim();
+                if (hasContent()) {
+                    heartrate = parseContentFloat("heart rate");
                 }
                 break;
             case TAG_EXTENSION_CADENCE:
-                if (content != null) {
-                    cadence = content.trim();
+                if (hasContent()) {
+                    cadence = parseContentFloat("cadence");
                 }
                 break;
             case TAG_ID:
-                if (content != null) {
-                    uuid = content.trim();
+                if (hasContent()) {
+                    uuid = getContent();
+                    onTrackUuid();
                 }
                 break;
         }
-
-        // Reset element content
-        content = null;
     }
 
     @Override
-    protected void onTrackStart() throws SAXException {
+    protected void onTrackStart() throws XmlPullParserException {
         super.onTrackStart();
         name = null;
         description = null;
@@ -167,12 +164,10 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
 
     /**
      * On track point start.
-     *
-     * @param attributes the attributes
      */
-    private void onTrackPointStart(Attributes attributes) {
-        latitude = attributes.getValue(ATTRIBUTE_LAT);
-        longitude = attributes.getValue(ATTRIBUTE_LON);
+    private void onTrackPointStart() throws XmlPullParserException {
+        latitude = parseAttributeDouble(ATTRIBUTE_LAT);
+        longitude = parseAttributeDouble(ATTRIBUTE_LON);
         altitude = null;
         time = null;
         speed = null;
@@ -181,7 +176,7 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
     /**
      * On track point end.
      */
-    private void onTrackPointEnd() throws SAXException {
+    private void onTrackPointEnd() throws XmlPullParserException {
         TrackPoint trackPoint = getTrackPoint();
         if (trackPoint == null) {
             return;
@@ -189,19 +184,19 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
         insertTrackPoint(trackPoint);
     }
 
-    private void onMarkerStart(Attributes attributes) {
+    private void onMarkerStart() throws XmlPullParserException {
         name = null;
         description = null;
         category = null;
         photoUrl = null;
-        latitude = attributes.getValue(ATTRIBUTE_LAT);
-        longitude = attributes.getValue(ATTRIBUTE_LON);
+        latitude = parseAttributeDouble(ATTRIBUTE_LAT);
+        longitude = parseAttributeDouble(ATTRIBUTE_LON);
         altitude = null;
         time = null;
         markerType = null;
     }
 
-    private void onMarkerEnd() throws SAXException {
+    private void onMarkerEnd() throws XmlPullParserException {
         addMarker();
     }
 }
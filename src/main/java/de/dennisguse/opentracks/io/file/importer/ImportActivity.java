@@ -140,7 +140,11 @@ public class ImportActivity extends FragmentActivity {
         viewBinding.importProgressTotal.setText("" + summary.getTotalCount());
 
         viewBinding.importProgressBar.setProgress((int) ((float) done / (float) summary.getTotalCount() * 100f));
-        viewBinding.importProgressSummary.setText(getString(R.string.import_progress_review, getTotalDone(), summary.getSuccessCount(), summary.getExistsCount(), summary.getErrorCount()));
+        String summaryText = getString(R.string.import_progress_review, getTotalDone(), summary.getSuccessCount(), summary.getExistsCount(), summary.getErrorCount());
+        if (summary.getTrackPointCount() > 0) {
+            summaryText += "\n\n" + getString(R.string.import_progress_throughput, summary.getTrackPointCount(), summary.getParseRate(), summary.getWriteRate());
+        }
+        viewBinding.importProgressSummary.setText(summaryText);
 
         if (done == summary.getTotalCount()) {
             onImportEnded();
@@ -1,6 +1,10 @@
 package de.dennisguse.opentracks.io.file.importer;
 
 class ImportAlreadyExistsException extends RuntimeException {
+    public ImportAlreadyExistsException(String msg) {
+        super(msg);
+    }
+
     public ImportAlreadyExistsException(Exception e) {
         super(e);
     }
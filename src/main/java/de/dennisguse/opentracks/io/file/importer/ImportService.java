@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.ResultReceiver;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -14,77 +15,126 @@ import androidx.documentfile.provider.DocumentFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.util.FileUtils;
 
+/**
+ * Imports files.
+ * The files are parsed concurrently by a bounded pool; their trackPoints are inserted by a single {@link ImportTrackPointWriter}; so parsing and inserting overlap.
+ */
 public class ImportService extends JobIntentService {
 
     private static final String TAG = ImportService.class.getSimpleName();
 
     private static final int JOB_ID = 2;
 
+    private static final int MAX_PARALLEL_IMPORTS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     private static final String EXTRA_RECEIVER = "extra_receiver";
-    private static final String EXTRA_URI = "extra_uri";
+    private static final String EXTRA_URIS = "extra_uris";
 
     private ResultReceiver resultReceiver;
 
-    public static void enqueue(Context context, ImportServiceResultReceiver receiver, Uri uri) {
+    public static void enqueue(Context context, ImportServiceResultReceiver receiver, ArrayList<Uri> uris) {
         Intent intent = new Intent(context, JobService.class);
         intent.putExtra(EXTRA_RECEIVER, receiver);
-        intent.putExtra(EXTRA_URI, uri);
+        intent.putParcelableArrayListExtra(EXTRA_URIS, uris);
         enqueueWork(context, ImportService.class, JOB_ID, intent);
     }
 
     @Override
     protected void onHandleWork(@NonNull Intent intent) {
         resultReceiver = intent.getParcelableExtra(EXTRA_RECEIVER);
-        Uri uri = intent.getParcelableExtra(EXTRA_URI);
-        importFile(DocumentFile.fromSingleUri(this, uri));
+        ArrayList<Uri> uris = intent.getParcelableArrayListExtra(EXTRA_URIS);
+        if (uris == null || uris.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_IMPORTS, uris.size()));
+        try (ImportTrackPointWriter trackPointWriter = new ImportTrackPointWriter(new ContentProviderUtils(this))) {
+            for (Uri uri : uris) {
+                executor.execute(() -> importFile(DocumentFile.fromSingleUri(this, uri), trackPointWriter.newSession()));
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Import interrupted", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void importFile(DocumentFile file) {
+    private void importFile(DocumentFile file, ImportTrackPointWriter.Session trackPointWriterSession) {
+        long start = SystemClock.elapsedRealtime();
         TrackImporter trackImporter;
         String fileExtension = FileUtils.getExtension(file);
 
         if (TrackFileFormat.GPX.getExtension().equals(fileExtension)) {
-            trackImporter = new GpxFileTrackImporter(this);
+            AbstractFileTrackImporter fileTrackImporter = new GpxFileTrackImporter(this);
+            fileTrackImporter.setTrackPointWriterSession(trackPointWriterSession);
+            trackImporter = fileTrackImporter;
         } else if (TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA.getExtension().equals(fileExtension)) {
-            trackImporter = new KmlFileTrackImporter(this);
+            AbstractFileTrackImporter fileTrackImporter = new KmlFileTrackImporter(this);
+            fileTrackImporter.setTrackPointWriterSession(trackPointWriterSession);
+            trackImporter = fileTrackImporter;
         } else if (TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA_AND_PICTURES.getExtension().equals(fileExtension)) {
-            trackImporter = new KmzTrackImporter(this, file.getUri());
+            KmzTrackImporter kmzTrackImporter = new KmzTrackImporter(this, file.getUri());
+            kmzTrackImporter.setTrackPointWriterSession(trackPointWriterSession);
+            trackImporter = kmzTrackImporter;
         } else {
             Log.d(TAG, "Unsupported file format.");
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_unsupported_format));
+            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_unsupported_format), null, 0);
             return;
         }
 
         try (InputStream inputStream = getContentResolver().openInputStream(file.getUri())) {
             Track.Id trackId = trackImporter.importFile(inputStream);
             if (trackId != null) {
-                sendResult(ImportServiceResultReceiver.RESULT_CODE_IMPORTED, trackId, file.getName(), getString(R.string.import_file_imported, file.getName()));
+                sendResult(ImportServiceResultReceiver.RESULT_CODE_IMPORTED, trackId, file.getName(), getString(R.string.import_file_imported, file.getName()), trackPointWriterSession, start);
             } else {
-                sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, trackId, file.getName(), getString(R.string.import_unable_to_import_file, file.getName()));
+                sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, trackId, file.getName(), getString(R.string.import_unable_to_import_file, file.getName()), trackPointWriterSession, start);
             }
         } catch (IOException e) {
             Log.d(TAG, "Unable to import file", e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_unable_to_import_file, e.getMessage()));
+            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_unable_to_import_file, e.getMessage()), trackPointWriterSession, start);
         } catch (ImportParserException e) {
             Log.d(TAG, "Parser error: " + e.getMessage(), e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_parser_error, e.getMessage()));
+            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_parser_error, e.getMessage()), trackPointWriterSession, start);
         } catch (ImportAlreadyExistsException e) {
             Log.d(TAG, "Track already exists: " + e.getMessage(), e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ALREADY_EXISTS, null, file.getName(), e.getMessage());
+            sendResult(ImportServiceResultReceiver.RESULT_CODE_ALREADY_EXISTS, null, file.getName(), e.getMessage(), trackPointWriterSession, start);
+        } catch (RuntimeException e) {
+            // Otherwise the result would be lost in the executor.
+            Log.e(TAG, "Unable to import file", e);
+            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file.getName(), getString(R.string.import_unable_to_import_file, e.getMessage()), trackPointWriterSession, start);
         }
     }
 
-    private void sendResult(int resultCode, Track.Id trackId, String fileName, String message) {
+    /**
+     * @param trackPointWriterSession to report the trackPoints and the time spent per stage (if not null)
+     * @param start                   the start of the import of the file (elapsed realtime)
+     */
+    private void sendResult(int resultCode, Track.Id trackId, String fileName, String message, ImportTrackPointWriter.Session trackPointWriterSession, long start) {
         Bundle bundle = new Bundle();
         bundle.putParcelable(ImportServiceResultReceiver.RESULT_EXTRA_TRACK_ID, trackId);
         bundle.putString(ImportServiceResultReceiver.RESULT_EXTRA_FILENAME, fileName);
         bundle.putString(ImportServiceResultReceiver.RESULT_EXTRA_MESSAGE, message);
+        if (trackPointWriterSession != null) {
+            // Parsing: the time the importing thread was not waiting for the writer.
+            long parseDuration_ms = SystemClock.elapsedRealtime() - start - trackPointWriterSession.getWaitDuration_ms();
+            bundle.putInt(ImportServiceResultReceiver.RESULT_EXTRA_TRACK_POINTS, trackPointWriterSession.getTrackPointCount());
+            bundle.putLong(ImportServiceResultReceiver.RESULT_EXTRA_PARSE_DURATION_MS, Math.max(0, parseDuration_ms));
+            bundle.putLong(ImportServiceResultReceiver.RESULT_EXTRA_WRITE_DURATION_MS, trackPointWriterSession.getWriteDuration_ms());
+        }
         resultReceiver.send(resultCode, bundle);
     }
 }
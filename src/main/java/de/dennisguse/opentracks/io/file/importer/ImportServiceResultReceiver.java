@@ -19,6 +19,9 @@ public class ImportServiceResultReceiver extends ResultReceiver {
     public static final String RESULT_EXTRA_TRACK_ID = "result_track_id";
     public static final String RESULT_EXTRA_FILENAME = "result_extra_filename";
     public static final String RESULT_EXTRA_MESSAGE = "result_extra_message";
+    public static final String RESULT_EXTRA_TRACK_POINTS = "result_extra_track_points";
+    public static final String RESULT_EXTRA_PARSE_DURATION_MS = "result_extra_parse_duration_ms";
+    public static final String RESULT_EXTRA_WRITE_DURATION_MS = "result_extra_write_duration_ms";
 
     private final Receiver receiver;
 
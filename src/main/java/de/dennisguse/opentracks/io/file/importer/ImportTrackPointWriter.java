@@ -0,0 +1,260 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Inserts the trackPoints of concurrently running imports from a single thread.
+ * The queued batches of all imports are committed together in one transaction; so parsing (CPU-bound) and inserting (I/O-bound) overlap and the database has a single writer.
+ * If a transaction fails, its batches are committed one by one; so only the import with the failing batch is affected.
+ * <p>
+ * Each import uses its own {@link Session}.
+ */
+class ImportTrackPointWriter implements AutoCloseable {
+
+    private static final String TAG = ImportTrackPointWriter.class.getSimpleName();
+
+    // Limits the memory used by parsers being faster than the database.
+    private static final int MAX_QUEUED_BATCHES = 64;
+
+    private static final int MAX_BATCHES_PER_TRANSACTION = 32;
+
+    private static final Batch CLOSE = new Batch(null, null, new TrackPoint[0]);
+
+    private final ContentProviderUtils contentProviderUtils;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES);
+    private final Thread thread;
+
+    // Only accessed by the writer thread until it is terminated.
+    private long writeDuration_ns = 0;
+    private int trackPointCount = 0;
+    private int transactionCount = 0;
+
+    ImportTrackPointWriter(@NonNull ContentProviderUtils contentProviderUtils) {
+        this.contentProviderUtils = contentProviderUtils;
+        this.thread = new Thread(this::run, TAG);
+        this.thread.start();
+    }
+
+    Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Commits all queued batches and stops the writer thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        queue.put(CLOSE);
+        thread.join();
+        Log.i(TAG, "Inserted " + trackPointCount + " trackPoints in " + transactionCount + " transactions in " + writeDuration_ns / 1_000_000 + "ms");
+    }
+
+    private void run() {
+        List<Batch> batches = new ArrayList<>();
+        boolean closed = false;
+        while (!closed) {
+            try {
+                batches.add(queue.take());
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted; stopping.", e);
+                closed = true;
+            }
+            queue.drainTo(batches, MAX_BATCHES_PER_TRANSACTION - batches.size());
+
+            closed |= batches.remove(CLOSE);
+            if (closed) {
+                // Commit everything that was queued before closing.
+                queue.drainTo(batches);
+                batches.remove(CLOSE);
+            }
+            if (!batches.isEmpty()) {
+                commit(batches);
+            }
+            batches.clear();
+        }
+    }
+
+    private void commit(List<Batch> batches) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            insert(batches);
+        } catch (RuntimeException e) {
+            if (batches.size() == 1) {
+                batches.get(0).onError(e);
+            } else {
+                Log.w(TAG, "Unable to insert the trackPoints of " + batches.size() + " batches in one transaction; inserting one by one.", e);
+                for (Batch batch : batches) {
+                    try {
+                        insert(Collections.singletonList(batch));
+                    } catch (RuntimeException batchException) {
+                        batch.onError(batchException);
+                    }
+                }
+            }
+        }
+        long duration_ns = SystemClock.elapsedRealtimeNanos() - start;
+
+        int batchTrackPointCount = 0;
+        for (Batch batch : batches) {
+            batchTrackPointCount += batch.trackPoints.length;
+        }
+        // Attribute the duration of the transaction proportionally to the imports.
+        for (Batch batch : batches) {
+            batch.session.onCommitted(batch.failed ? 0 : batch.trackPoints.length, batchTrackPointCount > 0 ? duration_ns * batch.trackPoints.length / batchTrackPointCount : 0);
+        }
+
+        writeDuration_ns += duration_ns;
+        trackPointCount += batchTrackPointCount;
+        transactionCount++;
+    }
+
+    private void insert(List<Batch> batches) {
+        List<TrackPoint[]> trackPoints = new ArrayList<>(batches.size());
+        List<Track.Id> trackIds = new ArrayList<>(batches.size());
+        for (Batch batch : batches) {
+            trackPoints.add(batch.trackPoints);
+            trackIds.add(batch.trackId);
+        }
+        contentProviderUtils.bulkInsertTrackPoint(trackPoints, trackIds);
+    }
+
+    /**
+     * The trackPoints of one import.
+     * NOTE: insert() and await() must be called from the same thread.
+     */
+    class Session {
+
+        private int pendingBatches = 0;
+        private RuntimeException error;
+
+        private int trackPointCount = 0;
+        private long writeDuration_ns = 0;
+        private long waitDuration_ms = 0;
+
+        private Session() {
+        }
+
+        /**
+         * Queues trackPoints for insertion; blocks if the queue is full.
+         *
+         * @param trackPoints the trackPoints (must not be modified afterwards)
+         */
+        void insert(@NonNull TrackPoint[] trackPoints, @NonNull Track.Id trackId) {
+            synchronized (this) {
+                pendingBatches++;
+            }
+            long start = SystemClock.elapsedRealtime();
+            try {
+                queue.put(new Batch(this, trackId, trackPoints));
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    pendingBatches--;
+                }
+                Thread.currentThread().interrupt();
+                throw new ImportParserException(e);
+            } finally {
+                waitDuration_ms += SystemClock.elapsedRealtime() - start;
+            }
+        }
+
+        /**
+         * Waits until all queued trackPoints of this session were committed.
+         *
+         * @throws RuntimeException the first error while inserting the trackPoints of this session
+         */
+        void await() {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                synchronized (this) {
+                    while (pendingBatches > 0) {
+                        wait();
+                    }
+                    if (error != null) {
+                        throw error;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ImportParserException(e);
+            } finally {
+                waitDuration_ms += SystemClock.elapsedRealtime() - start;
+            }
+        }
+
+        /**
+         * Waits until all queued trackPoints of this session were processed; ignores errors.
+         */
+        void awaitQuietly() {
+            try {
+                await();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Ignoring error while inserting trackPoints", e);
+            }
+        }
+
+        /**
+         * @return the number of trackPoints committed.
+         */
+        synchronized int getTrackPointCount() {
+            return trackPointCount;
+        }
+
+        /**
+         * @return the share of the transaction durations of this session.
+         */
+        synchronized long getWriteDuration_ms() {
+            return writeDuration_ns / 1_000_000;
+        }
+
+        /**
+         * @return the time the importing thread was blocked by insert() or await().
+         */
+        long getWaitDuration_ms() {
+            return waitDuration_ms;
+        }
+
+        private synchronized void onError(RuntimeException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        private synchronized void onCommitted(int trackPointCount, long writeDuration_ns) {
+            this.trackPointCount += trackPointCount;
+            this.writeDuration_ns += writeDuration_ns;
+            pendingBatches--;
+            notifyAll();
+        }
+    }
+
+    private static class Batch {
+        private final Session session;
+        private final Track.Id trackId;
+        private final TrackPoint[] trackPoints;
+        private boolean failed = false;
+
+        private Batch(Session session, Track.Id trackId, TrackPoint[] trackPoints) {
+            this.session = session;
+            this.trackId = trackId;
+            this.trackPoints = trackPoints;
+        }
+
+        private void onError(RuntimeException e) {
+            failed = true;
+            session.onError(e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package de.dennisguse.opentracks.io.file.importer;
 
 import android.app.Application;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 
@@ -20,11 +21,15 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
 
     private static final String TAG = ImportViewModel.class.getSimpleName();
 
+    // The files of a job are imported in parallel; the next job is enqueued while the previous one is running, so the import can still be cancelled.
+    private static final int FILES_PER_JOB = 16;
+
     private MutableLiveData<Summary> importData;
     private final ImportServiceResultReceiver resultReceiver;
     private final Summary summary;
     private boolean cancel = false;
     private final List<DocumentFile> filesToImport = new ArrayList<>();
+    private int pendingCount = 0;
 
     public ImportViewModel(@NonNull Application application) {
         super(application);
@@ -48,15 +53,21 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         List<DocumentFile> fileList = FileUtils.getFiles(documentFile);
         summary.totalCount = fileList.size();
         filesToImport.addAll(fileList);
-        importNextFile();
+        importNextFiles();
     }
 
-    private void importNextFile() {
-        if (cancel || filesToImport.isEmpty()) {
-            return;
+    private void importNextFiles() {
+        while (!cancel && !filesToImport.isEmpty() && pendingCount < 2 * FILES_PER_JOB) {
+            List<DocumentFile> files = filesToImport.subList(0, Math.min(FILES_PER_JOB, filesToImport.size()));
+            ArrayList<Uri> uris = new ArrayList<>(files.size());
+            for (DocumentFile file : files) {
+                uris.add(file.getUri());
+            }
+            files.clear();
+
+            pendingCount += uris.size();
+            ImportService.enqueue(getApplication(), resultReceiver, uris);
         }
-        ImportService.enqueue(getApplication(), resultReceiver, filesToImport.get(0).getUri());
-        filesToImport.remove(0);
     }
 
     @Override
@@ -67,6 +78,9 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
 
         String fileName = resultData.getString(ImportServiceResultReceiver.RESULT_EXTRA_FILENAME);
         String message = resultData.getString(ImportServiceResultReceiver.RESULT_EXTRA_MESSAGE);
+        summary.trackPointCount += resultData.getInt(ImportServiceResultReceiver.RESULT_EXTRA_TRACK_POINTS, 0);
+        summary.parseDuration_ms += resultData.getLong(ImportServiceResultReceiver.RESULT_EXTRA_PARSE_DURATION_MS, 0);
+        summary.writeDuration_ms += resultData.getLong(ImportServiceResultReceiver.RESULT_EXTRA_WRITE_DURATION_MS, 0);
 
         switch (resultCode) {
             case ImportServiceResultReceiver.RESULT_CODE_ERROR:
@@ -84,7 +98,8 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         }
 
         importData.postValue(summary);
-        importNextFile();
+        pendingCount--;
+        importNextFiles();
     }
 
     public static class Summary {
@@ -93,6 +108,9 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         private int existsCount;
         private int errorCount;
         private final ArrayList<String> fileErrors = new ArrayList<>();
+        private long trackPointCount;
+        private long parseDuration_ms;
+        private long writeDuration_ms;
 
         public int getTotalCount() {
             return totalCount;
@@ -113,5 +131,23 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         public ArrayList<String> getFileErrors() {
             return fileErrors;
         }
+
+        public long getTrackPointCount() {
+            return trackPointCount;
+        }
+
+        /**
+         * @return trackPoints parsed per second by one thread or 0 if unknown.
+         */
+        public long getParseRate() {
+            return parseDuration_ms > 0 ? trackPointCount * 1000 / parseDuration_ms : 0;
+        }
+
+        /**
+         * @return trackPoints inserted per second by the writer or 0 if unknown.
+         */
+        public long getWriteRate() {
+            return writeDuration_ms > 0 ? trackPointCount * 1000 / writeDuration_ms : 0;
+        }
     }
 }
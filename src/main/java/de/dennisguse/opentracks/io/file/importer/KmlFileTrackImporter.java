@@ -18,13 +18,17 @@ package de.dennisguse.opentracks.io.file.importer;
 
 import android.content.Context;
 import android.util.Log;
+import android.util.Xml;
 
 import androidx.annotation.VisibleForTesting;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.UUID;
 
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
@@ -70,6 +74,37 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
     private ArrayList<Float> powerList = new ArrayList<>();
     private ArrayList<Float> elevationGainList = new ArrayList<>();
 
+    /**
+     * Reads the track uuid from the beginning of a KML file; stops before the trackPoints.
+     * Does not close the inputStream.
+     *
+     * @return the uuid or null if there is none before the trackPoints
+     */
+    static UUID readTrackUuid(InputStream inputStream) throws IOException, XmlPullParserException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(inputStream, null);
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                switch (parser.getName()) {
+                    case TAG_UUID:
+                        try {
+                            return UUID.fromString(parser.nextText().trim());
+                        } catch (IllegalArgumentException e) {
+                            return null;
+                        }
+                    case TAG_GX_MULTI_TRACK:
+                    case TAG_GX_TRACK:
+                        return null;
+                }
+            }
+            eventType = parser.next();
+        }
+        return null;
+    }
+
     public KmlFileTrackImporter(Context context) {
         this(context, new ContentProviderUtils(context));
     }
@@ -80,7 +115,7 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
     }
 
     @Override
-    public void startElement(String uri, String localName, String tag, Attributes attributes) throws SAXException {
+    protected void onStartElement(String tag) throws XmlPullParserException {
         switch (tag) {
             case TAG_PLACEMARK:
             case TAG_PHOTO_OVERLAY:
@@ -93,18 +128,18 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
                 break;
             case TAG_GX_TRACK:
                 if (!trackStarted) {
-                    throw new SAXException("No " + TAG_GX_MULTI_TRACK);
+                    throw new XmlPullParserException(createErrorMessage("No " + TAG_GX_MULTI_TRACK));
                 }
                 onTrackSegmentStart();
                 break;
             case TAG_GX_SIMPLE_ARRAY_DATA:
-                onExtendedDataStart(attributes);
+                onExtendedDataStart();
                 break;
         }
     }
 
     @Override
-    public void endElement(String uri, String localName, String tag) throws SAXException {
+    protected void onEndElement(String tag) throws XmlPullParserException {
         switch (tag) {
             case TAG_KML:
                 onFileEnd();
@@ -130,49 +165,47 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
                 onExtendedDataValueEnd();
                 break;
             case TAG_NAME:
-                if (content != null) {
-                    name = content.trim();
+                if (hasContent()) {
+                    name = getContent();
                 }
                 break;
             case TAG_UUID:
-                if (content != null) {
-                    uuid = content.trim();
+                if (hasContent()) {
+                    uuid = getContent();
+                    onTrackUuid();
                 }
                 break;
             case TAG_DESCRIPTION:
-                if (content != null) {
-                    description = content.trim();
+                if (hasContent()) {
+                    description = getContent();
                 }
                 break;
             case TAG_ICON:
-                if (content != null) {
-                    icon = content.trim();
+                if (hasContent()) {
+                    icon = getContent();
                 }
                 break;
             case TAG_VALUE:
-                if (content != null) {
-                    category = content.trim();
+                if (hasContent()) {
+                    category = getContent();
                 }
                 break;
             case TAG_WHEN:
-                if (content != null) {
-                    time = content.trim();
+                if (hasContent()) {
+                    time = parseContentTime();
                 }
                 break;
             case TAG_STYLE_URL:
-                if (content != null) {
-                    markerType = content.trim();
+                if (hasContent()) {
+                    markerType = getContent();
                 }
                 break;
             case TAG_HREF:
-                if (content != null) {
-                    photoUrl = content.trim();
+                if (hasContent()) {
+                    photoUrl = getContent();
                 }
                 break;
         }
-
-        // Reset element content
-        content = null;
     }
 
     private void onMarkerStart() {
@@ -189,26 +222,18 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
         markerType = null;
     }
 
-    private void onMarkerEnd() throws SAXException {
+    private void onMarkerEnd() throws XmlPullParserException {
         if (!MARKER_STYLE.equals(markerType)) {
             return;
         }
 
-        // If there is photoUrl it has to be changed because that url in kml file is a relative path to the internal kmz file.
-        photoUrl = getInternalPhotoUrl(photoUrl);
-
+        // The photoUrl is relative to the KMZ archive; it is resolved if the marker is inserted (see setPhotoImporter()).
         addMarker();
     }
 
-    private void onMarkerLocationEnd() {
-        if (content != null) {
-            String[] parts = content.trim().split(",");
-            if (parts.length != 2 && parts.length != 3) {
-                return;
-            }
-            longitude = parts[0];
-            latitude = parts[1];
-            altitude = parts.length == 3 ? parts[2] : null;
+    private void onMarkerLocationEnd() throws XmlPullParserException {
+        if (hasContent()) {
+            parseContentCoordinates(',');
         }
     }
 
@@ -254,18 +279,11 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
     /**
      * On track point end. gx:coord end tag.
      */
-    private void onTrackPointEnd() throws SAXException {
+    private void onTrackPointEnd() throws XmlPullParserException {
         // Add location to locationList
-        if (content == null) {
-            return;
-        }
-        String[] parts = content.trim().split(" ");
-        if (parts.length != 2 && parts.length != 3) {
+        if (!hasContent() || !parseContentCoordinates(' ')) {
             return;
         }
-        longitude = parts[0];
-        latitude = parts[1];
-        altitude = parts.length == 3 ? parts[2] : null;
 
         TrackPoint location = getTrackPoint();
         if (location == null) {
@@ -278,27 +296,18 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
     /**
      * On extended data start. gx:SimpleArrayData start tag.
      */
-    private void onExtendedDataStart(Attributes attributes) {
-        extendedDataType = attributes.getValue(ATTRIBUTE_NAME);
+    private void onExtendedDataStart() {
+        extendedDataType = getAttributeValue(ATTRIBUTE_NAME);
     }
 
     /**
      * On extended data value end. gx:value end tag.
      */
-    private void onExtendedDataValueEnd() throws SAXException {
-        if (content == null) {
-            return;
-        }
-        content = content.trim();
-        if (content.equals("")) {
+    private void onExtendedDataValueEnd() throws XmlPullParserException {
+        if (isContentBlank()) {
             return;
         }
-        float value;
-        try {
-            value = Float.parseFloat(content);
-        } catch (NumberFormatException e) {
-            throw new SAXException(createErrorMessage("Unable to parse gx:value:" + content), e);
-        }
+        float value = parseContentFloat(TAG_GX_VALUE);
         switch (extendedDataType) {
             case KmlTrackWriter.EXTENDED_DATA_TYPE_SPEED:
                 speedList.add(value);
@@ -18,21 +18,27 @@ package de.dennisguse.opentracks.io.file.importer;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 import android.util.Log;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import androidx.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParserException;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
-import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.io.file.exporter.KmzTrackExporter;
@@ -41,20 +47,24 @@ import de.dennisguse.opentracks.util.PreferencesUtils;
 
 /**
  * Imports a KMZ file.
+ * The archive is read with random access (central directory) via {@link ZipFile}: doc.kml is streamed into the parser and only the images of imported markers are extracted.
  *
  * @author Jimmy Shih
  */
-public class KmzTrackImporter implements TrackImporter {
+public class KmzTrackImporter implements TrackImporter, AbstractFileTrackImporter.PhotoImporter {
 
     private static final String TAG = KmzTrackImporter.class.getSimpleName();
 
     private static final List<String> KMZ_IMAGES_EXT = Arrays.asList("jpeg", "jpg", "png");
 
-    private static final int BUFFER_SIZE = 4096;
+    private static final int BUFFER_SIZE = 16 * 1024;
 
     private final Context context;
-    private Track.Id importTrackId; //TODO needed?
     private final Uri uriKmzFile;
+    private ImportTrackPointWriter.Session trackPointWriterSession;
+
+    // Only while importing.
+    private ZipFile zipFile;
 
     /**
      * @param context the context
@@ -65,59 +75,114 @@ public class KmzTrackImporter implements TrackImporter {
         this.uriKmzFile = uriFile;
     }
 
+    /**
+     * See {@link AbstractFileTrackImporter#setTrackPointWriterSession(ImportTrackPointWriter.Session)}.
+     */
+    void setTrackPointWriterSession(ImportTrackPointWriter.Session trackPointWriterSession) {
+        this.trackPointWriterSession = trackPointWriterSession;
+    }
+
+    /**
+     * @param inputStream the KMZ file; only read if the uri is not seekable
+     */
     @Override
     public Track.Id importFile(InputStream inputStream) {
-        Track.Id trackId;
+        try (ZipFile zipFile = openZipFile(inputStream)) {
+            this.zipFile = zipFile;
 
-        if (!copyKmzImages()) {
-            cleanImport(context, importTrackId);
-            return null;
-        }
+            ZipEntry kmlEntry = zipFile.getEntry(KmzTrackExporter.KMZ_KML_FILE);
+            if (kmlEntry == null) {
+                Log.d(TAG, "No " + KmzTrackExporter.KMZ_KML_FILE + " in kmz");
+                return null;
+            }
 
-        try {
-            trackId = findAndParseKmlFile(inputStream);
-        } catch (Exception e) {
-            cleanImport(context, importTrackId);
-            throw e;
+            if (PreferencesUtils.getPreventReimportTracks(context) && isAlreadyImported(kmlEntry)) {
+                // Skip before parsing the whole KML.
+                throw new ImportAlreadyExistsException("Track of " + uriKmzFile + " already exists");
+            }
+
+            KmlFileTrackImporter kmlFileTrackImporter = new KmlFileTrackImporter(context);
+            kmlFileTrackImporter.setTrackPointWriterSession(trackPointWriterSession);
+            kmlFileTrackImporter.setPhotoImporter(this);
+            try (InputStream kmlInputStream = zipFile.getInputStream(kmlEntry)) {
+                return kmlFileTrackImporter.importFile(kmlInputStream);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to import file", e);
+            throw new ImportParserException(e);
+        } finally {
+            this.zipFile = null;
         }
+    }
 
-        if (trackId == null) {
-            cleanImport(context, importTrackId);
+    /**
+     * Extracts the image of a marker into the photo directory of the track.
+     */
+    @Override
+    public String importPhoto(@NonNull String photoUrl, @NonNull Track.Id trackId) {
+        String entryName = entryNameForPhotoUrl(photoUrl);
+        ZipEntry zipEntry = zipFile != null && hasImageExtension(entryName) ? zipFile.getEntry(entryName) : null;
+        if (zipEntry == null) {
+            Log.w(TAG, "Image not found in kmz: " + photoUrl);
             return null;
         }
 
-        deleteOrphanImages(context, trackId);
-
-        return trackId;
+        File file = new File(FileUtils.getPhotoDir(context, trackId), importNameForFilename(entryName));
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry);
+             OutputStream outputStream = new FileOutputStream(file)) {
+            copy(inputStream, outputStream);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to import image " + photoUrl, e);
+            file.delete();
+            return null;
+        }
+        return FileUtils.getUriForFile(context, file).toString();
     }
 
     /**
-     * Copies all images that are inside KMZ to OpenTracks external storage.
-     *
-     * @return false if there are errors or true otherwise.
+     * Opens the KMZ file for random access.
+     * Seekable uris (e.g., local files) are opened directly via their file descriptor; otherwise the inputStream is copied into a temporary file.
      */
-    private boolean copyKmzImages() {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(uriKmzFile);
-             ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
-            ZipEntry zipEntry;
-
-            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-                if (Thread.interrupted()) {
-                    Log.d(TAG, "Thread interrupted");
-                    return false;
-                }
-
-                String fileName = zipEntry.getName();
-                if (hasImageExtension(fileName)) {
-                    readAndSaveImageFile(zipInputStream, importNameForFilename(fileName));
-                }
-
-                zipInputStream.closeEntry();
+    private ZipFile openZipFile(InputStream inputStream) throws IOException {
+        try (ParcelFileDescriptor parcelFileDescriptor = context.getContentResolver().openFileDescriptor(uriKmzFile, "r")) {
+            if (parcelFileDescriptor != null && isSeekable(parcelFileDescriptor)) {
+                // Re-opens the underlying file; so the ZipFile does not depend on parcelFileDescriptor.
+                return new ZipFile("/proc/self/fd/" + parcelFileDescriptor.getFd());
             }
+        } catch (IOException | SecurityException e) {
+            Log.d(TAG, "Unable to open kmz for random access; using a temporary file.", e);
+        }
 
-            return true;
+        File tempFile = File.createTempFile("import", ".kmz", context.getCacheDir());
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            copy(inputStream, outputStream);
+            // The file is deleted when the ZipFile is closed.
+            return new ZipFile(tempFile, ZipFile.OPEN_READ | ZipFile.OPEN_DELETE);
         } catch (IOException e) {
-            Log.e(TAG, "Unable to import file", e);
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    private static boolean isSeekable(ParcelFileDescriptor parcelFileDescriptor) {
+        try {
+            Os.lseek(parcelFileDescriptor.getFileDescriptor(), 0, OsConstants.SEEK_CUR);
+            return true;
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the track of the KMZ file was already imported; only reads the beginning of the KML.
+     */
+    private boolean isAlreadyImported(ZipEntry kmlEntry) {
+        try (InputStream inputStream = zipFile.getInputStream(kmlEntry)) {
+            UUID trackUuid = KmlFileTrackImporter.readTrackUuid(inputStream);
+            return trackUuid != null && new ContentProviderUtils(context).getTrack(trackUuid) != null;
+        } catch (IOException | XmlPullParserException e) {
+            // The import will report the error.
+            Log.w(TAG, "Unable to read the track uuid", e);
             return false;
         }
     }
@@ -129,6 +194,15 @@ public class KmzTrackImporter implements TrackImporter {
      * @param fileName the file name.
      */
     public static String importNameForFilename(String fileName) {
+        return entryNameForPhotoUrl(fileName).replace(File.separatorChar, '-');
+    }
+
+    /**
+     * Gets the name of the image inside the KMZ archive.
+     *
+     * @param photoUrl the photo url of a marker in the KML.
+     */
+    private static String entryNameForPhotoUrl(String photoUrl) {
         // TODO this tricky code for maintain backward compatibility must be deleted some day.
         /*
          * In versions before v3.5.0 photo URL in KML files were wrong.
@@ -136,11 +210,10 @@ public class KmzTrackImporter implements TrackImporter {
          * All fileName begins with "content:/" or "file://" are cooked.
          * We cannot guess what's the folder name where images are so we use "images" that was the folder name expected in versions before v3.5.0.
          */
-        if (fileName.startsWith("content://") || fileName.startsWith("file://")) {
-            fileName = "images/" + fileName.substring(fileName.lastIndexOf(File.separatorChar) + 1);
+        if (photoUrl.startsWith("content://") || photoUrl.startsWith("file://")) {
+            return "images/" + photoUrl.substring(photoUrl.lastIndexOf(File.separatorChar) + 1);
         }
-
-        return fileName.replace(File.separatorChar, '-');
+        return photoUrl;
     }
 
     /**
@@ -160,145 +233,11 @@ public class KmzTrackImporter implements TrackImporter {
         return KMZ_IMAGES_EXT.contains(fileExt);
     }
 
-    /**
-     * Finds KmzTrackExporter.KMZ_KML_FILE file inside kmz file (inputStream) and it parses it.
-     * TODO: May load multiple tracks, but only returns the last Track.Id.
-     *
-     * @param inputStream kmz input stream.
-     * @return null if error or the id of the track otherwise.
-     */
-    private Track.Id findAndParseKmlFile(InputStream inputStream) {
-        try (ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
-            ZipEntry zipEntry;
-            Track.Id trackId = null;
-
-            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-                if (Thread.interrupted()) {
-                    Log.d(TAG, "Thread interrupted");
-                    return null;
-                }
-
-                String fileName = zipEntry.getName();
-                if (KmzTrackExporter.KMZ_KML_FILE.equals(fileName)) {
-                    trackId = parseKml(zipInputStream);
-                    if (trackId == null) {
-                        Log.d(TAG, "Unable to parse kml in kmz");
-                        return null;
-                    }
-                }
-
-                zipInputStream.closeEntry();
-            }
-            return trackId;
-        } catch (ImportParserException | ImportAlreadyExistsException e) {
-            Log.e(TAG, "Unable to import file", e);
-            throw e;
-        } catch (IOException e) {
-            Log.e(TAG, "Unable to import file", e);
-            throw new ImportParserException(e);
-        }
-    }
-
-    /**
-     * Deletes all images that remained in external storage that doesn't have a marker associated.
-     *
-     * @param context the Context object.
-     * @param trackId the id of the Track.
-     */
-    private void deleteOrphanImages(Context context, Track.Id trackId) {
-        if (!trackId.isValid()) {
-            // 1.- Gets all photo names in the markers of the track identified by id.
-            ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
-            List<Marker> markers = contentProviderUtils.getMarkers(trackId);
-            List<String> photosName = new ArrayList<>();
-            for (Marker marker : markers) {
-                if (marker.hasPhoto()) {
-                    String photoUrl = Uri.decode(marker.getPhotoUrl());
-                    photosName.add(photoUrl.substring(photoUrl.lastIndexOf(File.separatorChar) + 1));
-                }
-            }
-
-            // 2.- Deletes all orphan photos from external storage.
-            File dir = FileUtils.getPhotoDir(context, trackId);
-            if (dir.exists() && dir.isDirectory()) {
-                for (File file : dir.listFiles()) {
-                    if (!photosName.contains(file.getName())) {
-                        file.delete();
-                    }
-                }
-                if (dir.listFiles().length == 0) {
-                    dir.delete();
-                }
-            }
-        }
-    }
-
-    /**
-     * Cleans up import.
-     *
-     * @param trackId the trackId
-     */
-    private void cleanImport(Context context, Track.Id trackId) {
-        if (PreferencesUtils.isRecording(trackId)) {
-            ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
-            contentProviderUtils.deleteTrack(context, trackId);
-        }
-    }
-
-    /**
-     * Parses kml
-     *
-     * @param zipInputStream the zip input stream
-     * @return the imported track id or -1L
-     */
-    private Track.Id parseKml(ZipInputStream zipInputStream) {
-        KmlFileTrackImporter kmlFileTrackImporter = new KmlFileTrackImporter(context);
-
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(getKml(zipInputStream))) {
-            return kmlFileTrackImporter.importFile(byteArrayInputStream);
-        } catch (ImportParserException | ImportAlreadyExistsException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new ImportParserException(e);
-        }
-    }
-
-    /**
-     * Gets the kml as byte array.
-     *
-     * @param zipInputStream the zip input stream
-     */
-    private byte[] getKml(ZipInputStream zipInputStream) throws IOException {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int count;
-            while ((count = zipInputStream.read(buffer)) != -1) {
-                byteArrayOutputStream.write(buffer, 0, count);
-            }
-            return byteArrayOutputStream.toByteArray();
-        }
-    }
-
-    /**
-     * Reads an image file (zipInputStream) and save it in a file called fileName inside photo folder.
-     *
-     * @param zipInputStream the zip input stream
-     * @param fileName       the file name
-     */
-    private void readAndSaveImageFile(ZipInputStream zipInputStream, String fileName) throws IOException {
-        if (importTrackId == null || fileName.equals("")) {
-            return;
-        }
-
-        File dir = FileUtils.getPhotoDir(context, importTrackId);
-        File file = new File(dir, fileName);
-
-        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int count;
-            while ((count = zipInputStream.read(buffer)) != -1) {
-                fileOutputStream.write(buffer, 0, count);
-            }
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
         }
     }
 }
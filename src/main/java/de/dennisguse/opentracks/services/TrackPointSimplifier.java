@@ -0,0 +1,204 @@
+package de.dennisguse.opentracks.services;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Drops trackPoints while recording that lie on a (nearly) straight line between the stored trackPoints (opening window simplification).
+ * <p>
+ * Droppable trackPoints are held back until a later trackPoint shows whether they are needed.
+ * They are dropped if all of them
+ * <ul>
+ * <li>are within the tolerance (cross-track distance) of the line from the last stored trackPoint (anchor) to the newest trackPoint,</li>
+ * <li>are in order along that line, and</li>
+ * <li>the line is shorter than the path through them by at most {@link #MAX_DISTANCE_LOSS}.</li>
+ * </ul>
+ * Otherwise, the newest held-back trackPoint is stored and becomes the anchor.
+ * At most {@link #MAX_PENDING} trackPoints are held back (i.e., lost if the process is killed).
+ * <p>
+ * So, the distance between the stored trackPoints is at least (1 - {@link #MAX_DISTANCE_LOSS}) of the distance along all trackPoints; the timestamps of stored trackPoints are unchanged.
+ * Not thread-safe; allocation-free after construction.
+ */
+class TrackPointSimplifier {
+
+    @VisibleForTesting
+    static final int MAX_PENDING = 32;
+
+    @VisibleForTesting
+    static final double MAX_DISTANCE_LOSS = 0.01;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(6371008.8);
+
+    private final double tolerance_m;
+
+    private TrackPoint anchor;
+    private double metersPerDegreeLongitude;
+
+    private final TrackPoint[] pending = new TrackPoint[MAX_PENDING];
+    // Position (m) relative to the anchor and path length from the anchor (m) of the pending trackPoints.
+    private final double[] x_m = new double[MAX_PENDING];
+    private final double[] y_m = new double[MAX_PENDING];
+    private final double[] pathLength_m = new double[MAX_PENDING];
+    private int pendingCount;
+
+    /**
+     * @param tolerance_m the maximal cross-track distance of dropped trackPoints
+     */
+    TrackPointSimplifier(double tolerance_m) {
+        this.tolerance_m = tolerance_m;
+    }
+
+    /**
+     * Adds a trackPoint that may be dropped.
+     *
+     * @return a held-back trackPoint that must be stored now or null
+     */
+    @Nullable
+    TrackPoint add(@NonNull TrackPoint trackPoint) {
+        if (anchor == null) {
+            // First trackPoint of a segment.
+            setAnchor(trackPoint);
+            return trackPoint;
+        }
+
+        if (pendingCount < MAX_PENDING && fits(trackPoint)) {
+            append(trackPoint);
+            return null;
+        }
+
+        TrackPoint needed = pending[pendingCount - 1];
+        setAnchor(needed);
+        append(trackPoint);
+        return needed;
+    }
+
+    /**
+     * Adds a trackPoint that must be stored (e.g., with sensor data or at a segment boundary).
+     * TrackPoints without a valid location (e.g., pause/resume) end the segment.
+     *
+     * @return a held-back trackPoint that must be stored before it or null
+     */
+    @Nullable
+    TrackPoint keep(@NonNull TrackPoint trackPoint) {
+        if (pendingCount > 0 && pending[pendingCount - 1] == trackPoint) {
+            pendingCount--;
+        }
+
+        TrackPoint needed = null;
+        if (pendingCount > 0 && (!trackPoint.hasValidLocation() || !fits(trackPoint))) {
+            needed = pending[pendingCount - 1];
+        }
+
+        if (trackPoint.hasValidLocation()) {
+            setAnchor(trackPoint);
+        } else {
+            reset();
+        }
+        return needed;
+    }
+
+    /**
+     * Stops holding back trackPoints (e.g., before pausing or inserting a marker).
+     *
+     * @return the newest held-back trackPoint that must be stored now or null
+     */
+    @Nullable
+    TrackPoint flush() {
+        if (pendingCount == 0) {
+            return null;
+        }
+        TrackPoint needed = pending[pendingCount - 1];
+        setAnchor(needed);
+        return needed;
+    }
+
+    /**
+     * @return the newest held-back trackPoint or null
+     */
+    @Nullable
+    TrackPoint getLastPending() {
+        return pendingCount > 0 ? pending[pendingCount - 1] : null;
+    }
+
+    void reset() {
+        anchor = null;
+        clearPending();
+    }
+
+    private void setAnchor(@NonNull TrackPoint trackPoint) {
+        anchor = trackPoint;
+        metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(trackPoint.getLatitude()));
+        clearPending();
+    }
+
+    private void clearPending() {
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    private void append(@NonNull TrackPoint trackPoint) {
+        double x = getX(trackPoint);
+        double y = getY(trackPoint);
+        pathLength_m[pendingCount] = pendingCount == 0 ? Math.hypot(x, y) : pathLength_m[pendingCount - 1] + Math.hypot(x - x_m[pendingCount - 1], y - y_m[pendingCount - 1]);
+        x_m[pendingCount] = x;
+        y_m[pendingCount] = y;
+        pending[pendingCount] = trackPoint;
+        pendingCount++;
+    }
+
+    /**
+     * @return true if all pending trackPoints can be dropped if the trackPoint is the next one stored.
+     */
+    private boolean fits(@NonNull TrackPoint trackPoint) {
+        if (pendingCount == 0) {
+            return true;
+        }
+
+        double x = getX(trackPoint);
+        double y = getY(trackPoint);
+        double lengthSquared = x * x + y * y;
+        if (lengthSquared == 0) {
+            return false;
+        }
+        double length = Math.sqrt(lengthSquared);
+
+        double pathLength = pathLength_m[pendingCount - 1] + Math.hypot(x - x_m[pendingCount - 1], y - y_m[pendingCount - 1]);
+        if (pathLength - length > MAX_DISTANCE_LOSS * pathLength) {
+            return false;
+        }
+
+        double previousProjection = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            // Position along the line (0: anchor, 1: trackPoint) and cross-track distance.
+            double projection = (x_m[i] * x + y_m[i] * y) / lengthSquared;
+            if (projection < previousProjection || projection > 1) {
+                return false;
+            }
+            if (Math.abs(x_m[i] * y - y_m[i] * x) / length > tolerance_m) {
+                return false;
+            }
+            previousProjection = projection;
+        }
+        return true;
+    }
+
+    // Equirectangular projection around the anchor; trackPoints held back are only some hundred meters apart.
+    private double getX(@NonNull TrackPoint trackPoint) {
+        double deltaLongitude = trackPoint.getLongitude() - anchor.getLongitude();
+        if (deltaLongitude > 180) {
+            deltaLongitude -= 360;
+        } else if (deltaLongitude < -180) {
+            deltaLongitude += 360;
+        }
+        return deltaLongitude * metersPerDegreeLongitude;
+    }
+
+    private double getY(@NonNull TrackPoint trackPoint) {
+        return (trackPoint.getLatitude() - anchor.getLatitude()) * METERS_PER_DEGREE;
+    }
+}
@@ -39,9 +39,11 @@ import java.util.List;
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.TrackListActivity;
 import de.dennisguse.opentracks.TrackRecordingActivity;
+import de.dennisguse.opentracks.content.data.Climb;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TrackPreview;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.CustomContentProvider;
 import de.dennisguse.opentracks.content.provider.TrackPointIterator;
@@ -52,6 +54,7 @@ import de.dennisguse.opentracks.services.sensors.BluetoothRemoteSensorManager;
 import de.dennisguse.opentracks.services.sensors.ElevationSumManager;
 import de.dennisguse.opentracks.services.tasks.AnnouncementPeriodicTaskFactory;
 import de.dennisguse.opentracks.services.tasks.PeriodicTaskExecutor;
+import de.dennisguse.opentracks.stats.ClimbDetector;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.ExportUtils;
@@ -73,6 +76,11 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
     private static final String TAG = TrackRecordingService.class.getSimpleName();
 
+    /**
+     * Number of inserted trackPoints after which the {@link TrackPreview} is stored while recording.
+     */
+    private static final int TRACK_PREVIEW_UPDATE_INTERVAL = 100;
+
     // The following variables are set in onCreate:
     private ContentProviderUtils contentProviderUtils;
     private PeriodicTaskExecutor voiceExecutor;
@@ -120,8 +128,13 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
     private ElevationSumManager elevationSumManager;
 
     private TrackStatisticsUpdater trackStatisticsUpdater;
+    private ClimbDetector climbDetector;
+    private TrackPreview.Builder trackPreviewBuilder;
+    private int trackPreviewPendingTrackPoints;
     private TrackPoint lastTrackPoint;
     private boolean isIdle;
+    // Null if disabled
+    private TrackPointSimplifier trackPointSimplifier;
 
     private TrackRecordingServiceBinder binder = new TrackRecordingServiceBinder(this);
 
@@ -248,6 +261,14 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
             name = getString(R.string.marker_name_format, nextMarkerNumber + 1);
         }
 
+        if (trackPointSimplifier != null) {
+            // The marker's trackPoint must be stored.
+            Track track = contentProviderUtils.getTrack(recordingTrackId);
+            if (track != null) {
+                flushTrackPointSimplifier(track);
+            }
+        }
+
         TrackPoint trackPoint = getLastValidTrackPointInCurrentSegment(recordingTrackId);
         if (trackPoint == null) {
             Log.i(TAG, "Could not create a marker as trackPoint is unknown.");
@@ -260,11 +281,12 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         photoUrl = photoUrl != null ? photoUrl : "";
 
         TrackStatistics stats = trackStatisticsUpdater.getTrackStatistics();
-        double length = stats.getTotalDistance();
+        // Distance of the track at the marker's trackPoint
+        double length = trackPoint.hasCumulativeStatistics() ? trackPoint.getCumulativeDistance_m() : stats.getTotalDistance();
         long duration = stats.getTotalTime();
 
         // Insert marker
-        Marker marker = new Marker(name, description, category, icon, recordingTrackId, length, duration, trackPoint.getLocation(), photoUrl);
+        Marker marker = new Marker(name, description, category, icon, recordingTrackId, length, duration, LocationUtils.createLocation(trackPoint), photoUrl);
         Uri uri = contentProviderUtils.insertMarker(marker);
         return new Marker.Id(ContentUris.parseId(uri));
     }
@@ -280,13 +302,17 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
             return null;
         }
         long now = System.currentTimeMillis();
-        trackStatisticsUpdater = new TrackStatisticsUpdater(now);
+        trackStatisticsUpdater = new TrackStatisticsUpdater(now, PreferencesUtils.getElevationSmoothing(this), PreferencesUtils.getSpeedSmoothing(this));
+        trackStatisticsUpdater.setZones(PreferencesUtils.getHeartRateZones(this), PreferencesUtils.getPowerZones(this));
+        trackPreviewBuilder = new TrackPreview.Builder();
 
         // Insert a track
         Track track = new Track();
         Uri uri = contentProviderUtils.insertTrack(track);
         Track.Id trackId = new Track.Id(ContentUris.parseId(uri));
 
+        climbDetector = new ClimbDetector(trackId);
+
         // Update shared preferences
         updateRecordingState(trackId, false);
 
@@ -317,9 +343,15 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
             return;
         }
 
+        // Only finished tracks are archived.
+        contentProviderUtils.restoreTrack(trackId);
+
         // Sync the real time setting the stop time with current time.
         track.getTrackStatistics().setStopTime_ms(System.currentTimeMillis());
-        trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics());
+        trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics(), PreferencesUtils.getElevationSmoothing(this), PreferencesUtils.getSpeedSmoothing(this));
+        trackStatisticsUpdater.setZones(PreferencesUtils.getHeartRateZones(this), PreferencesUtils.getPowerZones(this));
+        trackPreviewBuilder = new TrackPreview.Builder(contentProviderUtils.getTrackPreview(trackId));
+        climbDetector = new ClimbDetector(trackId);
 
         insertTrackPoint(track, TrackPoint.createPause());
         insertTrackPoint(track, TrackPoint.createResume());
@@ -346,13 +378,18 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
         Log.d(TAG, "Restarting track: " + track.getId());
 
-        trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics().getStartTime_ms());
+        trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics().getStartTime_ms(), PreferencesUtils.getElevationSmoothing(this), PreferencesUtils.getSpeedSmoothing(this));
+        trackStatisticsUpdater.setZones(PreferencesUtils.getHeartRateZones(this), PreferencesUtils.getPowerZones(this));
 
+        // Restores the state of the climbDetector; the completed climbs are already stored.
+        climbDetector = new ClimbDetector(track.getId());
         try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), -1L, false)) {
-            trackStatisticsUpdater.addTrackPoint(trackPointIterator, recordingDistanceInterval);
+            climbDetector.addAll(trackPointIterator, trackStatisticsUpdater, recordingDistanceInterval);
         } catch (RuntimeException e) {
             Log.e(TAG, "RuntimeException", e);
         }
+        // The stored preview may miss the latest trackPoints.
+        trackPreviewBuilder = new TrackPreview.Builder(contentProviderUtils.computeTrackPreview(track.getId()));
         startRecording();
     }
 
@@ -387,6 +424,9 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         lastTrackPoint = null;
         isIdle = false;
 
+        double simplificationTolerance = PreferencesUtils.getRecordingSimplificationTolerance(this);
+        trackPointSimplifier = simplificationTolerance > 0 ? new TrackPointSimplifier(simplificationTolerance) : null;
+
         startGps();
 
         // Restore periodic tasks
@@ -422,6 +462,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         if (track != null) {
             // If not wasPaused, add the last location
             if (!wasPaused) {
+                flushTrackPointSimplifier(track);
                 if (lastTrackPoint != null) {
                     insertTrackPointIfNewer(track, lastTrackPoint);
                 }
@@ -429,7 +470,12 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
                 // Update the recording track time
                 updateTrackTotalTime(track);
             }
+            updateTrackPreview(track.getId());
+            contentProviderUtils.updateBestEfforts(track.getId());
+            // Also completes the last climb.
+            contentProviderUtils.updateClimbs(track.getId(), recordingDistanceInterval, PreferencesUtils.getElevationSmoothing(this));
         }
+        climbDetector = null;
 
         ExportUtils.postWorkoutExport(this, track);
 
@@ -447,10 +493,12 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         // Update database
         Track track = contentProviderUtils.getTrack(recordingTrackId);
         if (track != null) {
+            flushTrackPointSimplifier(track);
             if (lastTrackPoint != null) {
                 insertTrackPointIfNewer(track, lastTrackPoint);
             }
             insertTrackPoint(track, TrackPoint.createPause());
+            updateTrackPreview(track.getId());
         }
 
         endRecording(false);
@@ -478,6 +526,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         }
 
         lastTrackPoint = null;
+        trackPointSimplifier = null;
 
         handlerServer.stop(this);
 
@@ -502,6 +551,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
     /**
      * Gets the last valid track point in the current segment.
+     * This may be a trackPoint held back by the {@link TrackPointSimplifier} (i.e., not yet stored).
      *
      * @param trackId the track id
      * @return the location or null
@@ -510,6 +560,12 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         if (!currentSegmentHasTrackPoint()) {
             return null;
         }
+        if (trackPointSimplifier != null) {
+            TrackPoint pending = trackPointSimplifier.getLastPending();
+            if (pending != null) {
+                return pending;
+            }
+        }
         return contentProviderUtils.getLastValidTrackPoint(trackId);
     }
 
@@ -563,7 +619,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
             return;
         }
 
-        if (lastValidTrackPoint == null || !LocationUtils.isValidLocation(lastValidTrackPoint.getLocation())) {
+        if (lastValidTrackPoint == null || !lastValidTrackPoint.hasValidLocation()) {
             // For some reason the previous first trackPoint was not stored, but currentSegmentHasLocation set true.
             // Should not happen. The current segment should have a location. Just insert the current location.
             insertTrackPoint(track, trackPoint);
@@ -573,6 +629,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
         double distanceToLastTrackLocation = trackPoint.distanceTo(lastValidTrackPoint);
         if (distanceToLastTrackLocation > maxRecordingDistance) {
+            flushTrackPointSimplifier(track);
             insertTrackPointIfNewer(track, lastTrackPoint);
             insertTrackPoint(track, TrackPoint.createPause());
 
@@ -586,7 +643,14 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         if (trackPoint.hasSensorData() || distanceToLastTrackLocation >= recordingDistanceInterval) {
             insertTrackPointIfNewer(track, lastTrackPoint);
 
-            insertTrackPoint(track, trackPoint);
+            if (trackPointSimplifier != null && !trackPoint.hasSensorData()) {
+                TrackPoint needed = trackPointSimplifier.add(trackPoint);
+                if (needed != null) {
+                    storeTrackPoint(track, needed);
+                }
+            } else {
+                insertTrackPoint(track, trackPoint);
+            }
 
             isIdle = false;
 
@@ -652,20 +716,58 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
     }
 
     /**
-     * Inserts a trackPoint.
+     * Inserts a trackPoint that must be stored; trackPoints held back by the {@link TrackPointSimplifier} are stored before if needed.
      *
      * @param track      the track
      * @param trackPoint the trackPoint
      */
     private void insertTrackPoint(@NonNull Track track, @NonNull TrackPoint trackPoint) {
+        if (trackPointSimplifier != null) {
+            TrackPoint needed = trackPointSimplifier.keep(trackPoint);
+            if (needed != null) {
+                storeTrackPoint(track, needed);
+            }
+        }
+        storeTrackPoint(track, trackPoint);
+    }
+
+    /**
+     * Stores the trackPoint held back last by the {@link TrackPointSimplifier} (if any).
+     */
+    private void flushTrackPointSimplifier(@NonNull Track track) {
+        if (trackPointSimplifier != null) {
+            TrackPoint needed = trackPointSimplifier.flush();
+            if (needed != null) {
+                storeTrackPoint(track, needed);
+            }
+        }
+    }
+
+    private void storeTrackPoint(@NonNull Track track, @NonNull TrackPoint trackPoint) {
         try {
             if (elevationSumManager != null) {
                 trackPoint.setElevationGain(elevationSumManager.getElevationGain_m());
                 elevationSumManager.reset();
             }
-            contentProviderUtils.insertTrackPoint(trackPoint, track.getId());
             trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+            trackStatisticsUpdater.setCumulativeStatistics(trackPoint);
+            Uri uri = contentProviderUtils.insertTrackPoint(trackPoint, track.getId());
             updateTrackTotalTime(track);
+
+            if (climbDetector != null) {
+                Climb climb = climbDetector.add(ContentUris.parseId(uri), trackPoint, trackStatisticsUpdater);
+                if (climb != null) {
+                    contentProviderUtils.insertClimb(climb);
+                }
+            }
+
+            if (trackPreviewBuilder != null) {
+                trackPreviewBuilder.add(trackPoint);
+                trackPreviewPendingTrackPoints++;
+                if (trackPreviewPendingTrackPoints >= TRACK_PREVIEW_UPDATE_INTERVAL) {
+                    updateTrackPreview(track.getId());
+                }
+            }
         } catch (SQLiteException e) {
             /*
              * Insert failed, most likely because of SqlLite error code 5 (SQLite_BUSY).
@@ -688,6 +790,22 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         contentProviderUtils.updateTrack(track);
     }
 
+    /**
+     * Stores the {@link TrackPreview} of the recording track.
+     *
+     * @param trackId the track id
+     */
+    private void updateTrackPreview(Track.Id trackId) {
+        trackPreviewPendingTrackPoints = 0;
+        if (trackPreviewBuilder == null) {
+            return;
+        }
+        TrackPreview trackPreview = trackPreviewBuilder.build();
+        if (trackPreview != null) {
+            contentProviderUtils.updateTrackPreview(trackId, trackPreview);
+        }
+    }
+
     SensorDataSet getSensorDataSet() {
         if (remoteSensorManager == null) {
             return null;
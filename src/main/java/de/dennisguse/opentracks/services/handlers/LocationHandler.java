@@ -99,7 +99,7 @@ class LocationHandler implements HandlerServer.Handler, LocationListener, GpsSta
             return;
         }
 
-        TrackPoint trackPoint = new TrackPoint(location);
+        TrackPoint trackPoint = LocationUtils.createTrackPoint(location);
 
         if (!TrackPointUtils.fulfillsAccuracy(trackPoint, recordingGpsAccuracy)) {
             Log.d(TAG, "Ignore newTrackPoint. Poor accuracy.");
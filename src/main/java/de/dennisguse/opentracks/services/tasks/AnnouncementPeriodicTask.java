@@ -22,12 +22,15 @@ import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+import de.dennisguse.opentracks.content.data.Segment;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
 import de.dennisguse.opentracks.services.TrackRecordingService;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.util.AnnouncementUtils;
@@ -167,9 +170,19 @@ public class AnnouncementPeriodicTask implements PeriodicTask {
         Track track = contentProviderUtils.getTrack(PreferencesUtils.getRecordingTrackId(context));
         String category = track != null ? track.getCategory() : "";
 
-        List<TrackPoint> trackPoints = contentProviderUtils.getTrackPoints(track.getId());
+        // Only the trackPoints of segments; so pause/resume trackPoints are not read.
         IntervalStatistics intervalStatistics = new IntervalStatistics();
-        intervalStatistics.build(trackPoints, (float) (PreferencesUtils.isMetricUnits(context) ? 1d * UnitConversions.KM_TO_M : 1d * UnitConversions.MI_TO_M));
+        intervalStatistics.start((float) (PreferencesUtils.isMetricUnits(context) ? 1d * UnitConversions.KM_TO_M : 1d * UnitConversions.MI_TO_M));
+        for (Segment segment : contentProviderUtils.getSegments(track.getId())) {
+            List<TrackPoint> trackPoints = new ArrayList<>();
+            try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(segment, segment.getLastTrackPointId())) {
+                while (trackPointIterator.hasNext()) {
+                    trackPoints.add(trackPointIterator.next());
+                }
+            }
+            intervalStatistics.addSegment(trackPoints);
+        }
+        intervalStatistics.finish();
         IntervalStatistics.Interval lastInterval = intervalStatistics.getLastInterval();
 
         String announcement = AnnouncementUtils.getAnnouncement(context, trackStatistics, category, lastInterval);
@@ -94,6 +94,24 @@ final class PreferenceHelper {
         return entries;
     }
 
+    static String[] getRecordingSimplificationToleranceEntries(Context context, boolean metricUnits) {
+        String[] entryValues = context.getResources().getStringArray(R.array.recording_simplification_tolerance_values);
+        String[] entries = new String[entryValues.length];
+
+        for (int i = 0; i < entryValues.length; i++) {
+            int value = Integer.parseInt(entryValues[i]);
+            if (value == 0) {
+                entries[i] = context.getString(R.string.value_off);
+            } else if (metricUnits) {
+                entries[i] = context.getString(R.string.value_integer_meter, value);
+            } else {
+                entries[i] = context.getString(R.string.value_integer_feet, (int) (value * UnitConversions.M_TO_FT));
+            }
+        }
+
+        return entries;
+    }
+
     static String[] getRecordingGpsAccuracyEntries(Context context, boolean metricUnits) {
         String[] entryValues = context.getResources().getStringArray(R.array.recording_gps_accuracy_values);
         String[] entries = new String[entryValues.length];
@@ -17,6 +17,7 @@ import androidx.preference.PreferenceFragmentCompat;
 import java.util.Locale;
 
 import de.dennisguse.opentracks.R;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.fragments.ChooseActivityTypeDialogFragment;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.settings.bluetooth.BluetoothLeCyclingCadenceAndSpeedPreference;
@@ -96,6 +97,13 @@ public class SettingsActivity extends AppCompatActivity implements ChooseActivit
                 //Use same value for not set as Androidx ListPreference and EditTextPreference
                 return directory != null ? directory.getName() : getString(R.string.not_set);
             });
+
+            Preference recomputePreference = findPreference(getString(R.string.stats_recompute_key));
+            recomputePreference.setOnPreferenceClickListener(preference -> {
+                new ContentProviderUtils(getContext()).recomputeStatistics();
+                Toast.makeText(getContext(), R.string.settings_stats_recompute_done, Toast.LENGTH_SHORT).show();
+                return true;
+            });
         }
 
         @Override
@@ -177,6 +185,9 @@ public class SettingsActivity extends AppCompatActivity implements ChooseActivit
             ListPreference maxRecordingDistance = findPreference(getString(R.string.max_recording_distance_key));
             maxRecordingDistance.setEntries(PreferenceHelper.getMaxRecordingDistanceEntries(getActivity(), metricUnits));
 
+            ListPreference recordingSimplificationTolerance = findPreference(getString(R.string.recording_simplification_tolerance_key));
+            recordingSimplificationTolerance.setEntries(PreferenceHelper.getRecordingSimplificationToleranceEntries(getActivity(), metricUnits));
+
             ListPreference recordingGpsAccuracy = findPreference(getString(R.string.recording_gps_accuracy_key));
             recordingGpsAccuracy.setEntries(PreferenceHelper.getRecordingGpsAccuracyEntries(getActivity(), metricUnits));
 
@@ -0,0 +1,205 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.BestEffort;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.data.TrackPointsColumns;
+
+/**
+ * Computes the {@link BestEffort}s of a track: the shortest time for each target distance as well as the longest distance and the highest average power for each target duration.
+ * <p>
+ * The trackPoints are reduced to cumulative (active) time, distance, and energy; all targets are computed in one pass using a two-pointer sliding window per target (O(n) per target).
+ * The start of a window is interpolated between trackPoints, so the window matches the target exactly.
+ * Time and distance between a pause and the following resume are not counted (i.e., a best effort can span a pause, but the pause takes no time).
+ */
+public class BestEffortsCalculator {
+
+    public static final double[] DEFAULT_DISTANCES_M = {400, 1000, 1609.344, 5000, 10000, 21097.5, 42195};
+
+    public static final long[] DEFAULT_DURATIONS_MS = {60_000, 5 * 60_000, 20 * 60_000, 60 * 60_000};
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final double[] targetDistances_m;
+    private final long[] targetDurations_ms;
+
+    // Cumulative values per valid trackPoint
+    private long[] activeTimes_ms = new long[INITIAL_CAPACITY];
+    private double[] distances_m = new double[INITIAL_CAPACITY];
+    // Power (W) integrated over time (ms)
+    private double[] energies = new double[INITIAL_CAPACITY];
+    private long[] times_ms = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private TrackPoint lastTrackPoint;
+    private boolean hasPower = false;
+
+    public BestEffortsCalculator() {
+        this(DEFAULT_DISTANCES_M, DEFAULT_DURATIONS_MS);
+    }
+
+    /**
+     * @param targetDistances_m  the target distances (m)
+     * @param targetDurations_ms the target durations (ms)
+     */
+    public BestEffortsCalculator(@NonNull double[] targetDistances_m, @NonNull long[] targetDurations_ms) {
+        this.targetDistances_m = targetDistances_m.clone();
+        this.targetDurations_ms = targetDurations_ms.clone();
+    }
+
+    /**
+     * Adds the next trackPoint of the track (incl. pause and resume trackPoints).
+     */
+    public void add(@NonNull TrackPoint trackPoint) {
+        if (!trackPoint.hasValidLocation()) {
+            if (trackPoint.getLatitude() == TrackPointsColumns.PAUSE_LATITUDE || trackPoint.getLatitude() == TrackPointsColumns.RESUME_LATITUDE) {
+                // Next trackPoint starts a new segment
+                lastTrackPoint = null;
+            }
+            return;
+        }
+
+        ensureCapacity(size + 1);
+        times_ms[size] = trackPoint.getTime();
+        if (size == 0) {
+            activeTimes_ms[size] = 0;
+            distances_m[size] = 0;
+            energies[size] = 0;
+        } else if (lastTrackPoint == null) {
+            activeTimes_ms[size] = activeTimes_ms[size - 1];
+            distances_m[size] = distances_m[size - 1];
+            energies[size] = energies[size - 1];
+        } else {
+            long duration_ms = Math.max(0, trackPoint.getTime() - lastTrackPoint.getTime());
+            activeTimes_ms[size] = activeTimes_ms[size - 1] + duration_ms;
+            distances_m[size] = distances_m[size - 1] + getDistance(lastTrackPoint, trackPoint);
+            energies[size] = energies[size - 1] + (trackPoint.hasPower() ? trackPoint.getPower() * duration_ms : 0);
+        }
+        hasPower |= trackPoint.hasPower();
+
+        lastTrackPoint = trackPoint;
+        size++;
+    }
+
+    /**
+     * Uses the stored cumulative distance if available (i.e., the same distance as the track's statistics).
+     */
+    private static double getDistance(@NonNull TrackPoint from, @NonNull TrackPoint to) {
+        if (from.hasCumulativeStatistics() && to.hasCumulativeStatistics()) {
+            return Math.max(0, to.getCumulativeDistance_m() - from.getCumulativeDistance_m());
+        }
+        return from.distanceTo(to);
+    }
+
+    /**
+     * @param trackId the trackId of the returned best efforts
+     * @return the best efforts for all targets that were reached
+     */
+    @NonNull
+    public List<BestEffort> compute(@Nullable Track.Id trackId) {
+        int distanceCount = targetDistances_m.length;
+        int durationCount = targetDurations_ms.length;
+
+        int[] distanceStarts = new int[distanceCount];
+        double[] bestTimes_ms = new double[distanceCount];
+        long[] bestTimeStarts = new long[distanceCount];
+        Arrays.fill(bestTimes_ms, Double.POSITIVE_INFINITY);
+
+        int[] durationStarts = new int[durationCount];
+        double[] bestDistances_m = new double[durationCount];
+        long[] bestDistanceStarts = new long[durationCount];
+        double[] bestPowers = new double[durationCount];
+        long[] bestPowerStarts = new long[durationCount];
+        Arrays.fill(bestDistances_m, Double.NEGATIVE_INFINITY);
+        Arrays.fill(bestPowers, Double.NEGATIVE_INFINITY);
+
+        for (int end = 1; end < size; end++) {
+            for (int k = 0; k < distanceCount; k++) {
+                double target = targetDistances_m[k];
+                int start = distanceStarts[k];
+                while (start < end && distances_m[end] - distances_m[start + 1] >= target) {
+                    start++;
+                }
+                distanceStarts[k] = start;
+                if (distances_m[end] - distances_m[start] < target) {
+                    continue;
+                }
+
+                // Interpolate where the window of exactly the target distance starts (distances[start + 1] > distances[start]).
+                double fraction = (distances_m[end] - target - distances_m[start]) / (distances_m[start + 1] - distances_m[start]);
+                double startActiveTime = interpolate(activeTimes_ms[start], activeTimes_ms[start + 1], fraction);
+                double time = activeTimes_ms[end] - startActiveTime;
+                if (time < bestTimes_ms[k]) {
+                    bestTimes_ms[k] = time;
+                    bestTimeStarts[k] = Math.round(interpolate(times_ms[start], times_ms[start + 1], fraction));
+                }
+            }
+
+            for (int k = 0; k < durationCount; k++) {
+                long target = targetDurations_ms[k];
+                int start = durationStarts[k];
+                while (start < end && activeTimes_ms[end] - activeTimes_ms[start + 1] >= target) {
+                    start++;
+                }
+                durationStarts[k] = start;
+                if (activeTimes_ms[end] - activeTimes_ms[start] < target) {
+                    continue;
+                }
+
+                // Interpolate where the window of exactly the target duration starts (activeTimes[start + 1] > activeTimes[start]).
+                double fraction = (double) (activeTimes_ms[end] - target - activeTimes_ms[start]) / (activeTimes_ms[start + 1] - activeTimes_ms[start]);
+                long startTime = Math.round(interpolate(times_ms[start], times_ms[start + 1], fraction));
+
+                double distance = distances_m[end] - interpolate(distances_m[start], distances_m[start + 1], fraction);
+                if (distance > bestDistances_m[k]) {
+                    bestDistances_m[k] = distance;
+                    bestDistanceStarts[k] = startTime;
+                }
+
+                double power = (energies[end] - interpolate(energies[start], energies[start + 1], fraction)) / target;
+                if (power > bestPowers[k]) {
+                    bestPowers[k] = power;
+                    bestPowerStarts[k] = startTime;
+                }
+            }
+        }
+
+        List<BestEffort> bestEfforts = new ArrayList<>();
+        for (int k = 0; k < distanceCount; k++) {
+            if (bestTimes_ms[k] != Double.POSITIVE_INFINITY) {
+                bestEfforts.add(new BestEffort(trackId, BestEffort.Type.TIME_FOR_DISTANCE, targetDistances_m[k], bestTimes_ms[k], bestTimeStarts[k]));
+            }
+        }
+        for (int k = 0; k < durationCount; k++) {
+            if (bestDistances_m[k] != Double.NEGATIVE_INFINITY) {
+                bestEfforts.add(new BestEffort(trackId, BestEffort.Type.DISTANCE_FOR_DURATION, targetDurations_ms[k], bestDistances_m[k], bestDistanceStarts[k]));
+                if (hasPower) {
+                    bestEfforts.add(new BestEffort(trackId, BestEffort.Type.POWER_FOR_DURATION, targetDurations_ms[k], bestPowers[k], bestPowerStarts[k]));
+                }
+            }
+        }
+        return bestEfforts;
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + (to - from) * fraction;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= times_ms.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, 2 * times_ms.length);
+        activeTimes_ms = Arrays.copyOf(activeTimes_ms, newCapacity);
+        distances_m = Arrays.copyOf(distances_m, newCapacity);
+        energies = Arrays.copyOf(energies, newCapacity);
+        times_ms = Arrays.copyOf(times_ms, newCapacity);
+    }
+}
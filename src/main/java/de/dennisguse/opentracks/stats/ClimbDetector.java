@@ -0,0 +1,310 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Climb;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
+import de.dennisguse.opentracks.util.TrackPointDistances;
+import de.dennisguse.opentracks.util.UnitConversions;
+
+/**
+ * Detects the {@link Climb}s (and descents) of a track while its trackPoints are added (i.e., while recording).
+ * <p>
+ * Works on the smoothed elevation of a {@link TrackStatisticsUpdater} over the cumulative distance.
+ * A climb starts at the lowest point before the elevation rose by {@link #HYSTERESIS_M} and ends at its top once the elevation dropped by {@link #HYSTERESIS_M} or did not rise for {@link #MAX_FLAT_DISTANCE_M}; descents likewise.
+ * So noise below the hysteresis neither ends nor starts a climb.
+ * Only climbs with at least {@link #MIN_ELEVATION_GAIN_M} and {@link #MIN_AVERAGE_GRADE} are reported.
+ * <p>
+ * All operations are constant time (amortized); only the trackPoints within {@link #GRADE_DISTANCE_M} are kept.
+ */
+public class ClimbDetector {
+
+    @VisibleForTesting
+    static final double HYSTERESIS_M = 10;
+
+    @VisibleForTesting
+    static final double MIN_ELEVATION_GAIN_M = 20;
+
+    // A climb with a smaller grade than HYSTERESIS_M / MAX_FLAT_DISTANCE_M is not detected anyway.
+    @VisibleForTesting
+    static final double MIN_AVERAGE_GRADE = 0.02;
+
+    @VisibleForTesting
+    static final double MAX_FLAT_DISTANCE_M = 500;
+
+    /**
+     * The distance over which the grade is computed (shorter distances are too noisy).
+     */
+    public static final double GRADE_DISTANCE_M = 100;
+
+    // Number of trackPoints replayed at once (distances are computed in batches).
+    private static final int BATCH_SIZE = 1024;
+
+    private static final int UNKNOWN = 0;
+    private static final int UP = 1;
+    private static final int DOWN = -1;
+
+    private final Track.Id trackId;
+
+    // Samples within GRADE_DISTANCE_M before the last sample (incl.)
+    private final ArrayDeque<Sample> gradeWindow = new ArrayDeque<>();
+
+    private int direction = UNKNOWN;
+
+    // UNKNOWN: the lowest and highest sample within MAX_FLAT_DISTANCE_M
+    private Sample low;
+    private Sample high;
+
+    // UP or DOWN: the start and the top (or bottom) so far
+    private Sample start;
+    private Sample extreme;
+    // Steepest grade (in direction) between start and extreme
+    private double steepestGrade = Double.NaN;
+    // Steepest grade (in direction) after extreme
+    private double steepestGradeAfterExtreme = Double.NaN;
+    // Steepest grade (against direction) after extreme: of the following descent (or climb)
+    private double reverseGradeAfterExtreme = Double.NaN;
+
+    // Grade over the gradeWindow and the distance where it starts
+    private double grade = Double.NaN;
+    private double gradeStartDistance_m = Double.NaN;
+
+    /**
+     * @param trackId the trackId of the detected climbs
+     */
+    public ClimbDetector(@Nullable Track.Id trackId) {
+        this.trackId = trackId;
+    }
+
+    /**
+     * Adds a trackPoint that was just added to the trackStatisticsUpdater.
+     * Pause and resume trackPoints as well as trackPoints without altitude are ignored.
+     *
+     * @param trackPointId the trackPoint's id
+     * @return the climb that was completed by this trackPoint or null
+     */
+    @Nullable
+    public Climb add(long trackPointId, @NonNull TrackPoint trackPoint, @NonNull TrackStatisticsUpdater trackStatisticsUpdater) {
+        if (!trackPoint.hasValidLocation() || !trackPoint.hasAltitude()) {
+            return null;
+        }
+        double distance_m = trackPoint.hasCumulativeStatistics() ? trackPoint.getCumulativeDistance_m() : trackStatisticsUpdater.getTotalDistance();
+        long movingTime_ms = trackPoint.hasCumulativeStatistics() ? trackPoint.getCumulativeMovingTime_ms() : trackStatisticsUpdater.getMovingTime();
+        return add(new Sample(trackPointId, distance_m, trackStatisticsUpdater.getTotalTime(), movingTime_ms, trackStatisticsUpdater.getSmoothedElevation()));
+    }
+
+    /**
+     * Replays trackPoints into the trackStatisticsUpdater and this detector (like {@link TrackStatisticsUpdater#addTrackPoint(TrackPointIterator, int)}).
+     *
+     * @return the climbs completed by these trackPoints
+     */
+    @NonNull
+    public List<Climb> addAll(@NonNull TrackPointIterator trackPointIterator, @NonNull TrackStatisticsUpdater trackStatisticsUpdater, int minRecordingDistance) {
+        List<Climb> climbs = new ArrayList<>();
+        List<TrackPoint> trackPoints = new ArrayList<>(BATCH_SIZE);
+        long[] trackPointIds = new long[BATCH_SIZE];
+        TrackPointDistances trackPointDistances = new TrackPointDistances();
+        while (trackPointIterator.hasNext()) {
+            trackPoints.add(trackPointIterator.next());
+            trackPointIds[trackPoints.size() - 1] = trackPointIterator.getTrackPointId();
+            if (trackPoints.size() < BATCH_SIZE && trackPointIterator.hasNext()) {
+                continue;
+            }
+
+            trackPointDistances.compute(trackPoints);
+            for (int i = 0; i < trackPoints.size(); i++) {
+                TrackPoint trackPoint = trackPoints.get(i);
+                trackStatisticsUpdater.addTrackPoint(trackPoint, minRecordingDistance, i == 0 ? Double.NaN : trackPointDistances.get(i));
+                Climb climb = add(trackPointIds[i], trackPoint, trackStatisticsUpdater);
+                if (climb != null) {
+                    climbs.add(climb);
+                }
+            }
+            trackPoints.clear();
+        }
+        return climbs;
+    }
+
+    @VisibleForTesting
+    @Nullable
+    Climb add(@NonNull Sample sample) {
+        updateGrade(sample);
+
+        switch (direction) {
+            case UP:
+            case DOWN:
+                return addToClimb(sample);
+            case UNKNOWN:
+            default:
+                addUnknown(sample);
+                return null;
+        }
+    }
+
+    private Climb addToClimb(@NonNull Sample sample) {
+        double change = direction * (sample.elevation_m - extreme.elevation_m);
+        if (change > 0) {
+            extreme = sample;
+            steepestGrade = steeper(direction, steeper(direction, steepestGrade, steepestGradeAfterExtreme), getGradeAfter(start));
+            steepestGradeAfterExtreme = Double.NaN;
+            reverseGradeAfterExtreme = Double.NaN;
+            return null;
+        }
+        steepestGradeAfterExtreme = steeper(direction, steepestGradeAfterExtreme, getGradeAfter(start));
+        reverseGradeAfterExtreme = steeper(-direction, reverseGradeAfterExtreme, getGradeAfter(extreme));
+
+        if (-change >= HYSTERESIS_M) {
+            // Reversed: the extreme starts a descent (or climb).
+            Climb climb = createClimb();
+            direction = -direction;
+            start = extreme;
+            extreme = sample;
+            steepestGrade = reverseGradeAfterExtreme;
+            steepestGradeAfterExtreme = Double.NaN;
+            reverseGradeAfterExtreme = Double.NaN;
+            return climb;
+        }
+
+        if (sample.distance_m - extreme.distance_m > MAX_FLAT_DISTANCE_M) {
+            // Flat since the extreme.
+            Climb climb = createClimb();
+            direction = UNKNOWN;
+            low = sample;
+            high = sample;
+            return climb;
+        }
+        return null;
+    }
+
+    private void addUnknown(@NonNull Sample sample) {
+        if (low == null || sample.elevation_m <= low.elevation_m || sample.distance_m - low.distance_m > MAX_FLAT_DISTANCE_M) {
+            low = sample;
+        }
+        if (high == null || sample.elevation_m >= high.elevation_m || sample.distance_m - high.distance_m > MAX_FLAT_DISTANCE_M) {
+            high = sample;
+        }
+
+        if (sample.elevation_m - low.elevation_m >= HYSTERESIS_M) {
+            start(UP, low, sample);
+        } else if (high.elevation_m - sample.elevation_m >= HYSTERESIS_M) {
+            start(DOWN, high, sample);
+        }
+    }
+
+    private void start(int direction, @NonNull Sample start, @NonNull Sample sample) {
+        this.direction = direction;
+        this.start = start;
+        extreme = sample;
+        steepestGrade = getGradeAfter(start);
+        steepestGradeAfterExtreme = Double.NaN;
+        reverseGradeAfterExtreme = Double.NaN;
+        low = null;
+        high = null;
+    }
+
+    /**
+     * Ends the current climb (e.g., the recording ended).
+     *
+     * @return the current climb or null
+     */
+    @Nullable
+    public Climb finish() {
+        Climb climb = direction == UNKNOWN ? null : createClimb();
+        direction = UNKNOWN;
+        low = null;
+        high = null;
+        gradeWindow.clear();
+        grade = Double.NaN;
+        gradeStartDistance_m = Double.NaN;
+        return climb;
+    }
+
+    /**
+     * @return the grade over the last {@link #GRADE_DISTANCE_M}; NaN if not known (yet)
+     */
+    public double getGrade() {
+        return grade;
+    }
+
+    private void updateGrade(@NonNull Sample sample) {
+        gradeWindow.addLast(sample);
+        // Keep the last sample that is at least GRADE_DISTANCE_M before
+        while (gradeWindow.size() > 2) {
+            Iterator<Sample> iterator = gradeWindow.iterator();
+            iterator.next();
+            if (sample.distance_m - iterator.next().distance_m < GRADE_DISTANCE_M) {
+                break;
+            }
+            gradeWindow.removeFirst();
+        }
+        Sample first = gradeWindow.getFirst();
+        double distance_m = sample.distance_m - first.distance_m;
+        grade = distance_m >= GRADE_DISTANCE_M ? (sample.elevation_m - first.elevation_m) / distance_m : Double.NaN;
+        gradeStartDistance_m = first.distance_m;
+    }
+
+    /**
+     * @return the grade if it is computed from samples after from (incl.) only; otherwise NaN
+     */
+    private double getGradeAfter(@NonNull Sample from) {
+        return gradeStartDistance_m >= from.distance_m ? grade : Double.NaN;
+    }
+
+    /**
+     * @return the climb from start to extreme or null if it is too small
+     */
+    @Nullable
+    private Climb createClimb() {
+        double elevationGain_m = extreme.elevation_m - start.elevation_m;
+        double length_m = extreme.distance_m - start.distance_m;
+        if (length_m <= 0 || Math.abs(elevationGain_m) < MIN_ELEVATION_GAIN_M) {
+            return null;
+        }
+        double averageGrade = elevationGain_m / length_m;
+        if (Math.abs(averageGrade) < MIN_AVERAGE_GRADE) {
+            return null;
+        }
+        long movingTime_ms = extreme.movingTime_ms - start.movingTime_ms;
+        double vam_mph = movingTime_ms > 0 ? elevationGain_m / (movingTime_ms * UnitConversions.MS_TO_S * UnitConversions.S_TO_MIN * UnitConversions.MIN_TO_HR) : Double.NaN;
+        return new Climb(trackId, start.trackPointId, extreme.trackPointId, start.distance_m, extreme.distance_m, start.totalTime_ms, extreme.totalTime_ms, elevationGain_m, averageGrade, steepestGrade, vam_mph);
+    }
+
+    /**
+     * @return the steeper of both grades in the direction; NaN is ignored
+     */
+    private static double steeper(int direction, double grade1, double grade2) {
+        if (Double.isNaN(grade1)) {
+            return grade2;
+        }
+        if (Double.isNaN(grade2)) {
+            return grade1;
+        }
+        return direction == UP ? Math.max(grade1, grade2) : Math.min(grade1, grade2);
+    }
+
+    @VisibleForTesting
+    static class Sample {
+        final long trackPointId;
+        final double distance_m;
+        final long totalTime_ms;
+        final long movingTime_ms;
+        final double elevation_m;
+
+        Sample(long trackPointId, double distance_m, long totalTime_ms, long movingTime_ms, double elevation_m) {
+            this.trackPointId = trackPointId;
+            this.distance_m = distance_m;
+            this.totalTime_ms = totalTime_ms;
+            this.movingTime_ms = movingTime_ms;
+            this.elevation_m = elevation_m;
+        }
+    }
+}
@@ -22,10 +22,11 @@ import androidx.annotation.NonNull;
  * This class maintains a ring buffer of doubles.
  * This buffer is a convenient class for storing a series of doubles and calculating information about them.
  * This is a FIFO buffer.
+ * The average is computed from a running sum; the sum is recomputed whenever the buffer wraps around to avoid accumulating rounding errors.
  *
  * @author Sandor Dornbush
  */
-class DoubleRingBuffer {
+class DoubleRingBuffer implements SmoothingFilter {
 
     // The sliding buffer of doubles.
     private final double[] buffer;
@@ -36,6 +37,9 @@ class DoubleRingBuffer {
     // True if the buffer is full
     private boolean isFull;
 
+    // The sum of the entries.
+    private double sum;
+
     /**
      * Creates a buffer with a certain size.
      *
@@ -43,7 +47,7 @@ class DoubleRingBuffer {
      */
     DoubleRingBuffer(int size) {
         if (size < 1) {
-            throw new IllegalArgumentException("The buffer size must be greater than 1.");
+            throw new IllegalArgumentException("The size must be at least 1.");
         }
         buffer = new double[size];
         reset();
@@ -52,15 +56,18 @@ class DoubleRingBuffer {
     /**
      * Resets the buffer.
      */
+    @Override
     public void reset() {
         index = 0;
         isFull = false;
+        sum = 0;
     }
 
     /**
      * Returns true if the buffer is full.
      */
-    boolean isFull() {
+    @Override
+    public boolean isFull() {
         return isFull;
     }
 
@@ -72,27 +79,38 @@ class DoubleRingBuffer {
         if (numberOfEntries == 0) {
             return 0;
         }
-        double sum = 0;
-        for (int i = 0; i < numberOfEntries; i++) {
-            sum += buffer[i];
-        }
         return sum / numberOfEntries;
     }
 
+    @Override
+    public double getValue() {
+        return getAverage();
+    }
+
     /**
      * Adds a double to the buffer.
      * If the buffer is full the oldest element is overwritten.
      *
      * @param value the double to add
      */
+    @Override
     public void setNext(double value) {
         if (index == buffer.length) {
             index = 0;
         }
+        if (isFull) {
+            sum -= buffer[index];
+        }
         buffer[index] = value;
+        sum += value;
         index++;
         if (index == buffer.length) {
             isFull = true;
+            // Drift correction
+            sum = 0;
+            for (double entry : buffer) {
+                sum += entry;
+            }
         }
     }
 
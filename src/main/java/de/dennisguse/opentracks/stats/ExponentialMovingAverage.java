@@ -0,0 +1,50 @@
+package de.dennisguse.opentracks.stats;
+
+/**
+ * Exponential moving average; the smoothing factor is derived from a window size like for a moving average of the same size (2 / (size + 1)).
+ */
+class ExponentialMovingAverage implements SmoothingFilter {
+
+    private final int size;
+    private final double alpha;
+
+    private double value;
+    private int count;
+
+    ExponentialMovingAverage(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The size must be at least 1.");
+        }
+        this.size = size;
+        this.alpha = 2.0 / (size + 1);
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        value = 0;
+        count = 0;
+    }
+
+    @Override
+    public void setNext(double value) {
+        if (count == 0) {
+            this.value = value;
+        } else {
+            this.value += alpha * (value - this.value);
+        }
+        if (count < size) {
+            count++;
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isFull() {
+        return count == size;
+    }
+}
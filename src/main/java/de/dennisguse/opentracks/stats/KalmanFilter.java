@@ -0,0 +1,65 @@
+package de.dennisguse.opentracks.stats;
+
+/**
+ * One-dimensional Kalman filter assuming a constant value disturbed by random changes (random walk).
+ * The ratio of process and measurement noise is derived from a window size, so that the steady state gain equals the smoothing factor of an {@link ExponentialMovingAverage} of the same size.
+ * Unlike it, the gain adapts while the filter starts up.
+ */
+class KalmanFilter implements SmoothingFilter {
+
+    private static final double MEASUREMENT_NOISE = 1;
+
+    private final int size;
+    private final double processNoise;
+
+    private double estimate;
+    // Variance of the estimate
+    private double variance;
+    private int count;
+
+    KalmanFilter(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The size must be at least 1.");
+        }
+        this.size = size;
+        // Steady state gain K of a random walk: K^2 / (1 - K) = processNoise / measurementNoise
+        double gain = 2.0 / (size + 1);
+        this.processNoise = size == 1 ? Double.MAX_VALUE : MEASUREMENT_NOISE * gain * gain / (1 - gain);
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        estimate = 0;
+        variance = 0;
+        count = 0;
+    }
+
+    @Override
+    public void setNext(double value) {
+        if (count == 0) {
+            estimate = value;
+            variance = MEASUREMENT_NOISE;
+        } else {
+            // Predict
+            double predictedVariance = variance + processNoise;
+            // Update
+            double gain = predictedVariance / (predictedVariance + MEASUREMENT_NOISE);
+            estimate += gain * (value - estimate);
+            variance = (1 - gain) * predictedVariance;
+        }
+        if (count < size) {
+            count++;
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return estimate;
+    }
+
+    @Override
+    public boolean isFull() {
+        return count == size;
+    }
+}
@@ -0,0 +1,72 @@
+package de.dennisguse.opentracks.stats;
+
+import java.util.Arrays;
+
+/**
+ * Median of the last readings; robust against single outliers (e.g., GPS elevation spikes).
+ * Keeps the window sorted: adding a reading is linear in the (small) window size, getting the median is constant time.
+ */
+class MedianFilter implements SmoothingFilter {
+
+    // The readings in order of arrival (ring buffer).
+    private final double[] buffer;
+    // The same readings sorted.
+    private final double[] sorted;
+
+    // The location that the next write will occur at.
+    private int index;
+    private int count;
+
+    MedianFilter(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The size must be at least 1.");
+        }
+        buffer = new double[size];
+        sorted = new double[size];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+        count = 0;
+    }
+
+    @Override
+    public void setNext(double value) {
+        if (count == buffer.length) {
+            // Remove oldest reading
+            int position = Arrays.binarySearch(sorted, 0, count, buffer[index]);
+            System.arraycopy(sorted, position + 1, sorted, position, count - position - 1);
+            count--;
+        }
+
+        int position = Arrays.binarySearch(sorted, 0, count, value);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        System.arraycopy(sorted, position, sorted, position + 1, count - position);
+        sorted[position] = value;
+        count++;
+
+        buffer[index] = value;
+        index = (index + 1) % buffer.length;
+    }
+
+    @Override
+    public double getValue() {
+        if (count == 0) {
+            return 0;
+        }
+        int middle = count / 2;
+        if (count % 2 == 1) {
+            return sorted[middle];
+        }
+        return (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    @Override
+    public boolean isFull() {
+        return count == buffer.length;
+    }
+}
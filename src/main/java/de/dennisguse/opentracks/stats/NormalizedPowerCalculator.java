@@ -0,0 +1,75 @@
+package de.dennisguse.opentracks.stats;
+
+/**
+ * Streaming normalized power: the fourth-power mean of the rolling 30s average power.
+ * Power is resampled to 1s bins; allocation-free after construction.
+ */
+class NormalizedPowerCalculator {
+
+    private static final int BIN_DURATION_MS = 1000;
+
+    private static final int ROLLING_BINS = 30;
+
+    private final DoubleRingBuffer rollingAverage_W = new DoubleRingBuffer(ROLLING_BINS);
+
+    // Power (W) integrated over the time (ms) of the current bin
+    private double binEnergy;
+    private long binDuration_ms;
+
+    private double fourthPowerSum;
+    private long count;
+
+    /**
+     * @param power_W     the power
+     * @param duration_ms the time the power was applied
+     */
+    void add(double power_W, long duration_ms) {
+        while (duration_ms > 0) {
+            long binRemaining_ms = Math.min(duration_ms, BIN_DURATION_MS - binDuration_ms);
+            binEnergy += power_W * binRemaining_ms;
+            binDuration_ms += binRemaining_ms;
+            duration_ms -= binRemaining_ms;
+
+            if (binDuration_ms == BIN_DURATION_MS) {
+                rollingAverage_W.setNext(binEnergy / BIN_DURATION_MS);
+                binEnergy = 0;
+                binDuration_ms = 0;
+
+                if (rollingAverage_W.isFull()) {
+                    double average = rollingAverage_W.getAverage();
+                    fourthPowerSum += average * average * average * average;
+                    count++;
+                }
+            }
+        }
+    }
+
+    void reset() {
+        rollingAverage_W.reset();
+        binEnergy = 0;
+        binDuration_ms = 0;
+        fourthPowerSum = 0;
+        count = 0;
+    }
+
+    boolean hasData() {
+        return count > 0;
+    }
+
+    /**
+     * @return the normalized power (W) or 0 if less than 30s of power data.
+     */
+    double getNormalizedPower() {
+        if (count == 0) {
+            return 0;
+        }
+        return Math.pow(fourthPowerSum / count, 0.25);
+    }
+
+    /**
+     * The time the normalized power is based on (weight for merging).
+     */
+    long getDuration_ms() {
+        return count * BIN_DURATION_MS;
+    }
+}
@@ -0,0 +1,85 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Streaming aggregate of a sensor channel (e.g., heart rate): time-weighted average and maximum.
+ * Each value is weighted by the time since the previous trackPoint (i.e., the value is assumed to hold for the whole interval).
+ */
+public class SensorAggregate {
+
+    // Sum of value * duration (ms)
+    private double weightedSum;
+    private long duration_ms;
+    private float max = Float.NEGATIVE_INFINITY;
+
+    public SensorAggregate() {
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public SensorAggregate(@NonNull SensorAggregate other) {
+        weightedSum = other.weightedSum;
+        duration_ms = other.duration_ms;
+        max = other.max;
+    }
+
+    public void add(float value, long duration_ms) {
+        if (duration_ms <= 0) {
+            return;
+        }
+        weightedSum += (double) value * duration_ms;
+        this.duration_ms += duration_ms;
+        max = Math.max(max, value);
+    }
+
+    public void merge(@NonNull SensorAggregate other) {
+        weightedSum += other.weightedSum;
+        duration_ms += other.duration_ms;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Restores a persisted aggregate.
+     */
+    public void set(float average, float max, long duration_ms) {
+        this.weightedSum = (double) average * duration_ms;
+        this.duration_ms = duration_ms;
+        this.max = max;
+    }
+
+    public boolean hasData() {
+        return duration_ms > 0;
+    }
+
+    @Nullable
+    public Float getAverage() {
+        if (!hasData()) {
+            return null;
+        }
+        return (float) (weightedSum / duration_ms);
+    }
+
+    @Nullable
+    public Float getMax() {
+        if (!hasData()) {
+            return null;
+        }
+        return max;
+    }
+
+    /**
+     * The time with data.
+     */
+    public long getDuration_ms() {
+        return duration_ms;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SensorAggregate{average=" + getAverage() + ", max=" + getMax() + ", duration_ms=" + duration_ms + "}";
+    }
+}
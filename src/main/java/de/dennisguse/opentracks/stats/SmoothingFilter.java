@@ -0,0 +1,58 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A streaming filter for a noisy series (e.g., elevation or speed readings).
+ * All operations are constant time (except {@link MedianFilter}: linear in its small window) and do not allocate.
+ */
+public interface SmoothingFilter {
+
+    /**
+     * Forgets all readings.
+     */
+    void reset();
+
+    /**
+     * Adds a reading.
+     */
+    void setNext(double value);
+
+    /**
+     * Gets the smoothed value; 0 if there are no readings.
+     */
+    double getValue();
+
+    /**
+     * Returns true if enough readings were added to fill the filter's window.
+     */
+    boolean isFull();
+
+    /**
+     * Values are stored in the preferences.
+     */
+    enum Type {
+        MOVING_AVERAGE,
+        EXPONENTIAL_MOVING_AVERAGE,
+        MEDIAN,
+        KALMAN;
+
+        /**
+         * @param size the number of readings the filter smooths over
+         */
+        @NonNull
+        public SmoothingFilter create(int size) {
+            switch (this) {
+                case EXPONENTIAL_MOVING_AVERAGE:
+                    return new ExponentialMovingAverage(size);
+                case MEDIAN:
+                    return new MedianFilter(size);
+                case KALMAN:
+                    return new KalmanFilter(size);
+                case MOVING_AVERAGE:
+                default:
+                    return new DoubleRingBuffer(size);
+            }
+        }
+    }
+}
@@ -46,6 +46,17 @@ public class TrackStatistics {
     // The total elevation gained (meters).
     private Float totalElevationGain_m = null;
 
+    // Sensor data (time-weighted)
+    private final SensorAggregate heartRate_bpm = new SensorAggregate();
+    private final SensorAggregate cadence_rpm = new SensorAggregate();
+    private final SensorAggregate power_W = new SensorAggregate();
+    // Normalized power (W) and the time it is based on.
+    private double normalizedPower_W;
+    private long normalizedPowerDuration_ms;
+    // Time in zones; null if no zones are configured.
+    private ZoneHistogram heartRateZones;
+    private ZoneHistogram powerZones;
+
     public TrackStatistics() {
     }
 
@@ -63,6 +74,13 @@ public class TrackStatistics {
         maxSpeed_mps = other.maxSpeed_mps;
         elevationExtremities.set(other.elevationExtremities.getMin(), other.elevationExtremities.getMax());
         totalElevationGain_m = other.totalElevationGain_m;
+        heartRate_bpm.merge(other.heartRate_bpm);
+        cadence_rpm.merge(other.cadence_rpm);
+        power_W.merge(other.power_W);
+        normalizedPower_W = other.normalizedPower_W;
+        normalizedPowerDuration_ms = other.normalizedPowerDuration_ms;
+        heartRateZones = other.heartRateZones != null ? new ZoneHistogram(other.heartRateZones) : null;
+        powerZones = other.powerZones != null ? new ZoneHistogram(other.powerZones) : null;
     }
 
     /**
@@ -91,6 +109,37 @@ public class TrackStatistics {
                 totalElevationGain_m += other.totalElevationGain_m;
             }
         }
+
+        heartRate_bpm.merge(other.heartRate_bpm);
+        cadence_rpm.merge(other.cadence_rpm);
+        power_W.merge(other.power_W);
+        mergeNormalizedPower(other.normalizedPower_W, other.normalizedPowerDuration_ms);
+        heartRateZones = merge(heartRateZones, other.heartRateZones);
+        powerZones = merge(powerZones, other.powerZones);
+    }
+
+    /**
+     * Normalized power is a fourth-power mean; merged weighted by time.
+     */
+    private void mergeNormalizedPower(double otherNormalizedPower_W, long otherDuration_ms) {
+        if (otherDuration_ms <= 0) {
+            return;
+        }
+        long duration_ms = normalizedPowerDuration_ms + otherDuration_ms;
+        double fourthPowerSum = Math.pow(normalizedPower_W, 4) * normalizedPowerDuration_ms + Math.pow(otherNormalizedPower_W, 4) * otherDuration_ms;
+        normalizedPower_W = Math.pow(fourthPowerSum / duration_ms, 0.25);
+        normalizedPowerDuration_ms = duration_ms;
+    }
+
+    private static ZoneHistogram merge(ZoneHistogram zoneHistogram, ZoneHistogram other) {
+        if (other == null) {
+            return zoneHistogram;
+        }
+        if (zoneHistogram == null) {
+            return new ZoneHistogram(other);
+        }
+        zoneHistogram.merge(other);
+        return zoneHistogram;
     }
 
     /**
@@ -257,6 +306,65 @@ public class TrackStatistics {
         totalElevationGain_m += gain_m;
     }
 
+    /**
+     * Time-weighted heart rate (bpm).
+     */
+    @NonNull
+    public SensorAggregate getHeartRate() {
+        return heartRate_bpm;
+    }
+
+    /**
+     * Time-weighted cadence (rpm).
+     */
+    @NonNull
+    public SensorAggregate getCadence() {
+        return cadence_rpm;
+    }
+
+    /**
+     * Time-weighted power (W).
+     */
+    @NonNull
+    public SensorAggregate getPower() {
+        return power_W;
+    }
+
+    public boolean hasNormalizedPower() {
+        return normalizedPowerDuration_ms > 0;
+    }
+
+    public double getNormalizedPower() {
+        return normalizedPower_W;
+    }
+
+    public long getNormalizedPowerDuration_ms() {
+        return normalizedPowerDuration_ms;
+    }
+
+    public void setNormalizedPower(double normalizedPower_W, long duration_ms) {
+        this.normalizedPower_W = normalizedPower_W;
+        this.normalizedPowerDuration_ms = duration_ms;
+    }
+
+    @Nullable
+    public ZoneHistogram getHeartRateZones() {
+        return heartRateZones;
+    }
+
+    public void setHeartRateZones(@Nullable ZoneHistogram heartRateZones) {
+        this.heartRateZones = heartRateZones;
+    }
+
+    @Nullable
+    public ZoneHistogram getPowerZones() {
+        return powerZones;
+    }
+
+    public void setPowerZones(@Nullable ZoneHistogram powerZones) {
+        this.powerZones = powerZones;
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -264,6 +372,7 @@ public class TrackStatistics {
                 + "; Total Distance: " + getTotalDistance() + "; Total Time: " + getTotalTime()
                 + "; Moving Time: " + getMovingTime() + "; Max Speed: " + getMaxSpeed()
                 + "; Min Elevation: " + getMinElevation() + "; Max Elevation: " + getMaxElevation()
-                + "; Elevation Gain: " + getTotalElevationGain() + "}";
+                + "; Elevation Gain: " + getTotalElevationGain()
+                + "; Heart Rate: " + heartRate_bpm + "; Cadence: " + cadence_rpm + "; Power: " + power_W + "; Normalized Power: " + normalizedPower_W + "}";
     }
 }
\ No newline at end of file
@@ -19,12 +19,16 @@ package de.dennisguse.opentracks.stats;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.provider.TrackPointIterator;
-import de.dennisguse.opentracks.util.LocationUtils;
+import de.dennisguse.opentracks.util.TrackPointDistances;
 import de.dennisguse.opentracks.util.TrackPointUtils;
 
 /**
@@ -51,6 +55,11 @@ public class TrackStatisticsUpdater {
     private static final int SPEED_SMOOTHING_FACTOR = 25;
 
     private static final String TAG = TrackStatisticsUpdater.class.getSimpleName();
+
+    /**
+     * Version of the computation; increment if the computed statistics change (e.g., a new heuristic), so stored statistics are recomputed.
+     */
+    public static final int STATISTICS_VERSION = 2;
     /**
      * Ignore any acceleration faster than this.
      * Will ignore any speeds that imply acceleration greater than 2g's
@@ -58,28 +67,51 @@ public class TrackStatisticsUpdater {
      */
     private static final double MAX_ACCELERATION = 0.02;
 
+    // Number of trackPoints read from a TrackPointIterator at once (distances are computed in batches).
+    private static final int BATCH_SIZE = 1024;
+
     // The track's statistics
     private final TrackStatistics trackStatistics;
 
-    // A buffer of the recent elevation readings (m)
-    private final DoubleRingBuffer elevationBuffer_m = new DoubleRingBuffer(ELEVATION_SMOOTHING_FACTOR);
-    // A buffer of the recent speed readings (m/s) for calculating max speed
-    private final DoubleRingBuffer speedBuffer_ms = new DoubleRingBuffer(SPEED_SMOOTHING_FACTOR);
+    // A filter of the recent elevation readings (m)
+    private final SmoothingFilter elevationBuffer_m;
+    // A filter of the recent speed readings (m/s) for calculating max speed
+    private final SmoothingFilter speedBuffer_ms;
+
+    // Zone boundaries for the time in zones; null if not configured
+    private double[] heartRateZones_bpm;
+    private double[] powerZones_W;
 
     // The current segment's statistics
     private TrackStatistics currentSegment;
+    // The current segment's normalized power
+    private final NormalizedPowerCalculator normalizedPower = new NormalizedPowerCalculator();
     // Current segment's last trackPoint
     private TrackPoint lastTrackPoint;
     // Current segment's last moving trackPoint
     private TrackPoint lastMovingTrackPoint;
 
+    // Only used by addTrackPoints()
+    private TrackPointDistances trackPointDistances;
+
     /**
      * Creates a new {@link TrackStatisticsUpdater}.
      *
      * @param startTime_ms the start time in milliseconds
      */
     public TrackStatisticsUpdater(long startTime_ms) {
-        trackStatistics = init(startTime_ms);
+        this(startTime_ms, SmoothingFilter.Type.MOVING_AVERAGE, SmoothingFilter.Type.MOVING_AVERAGE);
+    }
+
+    /**
+     * Creates a new {@link TrackStatisticsUpdater}.
+     *
+     * @param startTime_ms       the start time in milliseconds
+     * @param elevationSmoothing the filter for the elevation readings
+     * @param speedSmoothing     the filter for the speed readings
+     */
+    public TrackStatisticsUpdater(long startTime_ms, @NonNull SmoothingFilter.Type elevationSmoothing, @NonNull SmoothingFilter.Type speedSmoothing) {
+        this(init(startTime_ms), elevationSmoothing, speedSmoothing);
         currentSegment = init(startTime_ms);
     }
 
@@ -89,8 +121,27 @@ public class TrackStatisticsUpdater {
      * @param trackStatistics a {@link TrackStatisticsUpdater}
      */
     public TrackStatisticsUpdater(TrackStatistics trackStatistics) {
+        this(trackStatistics, SmoothingFilter.Type.MOVING_AVERAGE, SmoothingFilter.Type.MOVING_AVERAGE);
+    }
+
+    public TrackStatisticsUpdater(TrackStatistics trackStatistics, @NonNull SmoothingFilter.Type elevationSmoothing, @NonNull SmoothingFilter.Type speedSmoothing) {
         this.trackStatistics = trackStatistics;
         currentSegment = init(System.currentTimeMillis());
+        elevationBuffer_m = elevationSmoothing.create(ELEVATION_SMOOTHING_FACTOR);
+        speedBuffer_ms = speedSmoothing.create(SPEED_SMOOTHING_FACTOR);
+    }
+
+    /**
+     * Sets the zone boundaries for the time in heart rate and power zones (see {@link ZoneHistogram}).
+     * Must be called before adding trackPoints.
+     *
+     * @param heartRateZones_bpm the heart rate zone boundaries or null
+     * @param powerZones_W       the power zone boundaries or null
+     */
+    public void setZones(@Nullable double[] heartRateZones_bpm, @Nullable double[] powerZones_W) {
+        this.heartRateZones_bpm = heartRateZones_bpm;
+        this.powerZones_W = powerZones_W;
+        initZones(currentSegment);
     }
 
     public void updateTime(long time) {
@@ -108,6 +159,35 @@ public class TrackStatisticsUpdater {
         return stats;
     }
 
+    /**
+     * Sets the total distance and moving time of the track so far (i.e., after adding the trackPoint) as cumulative statistics of the trackPoint.
+     * Same values as {@link #getTrackStatistics()}, but without the snapshot.
+     */
+    public void setCumulativeStatistics(@NonNull TrackPoint trackPoint) {
+        trackPoint.setCumulativeStatistics(getTotalDistance(), getMovingTime());
+    }
+
+    /**
+     * Same value as {@link #getTrackStatistics()}, but without the snapshot.
+     */
+    public double getTotalDistance() {
+        return trackStatistics.getTotalDistance() + currentSegment.getTotalDistance();
+    }
+
+    /**
+     * Same value as {@link #getTrackStatistics()}, but without the snapshot.
+     */
+    public long getTotalTime() {
+        return trackStatistics.getTotalTime() + currentSegment.getTotalTime();
+    }
+
+    /**
+     * Same value as {@link #getTrackStatistics()}, but without the snapshot.
+     */
+    public long getMovingTime() {
+        return trackStatistics.getMovingTime() + currentSegment.getMovingTime();
+    }
+
     /**
      * Adds a trackPoint.
      * TODO: This assume trackPoint has a valid time.
@@ -116,17 +196,28 @@ public class TrackStatisticsUpdater {
      * @param minRecordingDistance the min recording distance
      */
     public void addTrackPoint(TrackPoint trackPoint, int minRecordingDistance) {
+        addTrackPoint(trackPoint, minRecordingDistance, Double.NaN);
+    }
+
+    /**
+     * Adds a trackPoint with the already computed distance to the previously added trackPoint (e.g., by {@link TrackPointDistances}).
+     *
+     * @param trackPoint           the trackPoint
+     * @param minRecordingDistance the min recording distance
+     * @param distanceToPrevious_m the distance to the previously added trackPoint or NaN if unknown
+     */
+    public void addTrackPoint(TrackPoint trackPoint, int minRecordingDistance, double distanceToPrevious_m) {
         // Always update time
         updateTime(trackPoint.getTime());
-        if (!LocationUtils.isValidLocation(trackPoint.getLocation())) {
-            // Either pause or resume marker
+        if (!trackPoint.hasValidLocation()) {
+            // Either pause or resume marker; not replaced by segments as their times are needed (the resume time starts the next segment's total time).
             if (trackPoint.getLatitude() == TrackPointsColumns.PAUSE_LATITUDE) {
                 if (lastTrackPoint != null && lastMovingTrackPoint != null && lastTrackPoint != lastMovingTrackPoint) {
                     currentSegment.addTotalDistance(lastMovingTrackPoint.distanceTo(lastTrackPoint));
                 }
                 trackStatistics.merge(currentSegment);
             }
-            currentSegment = init(trackPoint.getTime());
+            startSegment(trackPoint.getTime());
             lastTrackPoint = null;
             lastMovingTrackPoint = null;
             elevationBuffer_m.reset();
@@ -145,13 +236,18 @@ public class TrackStatisticsUpdater {
             Log.d(TAG, "elevation gain: " + trackPoint.getElevationGain());
         }
 
+        if (lastTrackPoint != null) {
+            updateSensors(trackPoint, trackPoint.getTime() - lastTrackPoint.getTime());
+        }
+
         if (lastTrackPoint == null || lastMovingTrackPoint == null) {
             lastTrackPoint = trackPoint;
             lastMovingTrackPoint = trackPoint;
             return;
         }
 
-        double movingDistance = lastMovingTrackPoint.distanceTo(trackPoint);
+        // lastTrackPoint is the previously added trackPoint
+        double movingDistance = lastMovingTrackPoint == lastTrackPoint && !Double.isNaN(distanceToPrevious_m) ? distanceToPrevious_m : lastMovingTrackPoint.distanceTo(trackPoint);
         if (movingDistance < minRecordingDistance && !TrackPointUtils.isMoving(trackPoint)) {
             speedBuffer_ms.reset();
             lastTrackPoint = trackPoint;
@@ -178,10 +274,28 @@ public class TrackStatisticsUpdater {
         lastMovingTrackPoint = trackPoint;
     }
 
+    /**
+     * Adds trackPoints; the distances between consecutive trackPoints are computed in one batch.
+     */
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints, int minRecordingDistance) {
+        if (trackPointDistances == null) {
+            trackPointDistances = new TrackPointDistances();
+        }
+        trackPointDistances.compute(trackPoints);
+
+        for (int i = 0; i < trackPoints.size(); i++) {
+            addTrackPoint(trackPoints.get(i), minRecordingDistance, i == 0 ? Double.NaN : trackPointDistances.get(i));
+        }
+    }
+
     public void addTrackPoint(TrackPointIterator iterator, int minRecordingDistance) {
+        List<TrackPoint> trackPoints = new ArrayList<>(BATCH_SIZE);
         while (iterator.hasNext()) {
-            TrackPoint location = iterator.next();
-            addTrackPoint(location, minRecordingDistance);
+            trackPoints.add(iterator.next());
+            if (trackPoints.size() == BATCH_SIZE || !iterator.hasNext()) {
+                addTrackPoints(trackPoints, minRecordingDistance);
+                trackPoints.clear();
+            }
         }
     }
 
@@ -190,11 +304,11 @@ public class TrackStatisticsUpdater {
      * The elevation readings is noisy so the smoothed elevation is better than the raw elevation for many tasks.
      */
     public double getSmoothedElevation() {
-        return elevationBuffer_m.getAverage();
+        return elevationBuffer_m.getValue();
     }
 
     public double getSmoothedSpeed() {
-        return speedBuffer_ms.getAverage();
+        return speedBuffer_ms.getValue();
     }
 
     /**
@@ -206,14 +320,42 @@ public class TrackStatisticsUpdater {
             speedBuffer_ms.reset();
         } else if (isValidSpeed(trackPoint, lastTrackPoint)) {
             speedBuffer_ms.setNext(trackPoint.getSpeed());
-            if (speedBuffer_ms.getAverage() > currentSegment.getMaxSpeed()) {
-                currentSegment.setMaxSpeed(speedBuffer_ms.getAverage());
+            if (speedBuffer_ms.getValue() > currentSegment.getMaxSpeed()) {
+                currentSegment.setMaxSpeed(speedBuffer_ms.getValue());
             }
         } else {
             Log.d(TAG, "Invalid speed. speed: " + trackPoint.getSpeed() + " lastLocationSpeed: " + lastTrackPoint.getSpeed());
         }
     }
 
+    /**
+     * Updates the sensor aggregates; the sensor values of the trackPoint are assumed to hold since the previous trackPoint.
+     */
+    private void updateSensors(@NonNull TrackPoint trackPoint, long duration_ms) {
+        if (duration_ms <= 0) {
+            return;
+        }
+        if (trackPoint.hasHeartRate()) {
+            currentSegment.getHeartRate().add(trackPoint.getHeartRate_bpm(), duration_ms);
+            if (currentSegment.getHeartRateZones() != null) {
+                currentSegment.getHeartRateZones().add(trackPoint.getHeartRate_bpm(), duration_ms);
+            }
+        }
+        if (trackPoint.hasCyclingCadence()) {
+            currentSegment.getCadence().add(trackPoint.getCyclingCadence_rpm(), duration_ms);
+        }
+        if (trackPoint.hasPower()) {
+            currentSegment.getPower().add(trackPoint.getPower(), duration_ms);
+            if (currentSegment.getPowerZones() != null) {
+                currentSegment.getPowerZones().add(trackPoint.getPower(), duration_ms);
+            }
+            normalizedPower.add(trackPoint.getPower(), duration_ms);
+            if (normalizedPower.hasData()) {
+                currentSegment.setNormalizedPower(normalizedPower.getNormalizedPower(), normalizedPower.getDuration_ms());
+            }
+        }
+    }
+
     /**
      * Updates an elevation reading.
      *
@@ -223,16 +365,27 @@ public class TrackStatisticsUpdater {
     @VisibleForTesting
     private double updateAbsoluteElevation(double elevation) {
         // Update elevation using the smoothed average
-        double oldAverage = elevationBuffer_m.getAverage();
+        double oldAverage = elevationBuffer_m.getValue();
         elevationBuffer_m.setNext(elevation);
-        double newAverage = elevationBuffer_m.getAverage();
+        double newAverage = elevationBuffer_m.getValue();
 
         currentSegment.updateElevationExtremities(newAverage);
 
         return newAverage - oldAverage;
     }
 
-    private TrackStatistics init(long time) {
+    private void startSegment(long time) {
+        currentSegment = init(time);
+        initZones(currentSegment);
+        normalizedPower.reset();
+    }
+
+    private void initZones(@NonNull TrackStatistics segment) {
+        segment.setHeartRateZones(heartRateZones_bpm != null ? new ZoneHistogram(heartRateZones_bpm) : null);
+        segment.setPowerZones(powerZones_W != null ? new ZoneHistogram(powerZones_W) : null);
+    }
+
+    private static TrackStatistics init(long time) {
         TrackStatistics stats = new TrackStatistics();
         stats.setStartTime_ms(time);
         stats.setStopTime_ms(time);
@@ -262,7 +415,7 @@ public class TrackStatisticsUpdater {
 
         // Only check if the speed buffer is full. Check that the speed is less than 10X the smoothed average and the speed difference doesn't imply 2g acceleration.
         if (speedBuffer_ms.isFull()) {
-            double average = speedBuffer_ms.getAverage();
+            double average = speedBuffer_ms.getValue();
             double diff = Math.abs(average - trackPoint.getSpeed());
             return (trackPoint.getSpeed() < average * 10) && (diff < MAX_ACCELERATION * timeDifference);
         }
@@ -0,0 +1,158 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Time spent in zones of a sensor channel (e.g., heart rate zones).
+ * n ascending boundaries define n + 1 zones: zone i covers [boundaries[i - 1], boundaries[i]).
+ */
+public class ZoneHistogram {
+
+    private static final String SEPARATOR = ";";
+    private static final String VALUE_SEPARATOR = ",";
+
+    private final double[] boundaries;
+    private final long[] times_ms;
+
+    /**
+     * @param boundaries the ascending zone boundaries
+     */
+    public ZoneHistogram(@NonNull double[] boundaries) {
+        this.boundaries = boundaries.clone();
+        this.times_ms = new long[boundaries.length + 1];
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public ZoneHistogram(@NonNull ZoneHistogram other) {
+        boundaries = other.boundaries.clone();
+        times_ms = other.times_ms.clone();
+    }
+
+    public void add(double value, long duration_ms) {
+        if (duration_ms <= 0) {
+            return;
+        }
+        times_ms[getZone(value)] += duration_ms;
+    }
+
+    /**
+     * Adds the times of another histogram.
+     * If the boundaries differ (e.g., changed zone settings), each zone of the other histogram is attributed to the zone containing its lower boundary.
+     */
+    public void merge(@NonNull ZoneHistogram other) {
+        if (Arrays.equals(boundaries, other.boundaries)) {
+            for (int i = 0; i < times_ms.length; i++) {
+                times_ms[i] += other.times_ms[i];
+            }
+            return;
+        }
+        for (int i = 0; i < other.times_ms.length; i++) {
+            times_ms[i == 0 ? 0 : getZone(other.boundaries[i - 1])] += other.times_ms[i];
+        }
+    }
+
+    private int getZone(double value) {
+        int index = Arrays.binarySearch(boundaries, value);
+        // A value equal to a boundary belongs to the upper zone.
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int getZoneCount() {
+        return times_ms.length;
+    }
+
+    @NonNull
+    public double[] getBoundaries() {
+        return boundaries.clone();
+    }
+
+    public long getTime_ms(int zone) {
+        return times_ms[zone];
+    }
+
+    /**
+     * Encodes as text for storage: the boundaries and times, e.g., "120,140;600000,1200000,300000".
+     */
+    @NonNull
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < boundaries.length; i++) {
+            if (i > 0) {
+                builder.append(VALUE_SEPARATOR);
+            }
+            builder.append(boundaries[i]);
+        }
+        builder.append(SEPARATOR);
+        for (int i = 0; i < times_ms.length; i++) {
+            if (i > 0) {
+                builder.append(VALUE_SEPARATOR);
+            }
+            builder.append(times_ms[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the histogram or null if the text cannot be decoded
+     */
+    @Nullable
+    public static ZoneHistogram decode(@Nullable String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split(SEPARATOR, -1);
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            double[] boundaries = parseBoundaries(parts[0]);
+            String[] times = parts[1].split(VALUE_SEPARATOR);
+            if (boundaries == null || times.length != boundaries.length + 1) {
+                return null;
+            }
+            ZoneHistogram zoneHistogram = new ZoneHistogram(boundaries);
+            for (int i = 0; i < times.length; i++) {
+                zoneHistogram.times_ms[i] = Long.parseLong(times[i]);
+            }
+            return zoneHistogram;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses comma-separated zone boundaries (e.g., from the settings).
+     *
+     * @return the boundaries or null if empty, not ascending, or not a number
+     */
+    @Nullable
+    public static double[] parseBoundaries(@Nullable String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String[] values = text.split(VALUE_SEPARATOR);
+        double[] boundaries = new double[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                boundaries[i] = Double.parseDouble(values[i].trim());
+                if (Double.isNaN(boundaries[i]) || (i > 0 && boundaries[i] <= boundaries[i - 1])) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return boundaries;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ZoneHistogram{" + encode() + "}";
+    }
+}
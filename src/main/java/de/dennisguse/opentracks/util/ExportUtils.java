@@ -13,7 +13,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
@@ -33,9 +35,31 @@ public class ExportUtils {
     }
 
     public static boolean exportTrack(Context context, TrackFileFormat trackFileFormat, DocumentFile directory, Track track) {
-        TrackExporter trackExporter = trackFileFormat.newTrackExporter(context);
+        return exportTrack(context, trackFileFormat, directory, track, getAllFileUris(context, directory.getUri()));
+    }
+
+    /**
+     * Exports a track without querying the directory (for bulk exports).
+     *
+     * @param directoryFiles the files of the directory (see {@link #getAllFileUris(Context, Uri)}); a created file is added. Must be thread-safe if used concurrently.
+     */
+    public static boolean exportTrack(Context context, TrackFileFormat trackFileFormat, DocumentFile directory, Track track, Map<String, Uri> directoryFiles) {
+        String exportFileName = getExportFileNameByTrackId(track.getId(), trackFileFormat.getExtension());
+        Uri exportDocumentFileUri = directoryFiles.get(exportFileName);
+        if (exportDocumentFileUri == null) {
+            DocumentFile exportDocumentFile = directory.createFile(trackFileFormat.getMimeType(), exportFileName);
+            if (exportDocumentFile == null) {
+                Log.e(TAG, "Unable to create exportDocumentFile " + exportFileName);
+                return false;
+            }
+            exportDocumentFileUri = exportDocumentFile.getUri();
+            directoryFiles.put(exportFileName, exportDocumentFileUri);
+        }
+        return exportTrack(context, trackFileFormat, track, exportDocumentFileUri);
+    }
 
-        Uri exportDocumentFileUri = getExportDocumentFileUri(context, track.getId(), trackFileFormat, directory);
+    private static boolean exportTrack(Context context, TrackFileFormat trackFileFormat, Track track, Uri exportDocumentFileUri) {
+        TrackExporter trackExporter = trackFileFormat.newTrackExporter(context);
 
         try (OutputStream outputStream = context.getContentResolver().openOutputStream(exportDocumentFileUri)) {
             if (trackExporter.writeTrack(track, outputStream)) {
@@ -61,60 +85,38 @@ public class ExportUtils {
     }
 
     public static List<String> getAllFiles(Context context, Uri directoryUri) {
-        List<String> fileNames = new ArrayList<>();
+        return new ArrayList<>(getAllFileUris(context, directoryUri).keySet());
+    }
+
+    /**
+     * Lists the files of a directory with a single query.
+     *
+     * @return file name to document uri
+     */
+    public static Map<String, Uri> getAllFileUris(Context context, Uri directoryUri) {
+        Map<String, Uri> files = new HashMap<>();
         final ContentResolver resolver = context.getContentResolver();
         final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(directoryUri, DocumentsContract.getDocumentId(directoryUri));
 
-        try {
-            Cursor c = resolver.query(
-                    childrenUri,
-                    new String[] { DocumentsContract.Document.COLUMN_DISPLAY_NAME },
-                    null,null, null
-            );
+        try (Cursor c = resolver.query(
+                childrenUri,
+                new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_DISPLAY_NAME },
+                null,null, null
+        )) {
             while (c.moveToNext()) {
-                fileNames.add(c.getString(0));
+                String documentName = c.getString(1);
+                if (documentName != null) {
+                    files.put(documentName, DocumentsContract.buildDocumentUriUsingTree(directoryUri, c.getString(0)));
+                }
             }
         } catch (Exception e) {
             Log.w(TAG, "Failed query: " + e);
         }
 
-        return fileNames;
+        return files;
     }
 
-    private static Uri getExportDocumentFileUri(Context context, Track.Id trackId, TrackFileFormat trackFileFormat, DocumentFile directory) {
-        String exportFileName = getExportFileNameByTrackId(trackId, trackFileFormat.getExtension());
-        Uri exportDocumentFileUri = findFile(context, directory.getUri(), exportFileName);
-        if (exportDocumentFileUri == null) {
-            exportDocumentFileUri = directory.createFile(trackFileFormat.getMimeType(), exportFileName).getUri();
-        }
-        return exportDocumentFileUri;
-    }
-
-    private static String getExportFileNameByTrackId(Track.Id trackId, String trackFileFormatExtension) {
+    public static String getExportFileNameByTrackId(Track.Id trackId, String trackFileFormatExtension) {
         return trackId.getId() + "." + trackFileFormatExtension;
     }
-
-    private static Uri findFile(Context context, Uri directoryUri, String exportFileName) {
-        final ContentResolver resolver = context.getContentResolver();
-        final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(directoryUri, DocumentsContract.getDocumentId(directoryUri));
-
-        try {
-            Cursor c = resolver.query(
-                    childrenUri,
-                    new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_DISPLAY_NAME },
-                    null,null, null
-            );
-            while (c.moveToNext()) {
-                final String documentId = c.getString(0);
-                final String documentName = c.getString(1);
-                if (documentName.equals(exportFileName)) {
-                    return DocumentsContract.buildDocumentUriUsingTree(directoryUri, documentId);
-                }
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Find file error: failed query: " + e);
-        }
-
-        return null;
-    }
 }
@@ -0,0 +1,116 @@
+package de.dennisguse.opentracks.util;
+
+/**
+ * Batch versions of {@link GeodesyUtils} over primitive arrays (index i is the i-th trackPoint).
+ * <p>
+ * The kernels do not allocate; the caller provides (and should reuse) the output arrays.
+ * The main loop of {@link #distances(double[], double[], int, double[])} has no branches; besides arithmetic it only calls {@link Math#rint(double)} and {@link Math#sqrt(double)} (usually intrinsics) and {@link Math#toRadians(double)} (a multiplication).
+ * The cosine and the haversine fallback for long segments are evaluated in separate loops.
+ * <p>
+ * The per-segment kernels write the value of the segment from i-1 to i at index i; index 0 is always 0.
+ * Invalid trackPoints (e.g., pause/resume markers) are not detected; the values of the adjacent segments must be ignored by the caller.
+ */
+public class GeodesyKernels {
+
+    private GeodesyKernels() {
+    }
+
+    /**
+     * Computes the distances (in meters) between consecutive coordinates (in degrees).
+     * Same results as {@link GeodesyUtils#distance(double, double, double, double)}.
+     */
+    public static void distances(double[] latitudes, double[] longitudes, int length, double[] out) {
+        if (length <= 0) {
+            return;
+        }
+
+        // 1. cosine of the mean latitude of each segment (stored in out).
+        out[0] = 0;
+        for (int i = 1; i < length; i++) {
+            out[i] = Math.cos(Math.toRadians((latitudes[i - 1] + latitudes[i]) * 0.5));
+        }
+
+        // 2. planar approximation (see GeodesyUtils); vectorizable.
+        for (int i = 1; i < length; i++) {
+            double cosMeanLatitude = out[i];
+            double deltaLatitude = latitudes[i] - latitudes[i - 1];
+            double deltaLongitude = longitudes[i] - longitudes[i - 1];
+            // Antimeridian: -180 to 180.
+            deltaLongitude -= 360 * Math.rint(deltaLongitude / 360);
+
+            double w2 = 1 - GeodesyUtils.ECCENTRICITY_SQUARED * (1 - cosMeanLatitude * cosMeanLatitude);
+            double primeVerticalRadius = GeodesyUtils.EQUATORIAL_RADIUS_M / Math.sqrt(w2);
+            double meridionalRadius = primeVerticalRadius * (1 - GeodesyUtils.ECCENTRICITY_SQUARED) / w2;
+
+            double x = Math.toRadians(deltaLongitude) * primeVerticalRadius * cosMeanLatitude;
+            double y = Math.toRadians(deltaLatitude) * meridionalRadius;
+            out[i] = Math.sqrt(x * x + y * y);
+        }
+
+        // 3. long segments (rare): haversine.
+        for (int i = 1; i < length; i++) {
+            if (out[i] >= GeodesyUtils.SHORT_DISTANCE_M) {
+                out[i] = GeodesyUtils.distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            }
+        }
+    }
+
+    /**
+     * Computes the cumulative sum of the distances; out may be distances (in place).
+     */
+    public static void cumulativeDistances(double[] distances, int length, double[] out) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += distances[i];
+            out[i] = sum;
+        }
+    }
+
+    /**
+     * Computes the speeds (in m/s) of the segments; 0 if the time difference is not positive.
+     *
+     * @param distances the distances computed by {@link #distances(double[], double[], int, double[])}
+     * @param times_ms  the times in milliseconds
+     */
+    public static void speeds(double[] distances, long[] times_ms, int length, double[] out) {
+        if (length <= 0) {
+            return;
+        }
+        out[0] = 0;
+        for (int i = 1; i < length; i++) {
+            double duration_s = (times_ms[i] - times_ms[i - 1]) * UnitConversions.MS_TO_S;
+            out[i] = duration_s > 0 ? distances[i] / duration_s : 0;
+        }
+    }
+
+    /**
+     * Computes the grades (elevation difference / distance; 0.1 is 10%) of the segments; 0 if the distance is 0.
+     *
+     * @param altitudes the altitudes in meters
+     * @param distances the distances computed by {@link #distances(double[], double[], int, double[])}
+     */
+    public static void grades(double[] altitudes, double[] distances, int length, double[] out) {
+        if (length <= 0) {
+            return;
+        }
+        out[0] = 0;
+        for (int i = 1; i < length; i++) {
+            double distance = distances[i];
+            out[i] = distance > 0 ? (altitudes[i] - altitudes[i - 1]) / distance : 0;
+        }
+    }
+
+    /**
+     * Computes the initial bearings (in degrees east of true north; -180 to 180) of the segments.
+     * Same results as {@link GeodesyUtils#bearing(double, double, double, double)}.
+     */
+    public static void bearings(double[] latitudes, double[] longitudes, int length, double[] out) {
+        if (length <= 0) {
+            return;
+        }
+        out[0] = 0;
+        for (int i = 1; i < length; i++) {
+            out[i] = GeodesyUtils.bearing(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+    }
+}
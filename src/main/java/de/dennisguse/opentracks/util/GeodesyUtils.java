@@ -0,0 +1,78 @@
+package de.dennisguse.opentracks.util;
+
+/**
+ * Distances and bearings on the WGS84 ellipsoid without {@link android.location.Location} (i.e., usable on a plain JVM).
+ * <p>
+ * {@link android.location.Location#distanceTo(android.location.Location)} solves the inverse geodesic problem iteratively (Vincenty).
+ * Consecutive trackPoints are usually only meters apart; for such short hops the ellipsoid can be approximated locally by a plane scaled by the radii of curvature at the mean latitude (one cosine and two square roots).
+ * Longer distances use the haversine formula on a sphere with the mean Earth radius.
+ * The error bounds compared to {@link android.location.Location} are verified in GeodesyUtilsTest.
+ */
+public class GeodesyUtils {
+
+    // WGS84
+    static final double EQUATORIAL_RADIUS_M = 6378137.0;
+    private static final double FLATTENING = 1 / 298.257223563;
+    static final double ECCENTRICITY_SQUARED = FLATTENING * (2 - FLATTENING);
+
+    private static final double MEAN_RADIUS_M = 6371008.8;
+
+    // The planar approximation is used below.
+    static final double SHORT_DISTANCE_M = 10000;
+
+    private GeodesyUtils() {
+    }
+
+    /**
+     * @return the distance in meters between two coordinates (in degrees).
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = latitude2 - latitude1;
+        double deltaLongitude = normalizeLongitude(longitude2 - longitude1);
+        double cosMeanLatitude = Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+
+        // Radii of curvature: prime vertical (east-west) and meridional (north-south).
+        double w2 = 1 - ECCENTRICITY_SQUARED * (1 - cosMeanLatitude * cosMeanLatitude);
+        double primeVerticalRadius = EQUATORIAL_RADIUS_M / Math.sqrt(w2);
+        double meridionalRadius = primeVerticalRadius * (1 - ECCENTRICITY_SQUARED) / w2;
+
+        double x = Math.toRadians(deltaLongitude) * primeVerticalRadius * cosMeanLatitude;
+        double y = Math.toRadians(deltaLatitude) * meridionalRadius;
+        double distance = Math.sqrt(x * x + y * y);
+        if (distance < SHORT_DISTANCE_M) {
+            return distance;
+        }
+
+        double sinHalfDeltaLatitude = Math.sin(Math.toRadians(deltaLatitude) / 2);
+        double sinHalfDeltaLongitude = Math.sin(Math.toRadians(deltaLongitude) / 2);
+        double a = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+        return 2 * MEAN_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @return the initial bearing in degrees east of true north (-180 to 180) from the first to the second coordinate (in degrees).
+     */
+    public static double bearing(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double deltaLambda = Math.toRadians(normalizeLongitude(longitude2 - longitude1));
+
+        double y = Math.sin(deltaLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLambda);
+        return Math.toDegrees(Math.atan2(y, x));
+    }
+
+    /**
+     * @return the longitude difference in the range -180 to 180 (i.e., crossing the antimeridian).
+     */
+    private static double normalizeLongitude(double deltaLongitude) {
+        if (deltaLongitude > 180) {
+            return deltaLongitude - 360;
+        }
+        if (deltaLongitude < -180) {
+            return deltaLongitude + 360;
+        }
+        return deltaLongitude;
+    }
+}
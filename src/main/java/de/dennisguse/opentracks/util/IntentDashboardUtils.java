@@ -50,6 +50,12 @@ public class IntentDashboardUtils {
             return;
         }
 
+        // Other apps query the trackPoints table directly; so archived trackPoints must be restored.
+        ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+        for (Track.Id trackId : trackIds) {
+            contentProviderUtils.restoreTrack(trackId);
+        }
+
         String trackIdList = ContentProviderUtils.formatIdListForUri(trackIds);
 
         ArrayList<Uri> uris = new ArrayList<>();
@@ -19,6 +19,7 @@ package de.dennisguse.opentracks.util;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.text.format.DateUtils;
 import android.view.Gravity;
@@ -29,6 +30,9 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import de.dennisguse.opentracks.R;
+import de.dennisguse.opentracks.content.TrackThumbnailCache;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPreview;
 
 /**
  * Utilities to display a list item.
@@ -39,6 +43,9 @@ public class ListItemUtils {
 
     private static final int LIST_PREFERRED_ITEM_HEIGHT_DEFAULT = 128;
 
+    // Match list_item_preview in list_item.xml
+    private static final int PREVIEW_SIZE_DP = 48;
+
     private ListItemUtils() {
     }
 
@@ -151,6 +158,41 @@ public class ListItemUtils {
         params.gravity = timeDistanceTextView.getVisibility() == View.GONE && markerCountIcon.getVisibility() == View.GONE ? Gravity.TOP : Gravity.CENTER_VERTICAL;
     }
 
+    /**
+     * Sets the track preview of a list item.
+     * If the thumbnail is not in memory, it is loaded in the background and set unless the view was recycled for another item meanwhile.
+     *
+     * @param context      the context
+     * @param view         the list item view
+     * @param trackId      the track id
+     * @param trackPreview the track preview; if null, no preview is shown
+     */
+    public static void setPreview(Context context, View view, Track.Id trackId, TrackPreview trackPreview) {
+        ImageView previewImageView = view.findViewById(R.id.list_item_preview);
+
+        int size = (int) (PREVIEW_SIZE_DP * context.getResources().getDisplayMetrics().density);
+        int color = context.getResources().getColor(R.color.colorAccent);
+        TrackThumbnailCache trackThumbnailCache = TrackThumbnailCache.getInstance(context);
+        Bitmap preview = trackThumbnailCache.getIfCached(trackId, trackPreview, size, size, color);
+
+        previewImageView.setTag(trackPreview);
+        setPreview(previewImageView, preview);
+        if (preview == null && trackPreview != null && !trackPreview.isEmpty()) {
+            // Keep the space of the preview while loading; so the item's layout does not change.
+            previewImageView.setVisibility(View.VISIBLE);
+            trackThumbnailCache.load(trackId, trackPreview, size, size, color, bitmap -> {
+                if (previewImageView.getTag() == trackPreview) {
+                    setPreview(previewImageView, bitmap);
+                }
+            });
+        }
+    }
+
+    private static void setPreview(ImageView previewImageView, Bitmap preview) {
+        previewImageView.setVisibility(preview != null ? View.VISIBLE : View.GONE);
+        previewImageView.setImageBitmap(preview);
+    }
+
     /**
      * Gets a string for share owner, total time, and total distance.
      *
@@ -16,6 +16,11 @@
 package de.dennisguse.opentracks.util;
 
 import android.location.Location;
+import android.location.LocationManager;
+
+import androidx.annotation.NonNull;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
 
 /**
  * Utility class for decimating tracks at a given level of precision.
@@ -40,7 +45,6 @@ public class LocationUtils {
      * @param location the location to test
      * @return true if the location is a valid location.
      */
-    //TODO Move to TrackPoint
     @Deprecated //See #316
     public static boolean isValidLocation(Location location) {
         return location != null
@@ -49,11 +53,59 @@ public class LocationUtils {
     }
 
     /**
-     * Returns true if a location is old.
+     * Returns true if a trackPoint is old.
      *
-     * @param location the location
+     * @param trackPoint the trackPoint
+     */
+    public static boolean isLocationOld(TrackPoint trackPoint) {
+        return trackPoint == null || !trackPoint.hasValidLocation() || (System.currentTimeMillis() - trackPoint.getTime() > MAX_LOCATION_AGE_MS);
+    }
+
+    /**
+     * Converts a {@link Location} (e.g., from the {@link LocationManager}) into a {@link TrackPoint}.
+     */
+    @NonNull
+    public static TrackPoint createTrackPoint(@NonNull Location location) {
+        TrackPoint trackPoint = new TrackPoint();
+        trackPoint.setLatitude(location.getLatitude());
+        trackPoint.setLongitude(location.getLongitude());
+        trackPoint.setTime(location.getTime());
+        if (location.hasAltitude()) {
+            trackPoint.setAltitude(location.getAltitude());
+        }
+        if (location.hasSpeed()) {
+            trackPoint.setSpeed(location.getSpeed());
+        }
+        if (location.hasBearing()) {
+            trackPoint.setBearing(location.getBearing());
+        }
+        if (location.hasAccuracy()) {
+            trackPoint.setAccuracy(location.getAccuracy());
+        }
+        return trackPoint;
+    }
+
+    /**
+     * Converts a {@link TrackPoint} into a {@link Location} (e.g., for a {@link de.dennisguse.opentracks.content.data.Marker}).
      */
-    public static boolean isLocationOld(Location location) {
-        return !LocationUtils.isValidLocation(location) || (System.currentTimeMillis() - location.getTime() > MAX_LOCATION_AGE_MS);
+    @NonNull
+    public static Location createLocation(@NonNull TrackPoint trackPoint) {
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setLatitude(trackPoint.getLatitude());
+        location.setLongitude(trackPoint.getLongitude());
+        location.setTime(trackPoint.getTime());
+        if (trackPoint.hasAltitude()) {
+            location.setAltitude(trackPoint.getAltitude());
+        }
+        if (trackPoint.hasSpeed()) {
+            location.setSpeed(trackPoint.getSpeed());
+        }
+        if (trackPoint.hasBearing()) {
+            location.setBearing(trackPoint.getBearing());
+        }
+        if (trackPoint.hasAccuracy()) {
+            location.setAccuracy(trackPoint.getAccuracy());
+        }
+        return location;
     }
 }
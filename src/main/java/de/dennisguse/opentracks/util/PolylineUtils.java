@@ -0,0 +1,118 @@
+package de.dennisguse.opentracks.util;
+
+import java.util.PriorityQueue;
+
+/**
+ * Utilities to simplify polylines.
+ * Coordinates are given as E6 integers (i.e., degrees * 1E6) as stored in the database.
+ */
+public class PolylineUtils {
+
+    private PolylineUtils() {
+    }
+
+    /**
+     * Simplifies a polyline using Douglas-Peucker, but instead of using a distance tolerance the segment with the largest error is split until maxVertices are selected.
+     * The first and the last vertex are always kept.
+     * Runs in O(n log n).
+     *
+     * @param latitudesE6  the latitudes
+     * @param longitudesE6 the longitudes
+     * @param count        the number of vertices to consider (starting at index 0)
+     * @param maxVertices  the maximal number of vertices to keep (at least 2)
+     * @return for each vertex true, if it should be kept
+     */
+    public static boolean[] simplify(int[] latitudesE6, int[] longitudesE6, int count, int maxVertices) {
+        boolean[] keep = new boolean[count];
+        if (count <= maxVertices) {
+            for (int i = 0; i < count; i++) {
+                keep[i] = true;
+            }
+            return keep;
+        }
+
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+
+        PriorityQueue<Segment> queue = new PriorityQueue<>(maxVertices, (s1, s2) -> Double.compare(s2.error, s1.error));
+        Segment first = Segment.create(latitudesE6, longitudesE6, 0, count - 1);
+        if (first != null) {
+            queue.add(first);
+        }
+
+        while (kept < maxVertices && !queue.isEmpty()) {
+            Segment segment = queue.poll();
+            keep[segment.splitIndex] = true;
+            kept++;
+
+            Segment left = Segment.create(latitudesE6, longitudesE6, segment.start, segment.splitIndex);
+            if (left != null) {
+                queue.add(left);
+            }
+            Segment right = Segment.create(latitudesE6, longitudesE6, segment.splitIndex, segment.end);
+            if (right != null) {
+                queue.add(right);
+            }
+        }
+        return keep;
+    }
+
+    /**
+     * Squared distance of point p to the segment (a, b) in an equirectangular projection (longitude scaled by cos(latitude)).
+     * Good enough for ranking vertices; not a geodesic distance.
+     */
+    static double squaredSegmentDistance(double pLat, double pLon, double aLat, double aLon, double bLat, double bLon, double lonScale) {
+        double px = pLon * lonScale;
+        double ax = aLon * lonScale;
+        double bx = bLon * lonScale;
+
+        double dx = bx - ax;
+        double dy = bLat - aLat;
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return (px - ax) * (px - ax) + (pLat - aLat) * (pLat - aLat);
+        }
+
+        double t = ((px - ax) * dx + (pLat - aLat) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double x = ax + t * dx;
+        double y = aLat + t * dy;
+        return (px - x) * (px - x) + (pLat - y) * (pLat - y);
+    }
+
+    private static class Segment {
+        final int start;
+        final int end;
+        final int splitIndex;
+        final double error;
+
+        private Segment(int start, int end, int splitIndex, double error) {
+            this.start = start;
+            this.end = end;
+            this.splitIndex = splitIndex;
+            this.error = error;
+        }
+
+        /**
+         * @return the segment with its vertex of maximal error or null if there is no vertex between start and end.
+         */
+        static Segment create(int[] latitudesE6, int[] longitudesE6, int start, int end) {
+            if (end - start < 2) {
+                return null;
+            }
+
+            double lonScale = Math.cos(Math.toRadians(latitudesE6[start] / 1E6));
+            int splitIndex = -1;
+            double maxError = -1;
+            for (int i = start + 1; i < end; i++) {
+                double error = squaredSegmentDistance(latitudesE6[i], longitudesE6[i], latitudesE6[start], longitudesE6[start], latitudesE6[end], longitudesE6[end], lonScale);
+                if (error > maxError) {
+                    maxError = error;
+                    splitIndex = i;
+                }
+            }
+            return new Segment(start, end, splitIndex, maxError);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.content.SharedPreferences.Editor;
 import android.net.Uri;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.documentfile.provider.DocumentFile;
 import androidx.preference.PreferenceManager;
@@ -29,6 +30,8 @@ import androidx.preference.PreferenceManager;
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.stats.SmoothingFilter;
+import de.dennisguse.opentracks.stats.ZoneHistogram;
 
 /**
  * Utilities to access preferences stored in {@link SharedPreferences}.
@@ -211,6 +214,23 @@ public class PreferencesUtils {
         return STATS_UNIT.equals(getString(context, R.string.stats_units_key, STATS_UNIT));
     }
 
+    public static SmoothingFilter.Type getElevationSmoothing(Context context) {
+        return getSmoothing(context, R.string.stats_elevation_smoothing_key);
+    }
+
+    public static SmoothingFilter.Type getSpeedSmoothing(Context context) {
+        return getSmoothing(context, R.string.stats_speed_smoothing_key);
+    }
+
+    private static SmoothingFilter.Type getSmoothing(Context context, int keyId) {
+        final String SMOOTHING_DEFAULT = context.getString(R.string.stats_smoothing_default);
+        try {
+            return SmoothingFilter.Type.valueOf(getString(context, keyId, SMOOTHING_DEFAULT));
+        } catch (IllegalArgumentException e) {
+            return SmoothingFilter.Type.valueOf(SMOOTHING_DEFAULT);
+        }
+    }
+
     public static boolean isReportSpeed(Context context, String category) {
         final String STATS_RATE_DEFAULT = context.getString(R.string.stats_rate_default);
         String currentStatsRate = getString(context, R.string.stats_rate_key, STATS_RATE_DEFAULT);
@@ -262,6 +282,32 @@ public class PreferencesUtils {
         return getInt(context, R.string.settings_sensor_bluetooth_cycling_speed_wheel_circumference_key, DEFAULT);
     }
 
+    /**
+     * @return the heart rate zone boundaries (bpm) or null if disabled (empty)
+     */
+    @Nullable
+    public static double[] getHeartRateZones(Context context) {
+        return getZones(context, R.string.settings_sensor_heart_rate_zones_key, R.string.settings_sensor_heart_rate_zones_default);
+    }
+
+    /**
+     * @return the power zone boundaries (W) or null if disabled (empty)
+     */
+    @Nullable
+    public static double[] getPowerZones(Context context) {
+        return getZones(context, R.string.settings_sensor_power_zones_key, R.string.settings_sensor_power_zones_default);
+    }
+
+    private static double[] getZones(Context context, int keyId, int defaultId) {
+        final String DEFAULT = context.getString(defaultId);
+        String zones = getString(context, keyId, DEFAULT);
+        if (zones.trim().isEmpty()) {
+            return null;
+        }
+        double[] boundaries = ZoneHistogram.parseBoundaries(zones);
+        return boundaries != null ? boundaries : ZoneHistogram.parseBoundaries(DEFAULT);
+    }
+
     public static boolean shouldShowStatsOnLockscreen(Context context) {
         final boolean STATS_SHOW_ON_LOCKSCREEN_DEFAULT = context.getResources().getBoolean(R.bool.stats_show_on_lockscreen_while_recording_default);
         return getBoolean(context, R.string.stats_show_on_lockscreen_while_recording_key, STATS_SHOW_ON_LOCKSCREEN_DEFAULT);
@@ -305,6 +351,14 @@ public class PreferencesUtils {
         return getInt(context, R.string.max_recording_distance_key, MAX_RECORDING_DISTANCE);
     }
 
+    /**
+     * @return the maximal cross-track distance (m) of trackPoints dropped while recording; 0 if disabled.
+     */
+    public static int getRecordingSimplificationTolerance(Context context) {
+        final int RECORDING_SIMPLIFICATION_TOLERANCE = Integer.parseInt(context.getResources().getString(R.string.recording_simplification_tolerance_default));
+        return getInt(context, R.string.recording_simplification_tolerance_key, RECORDING_SIMPLIFICATION_TOLERANCE);
+    }
+
     public static int getMinRecordingInterval(Context context) {
         final int MIN_RECORDING_INTERVAL = Integer.parseInt(context.getResources().getString(R.string.min_recording_interval_default));
         return getInt(context, R.string.min_recording_interval_key, MIN_RECORDING_INTERVAL);
@@ -332,6 +386,16 @@ public class PreferencesUtils {
         return getBoolean(context, R.string.post_workout_export_enabled_key, INSTANT_POST_WORKOUT_EXPORT_DEFAULT);
     }
 
+    public static boolean shouldExportIncremental(Context context) {
+        final boolean EXPORT_INCREMENTAL_DEFAULT = context.getResources().getBoolean(R.bool.export_incremental_default);
+        return getBoolean(context, R.string.export_incremental_key, EXPORT_INCREMENTAL_DEFAULT);
+    }
+
+    public static boolean shouldExportIncrementalDelete(Context context) {
+        final boolean EXPORT_INCREMENTAL_DELETE_DEFAULT = context.getResources().getBoolean(R.bool.export_incremental_delete_default);
+        return getBoolean(context, R.string.export_incremental_delete_key, EXPORT_INCREMENTAL_DELETE_DEFAULT);
+    }
+
     public static TrackFileFormat getExportTrackFileFormat(Context context) {
         final String TRACKFILEFORMAT_NAME_DEFAULT = getString(context, R.string.export_trackfileformat_default, null);
         String trackFileFormatName = getString(context, R.string.export_trackfileformat_key, TRACKFILEFORMAT_NAME_DEFAULT);
@@ -347,6 +411,11 @@ public class PreferencesUtils {
         return getBoolean(context, R.string.import_prevent_reimport_key, defaultValue);
     }
 
+    public static boolean shouldArchiveTrackPoints(Context context) {
+        final boolean ARCHIVE_TRACKPOINTS_DEFAULT = context.getResources().getBoolean(R.bool.archive_trackpoints_default);
+        return getBoolean(context, R.string.archive_trackpoints_key, ARCHIVE_TRACKPOINTS_DEFAULT);
+    }
+
     /**
      * @return {@link androidx.appcompat.app.AppCompatDelegate}.MODE_*
      */
@@ -371,6 +440,39 @@ public class PreferencesUtils {
         return recordingTrackId.getId() != RECORDING_TRACK_ID_DEFAULT;
     }
 
+    /**
+     * The {@link de.dennisguse.opentracks.stats.TrackStatisticsUpdater#STATISTICS_VERSION} of the stored track statistics; 0 if never recomputed.
+     */
+    public static int getStatisticsVersion(Context context) {
+        return getInt(context, R.string.statistics_version_key, 0);
+    }
+
+    public static void setStatisticsVersion(Context context, int version) {
+        setInt(context, R.string.statistics_version_key, version);
+    }
+
+    /**
+     * The id of the last track whose statistics were recomputed (tracks are recomputed in order of their id); -1L if none.
+     */
+    public static long getStatisticsRecomputeTrackId(Context context) {
+        return getSharedPreferences(context).getLong(getKey(context, R.string.statistics_recompute_track_id_key), -1L);
+    }
+
+    public static void setStatisticsRecomputeTrackId(Context context, long trackId) {
+        getSharedPreferences(context).edit().putLong(getKey(context, R.string.statistics_recompute_track_id_key), trackId).apply();
+    }
+
+    /**
+     * The id of the last track that was checked for missing best efforts (tracks are checked in order of their id); -1L if none.
+     */
+    public static long getBestEffortsCheckedTrackId(Context context) {
+        return getSharedPreferences(context).getLong(getKey(context, R.string.best_efforts_checked_track_id_key), -1L);
+    }
+
+    public static void setBestEffortsCheckedTrackId(Context context, long trackId) {
+        getSharedPreferences(context).edit().putLong(getKey(context, R.string.best_efforts_checked_track_id_key), trackId).apply();
+    }
+
     public static void resetPreferences(Context context, boolean readAgain) {
         if (readAgain) {
             // We want to really clear settings now.
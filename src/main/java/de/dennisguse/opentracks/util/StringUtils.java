@@ -46,6 +46,12 @@ public class StringUtils {
 
     private static final String COORDINATE_DEGREE = "\u00B0";
 
+    // Integers with up to 15 (double) or 7 (float) digits and powers of ten up to 10^22 (double) or 10^10 (float) are exactly representable.
+    private static final int MAX_DOUBLE_DIGITS = 15;
+    private static final int MAX_FLOAT_DIGITS = 7;
+    private static final double[] DOUBLE_POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final float[] FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
     private StringUtils() {
     }
 
@@ -262,6 +268,128 @@ public class StringUtils {
      * @param xmlDateTime the XML date time string
      */
     public static long parseTime(String xmlDateTime) {
+        char[] chars = xmlDateTime.toCharArray();
+        return parseTime(chars, 0, chars.length);
+    }
+
+    /**
+     * Same as {@link #parseTime(String)} for chars[start, end).
+     * Timestamps like "2010-05-04T03:02:01.352Z", "2010-05-04T03:02:01+01:00", and "2010-05-04T03:02:01" are parsed without creating objects; others using {@link DateTimeFormatter#ISO_DATE_TIME}.
+     */
+    public static long parseTime(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        long time = parseTimeFast(chars, start, end);
+        if (time != Long.MIN_VALUE) {
+            return time;
+        }
+        return parseTimeIsoDateTime(new String(chars, start, end - start));
+    }
+
+    /**
+     * @return the time or Long.MIN_VALUE if the format is not supported (or invalid).
+     */
+    private static long parseTimeFast(char[] chars, int start, int end) {
+        if (end - start < 19
+                || chars[start + 4] != '-' || chars[start + 7] != '-' || chars[start + 10] != 'T'
+                || chars[start + 13] != ':' || chars[start + 16] != ':') {
+            return Long.MIN_VALUE;
+        }
+
+        int year = parseDigits(chars, start, 4);
+        int month = parseDigits(chars, start + 5, 2);
+        int day = parseDigits(chars, start + 8, 2);
+        int hour = parseDigits(chars, start + 11, 2);
+        int minute = parseDigits(chars, start + 14, 2);
+        int second = parseDigits(chars, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+
+        int position = start + 19;
+        int millis = 0;
+        if (position < end && chars[position] == '.') {
+            position++;
+            int digits = 0;
+            while (position < end && chars[position] >= '0' && chars[position] <= '9') {
+                if (digits < 3) {
+                    millis = millis * 10 + (chars[position] - '0');
+                }
+                digits++;
+                position++;
+            }
+            if (digits == 0 || digits > 9) {
+                return Long.MIN_VALUE;
+            }
+            for (; digits < 3; digits++) {
+                millis *= 10;
+            }
+        }
+
+        int offset_s;
+        if (position == end) {
+            Log.w(TAG, "Date does not contain timezone information: using UTC.");
+            offset_s = 0;
+        } else if (chars[position] == 'Z' && position + 1 == end) {
+            offset_s = 0;
+        } else if ((chars[position] == '+' || chars[position] == '-') && position + 6 == end && chars[position + 3] == ':') {
+            int offsetHours = parseDigits(chars, position + 1, 2);
+            int offsetMinutes = parseDigits(chars, position + 4, 2);
+            if (offsetHours < 0 || offsetHours > 17 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return Long.MIN_VALUE;
+            }
+            offset_s = (chars[position] == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+        } else {
+            return Long.MIN_VALUE;
+        }
+
+        // Days since epoch; see http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+
+        return ((days * 86400 + hour * 3600 + minute * 60 + second) - offset_s) * 1000 + millis;
+    }
+
+    /**
+     * @return the value of the digits or -1 if there is a non-digit.
+     */
+    private static int parseDigits(char[] chars, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static long parseTimeIsoDateTime(String xmlDateTime) {
         try {
             TemporalAccessor t = DateTimeFormatter.ISO_DATE_TIME.parseBest(xmlDateTime, ZonedDateTime::from, LocalDateTime::from);
             if (t instanceof LocalDateTime) {
@@ -275,6 +403,99 @@ public class StringUtils {
         }
     }
 
+    /**
+     * Same as {@link Double#parseDouble(String)} for chars[start, end).
+     * Plain decimal numbers with up to 15 significant digits (e.g., coordinates) are parsed without creating a String; the result is exact, as mantissa and power of ten are exactly representable.
+     */
+    public static double parseDouble(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        long mantissa = parseMantissa(chars, start, end, MAX_DOUBLE_DIGITS);
+        if (mantissa >= 0) {
+            int fractionDigits = parsedFractionDigits(chars, start, end);
+            if (fractionDigits < DOUBLE_POWERS_OF_TEN.length) {
+                double value = mantissa / DOUBLE_POWERS_OF_TEN[fractionDigits];
+                return chars[start] == '-' ? -value : value;
+            }
+        }
+        return Double.parseDouble(new String(chars, start, end - start));
+    }
+
+    /**
+     * Same as {@link Float#parseFloat(String)} for chars[start, end).
+     * Plain decimal numbers with up to 7 significant digits (e.g., heart rate) are parsed without creating a String.
+     */
+    public static float parseFloat(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        long mantissa = parseMantissa(chars, start, end, MAX_FLOAT_DIGITS);
+        if (mantissa >= 0) {
+            int fractionDigits = parsedFractionDigits(chars, start, end);
+            if (fractionDigits < FLOAT_POWERS_OF_TEN.length) {
+                float value = mantissa / FLOAT_POWERS_OF_TEN[fractionDigits];
+                return chars[start] == '-' ? -value : value;
+            }
+        }
+        return Float.parseFloat(new String(chars, start, end - start));
+    }
+
+    /**
+     * Parses a plain decimal number ([+-]digits[.digits]) ignoring the decimal point.
+     *
+     * @return the mantissa or -1 if not a plain decimal number or more than maxDigits significant digits.
+     */
+    private static long parseMantissa(char[] chars, int start, int end, int maxDigits) {
+        int i = start;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        boolean hasDigits = false;
+        boolean hasDecimalPoint = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                if (mantissa == 0 && c == '0') {
+                    continue;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                significantDigits++;
+                if (significantDigits > maxDigits) {
+                    return -1;
+                }
+            } else if (c == '.' && !hasDecimalPoint) {
+                hasDecimalPoint = true;
+            } else {
+                return -1;
+            }
+        }
+        return hasDigits ? mantissa : -1;
+    }
+
+    /**
+     * @return the number of digits after the decimal point of a plain decimal number.
+     */
+    private static int parsedFractionDigits(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] == '.') {
+                return end - i - 1;
+            }
+        }
+        return 0;
+    }
+
     /**
      * Gets the time as an array of three integers.
      * Index 0 contains the number of seconds, index 1 contains the number of minutes, and index 2 contains the number of hours.
@@ -0,0 +1,47 @@
+package de.dennisguse.opentracks.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Distances between consecutive {@link TrackPoint}s computed in one batch by {@link GeodesyKernels}.
+ * The arrays are reused; so an instance should be kept for repeated computations.
+ */
+public class TrackPointDistances {
+
+    private double[] latitudes = new double[0];
+    private double[] longitudes = new double[0];
+    private double[] distances = new double[0];
+    private int size = 0;
+
+    public void compute(@NonNull List<TrackPoint> trackPoints) {
+        size = trackPoints.size();
+        if (distances.length < size) {
+            int capacity = Math.max(size, 2 * distances.length);
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            distances = new double[capacity];
+        }
+
+        for (int i = 0; i < size; i++) {
+            TrackPoint trackPoint = trackPoints.get(i);
+            latitudes[i] = trackPoint.getLatitude();
+            longitudes[i] = trackPoint.getLongitude();
+        }
+        GeodesyKernels.distances(latitudes, longitudes, size, distances);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the distance in meters between the trackPoints index - 1 and index (0 for index 0); meaningless if one of them has no valid location.
+     */
+    public double get(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,77 @@
+package de.dennisguse.opentracks.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Variable-length integer encoding (7 bits per byte, least significant group first) and zig-zag encoding for signed values.
+ * Used to store deltas compactly in blobs.
+ */
+public class VarIntUtils {
+
+    private VarIntUtils() {
+    }
+
+    public static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeVarInt(ByteArrayOutputStream outputStream, int value) {
+        while ((value & ~0x7F) != 0) {
+            outputStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    public static void writeVarLong(ByteArrayOutputStream outputStream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        outputStream.write((int) value);
+    }
+
+    /**
+     * @param position the position to read from; is advanced
+     * @throws ArrayIndexOutOfBoundsException if the data is truncated or malformed
+     */
+    public static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ArrayIndexOutOfBoundsException("Malformed varint");
+    }
+
+    /**
+     * @param position the position to read from; is advanced
+     * @throws ArrayIndexOutOfBoundsException if the data is truncated or malformed
+     */
+    public static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ArrayIndexOutOfBoundsException("Malformed varint");
+    }
+}
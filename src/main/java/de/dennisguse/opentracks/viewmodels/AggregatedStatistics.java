@@ -52,7 +52,8 @@ public class AggregatedStatistics {
         private int countTracks;
 
         public AggregatedStatistic(TrackStatistics trackStatistics) {
-            this.trackStatistics = trackStatistics;
+            // Copy: merging must not modify the track's statistics.
+            this.trackStatistics = new TrackStatistics(trackStatistics);
             this.countTracks = 1;
         }
 
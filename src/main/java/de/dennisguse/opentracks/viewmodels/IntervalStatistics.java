@@ -4,48 +4,81 @@ import java.util.ArrayList;
 import java.util.List;
 
 import de.dennisguse.opentracks.content.data.TrackPoint;
-import de.dennisguse.opentracks.util.LocationUtils;
+import de.dennisguse.opentracks.util.TrackPointDistances;
 import de.dennisguse.opentracks.util.UnitConversions;
 
 public class IntervalStatistics {
     private List<Interval> intervalList = new ArrayList<>();
     private float distanceInterval_m;
+    // The current interval while building
+    private Interval interval = new Interval();
+    private final TrackPointDistances trackPointDistances = new TrackPointDistances();
 
     /**
-     * @param trackPointList     the list of TrackPoint.
+     * @param trackPointList     the list of TrackPoint (valid locations only).
      * @param distanceInterval_m the meters of every interval.
      */
     public void build(List<TrackPoint> trackPointList, float distanceInterval_m) {
+        start(distanceInterval_m);
+        if (trackPointList != null) {
+            addSegment(trackPointList);
+        }
+        finish();
+    }
+
+    /**
+     * Starts building the intervals of segments (see {@link #addSegment(List)}).
+     *
+     * @param distanceInterval_m the meters of every interval.
+     */
+    public void start(float distanceInterval_m) {
         intervalList.clear();
         this.distanceInterval_m = distanceInterval_m;
+        interval = new Interval();
+    }
 
-        if (trackPointList == null || trackPointList.size() == 0) {
+    /**
+     * Adds the trackPoints of a segment; the distance and time between segments (i.e., while paused) are not counted.
+     *
+     * @param trackPointList the list of TrackPoint (valid locations only).
+     */
+    public void addSegment(List<TrackPoint> trackPointList) {
+        if (trackPointList.size() == 0) {
             return;
         }
 
-        Interval interval = new Interval();
+        trackPointDistances.compute(trackPointList);
+
         interval.gain_m += trackPointList.get(0).hasElevationGain() ? trackPointList.get(0).getElevationGain() : 0;
         for (int i = 1; i < trackPointList.size(); i++) {
             TrackPoint prevTrackPoint = trackPointList.get(i - 1);
             TrackPoint trackPoint = trackPointList.get(i);
 
-            if (LocationUtils.isValidLocation(trackPoint.getLocation()) && LocationUtils.isValidLocation(prevTrackPoint.getLocation())) {
-                interval.distance_m += prevTrackPoint.distanceTo(trackPoint);
-                interval.time_ms += trackPoint.getTime() - prevTrackPoint.getTime();
-                interval.gain_m += trackPoint.hasElevationGain() ? trackPoint.getElevationGain() : 0;
+            // The stored distance also covers trackPoints in between that were not loaded (sampled out).
+            if (trackPoint.hasCumulativeStatistics() && prevTrackPoint.hasCumulativeStatistics()) {
+                interval.distance_m += trackPoint.getCumulativeDistance_m() - prevTrackPoint.getCumulativeDistance_m();
+            } else {
+                interval.distance_m += trackPointDistances.get(i);
+            }
+            interval.time_ms += trackPoint.getTime() - prevTrackPoint.getTime();
+            interval.gain_m += trackPoint.hasElevationGain() ? trackPoint.getElevationGain() : 0;
 
-                if (interval.distance_m >= distanceInterval_m) {
-                    float adjustFactor = distanceInterval_m / interval.distance_m;
-                    Interval adjustedInterval = new Interval(interval);
-                    adjustedInterval.adjust(adjustFactor);
+            if (interval.distance_m >= distanceInterval_m) {
+                float adjustFactor = distanceInterval_m / interval.distance_m;
+                Interval adjustedInterval = new Interval(interval);
+                adjustedInterval.adjust(adjustFactor);
 
-                    intervalList.add(adjustedInterval);
+                intervalList.add(adjustedInterval);
 
-                    interval = new Interval(interval.distance_m - adjustedInterval.distance_m, interval.time_ms - adjustedInterval.time_ms);
-                }
+                interval = new Interval(interval.distance_m - adjustedInterval.distance_m, interval.time_ms - adjustedInterval.time_ms);
             }
         }
+    }
 
+    /**
+     * Adds the last (incomplete) interval.
+     */
+    public void finish() {
         if (interval.distance_m > 1f) {
             intervalList.add(interval);
         }